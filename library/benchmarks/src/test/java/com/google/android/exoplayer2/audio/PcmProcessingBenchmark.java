@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the PCM processing that {@link DefaultAudioSink} applies before its audio processor
+ * chain, either as separate {@link ResamplingAudioProcessor}, {@link ChannelMappingAudioProcessor}
+ * and {@link TrimmingAudioProcessor} steps or fused in a {@link FusedPcmAudioProcessor}.
+ *
+ * <p>The input is one second of 5.1 audio whose channels are reordered and whose start and end are
+ * trimmed, as for gapless playback of a WAV or FLAC file. The bytes counter is the number of bytes
+ * written to processor output buffers, so bytes per sample multiplied by the sample rate is the
+ * number of bytes copied per second of audio.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PcmProcessingBenchmark {
+
+  private static final int SAMPLE_RATE = 48000;
+  private static final int CHANNEL_COUNT = 6;
+  private static final int[] CHANNEL_MAP = {0, 2, 1, 5, 3, 4};
+  private static final int TRIM_START_FRAMES = 1024;
+  private static final int TRIM_END_FRAMES = 2048;
+  /** The number of frames in each input buffer, as output by a FLAC decoder. */
+  private static final int CHUNK_FRAMES = 4096;
+
+  @Param({"PCM_16BIT", "PCM_24BIT"})
+  public String inputEncoding;
+
+  @Param({"false", "true"})
+  public boolean fused;
+
+  private AudioProcessor[] availableProcessors;
+  private AudioFormat inputAudioFormat;
+  private ByteBuffer input;
+
+  @Setup
+  public void setUp() throws UnhandledAudioFormatException {
+    int encoding =
+        inputEncoding.equals("PCM_24BIT") ? C.ENCODING_PCM_24BIT : C.ENCODING_PCM_16BIT;
+    if (fused) {
+      FusedPcmAudioProcessor fusedPcmAudioProcessor = new FusedPcmAudioProcessor();
+      fusedPcmAudioProcessor.setChannelMap(CHANNEL_MAP);
+      fusedPcmAudioProcessor.setTrimFrameCount(TRIM_START_FRAMES, TRIM_END_FRAMES);
+      availableProcessors = new AudioProcessor[] {fusedPcmAudioProcessor};
+    } else {
+      ChannelMappingAudioProcessor channelMappingAudioProcessor =
+          new ChannelMappingAudioProcessor();
+      channelMappingAudioProcessor.setChannelMap(CHANNEL_MAP);
+      TrimmingAudioProcessor trimmingAudioProcessor = new TrimmingAudioProcessor();
+      trimmingAudioProcessor.setTrimFrameCount(TRIM_START_FRAMES, TRIM_END_FRAMES);
+      availableProcessors =
+          new AudioProcessor[] {
+            new ResamplingAudioProcessor(), channelMappingAudioProcessor, trimmingAudioProcessor
+          };
+    }
+
+    inputAudioFormat = new AudioFormat(SAMPLE_RATE, CHANNEL_COUNT, encoding);
+    byte[] data = new byte[SAMPLE_RATE * inputAudioFormat.bytesPerFrame];
+    new Random(/* seed= */ 0).nextBytes(data);
+    input = ByteBuffer.allocateDirect(data.length).order(ByteOrder.nativeOrder());
+    input.put(data).flip();
+  }
+
+  @Benchmark
+  public int process(ThroughputCounters counters) throws UnhandledAudioFormatException {
+    AudioProcessor[] processors = configureAndFlush();
+    int outputSize = 0;
+    int chunkSize = CHUNK_FRAMES * inputAudioFormat.bytesPerFrame;
+    for (int position = 0; position < input.limit(); position += chunkSize) {
+      ByteBuffer buffer = input.duplicate().order(ByteOrder.nativeOrder());
+      buffer.position(position).limit(Math.min(position + chunkSize, input.limit()));
+      for (AudioProcessor processor : processors) {
+        processor.queueInput(buffer);
+        buffer = processor.getOutput();
+        counters.bytes += buffer.remaining();
+      }
+      outputSize += buffer.remaining();
+    }
+    counters.samples += SAMPLE_RATE;
+    return outputSize;
+  }
+
+  /**
+   * Configures and flushes the processors as {@link DefaultAudioSink} does for a new stream, so
+   * that trimming applies to each iteration, returning those that are active.
+   */
+  private AudioProcessor[] configureAndFlush() throws UnhandledAudioFormatException {
+    AudioFormat audioFormat = inputAudioFormat;
+    ArrayList<AudioProcessor> activeProcessors = new ArrayList<>();
+    for (AudioProcessor processor : availableProcessors) {
+      AudioFormat outputAudioFormat = processor.configure(audioFormat);
+      if (processor.isActive()) {
+        audioFormat = outputAudioFormat;
+        activeProcessors.add(processor);
+      }
+      processor.flush();
+    }
+    return activeProcessors.toArray(new AudioProcessor[0]);
+  }
+}
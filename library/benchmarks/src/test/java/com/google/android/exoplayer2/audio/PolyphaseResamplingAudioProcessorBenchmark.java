@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link PolyphaseResamplingAudioProcessor} converting one second of stereo audio
+ * between common sample rates, queued in buffers of the size an AAC decoder outputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PolyphaseResamplingAudioProcessorBenchmark {
+
+  private static final int CHANNEL_COUNT = 2;
+  private static final int CHUNK_FRAMES = 1024;
+
+  /** The input and output sample rates, separated by a colon. */
+  @Param({"44100:48000", "48000:44100", "22050:48000"})
+  public String sampleRates;
+
+  @Param({"0", "1", "2"})
+  @PolyphaseResamplingAudioProcessor.Quality
+  public int quality;
+
+  @Param({"false", "true"})
+  public boolean floatPcm;
+
+  private PolyphaseResamplingAudioProcessor processor;
+  private ByteBuffer input;
+
+  @Setup
+  public void setUp() throws AudioProcessor.UnhandledAudioFormatException {
+    String[] rates = sampleRates.split(":", -1);
+    int inputSampleRate = Integer.parseInt(rates[0]);
+    int outputSampleRate = Integer.parseInt(rates[1]);
+    int encoding = floatPcm ? C.ENCODING_PCM_FLOAT : C.ENCODING_PCM_16BIT;
+    processor = new PolyphaseResamplingAudioProcessor();
+    processor.setOutputSampleRateHz(outputSampleRate);
+    processor.setQuality(quality);
+    processor.configure(new AudioFormat(inputSampleRate, CHANNEL_COUNT, encoding));
+    processor.flush();
+
+    int frameCount = inputSampleRate;
+    input =
+        ByteBuffer.allocateDirect(frameCount * CHANNEL_COUNT * (floatPcm ? 4 : 2))
+            .order(ByteOrder.nativeOrder());
+    for (int i = 0; i < frameCount; i++) {
+      double value = 0.5 * Math.sin(2 * Math.PI * 440 * i / inputSampleRate);
+      for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+        if (floatPcm) {
+          input.putFloat((float) value);
+        } else {
+          input.putShort((short) Math.round(value * Short.MAX_VALUE));
+        }
+      }
+    }
+    input.flip();
+  }
+
+  @Benchmark
+  public int resample(ThroughputCounters counters) {
+    int outputSize = 0;
+    int chunkSize = CHUNK_FRAMES * CHANNEL_COUNT * (floatPcm ? 4 : 2);
+    for (int position = 0; position < input.limit(); position += chunkSize) {
+      ByteBuffer chunk = input.duplicate().order(ByteOrder.nativeOrder());
+      chunk.position(position).limit(Math.min(position + chunkSize, input.limit()));
+      counters.bytes += chunk.remaining();
+      processor.queueInput(chunk);
+      outputSize += processor.getOutput().remaining();
+    }
+    counters.samples += input.limit() / (CHANNEL_COUNT * (floatPcm ? 4 : 2));
+    return outputSize;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link Sonic} and {@link FloatSonic} changing the speed of generated audio, as
+ * {@link SonicAudioProcessor} does for 16-bit and float input respectively.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SonicBenchmark {
+
+  private static final int SAMPLE_RATE_HZ = 44100;
+  private static final int DURATION_FRAMES = SAMPLE_RATE_HZ;
+  /** The number of frames queued at a time, roughly the size of a decoded AAC buffer. */
+  private static final int CHUNK_FRAMES = 1024;
+
+  @Param({"1", "2", "6"})
+  public int channelCount;
+
+  @Param({"0.75", "1.5"})
+  public float speed;
+
+  @Param({"false", "true"})
+  public boolean floatPcm;
+
+  private short[] input;
+  private float[] floatInput;
+  private ShortBuffer output;
+  private FloatBuffer floatOutput;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(/* seed= */ 0);
+    input = new short[DURATION_FRAMES * channelCount];
+    floatInput = new float[input.length];
+    for (int i = 0; i < DURATION_FRAMES; i++) {
+      // A harmonic tone whose pitch sweeps between 100 Hz and 200 Hz, plus some noise.
+      double timeS = (double) i / SAMPLE_RATE_HZ;
+      double phase = 2 * Math.PI * (150 * timeS - 50 / Math.PI * Math.cos(Math.PI * timeS));
+      double value = 0;
+      for (int harmonic = 1; harmonic <= 8; harmonic++) {
+        value += Math.sin(harmonic * phase) / harmonic;
+      }
+      value = 0.2 * (value + random.nextGaussian() / 30);
+      for (int channel = 0; channel < channelCount; channel++) {
+        int index = i * channelCount + channel;
+        input[index] = (short) Math.round(value * Short.MAX_VALUE);
+        floatInput[index] = input[index] / 32768f;
+      }
+    }
+    // Leave room for slowing down.
+    output = ShortBuffer.allocate(2 * input.length);
+    floatOutput = FloatBuffer.allocate(2 * input.length);
+  }
+
+  @Benchmark
+  public int changeSpeed(ThroughputCounters counters) {
+    int chunkSize = CHUNK_FRAMES * channelCount;
+    int outputSize;
+    if (floatPcm) {
+      FloatSonic sonic = new FloatSonic(SAMPLE_RATE_HZ, channelCount, speed, SAMPLE_RATE_HZ);
+      floatOutput.clear();
+      for (int position = 0; position < floatInput.length; position += chunkSize) {
+        int length = Math.min(chunkSize, floatInput.length - position);
+        sonic.queueInput(FloatBuffer.wrap(floatInput, position, length));
+        sonic.getOutput(floatOutput);
+      }
+      outputSize = floatOutput.position();
+      counters.bytes += floatInput.length * 4L;
+    } else {
+      Sonic sonic = new Sonic(SAMPLE_RATE_HZ, channelCount, speed, SAMPLE_RATE_HZ);
+      output.clear();
+      for (int position = 0; position < input.length; position += chunkSize) {
+        int length = Math.min(chunkSize, input.length - position);
+        sonic.queueInput(ShortBuffer.wrap(input, position, length));
+        sonic.getOutput(output);
+      }
+      outputSize = output.position();
+      counters.bytes += input.length * 2L;
+    }
+    counters.samples += DURATION_FRAMES;
+    return outputSize;
+  }
+}
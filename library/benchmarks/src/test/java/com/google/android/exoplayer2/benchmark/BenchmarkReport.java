@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.annotation.Nullable;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Formats JMH results as a table of per-benchmark throughput, latency per sample and allocation
+ * rate.
+ */
+/* package */ final class BenchmarkReport {
+
+  private static final String SAMPLES_LABEL = "samples";
+  private static final String BYTES_LABEL = "bytes";
+  private static final String ALLOCATION_RATE_LABEL_SUFFIX = "gc.alloc.rate";
+  private static final String NORMALIZED_ALLOCATION_RATE_LABEL_SUFFIX = "gc.alloc.rate.norm";
+
+  private BenchmarkReport() {}
+
+  /**
+   * Returns a text table summarizing {@code runResults}. Rates are only meaningful for benchmarks
+   * run in {@code Mode.Throughput} with an output time unit of seconds.
+   */
+  public static String format(Collection<RunResult> runResults) {
+    StringBuilder report = new StringBuilder();
+    report.append(
+        String.format(
+            Locale.US,
+            "%-80s %14s %14s %12s %14s %12s%n",
+            "Benchmark",
+            "samples/s",
+            "MB/s",
+            "ns/sample",
+            "alloc MB/s",
+            "alloc B/op"));
+    for (RunResult runResult : runResults) {
+      Map<String, Result> secondaryResults = runResult.getSecondaryResults();
+      double samplesPerSecond = getScore(secondaryResults, SAMPLES_LABEL);
+      double bytesPerSecond = getScore(secondaryResults, BYTES_LABEL);
+      double nsPerSample = samplesPerSecond > 0 ? 1e9 / samplesPerSecond : Double.NaN;
+      report.append(
+          String.format(
+              Locale.US,
+              "%-80s %14.1f %14.2f %12.1f %14.2f %12.1f%n",
+              getName(runResult.getParams()),
+              samplesPerSecond,
+              bytesPerSecond / (1024 * 1024),
+              nsPerSample,
+              getScoreWithSuffix(secondaryResults, ALLOCATION_RATE_LABEL_SUFFIX),
+              getScoreWithSuffix(secondaryResults, NORMALIZED_ALLOCATION_RATE_LABEL_SUFFIX)));
+    }
+    return report.toString();
+  }
+
+  private static String getName(BenchmarkParams params) {
+    // Strip the package, keeping the simple class name and the method name.
+    String benchmark = params.getBenchmark();
+    int classNameStart = benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1;
+    StringBuilder name = new StringBuilder(benchmark.substring(classNameStart));
+    for (String key : params.getParamsKeys()) {
+      name.append(' ').append(key).append('=').append(params.getParam(key));
+    }
+    return name.toString();
+  }
+
+  private static double getScore(Map<String, Result> results, String label) {
+    @Nullable Result result = results.get(label);
+    return result != null ? result.getScore() : Double.NaN;
+  }
+
+  private static double getScoreWithSuffix(Map<String, Result> results, String labelSuffix) {
+    // JMH prefixes profiler result labels with a separator character that varies between versions.
+    for (Map.Entry<String, Result> entry : results.entrySet()) {
+      if (entry.getKey().endsWith(labelSuffix)) {
+        return entry.getValue().getScore();
+      }
+    }
+    return Double.NaN;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import static org.junit.Assume.assumeTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks in this module.
+ *
+ * <p>Benchmarks only run if the {@code exoplayer.benchmark.enabled} system property is set, which
+ * the build does when passed {@code -PrunBenchmarks}. The set of benchmarks can be restricted with
+ * {@code -PbenchmarkInclude=<regexp>}. JSON results and a text summary are written to {@code
+ * build/reports/benchmarks}.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class BenchmarkRunnerTest {
+
+  @Test
+  public void runBenchmarks() throws Exception {
+    assumeTrue(Boolean.getBoolean("exoplayer.benchmark.enabled"));
+    File reportDir = new File(System.getProperty("exoplayer.benchmark.reportDir", "benchmarks"));
+    reportDir.mkdirs();
+
+    Options options =
+        new OptionsBuilder()
+            .include(System.getProperty("exoplayer.benchmark.include", ".*Benchmark.*"))
+            // The benchmarks depend on framework classes provided by Robolectric's sandbox, which a
+            // forked JVM would not have. Benchmarks are therefore run in-process.
+            .forks(0)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(new File(reportDir, "results.json").getPath())
+            .shouldFailOnError(true)
+            .build();
+    Collection<RunResult> runResults = new Runner(options).run();
+
+    String report = BenchmarkReport.format(runResults);
+    System.out.print(report);
+    writeToFile(new File(reportDir, "summary.txt"), report);
+  }
+
+  private static void writeToFile(File file, String contents) throws IOException {
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(Util.getUtf8Bytes(contents));
+    }
+  }
+}
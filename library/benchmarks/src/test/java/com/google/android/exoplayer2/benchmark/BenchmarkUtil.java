@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.IOException;
+
+/** Utility methods for benchmarks. */
+public final class BenchmarkUtil {
+
+  private BenchmarkUtil() {}
+
+  /**
+   * Returns the bytes of a {@code testdata} asset.
+   *
+   * @param assetPath The path of the asset, relative to the {@code testdata} assets directory.
+   * @return The bytes of the asset.
+   * @throws IOException If an error occurs reading the asset.
+   */
+  public static byte[] getAsset(String assetPath) throws IOException {
+    return TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), assetPath);
+  }
+
+  /**
+   * Extracts all samples from {@code data} using a freshly initialized {@code extractor}.
+   *
+   * @param extractor The {@link Extractor} to use. Must not have been initialized.
+   * @param data The data to extract.
+   * @param output The {@link CountingExtractorOutput} to which samples are output.
+   * @throws IOException If an error occurs during extraction.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  public static void extractAll(Extractor extractor, byte[] data, CountingExtractorOutput output)
+      throws IOException, InterruptedException {
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(data)
+            .setSimulateIOErrors(false)
+            .setSimulateUnknownLength(false)
+            .setSimulatePartialReads(false)
+            .build();
+    PositionHolder positionHolder = new PositionHolder();
+    extractor.init(output);
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    extractor.release();
+  }
+}
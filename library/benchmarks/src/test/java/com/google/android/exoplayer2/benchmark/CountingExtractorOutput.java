@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.SampleDataReader;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * An {@link ExtractorOutput} that discards sample data, only counting the number of samples and
+ * bytes output across all of its tracks.
+ *
+ * <p>Unlike {@code FakeExtractorOutput}, no sample data or metadata is retained, so the allocations
+ * measured by a benchmark are those of the extractor rather than of the output.
+ */
+public final class CountingExtractorOutput implements ExtractorOutput {
+
+  private static final int SCRATCH_SIZE = 4096;
+
+  private final SparseArray<CountingTrackOutput> trackOutputs;
+  private final byte[] scratch;
+
+  /** The number of samples output across all tracks since the last {@link #reset()}. */
+  public long sampleCount;
+  /** The number of sample bytes output across all tracks since the last {@link #reset()}. */
+  public long sampleBytes;
+
+  public CountingExtractorOutput() {
+    trackOutputs = new SparseArray<>();
+    scratch = new byte[SCRATCH_SIZE];
+  }
+
+  /** Resets the sample and byte counts, and clears the registered tracks. */
+  public void reset() {
+    trackOutputs.clear();
+    sampleCount = 0;
+    sampleBytes = 0;
+  }
+
+  @Override
+  public TrackOutput track(int id, int type) {
+    @Nullable CountingTrackOutput trackOutput = trackOutputs.get(id);
+    if (trackOutput == null) {
+      trackOutput = new CountingTrackOutput();
+      trackOutputs.put(id, trackOutput);
+    }
+    return trackOutput;
+  }
+
+  @Override
+  public void endTracks() {
+    // Do nothing.
+  }
+
+  @Override
+  public void seekMap(SeekMap seekMap) {
+    // Do nothing.
+  }
+
+  private final class CountingTrackOutput implements TrackOutput {
+
+    @Override
+    public void format(Format format) {
+      // Do nothing.
+    }
+
+    @Override
+    public int sampleData(SampleDataReader input, int length, boolean allowEndOfInput)
+        throws IOException, InterruptedException {
+      int bytesRead = input.read(scratch, 0, Math.min(length, SCRATCH_SIZE));
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        if (allowEndOfInput) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw new EOFException();
+      }
+      sampleBytes += bytesRead;
+      return bytesRead;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length) {
+      int remaining = length;
+      while (remaining > 0) {
+        int bytesToRead = Math.min(remaining, SCRATCH_SIZE);
+        data.readBytes(scratch, 0, bytesToRead);
+        remaining -= bytesToRead;
+      }
+      sampleBytes += length;
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      sampleCount++;
+    }
+  }
+}
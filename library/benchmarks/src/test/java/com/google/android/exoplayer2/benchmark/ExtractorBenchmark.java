@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base class for benchmarks that extract a whole {@code testdata} asset per operation.
+ *
+ * <p>Subclasses declare the assets to extract as a JMH {@code @Param} and create the {@link
+ * Extractor} under test. They may override {@link #loadData()} to derive the extracted data from
+ * the asset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public abstract class ExtractorBenchmark {
+
+  private byte[] data;
+  private CountingExtractorOutput output;
+
+  @Setup
+  public void setUp() throws IOException {
+    data = loadData();
+    output = new CountingExtractorOutput();
+  }
+
+  @Benchmark
+  public long extract(ThroughputCounters counters) throws IOException, InterruptedException {
+    output.reset();
+    BenchmarkUtil.extractAll(createExtractor(), data, output);
+    counters.samples += output.sampleCount;
+    counters.bytes += data.length;
+    return output.sampleBytes;
+  }
+
+  /**
+   * Returns the data to extract in each operation. The default implementation returns the bytes of
+   * the asset at {@link #getAssetPath()}.
+   *
+   * @throws IOException If an error occurs reading the asset.
+   */
+  protected byte[] loadData() throws IOException {
+    return BenchmarkUtil.getAsset(getAssetPath());
+  }
+
+  /** Returns the path of the {@code testdata} asset to extract. */
+  protected abstract String getAssetPath();
+
+  /** Returns a new instance of the {@link Extractor} under test. */
+  protected abstract Extractor createExtractor();
+}
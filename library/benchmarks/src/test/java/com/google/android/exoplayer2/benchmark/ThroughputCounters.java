@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results counting the samples and bytes processed by a benchmark, which JMH
+ * reports as rates alongside the primary result.
+ *
+ * <p>For extractors and sample queues a sample is a media sample. For manifest and playlist parsers
+ * a sample is a media segment, for caches a sample is a cached segment, for NAL unit searches a
+ * sample is a NAL unit, for audio processing a sample is a PCM frame, and for subtitle decoders a
+ * sample is a decoded document.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounters {
+
+  /** The number of samples processed during the current iteration. */
+  public long samples;
+  /** The number of bytes processed during the current iteration. */
+  public long bytes;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    samples = 0;
+    bytes = 0;
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mkv;
+
+import com.google.android.exoplayer2.benchmark.ExtractorBenchmark;
+import com.google.android.exoplayer2.extractor.Extractor;
+import org.openjdk.jmh.annotations.Param;
+
+/** Benchmark for {@link MatroskaExtractor}. */
+public class MatroskaExtractorBenchmark extends ExtractorBenchmark {
+
+  @Param({"mkv/sample.mkv", "mkv/full_blocks.mkv"})
+  public String assetPath;
+
+  @Override
+  protected String getAssetPath() {
+    return assetPath;
+  }
+
+  @Override
+  protected Extractor createExtractor() {
+    return new MatroskaExtractor();
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.ts;
+
+import com.google.android.exoplayer2.benchmark.BenchmarkUtil;
+import com.google.android.exoplayer2.benchmark.ExtractorBenchmark;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmark for {@link TsExtractor}.
+ *
+ * <p>When {@link #programCount} is greater than one, the asset is remultiplexed into a transport
+ * stream carrying that many copies of its program, each on its own PIDs, which is extracted in
+ * {@link TsExtractor#MODE_MULTI_PMT}.
+ */
+public class TsExtractorBenchmark extends ExtractorBenchmark {
+
+  private static final int TS_PACKET_SIZE = TsExtractor.TS_PACKET_SIZE;
+  private static final int PAT_PID = 0;
+  private static final int NULL_PACKET_PID = 0x1FFF;
+  private static final int PID_OFFSET = 0x100;
+  private static final int MAX_RESERVED_PID = 0x1F;
+
+  @Param({"ts/sample.ts", "ts/bbb_2500ms.ts"})
+  public String assetPath;
+
+  @Param({"1", "4"})
+  public int programCount;
+
+  @Override
+  protected String getAssetPath() {
+    return assetPath;
+  }
+
+  @Override
+  protected byte[] loadData() throws IOException {
+    byte[] data = BenchmarkUtil.getAsset(assetPath);
+    return programCount == 1 ? data : createMultiProgramStream(data, programCount);
+  }
+
+  @Override
+  protected Extractor createExtractor() {
+    return programCount == 1
+        ? new TsExtractor()
+        : new TsExtractor(TsExtractor.MODE_MULTI_PMT, /* defaultTsPayloadReaderFlags= */ 0);
+  }
+
+  /**
+   * Returns a transport stream with {@code programCount} copies of the single program in {@code
+   * data}. Each packet of the program is repeated once per copy with its PID offset by a multiple
+   * of {@link #PID_OFFSET}, and the PAT is replaced by one that lists all copies. Assumes {@code
+   * data} consists of whole packets and that its PAT and PMT sections each fit in a single packet.
+   */
+  private static byte[] createMultiProgramStream(byte[] data, int programCount) {
+    int pmtPid = findPmtPid(data);
+    ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * programCount);
+    for (int position = 0; position < data.length; position += TS_PACKET_SIZE) {
+      byte[] packet = Arrays.copyOfRange(data, position, position + TS_PACKET_SIZE);
+      int pid = getPid(packet);
+      if (pid == PAT_PID) {
+        writePat(packet, pmtPid, programCount);
+        output.write(packet, 0, TS_PACKET_SIZE);
+      } else if (pid <= MAX_RESERVED_PID || pid == NULL_PACKET_PID) {
+        output.write(packet, 0, TS_PACKET_SIZE);
+      } else {
+        for (int i = 0; i < programCount; i++) {
+          byte[] copy = packet.clone();
+          setPid(copy, pid + i * PID_OFFSET);
+          if (pid == pmtPid && (copy[1] & 0x40) != 0) {
+            rewritePmt(copy, /* programNumber= */ i + 1, /* pidOffset= */ i * PID_OFFSET);
+          }
+          output.write(copy, 0, TS_PACKET_SIZE);
+        }
+      }
+    }
+    return output.toByteArray();
+  }
+
+  private static int findPmtPid(byte[] data) {
+    for (int position = 0; position < data.length; position += TS_PACKET_SIZE) {
+      byte[] packet = Arrays.copyOfRange(data, position, position + TS_PACKET_SIZE);
+      if (getPid(packet) == PAT_PID && (packet[1] & 0x40) != 0) {
+        int sectionStart = getSectionStart(packet);
+        int programsEnd = sectionStart + getSectionLength(packet, sectionStart) - 4;
+        for (int i = sectionStart + 8; i < programsEnd; i += 4) {
+          if (readUnsignedShort(packet, i) != 0) {
+            return readUnsignedShort(packet, i + 2) & 0x1FFF;
+          }
+        }
+      }
+    }
+    throw new IllegalArgumentException("No PMT found");
+  }
+
+  /** Overwrites the payload of a PAT packet with a section listing {@code programCount} PMTs. */
+  private static void writePat(byte[] packet, int pmtPid, int programCount) {
+    packet[1] = 0x40; // payload_unit_start_indicator (1), PID (13) = 0.
+    packet[2] = 0;
+    packet[3] = (byte) (0x10 | (packet[3] & 0x0F)); // Payload only, keeping continuity_counter.
+    Arrays.fill(packet, 4, TS_PACKET_SIZE, (byte) 0xFF);
+    packet[4] = 0; // pointer_field.
+    int sectionStart = 5;
+    int sectionLength = 5 + 4 * programCount + 4;
+    packet[sectionStart] = 0; // table_id.
+    writeUnsignedShort(packet, sectionStart + 1, 0xB000 | sectionLength);
+    writeUnsignedShort(packet, sectionStart + 3, /* transport_stream_id */ 1);
+    packet[sectionStart + 5] = (byte) 0xC1; // version_number (5) = 0, current_next_indicator (1).
+    packet[sectionStart + 6] = 0; // section_number.
+    packet[sectionStart + 7] = 0; // last_section_number.
+    for (int i = 0; i < programCount; i++) {
+      int entryStart = sectionStart + 8 + 4 * i;
+      writeUnsignedShort(packet, entryStart, /* program_number */ i + 1);
+      writeUnsignedShort(packet, entryStart + 2, 0xE000 | (pmtPid + i * PID_OFFSET));
+    }
+    writeCrc(packet, sectionStart, sectionStart + 3 + sectionLength - 4);
+  }
+
+  /** Sets the program number of the PMT in a packet and offsets the PIDs it references. */
+  private static void rewritePmt(byte[] packet, int programNumber, int pidOffset) {
+    int sectionStart = getSectionStart(packet);
+    int crcStart = sectionStart + getSectionLength(packet, sectionStart) - 4;
+    writeUnsignedShort(packet, sectionStart + 3, programNumber);
+    offsetPid(packet, sectionStart + 8, pidOffset); // PCR_PID.
+    int programInfoLength = readUnsignedShort(packet, sectionStart + 10) & 0x0FFF;
+    int entryStart = sectionStart + 12 + programInfoLength;
+    while (entryStart < crcStart) {
+      offsetPid(packet, entryStart + 1, pidOffset); // elementary_PID.
+      entryStart += 5 + (readUnsignedShort(packet, entryStart + 3) & 0x0FFF);
+    }
+    writeCrc(packet, sectionStart, crcStart);
+  }
+
+  private static int getSectionStart(byte[] packet) {
+    int payloadStart = 4;
+    if ((packet[3] & 0x20) != 0) {
+      // Skip the adaptation field.
+      payloadStart += 1 + (packet[4] & 0xFF);
+    }
+    // Skip the pointer_field and the bytes it points past.
+    return payloadStart + 1 + (packet[payloadStart] & 0xFF);
+  }
+
+  private static int getSectionLength(byte[] packet, int sectionStart) {
+    return (readUnsignedShort(packet, sectionStart + 1) & 0x0FFF) + 3;
+  }
+
+  private static int getPid(byte[] packet) {
+    return readUnsignedShort(packet, 1) & 0x1FFF;
+  }
+
+  private static void setPid(byte[] packet, int pid) {
+    writeUnsignedShort(packet, 1, (readUnsignedShort(packet, 1) & 0xE000) | pid);
+  }
+
+  private static void offsetPid(byte[] packet, int position, int pidOffset) {
+    int value = readUnsignedShort(packet, position);
+    writeUnsignedShort(packet, position, (value & 0xE000) | ((value & 0x1FFF) + pidOffset));
+  }
+
+  private static void writeCrc(byte[] packet, int sectionStart, int crcStart) {
+    int crc = Util.crc32(packet, sectionStart, crcStart, 0xFFFFFFFF);
+    writeUnsignedShort(packet, crcStart, crc >>> 16);
+    writeUnsignedShort(packet, crcStart + 2, crc & 0xFFFF);
+  }
+
+  private static int readUnsignedShort(byte[] data, int position) {
+    return ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+  }
+
+  private static void writeUnsignedShort(byte[] data, int position, int value) {
+    data[position] = (byte) (value >> 8);
+    data[position + 1] = (byte) value;
+  }
+}
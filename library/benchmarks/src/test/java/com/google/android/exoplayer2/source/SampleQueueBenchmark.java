@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DirectBufferAllocator;
+import com.google.android.exoplayer2.upstream.TargetBufferSizeAllocator;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link SampleQueue}, writing a batch of samples into the queue (and hence into its
+ * {@link SampleDataQueue}), reading them back and discarding them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SampleQueueBenchmark {
+
+  private static final int SAMPLES_PER_OPERATION = 1000;
+  private static final int KEYFRAME_INTERVAL = 30;
+  private static final long SAMPLE_DURATION_US = 16_667;
+  private static final Format FORMAT =
+      Format.createSampleFormat(/* id= */ null, MimeTypes.VIDEO_H264);
+
+  /** The size of each sample, in bytes. */
+  @Param({"512", "32768"})
+  public int sampleSize;
+
+  /** The allocator backing the queue, either {@code "heap"} or {@code "direct"}. */
+  @Param({"heap", "direct"})
+  public String allocatorType;
+
+  private ParsableByteArray sampleData;
+  private TargetBufferSizeAllocator allocator;
+  private SampleQueue sampleQueue;
+  private FormatHolder formatHolder;
+  private DecoderInputBuffer inputBuffer;
+  private long nextSampleTimeUs;
+
+  @Setup
+  public void setUp() {
+    sampleData = new ParsableByteArray(TestUtil.buildTestData(sampleSize));
+    allocator = createAllocator(allocatorType);
+    sampleQueue = new SampleQueue(allocator, DrmSessionManager.getDummyDrmSessionManager());
+    sampleQueue.format(FORMAT);
+    formatHolder = new FormatHolder();
+    inputBuffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    inputBuffer.ensureSpaceForWrite(sampleSize);
+  }
+
+  @TearDown
+  public void tearDown() {
+    sampleQueue.release();
+    allocator.reset();
+  }
+
+  @Benchmark
+  public int writeReadDiscard(ThroughputCounters counters) {
+    for (int i = 0; i < SAMPLES_PER_OPERATION; i++) {
+      sampleData.setPosition(0);
+      sampleQueue.sampleData(sampleData, sampleSize);
+      @C.BufferFlags int flags = i % KEYFRAME_INTERVAL == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0;
+      sampleQueue.sampleMetadata(
+          nextSampleTimeUs, flags, sampleSize, /* offset= */ 0, /* cryptoData= */ null);
+      nextSampleTimeUs += SAMPLE_DURATION_US;
+    }
+    int samplesRead = 0;
+    while (true) {
+      inputBuffer.clear();
+      int result =
+          sampleQueue.read(
+              formatHolder,
+              inputBuffer,
+              /* formatRequired= */ false,
+              /* loadingFinished= */ false,
+              /* decodeOnlyUntilUs= */ 0);
+      if (result == C.RESULT_BUFFER_READ) {
+        samplesRead++;
+      } else if (result == C.RESULT_NOTHING_READ) {
+        break;
+      }
+    }
+    sampleQueue.discardToRead();
+    counters.samples += samplesRead;
+    counters.bytes += (long) samplesRead * sampleSize;
+    return samplesRead;
+  }
+
+  /* package */ static TargetBufferSizeAllocator createAllocator(String allocatorType) {
+    switch (allocatorType) {
+      case "heap":
+        return new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      case "direct":
+        return new DirectBufferAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      default:
+        throw new IllegalArgumentException(allocatorType);
+    }
+  }
+}
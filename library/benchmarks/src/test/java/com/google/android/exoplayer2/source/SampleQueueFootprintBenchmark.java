@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.TargetBufferSizeAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark comparing the memory footprint of {@link SampleQueue}s backed by heap and direct
+ * allocations, when buffering the equivalent of a few seconds of high bitrate video.
+ *
+ * <p>Each operation fills a new queue, records the Java heap and direct memory it occupies in
+ * {@link FootprintCounters}, and then reads the samples back into a direct decoder input buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SampleQueueFootprintBenchmark {
+
+  private static final int SAMPLE_SIZE = 64 * 1024;
+  private static final int SAMPLE_COUNT = 256;
+  private static final long SAMPLE_DURATION_US = 16_667;
+  private static final Format FORMAT =
+      Format.createSampleFormat(/* id= */ null, MimeTypes.VIDEO_H265);
+
+  /** The allocator backing the queue, either {@code "heap"} or {@code "direct"}. */
+  @Param({"heap", "direct"})
+  public String allocatorType;
+
+  private ParsableByteArray sampleData;
+  private FormatHolder formatHolder;
+  private DecoderInputBuffer inputBuffer;
+
+  /** Memory occupied by the queue's sample data, reported alongside the primary result. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class FootprintCounters {
+
+    /** The increase in used Java heap after filling the queue, in bytes. */
+    public long heapBytes;
+    /** The increase in used direct memory after filling the queue, in bytes. */
+    public long directBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      heapBytes = 0;
+      directBytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    sampleData = new ParsableByteArray(TestUtil.buildTestData(SAMPLE_SIZE));
+    formatHolder = new FormatHolder();
+    inputBuffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    inputBuffer.ensureSpaceForWrite(SAMPLE_SIZE);
+  }
+
+  @Benchmark
+  public int fillAndRead(FootprintCounters counters) {
+    TargetBufferSizeAllocator allocator = SampleQueueBenchmark.createAllocator(allocatorType);
+    SampleQueue sampleQueue =
+        new SampleQueue(allocator, DrmSessionManager.getDummyDrmSessionManager());
+    sampleQueue.format(FORMAT);
+    System.gc();
+    long initialHeapBytes = getUsedHeapBytes();
+    long initialDirectBytes = getUsedDirectBytes();
+
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      sampleData.setPosition(0);
+      sampleQueue.sampleData(sampleData, SAMPLE_SIZE);
+      sampleQueue.sampleMetadata(
+          i * SAMPLE_DURATION_US,
+          C.BUFFER_FLAG_KEY_FRAME,
+          SAMPLE_SIZE,
+          /* offset= */ 0,
+          /* cryptoData= */ null);
+    }
+    System.gc();
+    counters.heapBytes += getUsedHeapBytes() - initialHeapBytes;
+    counters.directBytes += getUsedDirectBytes() - initialDirectBytes;
+
+    int samplesRead = 0;
+    while (true) {
+      inputBuffer.clear();
+      int result =
+          sampleQueue.read(
+              formatHolder,
+              inputBuffer,
+              /* formatRequired= */ false,
+              /* loadingFinished= */ false,
+              /* decodeOnlyUntilUs= */ 0);
+      if (result == C.RESULT_BUFFER_READ) {
+        samplesRead++;
+      } else if (result == C.RESULT_NOTHING_READ) {
+        break;
+      }
+    }
+    sampleQueue.release();
+    allocator.reset();
+    return samplesRead;
+  }
+
+  private static long getUsedHeapBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long getUsedDirectBytes() {
+    for (BufferPoolMXBean bufferPool :
+        ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(bufferPool.getName())) {
+        return bufferPool.getMemoryUsed();
+      }
+    }
+    return 0;
+  }
+}
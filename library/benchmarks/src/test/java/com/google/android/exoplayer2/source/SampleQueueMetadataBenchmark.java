@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the sample metadata operations of {@link SampleQueue}: queuing samples, seeking
+ * within the queue and discarding from its front. Samples have no data, so that only metadata is
+ * measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SampleQueueMetadataBenchmark {
+
+  private static final long SAMPLE_DURATION_US = 16_667;
+  private static final int SEEKS_PER_OPERATION = 100;
+  private static final int DISCARDS_PER_OPERATION = 100;
+  private static final Format FORMAT =
+      Format.createSampleFormat(/* id= */ null, MimeTypes.VIDEO_H264);
+
+  /** The number of queued samples. 18000 samples is five minutes of 60 fps video. */
+  @Param({"1000", "18000"})
+  public int sampleCount;
+
+  /**
+   * The number of samples per keyframe. 1 is typical of audio. Otherwise samples between keyframes
+   * are queued out of presentation order.
+   */
+  @Param({"1", "60"})
+  public int keyframeInterval;
+
+  private SampleQueue filledSampleQueue;
+  private SampleQueue sampleQueue;
+  private long[] seekTimesUs;
+
+  @Setup
+  public void setUp() {
+    filledSampleQueue = createSampleQueue();
+    queueSamples(filledSampleQueue);
+    sampleQueue = createSampleQueue();
+    Random random = new Random(/* seed= */ 0);
+    seekTimesUs = new long[SEEKS_PER_OPERATION];
+    for (int i = 0; i < SEEKS_PER_OPERATION; i++) {
+      seekTimesUs[i] = (long) (random.nextDouble() * sampleCount * SAMPLE_DURATION_US);
+    }
+  }
+
+  @Benchmark
+  public int write(ThroughputCounters counters) {
+    sampleQueue.reset();
+    queueSamples(sampleQueue);
+    counters.samples += sampleCount;
+    return sampleQueue.getWriteIndex();
+  }
+
+  @Benchmark
+  public int seek(ThroughputCounters counters) {
+    int result = 0;
+    for (long seekTimeUs : seekTimesUs) {
+      filledSampleQueue.seekTo(seekTimeUs, /* allowTimeBeyondBuffer= */ false);
+      result += filledSampleQueue.getReadIndex();
+    }
+    counters.samples += SEEKS_PER_OPERATION;
+    return result;
+  }
+
+  /** Fills a queue and discards from it in steps, as a player discards its back buffer. */
+  @Benchmark
+  public int writeAndDiscard(ThroughputCounters counters) {
+    sampleQueue.reset();
+    queueSamples(sampleQueue);
+    long durationUs = sampleCount * SAMPLE_DURATION_US;
+    for (int i = 1; i <= DISCARDS_PER_OPERATION; i++) {
+      sampleQueue.discardTo(
+          durationUs * i / DISCARDS_PER_OPERATION,
+          /* toKeyframe= */ true,
+          /* stopAtReadPosition= */ false);
+    }
+    counters.samples += sampleCount;
+    return sampleQueue.getFirstIndex();
+  }
+
+  private void queueSamples(SampleQueue sampleQueue) {
+    for (int i = 0; i < sampleCount; i++) {
+      boolean keyframe = i % keyframeInterval == 0;
+      // Swap pairs of samples between keyframes, as in a video stream with B-frames.
+      int presentationIndex = keyframe ? i : i + (i % 2 == 0 ? 1 : -1);
+      @C.BufferFlags int flags = keyframe ? C.BUFFER_FLAG_KEY_FRAME : 0;
+      sampleQueue.sampleMetadata(
+          presentationIndex * SAMPLE_DURATION_US,
+          flags,
+          /* size= */ 0,
+          /* offset= */ 0,
+          /* cryptoData= */ null);
+    }
+  }
+
+  private static SampleQueue createSampleQueue() {
+    SampleQueue sampleQueue =
+        new SampleQueue(
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+            DrmSessionManager.getDummyDrmSessionManager());
+    sampleQueue.format(FORMAT);
+    return sampleQueue;
+  }
+}
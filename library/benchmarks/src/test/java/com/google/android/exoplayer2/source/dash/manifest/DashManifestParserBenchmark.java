@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.benchmark.BenchmarkUtil;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmark for {@link DashManifestParser}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DashManifestParserBenchmark {
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://example.com/test.mpd");
+
+  @Param({"mpd/sample_mpd", "mpd/sample_mpd_segment_template", "mpd/sample_mpd_event_stream"})
+  public String assetPath;
+
+  private byte[] manifestBytes;
+  private DashManifestParser parser;
+
+  @Setup
+  public void setUp() throws IOException {
+    manifestBytes = BenchmarkUtil.getAsset(assetPath);
+    parser = new DashManifestParser();
+  }
+
+  @Benchmark
+  public DashManifest parse(ThroughputCounters counters) throws IOException {
+    DashManifest manifest = parser.parse(MANIFEST_URI, new ByteArrayInputStream(manifestBytes));
+    counters.samples += getSegmentCount(manifest);
+    counters.bytes += manifestBytes.length;
+    return manifest;
+  }
+
+  /**
+   * Returns the number of segments in all bounded segment indices of a manifest. Representations
+   * without an index are counted as a single segment.
+   */
+  /* package */ static long getSegmentCount(DashManifest manifest) {
+    long segmentCount = 0;
+    for (int periodIndex = 0; periodIndex < manifest.getPeriodCount(); periodIndex++) {
+      long periodDurationUs = manifest.getPeriodDurationUs(periodIndex);
+      for (AdaptationSet adaptationSet : manifest.getPeriod(periodIndex).adaptationSets) {
+        for (Representation representation : adaptationSet.representations) {
+          @Nullable DashSegmentIndex index = representation.getIndex();
+          int indexSegmentCount = index == null ? 1 : index.getSegmentCount(periodDurationUs);
+          if (indexSegmentCount != DashSegmentIndex.INDEX_UNBOUNDED) {
+            segmentCount += indexSegmentCount;
+          }
+        }
+      }
+    }
+    return segmentCount;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static com.google.android.exoplayer2.source.dash.manifest.DashManifestParserBenchmark.getSegmentCount;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link DashManifestParser} parsing a generated multi-period live manifest with long
+ * segment timelines, and for looking up segments in the parsed timelines. In each period the video
+ * timeline is a single repeated S element, and the audio timeline has an S element per segment
+ * because audio segment durations alternate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DashSegmentTimelineBenchmark {
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://example.com/live.mpd");
+  private static final int PERIOD_COUNT = 4;
+  private static final long SEGMENT_DURATION_MS = 2000;
+  private static final int LOOKUPS_PER_INDEX = 100;
+
+  /** The number of segments per track. 10800 two second segments is a six hour DVR window. */
+  @Param({"1800", "10800"})
+  public int segmentCount;
+
+  /** Whether the parser stores segment timelines in their compact form. */
+  @Param({"false", "true"})
+  public boolean useCompactSegmentTimelines;
+
+  private byte[] manifestBytes;
+  private DashManifestParser parser;
+  private DashManifest manifest;
+
+  @Setup
+  public void setUp() throws IOException {
+    manifestBytes = Util.getUtf8Bytes(buildManifest());
+    parser = new DashManifestParser(useCompactSegmentTimelines);
+    manifest = parser.parse(MANIFEST_URI, new ByteArrayInputStream(manifestBytes));
+  }
+
+  @Benchmark
+  public DashManifest parse(ThroughputCounters counters) throws IOException {
+    DashManifest manifest = parser.parse(MANIFEST_URI, new ByteArrayInputStream(manifestBytes));
+    counters.samples += getSegmentCount(manifest);
+    counters.bytes += manifestBytes.length;
+    return manifest;
+  }
+
+  /** Looks up segments by time in each segment index, as a player does when seeking. */
+  @Benchmark
+  public long lookUpSegments(ThroughputCounters counters) {
+    long result = 0;
+    for (int periodIndex = 0; periodIndex < manifest.getPeriodCount(); periodIndex++) {
+      long periodDurationUs = manifest.getPeriodDurationUs(periodIndex);
+      for (AdaptationSet adaptationSet : manifest.getPeriod(periodIndex).adaptationSets) {
+        for (Representation representation : adaptationSet.representations) {
+          DashSegmentIndex index = Assertions.checkNotNull(representation.getIndex());
+          int indexSegmentCount = index.getSegmentCount(periodDurationUs);
+          long lastSegmentNum = index.getFirstSegmentNum() + indexSegmentCount - 1;
+          long indexDurationUs =
+              index.getTimeUs(lastSegmentNum)
+                  + index.getDurationUs(lastSegmentNum, periodDurationUs);
+          for (int i = 0; i < LOOKUPS_PER_INDEX; i++) {
+            long timeUs = indexDurationUs * i / LOOKUPS_PER_INDEX;
+            long segmentNum = index.getSegmentNum(timeUs, periodDurationUs);
+            result += index.getTimeUs(segmentNum);
+          }
+          counters.samples += LOOKUPS_PER_INDEX;
+        }
+      }
+    }
+    return result;
+  }
+
+  private String buildManifest() {
+    int periodSegmentCount = segmentCount / PERIOD_COUNT;
+    long periodDurationMs = periodSegmentCount * SEGMENT_DURATION_MS;
+    StringBuilder manifest =
+        new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"dynamic\"")
+            .append(" availabilityStartTime=\"2020-01-01T00:00:00Z\"")
+            .append(" minimumUpdatePeriod=\"PT2S\" timeShiftBufferDepth=\"PT6H\"")
+            .append(" minBufferTime=\"PT2S\"")
+            .append(" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\">\n");
+    for (int periodIndex = 0; periodIndex < PERIOD_COUNT; periodIndex++) {
+      manifest
+          .append("<Period id=\"")
+          .append(periodIndex)
+          .append("\" start=\"PT")
+          .append(periodIndex * periodDurationMs / 1000)
+          .append("S\">\n");
+      // Video: 90 kHz timescale, so every segment has the same duration.
+      manifest
+          .append("<AdaptationSet mimeType=\"video/mp4\" segmentAlignment=\"true\">\n")
+          .append("<SegmentTemplate timescale=\"90000\" media=\"video_$Time$.m4s\"")
+          .append(" initialization=\"video_init.mp4\">\n<SegmentTimeline>\n")
+          .append("<S t=\"0\" d=\"180000\" r=\"")
+          .append(periodSegmentCount - 1)
+          .append("\"/>\n</SegmentTimeline>\n</SegmentTemplate>\n")
+          .append("<Representation id=\"video\" bandwidth=\"2000000\" codecs=\"avc1.4d401f\"")
+          .append(" width=\"1280\" height=\"720\"/>\n</AdaptationSet>\n");
+      // Audio: 48 kHz AAC frames don't divide two seconds, so segment durations alternate.
+      manifest
+          .append("<AdaptationSet mimeType=\"audio/mp4\" segmentAlignment=\"true\">\n")
+          .append("<SegmentTemplate timescale=\"48000\" media=\"audio_$Time$.m4s\"")
+          .append(" initialization=\"audio_init.mp4\">\n<SegmentTimeline>\n");
+      for (int i = 0; i < periodSegmentCount; i++) {
+        manifest.append(i == 0 ? "<S t=\"0\" d=\"" : "<S d=\"");
+        manifest.append(i % 2 == 0 ? 96256 : 95744).append("\"/>\n");
+      }
+      manifest
+          .append("</SegmentTimeline>\n</SegmentTemplate>\n")
+          .append("<Representation id=\"audio\" bandwidth=\"128000\" codecs=\"mp4a.40.2\"")
+          .append(" audioSamplingRate=\"48000\"/>\n</AdaptationSet>\n</Period>\n");
+    }
+    return manifest.append("</MPD>\n").toString();
+  }
+}
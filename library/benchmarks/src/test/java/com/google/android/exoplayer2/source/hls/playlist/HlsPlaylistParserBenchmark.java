@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls.playlist;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link HlsPlaylistParser}, parsing a generated live media playlist with six second
+ * segments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HlsPlaylistParserBenchmark {
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/live/media.m3u8");
+
+  /** The number of segments in the playlist. 3600 segments is a six hour DVR window. */
+  @Param({"60", "3600"})
+  public int segmentCount;
+
+  private byte[] playlistBytes;
+  private HlsPlaylistParser parser;
+
+  @Setup
+  public void setUp() {
+    playlistBytes =
+        Util.getUtf8Bytes(buildLiveMediaPlaylist(/* firstMediaSequence= */ 1000, segmentCount));
+    parser = new HlsPlaylistParser();
+  }
+
+  @Benchmark
+  public HlsPlaylist parseMediaPlaylist(ThroughputCounters counters) throws IOException {
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist) parser.parse(PLAYLIST_URI, new ByteArrayInputStream(playlistBytes));
+    counters.samples += playlist.segments.size();
+    counters.bytes += playlistBytes.length;
+    return playlist;
+  }
+
+  /**
+   * Returns a live media playlist with six second segments.
+   *
+   * @param firstMediaSequence The media sequence number of the first segment.
+   * @param segmentCount The number of segments.
+   * @return The playlist.
+   */
+  /* package */ static String buildLiveMediaPlaylist(long firstMediaSequence, int segmentCount) {
+    StringBuilder playlist =
+        new StringBuilder()
+            .append("#EXTM3U\n")
+            .append("#EXT-X-VERSION:3\n")
+            .append("#EXT-X-TARGETDURATION:6\n")
+            .append("#EXT-X-MEDIA-SEQUENCE:")
+            .append(firstMediaSequence)
+            .append('\n')
+            .append("#EXT-X-PROGRAM-DATE-TIME:2020-01-01T00:00:00.000Z\n");
+    for (int i = 0; i < segmentCount; i++) {
+      playlist
+          .append("#EXTINF:6.006,\n")
+          .append("segment-")
+          .append(firstMediaSequence + i)
+          .append(".ts\n");
+    }
+    return playlist.toString();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls.playlist;
+
+import static com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParserBenchmark.buildLiveMediaPlaylist;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for refreshing a live media playlist with {@link HlsPlaylistParser}, where the
+ * refreshed playlist has slid forward by one segment since it was last loaded. Each operation is a
+ * single refresh, so the reported allocations per operation are the garbage created per refresh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HlsPlaylistRefreshBenchmark {
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/live/media.m3u8");
+
+  /** The number of segments in the playlist. 3600 segments is a six hour DVR window. */
+  @Param({"60", "3600"})
+  public int segmentCount;
+
+  /** Whether the parser reuses the segments of the previously loaded playlist. */
+  @Param({"false", "true"})
+  public boolean reusePreviousPlaylist;
+
+  @Nullable private HlsMediaPlaylist previousPlaylist;
+  private byte[] refreshedPlaylistBytes;
+
+  @Setup
+  public void setUp() throws IOException {
+    byte[] previousPlaylistBytes =
+        Util.getUtf8Bytes(buildLiveMediaPlaylist(/* firstMediaSequence= */ 1000, segmentCount));
+    refreshedPlaylistBytes =
+        Util.getUtf8Bytes(buildLiveMediaPlaylist(/* firstMediaSequence= */ 1001, segmentCount));
+    previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(PLAYLIST_URI, new ByteArrayInputStream(previousPlaylistBytes));
+  }
+
+  @Benchmark
+  public HlsPlaylist refreshMediaPlaylist(ThroughputCounters counters) throws IOException {
+    HlsPlaylistParser parser =
+        new HlsPlaylistParser(
+            HlsMasterPlaylist.EMPTY, reusePreviousPlaylist ? previousPlaylist : null);
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            parser.parse(PLAYLIST_URI, new ByteArrayInputStream(refreshedPlaylistBytes));
+    counters.samples += playlist.segments.size();
+    counters.bytes += refreshedPlaylistBytes.length;
+    return playlist;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.ttml;
+
+import com.google.android.exoplayer2.benchmark.BenchmarkUtil;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link TtmlDecoder} decoding the same document repeatedly, as for the segments of
+ * a live stream whose documents share a head.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TtmlDecoderBenchmark {
+
+  @Param({
+    "ttml/bitmap_percentage_region.xml",
+    "ttml/chain_multiple_styles.xml",
+    "ttml/frame_rate.xml",
+    "ttml/inherit_multiple_styles.xml",
+    "ttml/inline_style_attributes.xml",
+    "ttml/multiple_regions.xml"
+  })
+  public String assetPath;
+
+  @Param({"false", "true"})
+  public boolean enableHeadCaching;
+
+  private byte[] documentBytes;
+  private TtmlDecoder decoder;
+
+  @Setup
+  public void setUp() throws IOException {
+    documentBytes = BenchmarkUtil.getAsset(assetPath);
+    decoder = new TtmlDecoder(enableHeadCaching);
+  }
+
+  @TearDown
+  public void tearDown() {
+    decoder.release();
+  }
+
+  @Benchmark
+  public Subtitle decode(ThroughputCounters counters) throws SubtitleDecoderException {
+    Subtitle subtitle = decoder.decode(documentBytes, documentBytes.length, /* reset= */ false);
+    counters.samples++;
+    counters.bytes += documentBytes.length;
+    return subtitle;
+  }
+}
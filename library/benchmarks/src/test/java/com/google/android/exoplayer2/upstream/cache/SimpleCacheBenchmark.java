@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link SimpleCache} accessed by several threads, each writing, querying and
+ * removing a segment of its own content. Comparing the results for one and four threads shows how
+ * throughput scales with the number of threads for each locking mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SimpleCacheBenchmark {
+
+  private static final int SEGMENT_LENGTH = 4096;
+  private static final int QUERIES_PER_SEGMENT = 16;
+
+  /** Whether the cache locks per cache key. */
+  @Param({"false", "true"})
+  public boolean lockPerKey;
+
+  private File cacheDir;
+  private SimpleCache cache;
+
+  /** The content accessed by a single benchmark thread. */
+  @State(Scope.Thread)
+  public static class ThreadContent {
+
+    private static final AtomicInteger nextContentIndex = new AtomicInteger();
+
+    public String key;
+    public byte[] data;
+
+    @Setup
+    public void setUp() {
+      key = "content" + nextContentIndex.getAndIncrement();
+      data = TestUtil.buildTestData(SEGMENT_LENGTH);
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    cacheDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "SimpleCacheBench");
+    cache =
+        new SimpleCache(
+            cacheDir,
+            new NoOpCacheEvictor(),
+            TestUtil.getInMemoryDatabaseProvider(),
+            /* legacyIndexSecretKey= */ null,
+            /* legacyIndexEncrypt= */ false,
+            /* preferLegacyIndex= */ false,
+            lockPerKey);
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long oneThread(ThreadContent content, ThroughputCounters counters) throws Exception {
+    return writeQueryRemove(content, counters);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public long fourThreads(ThreadContent content, ThroughputCounters counters) throws Exception {
+    return writeQueryRemove(content, counters);
+  }
+
+  private long writeQueryRemove(ThreadContent content, ThroughputCounters counters)
+      throws Exception {
+    String key = content.key;
+    CacheSpan holeSpan = cache.startReadWrite(key, /* position= */ 0);
+    File file = cache.startFile(key, /* position= */ 0, SEGMENT_LENGTH);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(content.data);
+    }
+    cache.commitFile(file, SEGMENT_LENGTH);
+    cache.releaseHoleSpan(holeSpan);
+
+    long cachedBytes = 0;
+    for (int i = 0; i < QUERIES_PER_SEGMENT; i++) {
+      cachedBytes += cache.getCachedLength(key, /* position= */ 0, SEGMENT_LENGTH);
+    }
+
+    CacheSpan cachedSpan = cache.startReadWrite(key, /* position= */ 0);
+    cache.removeSpan(cachedSpan);
+    counters.samples++;
+    counters.bytes += SEGMENT_LENGTH;
+    return cachedBytes;
+  }
+}
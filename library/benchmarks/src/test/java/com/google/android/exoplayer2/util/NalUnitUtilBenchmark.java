@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import com.google.android.exoplayer2.benchmark.ThroughputCounters;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link NalUnitUtil#findNalUnit(byte[], int, int, boolean[])} scanning generated
+ * video data for NAL units, as H264Reader and H265Reader do. The data is passed in chunks whose
+ * size is a parameter of the benchmark, carrying prefix flags across chunks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NalUnitUtilBenchmark {
+
+  private static final int DATA_LENGTH = 4 * 1024 * 1024;
+  /** The mean size of a NAL unit, roughly that of a slice in a high bitrate stream. */
+  private static final int MEAN_NAL_UNIT_SIZE = 16 * 1024;
+
+  /** The size of the chunks passed to each search. 184 is the payload size of a TS packet. */
+  @Param({"184", "4096", "65536"})
+  public int chunkSize;
+
+  private byte[] data;
+  private boolean[] prefixFlags;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(/* seed= */ 0);
+    data = new byte[DATA_LENGTH];
+    // Coded slice data is close to random.
+    random.nextBytes(data);
+    for (int i = 0; i + 4 <= DATA_LENGTH; i += 1 + random.nextInt(2 * MEAN_NAL_UNIT_SIZE)) {
+      data[i] = 0;
+      data[i + 1] = 0;
+      data[i + 2] = 1;
+      data[i + 3] = 0x41; // Non-IDR slice.
+    }
+    prefixFlags = new boolean[3];
+  }
+
+  @Benchmark
+  public long findNalUnits(ThroughputCounters counters) {
+    long result = 0;
+    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    for (int chunkStart = 0; chunkStart < DATA_LENGTH; chunkStart += chunkSize) {
+      int chunkEnd = Math.min(DATA_LENGTH, chunkStart + chunkSize);
+      int offset = chunkStart;
+      while (true) {
+        int nalUnitOffset = NalUnitUtil.findNalUnit(data, offset, chunkEnd, prefixFlags);
+        if (nalUnitOffset == chunkEnd) {
+          break;
+        }
+        counters.samples++;
+        result += nalUnitOffset;
+        offset = nalUnitOffset + 3;
+      }
+    }
+    counters.bytes += DATA_LENGTH;
+    return result;
+  }
+}
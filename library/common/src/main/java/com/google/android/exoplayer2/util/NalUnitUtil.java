@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.util;
 
+import androidx.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
@@ -123,6 +124,13 @@ public final class NalUnitUtil {
   private static final int H264_NAL_UNIT_TYPE_SPS = 7; // Sequence parameter set
   private static final int H265_NAL_UNIT_TYPE_PREFIX_SEI = 39;
 
+  /**
+   * A {@link ByteBuffer} view of the array most recently searched by {@link #findNalUnit} on the
+   * current thread. Callers typically search the same array repeatedly, such as a transport stream
+   * packet buffer, so reusing the view avoids allocating one per call.
+   */
+  private static final ThreadLocal<ByteBuffer> searchBufferView = new ThreadLocal<>();
+
   private static final Object scratchEscapePositionsLock = new Object();
 
   /**
@@ -448,7 +456,31 @@ public final class NalUnitUtil {
     int limit = endOffset - 1;
     // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
     // the third byte.
-    for (int i = startOffset + 2; i < limit; i += 3) {
+    int i = startOffset + 2;
+    if (i + 8 <= limit) {
+      // Examine the bytes at which a prefix could start eight at a time. A word without a zero byte
+      // rules out all prefixes starting within it, which is by far the most common case.
+      @Nullable ByteBuffer buffer = searchBufferView.get();
+      if (buffer == null || buffer.array() != data) {
+        buffer = ByteBuffer.wrap(data);
+        searchBufferView.set(buffer);
+      }
+      for (; i + 8 <= limit; i += 8) {
+        long word = buffer.getLong(i - 2);
+        if (((word - 0x0101010101010101L) & ~word & 0x8080808080808080L) == 0) {
+          continue;
+        }
+        for (int j = i; j < i + 8; j++) {
+          if (data[j] == 1 && data[j - 1] == 0 && data[j - 2] == 0) {
+            if (prefixFlags != null) {
+              clearPrefixFlags(prefixFlags);
+            }
+            return j - 2;
+          }
+        }
+      }
+    }
+    for (; i < limit; i += 3) {
       if ((data[i] & 0xFE) != 0) {
         // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
         // loop advance the index by three.
@@ -21,6 +21,7 @@ import static com.google.common.truth.Truth.assertThat;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -120,6 +121,57 @@ public final class NalUnitUtilTest {
     assertPrefixFlagsCleared(prefixFlags);
   }
 
+  @Test
+  public void testFindNalUnitMatchesByteByByteSearchForAllShortInputs() {
+    // All arrays of up to seven bytes from an alphabet covering the start code prefix bytes.
+    byte[] alphabet = new byte[] {0x00, 0x01, (byte) 0xFF};
+    for (int length = 0; length <= 7; length++) {
+      int arrayCount = (int) Math.pow(alphabet.length, length);
+      for (int arrayIndex = 0; arrayIndex < arrayCount; arrayIndex++) {
+        byte[] data = new byte[length];
+        for (int i = 0, remainder = arrayIndex; i < length; i++, remainder /= alphabet.length) {
+          data[i] = alphabet[remainder % alphabet.length];
+        }
+        assertFindNalUnitMatchesByteByByteSearchForAllRanges(data);
+      }
+    }
+  }
+
+  @Test
+  public void testFindNalUnitMatchesByteByByteSearchForLongInputs() {
+    Random random = new Random(/* seed= */ 0);
+    // Long enough for findNalUnit to examine eight bytes at a time.
+    for (int i = 0; i < 4; i++) {
+      assertFindNalUnitMatchesByteByByteSearchForAllRanges(
+          buildRandomStartCodeData(random, /* length= */ 300));
+    }
+  }
+
+  @Test
+  public void testFindNalUnitMatchesByteByByteSearchAcrossChunks() {
+    Random random = new Random(/* seed= */ 0);
+    byte[] data = buildRandomStartCodeData(random, /* length= */ 100_000);
+    boolean[] prefixFlags = new boolean[3];
+    boolean[] expectedPrefixFlags = new boolean[3];
+    int chunkStart = 0;
+    while (chunkStart < data.length) {
+      int chunkEnd = Math.min(data.length, chunkStart + random.nextInt(1024));
+      int offset = chunkStart;
+      while (true) {
+        int expectedResult =
+            findNalUnitByteByByte(data, offset, chunkEnd, expectedPrefixFlags);
+        int result = NalUnitUtil.findNalUnit(data, offset, chunkEnd, prefixFlags);
+        assertThat(result).isEqualTo(expectedResult);
+        assertThat(prefixFlags).isEqualTo(expectedPrefixFlags);
+        if (result == chunkEnd) {
+          break;
+        }
+        offset = Math.max(offset, result + 3);
+      }
+      chunkStart = chunkEnd;
+    }
+  }
+
   @Test
   public void testParseSpsNalUnit() {
     NalUnitUtil.SpsData data = NalUnitUtil.parseSpsNalUnit(SPS_TEST_DATA, SPS_TEST_DATA_OFFSET,
@@ -167,6 +219,94 @@ public final class NalUnitUtilTest {
     assertDiscardToSpsMatchesExpected("FF00000001660000000167FF", "0000000167FF");
   }
 
+  private static void assertFindNalUnitMatchesByteByByteSearchForAllRanges(byte[] data) {
+    for (int startOffset = 0; startOffset <= data.length; startOffset++) {
+      for (int endOffset = startOffset; endOffset <= data.length; endOffset++) {
+        assertThat(NalUnitUtil.findNalUnit(data, startOffset, endOffset, /* prefixFlags= */ null))
+            .isEqualTo(findNalUnitByteByByte(data, startOffset, endOffset, null));
+        for (int flags = 0; flags < 8; flags++) {
+          boolean[] prefixFlags =
+              new boolean[] {(flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0};
+          boolean[] expectedPrefixFlags = prefixFlags.clone();
+          int expectedResult =
+              findNalUnitByteByByte(data, startOffset, endOffset, expectedPrefixFlags);
+          int result = NalUnitUtil.findNalUnit(data, startOffset, endOffset, prefixFlags);
+          assertThat(result).isEqualTo(expectedResult);
+          assertThat(prefixFlags).isEqualTo(expectedPrefixFlags);
+        }
+      }
+    }
+  }
+
+  /** Returns random data in which zero bytes and start code prefixes are frequent. */
+  private static byte[] buildRandomStartCodeData(Random random, int length) {
+    byte[] data = new byte[length];
+    random.nextBytes(data);
+    for (int i = 0; i < length; i++) {
+      int value = random.nextInt(64);
+      if (value < 4) {
+        data[i] = 0;
+      } else if (value < 5 && i + 3 <= length) {
+        data[i] = 0;
+        data[i + 1] = 0;
+        data[i + 2] = 1;
+        i += 2;
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Reference implementation of {@link NalUnitUtil#findNalUnit(byte[], int, int, boolean[])} that
+   * examines the data one position at a time.
+   */
+  private static int findNalUnitByteByByte(
+      byte[] data, int startOffset, int endOffset, boolean[] prefixFlags) {
+    int length = endOffset - startOffset;
+    if (length == 0) {
+      return endOffset;
+    }
+    if (prefixFlags != null) {
+      if (prefixFlags[0]) {
+        NalUnitUtil.clearPrefixFlags(prefixFlags);
+        return startOffset - 3;
+      } else if (length > 1 && prefixFlags[1] && data[startOffset] == 1) {
+        NalUnitUtil.clearPrefixFlags(prefixFlags);
+        return startOffset - 2;
+      } else if (length > 2
+          && prefixFlags[2]
+          && data[startOffset] == 0
+          && data[startOffset + 1] == 1) {
+        NalUnitUtil.clearPrefixFlags(prefixFlags);
+        return startOffset - 1;
+      }
+    }
+    // Start code prefixes whose last byte is the last byte of the data are only reported through
+    // prefixFlags, by the next search.
+    for (int i = startOffset; i + 3 < endOffset; i++) {
+      if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+        if (prefixFlags != null) {
+          NalUnitUtil.clearPrefixFlags(prefixFlags);
+        }
+        return i;
+      }
+    }
+    if (prefixFlags != null) {
+      boolean endsWithZero = data[endOffset - 1] == 0;
+      boolean endsWithOne = data[endOffset - 1] == 1;
+      if (length > 2) {
+        prefixFlags[0] = data[endOffset - 3] == 0 && data[endOffset - 2] == 0 && endsWithOne;
+      } else if (length == 2) {
+        prefixFlags[0] = prefixFlags[2] && data[endOffset - 2] == 0 && endsWithOne;
+      } else {
+        prefixFlags[0] = prefixFlags[1] && endsWithOne;
+      }
+      prefixFlags[1] = (length > 1 ? data[endOffset - 2] == 0 : prefixFlags[2]) && endsWithZero;
+      prefixFlags[2] = endsWithZero;
+    }
+    return endOffset;
+  }
+
   private static byte[] buildTestData() {
     byte[] data = new byte[20];
     for (int i = 0; i < data.length; i++) {
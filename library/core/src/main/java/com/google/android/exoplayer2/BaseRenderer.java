@@ -24,6 +24,8 @@ import com.google.android.exoplayer2.drm.ExoMediaCrypto;
 import com.google.android.exoplayer2.source.SampleStream;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MediaClock;
+import com.google.android.exoplayer2.util.MetricsCollector;
+import com.google.android.exoplayer2.util.MetricsUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 
@@ -376,6 +378,7 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
   protected final int readSource(
       FormatHolder formatHolder, DecoderInputBuffer buffer, boolean formatRequired) {
     int result = stream.readData(formatHolder, buffer, formatRequired);
+    MetricsUtil.getCollector().incrementCounter(getReadCounter(result), /* delta= */ 1);
     if (result == C.RESULT_BUFFER_READ) {
       if (buffer.isEndOfStream()) {
         readingPositionUs = C.TIME_END_OF_SOURCE;
@@ -410,4 +413,16 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
   protected final boolean isSourceReady() {
     return hasReadStreamToEnd() ? streamIsFinal : stream.isReady();
   }
+
+  @MetricsCollector.Counter
+  private static int getReadCounter(int result) {
+    switch (result) {
+      case C.RESULT_BUFFER_READ:
+        return MetricsCollector.COUNTER_RENDERER_BUFFERS_READ;
+      case C.RESULT_FORMAT_READ:
+        return MetricsCollector.COUNTER_RENDERER_FORMATS_READ;
+      default:
+        return MetricsCollector.COUNTER_RENDERER_EMPTY_READS;
+    }
+  }
 }
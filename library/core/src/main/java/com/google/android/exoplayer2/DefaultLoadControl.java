@@ -18,7 +18,10 @@ package com.google.android.exoplayer2;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.ConcurrentAllocator;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DirectBufferAllocator;
+import com.google.android.exoplayer2.upstream.TargetBufferSizeAllocator;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 
@@ -89,7 +92,7 @@ public class DefaultLoadControl implements LoadControl {
   /** Builder for {@link DefaultLoadControl}. */
   public static final class Builder {
 
-    private DefaultAllocator allocator;
+    private TargetBufferSizeAllocator allocator;
     private int minBufferAudioMs;
     private int minBufferVideoMs;
     private int maxBufferMs;
@@ -115,18 +118,32 @@ public class DefaultLoadControl implements LoadControl {
     }
 
     /**
-     * Sets the {@link DefaultAllocator} used by the loader.
+     * Sets the {@link TargetBufferSizeAllocator} used by the loader. A {@link DefaultAllocator} is
+     * used by default. A {@link ConcurrentAllocator} may perform better if several players or
+     * loaders run concurrently, and a {@link DirectBufferAllocator} keeps buffered sample data in
+     * direct memory.
      *
-     * @param allocator The {@link DefaultAllocator}.
+     * @param allocator The {@link TargetBufferSizeAllocator}.
      * @return This builder, for convenience.
      * @throws IllegalStateException If {@link #createDefaultLoadControl()} has already been called.
      */
-    public Builder setAllocator(DefaultAllocator allocator) {
+    public Builder setAllocator(TargetBufferSizeAllocator allocator) {
       Assertions.checkState(!createDefaultLoadControlCalled);
       this.allocator = allocator;
       return this;
     }
 
+    /**
+     * Sets the {@link DefaultAllocator} used by the loader.
+     *
+     * @param allocator The {@link DefaultAllocator}.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #createDefaultLoadControl()} has already been called.
+     */
+    public Builder setAllocator(DefaultAllocator allocator) {
+      return setAllocator((TargetBufferSizeAllocator) allocator);
+    }
+
     /**
      * Sets the buffer duration parameters.
      *
@@ -234,7 +251,7 @@ public class DefaultLoadControl implements LoadControl {
     }
   }
 
-  private final DefaultAllocator allocator;
+  private final TargetBufferSizeAllocator allocator;
 
   private final long minBufferAudioUs;
   private final long minBufferVideoUs;
@@ -306,6 +323,30 @@ public class DefaultLoadControl implements LoadControl {
       boolean prioritizeTimeOverSizeThresholds,
       int backBufferDurationMs,
       boolean retainBackBufferFromKeyframe) {
+    this(
+        (TargetBufferSizeAllocator) allocator,
+        minBufferAudioMs,
+        minBufferVideoMs,
+        maxBufferMs,
+        bufferForPlaybackMs,
+        bufferForPlaybackAfterRebufferMs,
+        targetBufferBytes,
+        prioritizeTimeOverSizeThresholds,
+        backBufferDurationMs,
+        retainBackBufferFromKeyframe);
+  }
+
+  protected DefaultLoadControl(
+      TargetBufferSizeAllocator allocator,
+      int minBufferAudioMs,
+      int minBufferVideoMs,
+      int maxBufferMs,
+      int bufferForPlaybackMs,
+      int bufferForPlaybackAfterRebufferMs,
+      int targetBufferBytes,
+      boolean prioritizeTimeOverSizeThresholds,
+      int backBufferDurationMs,
+      boolean retainBackBufferFromKeyframe) {
     assertGreaterOrEqual(bufferForPlaybackMs, 0, "bufferForPlaybackMs", "0");
     assertGreaterOrEqual(
         bufferForPlaybackAfterRebufferMs, 0, "bufferForPlaybackAfterRebufferMs", "0");
@@ -146,6 +146,7 @@ public interface ExoPlayer extends Player {
     private boolean buildCalled;
 
     private long releaseTimeoutMs;
+    private boolean dynamicSchedulingEnabled;
 
     /**
      * Creates a builder with a list of {@link Renderer Renderers}.
@@ -230,6 +231,20 @@ public interface ExoPlayer extends Player {
       return this;
     }
 
+    /**
+     * Sets whether the playback loop is scheduled dynamically while playing. If enabled, the
+     * playback loop runs when the renderers expect to be able to make progress, as reported by
+     * {@link Renderer#getDurationToProgressUs(long, long)}, rather than at a fixed interval.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * @param dynamicSchedulingEnabled Whether to enable dynamic scheduling.
+     */
+    public Builder experimental_setDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+      this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+      return this;
+    }
+
     /**
      * Sets the {@link TrackSelector} that will be used by the player.
      *
@@ -350,6 +365,9 @@ public interface ExoPlayer extends Player {
       if (releaseTimeoutMs > 0) {
         player.experimental_setReleaseTimeoutMs(releaseTimeoutMs);
       }
+      if (dynamicSchedulingEnabled) {
+        player.experimental_setDynamicSchedulingEnabled(true);
+      }
 
       return player;
     }
@@ -179,6 +179,20 @@ import java.util.concurrent.TimeoutException;
     internalPlayer.experimental_setReleaseTimeoutMs(timeoutMs);
   }
 
+  /**
+   * Sets whether the playback loop is scheduled dynamically while playing. If enabled, the playback
+   * loop runs when the enabled renderers expect to be able to make progress, as reported by {@link
+   * Renderer#getDurationToProgressUs(long, long)}, rather than at a fixed interval. This reduces
+   * the number of times the playback thread wakes up, for example during audio only playback.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release.
+   *
+   * @param dynamicSchedulingEnabled Whether to enable dynamic scheduling.
+   */
+  public void experimental_setDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+    internalPlayer.experimental_setDynamicSchedulingEnabled(dynamicSchedulingEnabled);
+  }
+
   @Override
   @Nullable
   public AudioComponent getAudioComponent() {
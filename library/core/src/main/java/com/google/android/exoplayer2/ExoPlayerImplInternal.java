@@ -41,6 +41,8 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.HandlerWrapper;
 import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.MetricsCollector;
+import com.google.android.exoplayer2.util.MetricsUtil;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
@@ -131,6 +133,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
   private boolean deliverPendingMessageAtStartPositionRequired;
 
   private long releaseTimeoutMs;
+  private volatile boolean dynamicSchedulingEnabled;
 
   public ExoPlayerImplInternal(
       Renderer[] renderers,
@@ -191,6 +194,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
     this.releaseTimeoutMs = releaseTimeoutMs;
   }
 
+  public void experimental_setDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+    this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+  }
+
   public void prepare() {
     handler.obtainMessage(MSG_PREPARE).sendToTarget();
   }
@@ -752,6 +759,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
   private void doSomeWork() throws ExoPlaybackException, IOException {
     long operationStartTimeMs = clock.uptimeMillis();
+    MetricsCollector metrics = MetricsUtil.getCollector();
+    boolean recordMetrics = metrics.isEnabled();
+    long operationStartTimeNs = recordMetrics ? System.nanoTime() : 0;
+    metrics.incrementCounter(MetricsCollector.COUNTER_PLAYBACK_LOOP_ITERATIONS, /* delta= */ 1);
     updatePeriods();
 
     if (playbackInfo.playbackState == Player.STATE_IDLE
@@ -774,6 +785,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
     boolean renderersEnded = true;
     boolean renderersAllowPlayback = true;
+    boolean useDynamicScheduling = dynamicSchedulingEnabled;
+    long durationToProgressUs = Long.MAX_VALUE;
     if (playingPeriodHolder.prepared) {
       long rendererPositionElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
       playingPeriodHolder.mediaPeriod.discardBuffer(
@@ -783,10 +796,20 @@ import java.util.concurrent.atomic.AtomicBoolean;
         if (renderer.getState() == Renderer.STATE_DISABLED) {
           continue;
         }
-        // TODO: Each renderer should return the maximum delay before which it wishes to be called
-        // again. The minimum of these values should then be used as the delay before the next
-        // invocation of this method.
+        long renderStartTimeNs = recordMetrics ? System.nanoTime() : 0;
         renderer.render(rendererPositionUs, rendererPositionElapsedRealtimeUs);
+        if (recordMetrics) {
+          metrics.recordValue(
+              getRenderTimeHistogram(renderer.getTrackType()),
+              (System.nanoTime() - renderStartTimeNs) / 1000);
+        }
+        if (useDynamicScheduling) {
+          durationToProgressUs =
+              Math.min(
+                  durationToProgressUs,
+                  renderer.getDurationToProgressUs(
+                      rendererPositionUs, rendererPositionElapsedRealtimeUs));
+        }
         renderersEnded = renderersEnded && renderer.isEnded();
         // Determine whether the renderer allows playback to continue. Playback can continue if the
         // renderer is ready or ended. Also continue playback if the renderer is reading ahead into
@@ -836,8 +859,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
       }
     }
 
-    if ((playWhenReady && playbackInfo.playbackState == Player.STATE_READY)
-        || playbackInfo.playbackState == Player.STATE_BUFFERING) {
+    boolean isPlaying = playWhenReady && playbackInfo.playbackState == Player.STATE_READY;
+    if (isPlaying && useDynamicScheduling) {
+      scheduleNextWork(
+          operationStartTimeMs, getDynamicIntervalMs(playingPeriodHolder, durationToProgressUs));
+    } else if (isPlaying || playbackInfo.playbackState == Player.STATE_BUFFERING) {
       scheduleNextWork(operationStartTimeMs, ACTIVE_INTERVAL_MS);
     } else if (enabledRenderers.length != 0 && playbackInfo.playbackState != Player.STATE_ENDED) {
       scheduleNextWork(operationStartTimeMs, IDLE_INTERVAL_MS);
@@ -845,9 +871,42 @@ import java.util.concurrent.atomic.AtomicBoolean;
       handler.removeMessages(MSG_DO_SOME_WORK);
     }
 
+    if (recordMetrics) {
+      metrics.recordValue(
+          MetricsCollector.HISTOGRAM_PLAYBACK_LOOP_TIME_US,
+          (System.nanoTime() - operationStartTimeNs) / 1000);
+    }
     TraceUtil.endSection();
   }
 
+  /**
+   * Returns the interval until the next call to {@link #doSomeWork()} while playing with dynamic
+   * scheduling enabled.
+   *
+   * @param playingPeriodHolder The holder of the playing period.
+   * @param durationToProgressUs The minimum duration to progress reported by the enabled
+   *     renderers, in microseconds of media time, or {@link Long#MAX_VALUE} if no renderer reported
+   *     a duration.
+   * @return The interval, in milliseconds.
+   */
+  private long getDynamicIntervalMs(
+      MediaPeriodHolder playingPeriodHolder, long durationToProgressUs) {
+    if (!pendingMessages.isEmpty()) {
+      // Messages must be delivered close to their positions.
+      return ACTIVE_INTERVAL_MS;
+    }
+    // Wake up in time to transition to the next period or to the ended state.
+    long periodDurationUs = playingPeriodHolder.info.durationUs;
+    if (periodDurationUs != C.TIME_UNSET) {
+      durationToProgressUs =
+          Math.min(durationToProgressUs, periodDurationUs - playbackInfo.positionUs);
+    }
+    // Renderer and period durations are in media time, so scale them to real time.
+    float playbackSpeed = mediaClock.getPlaybackParameters().speed;
+    long intervalMs = (long) (durationToProgressUs / playbackSpeed / 1000);
+    return Util.constrainValue(intervalMs, ACTIVE_INTERVAL_MS, IDLE_INTERVAL_MS);
+  }
+
   private void scheduleNextWork(long thisOperationStartTimeMs, long intervalMs) {
     handler.removeMessages(MSG_DO_SOME_WORK);
     handler.sendEmptyMessageAtTime(MSG_DO_SOME_WORK, thisOperationStartTimeMs + intervalMs);
@@ -2443,6 +2502,22 @@ import java.util.concurrent.atomic.AtomicBoolean;
     return formats;
   }
 
+  @MetricsCollector.Histogram
+  private static int getRenderTimeHistogram(int trackType) {
+    switch (trackType) {
+      case C.TRACK_TYPE_VIDEO:
+        return MetricsCollector.HISTOGRAM_VIDEO_RENDER_TIME_US;
+      case C.TRACK_TYPE_AUDIO:
+        return MetricsCollector.HISTOGRAM_AUDIO_RENDER_TIME_US;
+      case C.TRACK_TYPE_TEXT:
+        return MetricsCollector.HISTOGRAM_TEXT_RENDER_TIME_US;
+      case C.TRACK_TYPE_METADATA:
+        return MetricsCollector.HISTOGRAM_METADATA_RENDER_TIME_US;
+      default:
+        return MetricsCollector.HISTOGRAM_OTHER_RENDER_TIME_US;
+    }
+  }
+
   private static final class SeekPosition {
 
     public final Timeline timeline;
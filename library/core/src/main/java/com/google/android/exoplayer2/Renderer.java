@@ -177,6 +177,12 @@ public interface Renderer extends PlayerMessage.Target {
    */
   int STATE_STARTED = 2;
 
+  /**
+   * The duration returned by the default implementation of {@link #getDurationToProgressUs(long,
+   * long)}, in microseconds.
+   */
+  long DEFAULT_DURATION_TO_PROGRESS_US = 10_000;
+
   /**
    * Returns the track type that the renderer handles. For example, a video renderer will return
    * {@link C#TRACK_TYPE_VIDEO}, an audio renderer will return {@link C#TRACK_TYPE_AUDIO}, a text
@@ -362,6 +368,36 @@ public interface Renderer extends PlayerMessage.Target {
    */
   void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException;
 
+  /**
+   * Returns the duration of playback after which the renderer expects to be able to make further
+   * progress if {@link #render(long, long)} is called again, in microseconds. For example, a video
+   * renderer that is holding an output buffer that isn't due to be released yet may return the time
+   * until it is due, and an audio renderer whose output is full may return an estimate of the time
+   * until there's space for more output.
+   *
+   * <p>The duration is measured in media time, like the position passed to {@link #render(long,
+   * long)}. The player divides it by the playback speed to obtain the corresponding real time.
+   *
+   * <p>If dynamic scheduling is enabled, the player calls this method after each call to {@link
+   * #render(long, long)} while playing, and uses it to decide when to call {@link #render(long,
+   * long)} next. The player may call {@link #render(long, long)} sooner than requested, for example
+   * if another renderer needs to make progress sooner.
+   *
+   * <p>The default implementation returns {@link #DEFAULT_DURATION_TO_PROGRESS_US}.
+   *
+   * <p>This method may be called when the renderer is in the following states: {@link
+   * #STATE_ENABLED}, {@link #STATE_STARTED}.
+   *
+   * @param positionUs The position passed to the preceding call to {@link #render(long, long)}.
+   * @param elapsedRealtimeUs The elapsed realtime passed to the preceding call to {@link
+   *     #render(long, long)}.
+   * @return The duration of playback after which the renderer expects to be able to make further
+   *     progress, in microseconds.
+   */
+  default long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    return DEFAULT_DURATION_TO_PROGRESS_US;
+  }
+
   /**
    * Whether the renderer is able to immediately render media from the current position.
    * <p>
@@ -1369,6 +1369,20 @@ public class SimpleExoPlayer extends BasePlayer
     player.setForegroundMode(foregroundMode);
   }
 
+  /**
+   * Sets whether the playback loop is scheduled dynamically while playing. If enabled, the playback
+   * loop runs when the renderers expect to be able to make progress, as reported by {@link
+   * Renderer#getDurationToProgressUs(long, long)}, rather than at a fixed interval.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release.
+   *
+   * @param dynamicSchedulingEnabled Whether to enable dynamic scheduling.
+   */
+  public void experimental_setDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+    verifyApplicationThread();
+    player.experimental_setDynamicSchedulingEnabled(dynamicSchedulingEnabled);
+  }
+
   @Override
   public void stop(boolean reset) {
     verifyApplicationThread();
@@ -262,6 +262,17 @@ public interface AudioSink {
    */
   boolean hasPendingData();
 
+  /**
+   * Returns the duration of the data that has been handled by the sink but not yet played out, in
+   * microseconds, or {@link C#TIME_UNSET} if unknown. The sink will typically have space for more
+   * data before this duration has elapsed.
+   *
+   * <p>The default implementation returns {@link C#TIME_UNSET}.
+   */
+  default long getPendingDataDurationUs() {
+    return C.TIME_UNSET;
+  }
+
   /**
    * Attempts to set the playback parameters. The audio sink may override these parameters if they
    * are not supported.
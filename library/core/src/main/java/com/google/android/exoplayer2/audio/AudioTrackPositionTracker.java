@@ -335,6 +335,16 @@ import java.lang.reflect.Method;
         || forceHasPendingData();
   }
 
+  /**
+   * Returns the duration of the data written to the audio track that has not been played out yet.
+   *
+   * @param writtenFrames The number of frames written to the audio track.
+   * @return The duration of the pending data, in microseconds.
+   */
+  public long getPendingDataDurationUs(long writtenFrames) {
+    return framesToDurationUs(Math.max(0, writtenFrames - getPlaybackHeadPosition()));
+  }
+
   /**
    * Pauses the audio track position tracker, returning whether the audio track needs to be paused
    * to cause playback to pause. If {@code false} is returned the audio track will pause without
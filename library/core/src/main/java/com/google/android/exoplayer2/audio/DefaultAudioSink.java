@@ -223,8 +223,10 @@ public final class DefaultAudioSink implements AudioSink {
   @Nullable private final AudioCapabilities audioCapabilities;
   private final AudioProcessorChain audioProcessorChain;
   private final boolean enableConvertHighResIntPcmToFloat;
+  private final boolean enableFusedPcmProcessing;
   private final ChannelMappingAudioProcessor channelMappingAudioProcessor;
   private final TrimmingAudioProcessor trimmingAudioProcessor;
+  private final FusedPcmAudioProcessor fusedPcmAudioProcessor;
   private final AudioProcessor[] toIntPcmAvailableAudioProcessors;
   private final AudioProcessor[] toFloatPcmAvailableAudioProcessors;
   private final ConditionVariable releasingConditionVariable;
@@ -324,19 +326,55 @@ public final class DefaultAudioSink implements AudioSink {
       @Nullable AudioCapabilities audioCapabilities,
       AudioProcessorChain audioProcessorChain,
       boolean enableConvertHighResIntPcmToFloat) {
+    this(
+        audioCapabilities,
+        audioProcessorChain,
+        enableConvertHighResIntPcmToFloat,
+        /* enableFusedPcmProcessing= */ false);
+  }
+
+  /**
+   * Creates a new default audio sink, optionally using float output for high resolution PCM,
+   * optionally fusing the initial PCM processing steps and with the specified {@code
+   * audioProcessorChain}.
+   *
+   * @param audioCapabilities The audio capabilities for playback on this device. May be null if the
+   *     default capabilities (no encoded audio passthrough support) should be assumed.
+   * @param audioProcessorChain An {@link AudioProcessorChain} which is used to apply playback
+   *     parameters adjustments. The instance passed in must not be reused in other sinks.
+   * @param enableConvertHighResIntPcmToFloat Whether to enable conversion of high resolution
+   *     integer PCM to 32-bit float for output, if possible. Functionality that uses 16-bit integer
+   *     audio processing (for example, speed adjustment) will not be available when float output is
+   *     in use.
+   * @param enableFusedPcmProcessing Whether to convert integer PCM to 16-bit, apply the channel
+   *     mapping and trim the start/end of the audio in a single pass over each input buffer, rather
+   *     than with a separate audio processor and output buffer for each step. The output is the
+   *     same either way.
+   */
+  public DefaultAudioSink(
+      @Nullable AudioCapabilities audioCapabilities,
+      AudioProcessorChain audioProcessorChain,
+      boolean enableConvertHighResIntPcmToFloat,
+      boolean enableFusedPcmProcessing) {
     this.audioCapabilities = audioCapabilities;
     this.audioProcessorChain = Assertions.checkNotNull(audioProcessorChain);
     this.enableConvertHighResIntPcmToFloat = enableConvertHighResIntPcmToFloat;
+    this.enableFusedPcmProcessing = enableFusedPcmProcessing;
     releasingConditionVariable = new ConditionVariable(true);
     audioTrackPositionTracker = new AudioTrackPositionTracker(new PositionTrackerListener());
     channelMappingAudioProcessor = new ChannelMappingAudioProcessor();
     trimmingAudioProcessor = new TrimmingAudioProcessor();
+    fusedPcmAudioProcessor = new FusedPcmAudioProcessor();
     ArrayList<AudioProcessor> toIntPcmAudioProcessors = new ArrayList<>();
-    Collections.addAll(
-        toIntPcmAudioProcessors,
-        new ResamplingAudioProcessor(),
-        channelMappingAudioProcessor,
-        trimmingAudioProcessor);
+    if (enableFusedPcmProcessing) {
+      toIntPcmAudioProcessors.add(fusedPcmAudioProcessor);
+    } else {
+      Collections.addAll(
+          toIntPcmAudioProcessors,
+          new ResamplingAudioProcessor(),
+          channelMappingAudioProcessor,
+          trimmingAudioProcessor);
+    }
     Collections.addAll(toIntPcmAudioProcessors, audioProcessorChain.getAudioProcessors());
     toIntPcmAvailableAudioProcessors = toIntPcmAudioProcessors.toArray(new AudioProcessor[0]);
     toFloatPcmAvailableAudioProcessors = new AudioProcessor[] {new FloatResamplingAudioProcessor()};
@@ -419,8 +457,13 @@ public final class DefaultAudioSink implements AudioSink {
             ? toFloatPcmAvailableAudioProcessors
             : toIntPcmAvailableAudioProcessors;
     if (processingEnabled) {
-      trimmingAudioProcessor.setTrimFrameCount(trimStartFrames, trimEndFrames);
-      channelMappingAudioProcessor.setChannelMap(outputChannels);
+      if (enableFusedPcmProcessing) {
+        fusedPcmAudioProcessor.setTrimFrameCount(trimStartFrames, trimEndFrames);
+        fusedPcmAudioProcessor.setChannelMap(outputChannels);
+      } else {
+        trimmingAudioProcessor.setTrimFrameCount(trimStartFrames, trimEndFrames);
+        channelMappingAudioProcessor.setChannelMap(outputChannels);
+      }
       AudioProcessor.AudioFormat inputAudioFormat =
           new AudioProcessor.AudioFormat(sampleRate, channelCount, encoding);
       AudioProcessor.AudioFormat outputAudioFormat = inputAudioFormat;
@@ -629,7 +672,7 @@ public final class DefaultAudioSink implements AudioSink {
       long expectedPresentationTimeUs =
           startMediaTimeUs
               + configuration.inputFramesToDurationUs(
-                  getSubmittedFrames() - trimmingAudioProcessor.getTrimmedFrameCount());
+                  getSubmittedFrames() - getTrimmedFrameCount());
       if (!startMediaTimeUsNeedsSync
           && Math.abs(expectedPresentationTimeUs - presentationTimeUs) > 200000) {
         Log.e(
@@ -825,6 +868,13 @@ public final class DefaultAudioSink implements AudioSink {
     return isInitialized() && audioTrackPositionTracker.hasPendingData(getWrittenFrames());
   }
 
+  @Override
+  public long getPendingDataDurationUs() {
+    return isInitialized()
+        ? audioTrackPositionTracker.getPendingDataDurationUs(getWrittenFrames())
+        : C.TIME_UNSET;
+  }
+
   @Override
   public void setPlaybackParameters(PlaybackParameters playbackParameters) {
     if (configuration != null && !configuration.canApplyPlaybackParameters) {
@@ -956,6 +1006,7 @@ public final class DefaultAudioSink implements AudioSink {
       afterDrainPlaybackParameters = null;
       mediaPositionParametersCheckpoints.clear();
       trimmingAudioProcessor.resetTrimmedFrameCount();
+      fusedPcmAudioProcessor.resetTrimmedFrameCount();
       flushAudioProcessors();
       inputBuffer = null;
       inputBufferAccessUnitCount = 0;
@@ -1083,6 +1134,12 @@ public final class DefaultAudioSink implements AudioSink {
         : submittedEncodedFrames;
   }
 
+  private long getTrimmedFrameCount() {
+    return enableFusedPcmProcessing
+        ? fusedPcmAudioProcessor.getTrimmedFrameCount()
+        : trimmingAudioProcessor.getTrimmedFrameCount();
+  }
+
   private long getWrittenFrames() {
     return configuration.isInputPcm
         ? (writtenPcmBytes / configuration.outputPcmFrameSize)
@@ -95,6 +95,11 @@ public class ForwardingAudioSink implements AudioSink {
     return sink.hasPendingData();
   }
 
+  @Override
+  public long getPendingDataDurationUs() {
+    return sink.getPendingDataDurationUs();
+  }
+
   @Override
   public void setPlaybackParameters(PlaybackParameters playbackParameters) {
     sink.setPlaybackParameters(playbackParameters);
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link AudioProcessor} that converts integer PCM audio to 16-bit integer PCM, applies a
+ * channel mapping and trims frames from the start/end of data in a single pass over each input
+ * buffer.
+ *
+ * <p>The output is the same as that of a {@link ResamplingAudioProcessor}, a {@link
+ * ChannelMappingAudioProcessor} and a {@link TrimmingAudioProcessor} applied in sequence, but each
+ * input sample is copied once rather than once per active processor.
+ */
+/* package */ final class FusedPcmAudioProcessor extends BaseAudioProcessor {
+
+  @C.PcmEncoding private static final int OUTPUT_ENCODING = C.ENCODING_PCM_16BIT;
+  private static final int OUTPUT_BYTES_PER_SAMPLE = 2;
+
+  @Nullable private int[] pendingOutputChannels;
+  private int trimStartFrames;
+  private int trimEndFrames;
+  private boolean reconfigurationPending;
+
+  /**
+   * For each output channel, the offset of the corresponding input sample from the start of an
+   * input frame, in bytes.
+   */
+  private int[] inputSampleOffsets;
+  /** Whether each output frame is a verbatim copy of the corresponding input frame. */
+  private boolean isCopy;
+  private int pendingTrimStartFrames;
+  private byte[] endBuffer;
+  private int endBufferSize;
+  private long trimmedFrameCount;
+
+  /** Creates a new audio processor for converting, mapping and trimming PCM audio. */
+  public FusedPcmAudioProcessor() {
+    inputSampleOffsets = new int[0];
+    endBuffer = Util.EMPTY_BYTE_ARRAY;
+  }
+
+  /**
+   * Resets the channel mapping. After calling this method, call {@link #configure(AudioFormat)} to
+   * start using the new channel map.
+   *
+   * @param outputChannels The mapping from input to output channel indices, or {@code null} to
+   *     leave the input unchanged.
+   * @see ChannelMappingAudioProcessor#setChannelMap(int[])
+   */
+  public void setChannelMap(@Nullable int[] outputChannels) {
+    pendingOutputChannels = outputChannels;
+  }
+
+  /**
+   * Sets the number of audio frames to trim from the start and end of audio passed to this
+   * processor. After calling this method, call {@link #configure(AudioFormat)} to apply the new
+   * trimming frame counts.
+   *
+   * @param trimStartFrames The number of audio frames to trim from the start of audio.
+   * @param trimEndFrames The number of audio frames to trim from the end of audio.
+   * @see TrimmingAudioProcessor#setTrimFrameCount(int, int)
+   */
+  public void setTrimFrameCount(int trimStartFrames, int trimEndFrames) {
+    this.trimStartFrames = trimStartFrames;
+    this.trimEndFrames = trimEndFrames;
+  }
+
+  /** Sets the trimmed frame count returned by {@link #getTrimmedFrameCount()} to zero. */
+  public void resetTrimmedFrameCount() {
+    trimmedFrameCount = 0;
+  }
+
+  /**
+   * Returns the number of audio frames trimmed since the last call to {@link
+   * #resetTrimmedFrameCount()}.
+   */
+  public long getTrimmedFrameCount() {
+    return trimmedFrameCount;
+  }
+
+  @Override
+  public AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    @C.PcmEncoding int encoding = inputAudioFormat.encoding;
+    if (encoding != C.ENCODING_PCM_8BIT
+        && encoding != C.ENCODING_PCM_16BIT
+        && encoding != C.ENCODING_PCM_16BIT_BIG_ENDIAN
+        && encoding != C.ENCODING_PCM_24BIT
+        && encoding != C.ENCODING_PCM_32BIT) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+    reconfigurationPending = true;
+
+    int inputChannelCount = inputAudioFormat.channelCount;
+    @Nullable int[] outputChannels = pendingOutputChannels;
+    boolean mapsChannels = false;
+    if (outputChannels != null) {
+      mapsChannels = inputChannelCount != outputChannels.length;
+      for (int i = 0; i < outputChannels.length; i++) {
+        int channelIndex = outputChannels[i];
+        if (channelIndex >= inputChannelCount) {
+          throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        mapsChannels |= (channelIndex != i);
+      }
+    }
+    int outputChannelCount = mapsChannels ? outputChannels.length : inputChannelCount;
+    boolean active =
+        encoding != OUTPUT_ENCODING || mapsChannels || trimStartFrames != 0 || trimEndFrames != 0;
+    return active
+        ? new AudioFormat(inputAudioFormat.sampleRate, outputChannelCount, OUTPUT_ENCODING)
+        : AudioFormat.NOT_SET;
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    int position = inputBuffer.position();
+    int limit = inputBuffer.limit();
+    int inputBytesPerFrame = inputAudioFormat.bytesPerFrame;
+    int outputBytesPerFrame = outputAudioFormat.bytesPerFrame;
+    int frameCount = (limit - position) / inputBytesPerFrame;
+
+    if (frameCount == 0) {
+      return;
+    }
+
+    // Trim any pending start frames from the input buffer.
+    int trimFrames = Math.min(frameCount, pendingTrimStartFrames);
+    trimmedFrameCount += trimFrames;
+    pendingTrimStartFrames -= trimFrames;
+    position += trimFrames * inputBytesPerFrame;
+    frameCount -= trimFrames;
+    if (pendingTrimStartFrames > 0) {
+      // Nothing to output yet.
+      inputBuffer.position(limit);
+      return;
+    }
+
+    // As in TrimmingAudioProcessor, endBuffer must be kept as full as possible. The output is any
+    // surplus frames in endBuffer followed by any surplus frames from the new input, and the
+    // remaining input frames are converted into endBuffer.
+    int remaining = frameCount * outputBytesPerFrame;
+    int remainingBytesToOutput = endBufferSize + remaining - endBuffer.length;
+    ByteBuffer buffer = replaceOutputBuffer(Math.max(0, remainingBytesToOutput));
+
+    // Output from endBuffer.
+    int endBufferBytesToOutput = Util.constrainValue(remainingBytesToOutput, 0, endBufferSize);
+    buffer.put(endBuffer, 0, endBufferBytesToOutput);
+    remainingBytesToOutput -= endBufferBytesToOutput;
+
+    // Output converted frames from inputBuffer.
+    int inputFramesToOutput =
+        Util.constrainValue(remainingBytesToOutput, 0, remaining) / outputBytesPerFrame;
+    writeFrames(inputBuffer, position, inputFramesToOutput, buffer);
+    position += inputFramesToOutput * inputBytesPerFrame;
+    frameCount -= inputFramesToOutput;
+
+    // Compact endBuffer, then repopulate it using the new input.
+    endBufferSize -= endBufferBytesToOutput;
+    System.arraycopy(endBuffer, endBufferBytesToOutput, endBuffer, 0, endBufferSize);
+    if (frameCount > 0) {
+      ByteBuffer endByteBuffer = ByteBuffer.wrap(endBuffer);
+      endByteBuffer.position(endBufferSize);
+      writeFrames(inputBuffer, position, frameCount, endByteBuffer);
+      endBufferSize += frameCount * outputBytesPerFrame;
+    }
+
+    inputBuffer.position(limit);
+    buffer.flip();
+  }
+
+  @Override
+  public ByteBuffer getOutput() {
+    if (super.isEnded() && endBufferSize > 0) {
+      // Because audio processors may be drained in the middle of the stream we assume that the
+      // contents of the end buffer need to be output. For gapless transitions, configure will
+      // always be called, so the end buffer is cleared in onQueueEndOfStream.
+      replaceOutputBuffer(endBufferSize).put(endBuffer, 0, endBufferSize).flip();
+      endBufferSize = 0;
+    }
+    return super.getOutput();
+  }
+
+  @Override
+  public boolean isEnded() {
+    return super.isEnded() && endBufferSize == 0;
+  }
+
+  @Override
+  protected void onQueueEndOfStream() {
+    if (reconfigurationPending) {
+      // Trim audio in the end buffer.
+      if (endBufferSize > 0) {
+        trimmedFrameCount += endBufferSize / outputAudioFormat.bytesPerFrame;
+      }
+      endBufferSize = 0;
+    }
+  }
+
+  @Override
+  protected void onFlush() {
+    if (outputAudioFormat != AudioFormat.NOT_SET) {
+      int inputBytesPerSample = inputAudioFormat.bytesPerFrame / inputAudioFormat.channelCount;
+      @Nullable int[] outputChannels = pendingOutputChannels;
+      inputSampleOffsets = new int[outputAudioFormat.channelCount];
+      isCopy = inputAudioFormat.encoding == OUTPUT_ENCODING;
+      for (int i = 0; i < inputSampleOffsets.length; i++) {
+        int inputChannel =
+            outputChannels != null && outputChannels.length == inputSampleOffsets.length
+                ? outputChannels[i]
+                : i;
+        inputSampleOffsets[i] = inputChannel * inputBytesPerSample;
+        isCopy &= inputChannel == i;
+      }
+      isCopy &= inputAudioFormat.channelCount == outputAudioFormat.channelCount;
+    }
+    if (reconfigurationPending) {
+      reconfigurationPending = false;
+      endBuffer = new byte[trimEndFrames * outputAudioFormat.bytesPerFrame];
+      pendingTrimStartFrames = trimStartFrames;
+    } else {
+      // As in TrimmingAudioProcessor, audio processors are flushed after initial configuration, so
+      // leave the pending trim start frame count unmodified if the processor was just configured.
+      // Otherwise assume that this is a seek to a non-zero position.
+      pendingTrimStartFrames = 0;
+    }
+    endBufferSize = 0;
+  }
+
+  @Override
+  protected void onReset() {
+    pendingOutputChannels = null;
+    inputSampleOffsets = new int[0];
+    endBuffer = Util.EMPTY_BYTE_ARRAY;
+  }
+
+  // Internal methods.
+
+  /**
+   * Converts and maps {@code frameCount} input frames starting at {@code position} in {@code
+   * inputBuffer}, writing 16-bit output frames to {@code outputBuffer}. As in {@link
+   * ResamplingAudioProcessor}, samples are read and written byte by byte, so the output doesn't
+   * depend on the byte order of the buffers.
+   */
+  private void writeFrames(
+      ByteBuffer inputBuffer, int position, int frameCount, ByteBuffer outputBuffer) {
+    if (frameCount == 0) {
+      return;
+    }
+    int inputBytesPerFrame = inputAudioFormat.bytesPerFrame;
+    if (isCopy) {
+      int limit = inputBuffer.limit();
+      inputBuffer.position(position).limit(position + frameCount * inputBytesPerFrame);
+      outputBuffer.put(inputBuffer);
+      inputBuffer.limit(limit);
+      return;
+    }
+    int[] inputSampleOffsets = this.inputSampleOffsets;
+    int end = position + frameCount * inputBytesPerFrame;
+    switch (inputAudioFormat.encoding) {
+      case C.ENCODING_PCM_8BIT:
+        // Shift each byte from [0, 256) to [-128, 128) and scale up.
+        for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+          for (int offset : inputSampleOffsets) {
+            outputBuffer.put((byte) 0);
+            outputBuffer.put((byte) ((inputBuffer.get(frame + offset) & 0xFF) - 128));
+          }
+        }
+        break;
+      case C.ENCODING_PCM_16BIT_BIG_ENDIAN:
+        // Swap the byte order.
+        for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+          for (int offset : inputSampleOffsets) {
+            outputBuffer.put(inputBuffer.get(frame + offset + 1));
+            outputBuffer.put(inputBuffer.get(frame + offset));
+          }
+        }
+        break;
+      case C.ENCODING_PCM_16BIT:
+        writeSamples(inputBuffer, position, end, /* sampleOffset= */ 0, outputBuffer);
+        break;
+      case C.ENCODING_PCM_24BIT:
+        // Drop the least significant byte.
+        writeSamples(inputBuffer, position, end, /* sampleOffset= */ 1, outputBuffer);
+        break;
+      case C.ENCODING_PCM_32BIT:
+        // Drop the two least significant bytes.
+        writeSamples(inputBuffer, position, end, /* sampleOffset= */ 2, outputBuffer);
+        break;
+      default:
+        // Never happens.
+        throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Writes the two bytes at {@code sampleOffset} in each mapped little endian input sample, which
+   * are its most significant bytes, as a little endian 16-bit output sample.
+   */
+  private void writeSamples(
+      ByteBuffer inputBuffer, int position, int end, int sampleOffset, ByteBuffer outputBuffer) {
+    int inputBytesPerFrame = inputAudioFormat.bytesPerFrame;
+    int[] inputSampleOffsets = this.inputSampleOffsets;
+    if (inputBuffer.order() == outputBuffer.order()) {
+      // Copying each pair of bytes as a short is faster, and writes the bytes in the same order.
+      for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+        for (int offset : inputSampleOffsets) {
+          outputBuffer.putShort(inputBuffer.getShort(frame + offset + sampleOffset));
+        }
+      }
+      return;
+    }
+    for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+      for (int offset : inputSampleOffsets) {
+        int sampleStart = frame + offset + sampleOffset;
+        outputBuffer.put(inputBuffer.get(sampleStart));
+        outputBuffer.put(inputBuffer.get(sampleStart + 1));
+      }
+    }
+  }
+}
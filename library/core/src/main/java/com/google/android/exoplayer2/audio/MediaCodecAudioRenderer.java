@@ -87,6 +87,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
   private long currentPositionUs;
   private boolean allowFirstBufferPositionDiscontinuity;
   private boolean allowPositionDiscontinuity;
+  private boolean audioSinkFull;
 
   /**
    * @param context A context.
@@ -509,6 +510,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     currentPositionUs = positionUs;
     allowFirstBufferPositionDiscontinuity = true;
     allowPositionDiscontinuity = true;
+    audioSinkFull = false;
   }
 
   @Override
@@ -556,6 +558,20 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     return audioSink.hasPendingData() || super.isReady();
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (audioSinkFull || super.isEnded()) {
+      // No progress can be made until the sink has played out some of its data.
+      long pendingDataDurationUs = audioSink.getPendingDataDurationUs();
+      if (pendingDataDurationUs != C.TIME_UNSET) {
+        // Leave a margin so that the sink doesn't underrun before it's given more data. The sink's
+        // data is played out in real time, so convert its duration to media time.
+        return (long) (pendingDataDurationUs / 2 * audioSink.getPlaybackParameters().speed);
+      }
+    }
+    return super.getDurationToProgressUs(positionUs, elapsedRealtimeUs);
+  }
+
   @Override
   public long getPositionUs() {
     if (getState() == STATE_STARTED) {
@@ -635,6 +651,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
       throw createRendererException(e, inputFormat);
     }
 
+    audioSinkFull = !fullyConsumed;
     if (fullyConsumed) {
       codec.releaseOutputBuffer(bufferIndex, false);
       decoderCounters.renderedOutputBufferCount++;
@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An {@link AudioProcessor} that changes the sample rate of audio using a windowed-sinc polyphase
+ * filter. Input and output are 16-bit or float PCM, in the same encoding.
+ *
+ * <p>Unlike the linear interpolation used by {@link SonicAudioProcessor}, the filter removes
+ * content above the lower of the input and output Nyquist frequencies, so downsampling doesn't
+ * alias and upsampling doesn't produce images. The {@link Quality} trades the width of the
+ * filter's transition band and its stop band attenuation against the CPU cost per output sample.
+ * When downsampling, the number of taps grows in proportion to the ratio of the sample rates.
+ *
+ * <p>The filter coefficients for each sub-sample phase are precomputed when the processor is
+ * flushed after being configured for a new pair of sample rates. Where the ratio between the rates
+ * has more than 1024 distinct phases, coefficients are interpolated between the nearest
+ * precomputed phases instead.
+ */
+public final class PolyphaseResamplingAudioProcessor extends BaseAudioProcessor {
+
+  /**
+   * Resampling quality. One of {@link #QUALITY_LOW}, {@link #QUALITY_MEDIUM} or {@link
+   * #QUALITY_HIGH}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({QUALITY_LOW, QUALITY_MEDIUM, QUALITY_HIGH})
+  public @interface Quality {}
+  /**
+   * A 16 tap filter with about 55 dB of stop band attenuation, passing frequencies up to about 60%
+   * of the lower Nyquist frequency.
+   */
+  public static final int QUALITY_LOW = 0;
+  /**
+   * A 64 tap filter with about 80 dB of stop band attenuation, passing frequencies up to about 85%
+   * of the lower Nyquist frequency.
+   */
+  public static final int QUALITY_MEDIUM = 1;
+  /**
+   * A 128 tap filter with about 100 dB of stop band attenuation, passing frequencies up to about
+   * 90% of the lower Nyquist frequency.
+   */
+  public static final int QUALITY_HIGH = 2;
+
+  /** Indicates that the output sample rate should be the same as the input. */
+  public static final int SAMPLE_RATE_NO_CHANGE = -1;
+
+  /**
+   * The maximum number of phases for which coefficients are precomputed. Sample rate ratios with
+   * more phases than this interpolate coefficients between phases.
+   */
+  private static final int MAX_PHASE_COUNT = 1024;
+
+  /** Half the number of filter taps for each quality, when upsampling. */
+  private static final int[] HALF_TAP_COUNTS = {8, 32, 64};
+  /** The Kaiser window shape parameter for each quality. */
+  private static final double[] KAISER_BETAS = {5, 8, 9.5};
+  /**
+   * The cutoff frequency for each quality, as a fraction of the lower Nyquist frequency. This is
+   * the middle of the transition band, so that the stop band starts at about the Nyquist frequency.
+   */
+  private static final double[] CUTOFFS = {0.8, 0.92, 0.95};
+
+  private int pendingOutputSampleRateHz;
+  @Quality private int pendingQuality;
+  @Quality private int quality;
+
+  @Nullable private Filter filter;
+  private int channelCount;
+  private float[][] channelBuffers;
+  private float[] interpolatedCoefficients;
+  /** The number of frames in {@link #channelBuffers}. */
+  private int bufferedFrameCount;
+  /** The index of the first frame in {@link #channelBuffers} used by the next output frame. */
+  private int bufferPosition;
+  /**
+   * The sub-sample position of the next output frame, in units of {@link Filter#upsampleFactor}
+   * frames after {@link #bufferPosition}.
+   */
+  private int phase;
+  private long inputFrameCount;
+  private long outputFrameCount;
+  private boolean drainedToEndOfStream;
+
+  /** Creates a new resampler with {@link #QUALITY_MEDIUM}. */
+  public PolyphaseResamplingAudioProcessor() {
+    pendingOutputSampleRateHz = SAMPLE_RATE_NO_CHANGE;
+    pendingQuality = QUALITY_MEDIUM;
+    quality = QUALITY_MEDIUM;
+    channelBuffers = new float[0][];
+    interpolatedCoefficients = new float[0];
+  }
+
+  /**
+   * Sets the sample rate for output audio, in Hertz. Pass {@link #SAMPLE_RATE_NO_CHANGE} to output
+   * audio at the same sample rate as the input, in which case the processor is inactive. After
+   * calling this method, call {@link #configure(AudioFormat)} to configure the processor with the
+   * new sample rate.
+   *
+   * @param sampleRateHz The sample rate for output audio, in Hertz.
+   * @see #configure(AudioFormat)
+   */
+  public void setOutputSampleRateHz(int sampleRateHz) {
+    pendingOutputSampleRateHz = sampleRateHz;
+  }
+
+  /**
+   * Sets the resampling quality. After calling this method, call {@link #configure(AudioFormat)} to
+   * configure the processor with the new quality.
+   *
+   * @param quality The {@link Quality}.
+   * @see #configure(AudioFormat)
+   */
+  public void setQuality(@Quality int quality) {
+    pendingQuality = quality;
+  }
+
+  // AudioProcessor implementation.
+
+  @Override
+  public AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+    quality = pendingQuality;
+    int outputSampleRateHz =
+        pendingOutputSampleRateHz == SAMPLE_RATE_NO_CHANGE
+            ? inputAudioFormat.sampleRate
+            : pendingOutputSampleRateHz;
+    return outputSampleRateHz != inputAudioFormat.sampleRate
+        ? new AudioFormat(
+            outputSampleRateHz, inputAudioFormat.channelCount, inputAudioFormat.encoding)
+        : AudioFormat.NOT_SET;
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    int frameCount = inputBuffer.remaining() / inputAudioFormat.bytesPerFrame;
+    if (frameCount == 0) {
+      return;
+    }
+    ensureSpaceForAdditionalFrames(frameCount);
+    if (inputAudioFormat.encoding == C.ENCODING_PCM_16BIT) {
+      for (int i = 0; i < frameCount; i++) {
+        for (int channel = 0; channel < channelCount; channel++) {
+          channelBuffers[channel][bufferedFrameCount + i] = inputBuffer.getShort() / 32768f;
+        }
+      }
+    } else {
+      for (int i = 0; i < frameCount; i++) {
+        for (int channel = 0; channel < channelCount; channel++) {
+          channelBuffers[channel][bufferedFrameCount + i] = inputBuffer.getFloat();
+        }
+      }
+    }
+    bufferedFrameCount += frameCount;
+    inputFrameCount += frameCount;
+    resample(/* maxOutputFrameCount= */ Integer.MAX_VALUE);
+  }
+
+  @Override
+  public ByteBuffer getOutput() {
+    if (super.isEnded() && !drainedToEndOfStream) {
+      drainedToEndOfStream = true;
+      Filter filter = Assertions.checkNotNull(this.filter);
+      // Pad the input with silence so that the filter can be applied up to the end of the input,
+      // then output only the frames that correspond to input.
+      ensureSpaceForAdditionalFrames(filter.tapCount);
+      for (int channel = 0; channel < channelCount; channel++) {
+        Arrays.fill(
+            channelBuffers[channel], bufferedFrameCount, bufferedFrameCount + filter.tapCount, 0f);
+      }
+      bufferedFrameCount += filter.tapCount;
+      long expectedOutputFrameCount =
+          Util.ceilDivide(inputFrameCount * filter.upsampleFactor, filter.downsampleFactor);
+      resample((int) (expectedOutputFrameCount - outputFrameCount));
+    }
+    return super.getOutput();
+  }
+
+  @Override
+  public boolean isEnded() {
+    return super.isEnded() && drainedToEndOfStream;
+  }
+
+  @Override
+  protected void onFlush() {
+    drainedToEndOfStream = false;
+    if (outputAudioFormat == AudioFormat.NOT_SET) {
+      return;
+    }
+    int inputSampleRateHz = inputAudioFormat.sampleRate;
+    int outputSampleRateHz = outputAudioFormat.sampleRate;
+    if (filter == null || !filter.matches(inputSampleRateHz, outputSampleRateHz, quality)) {
+      filter = new Filter(inputSampleRateHz, outputSampleRateHz, quality);
+      interpolatedCoefficients = new float[filter.tapCount];
+    }
+    if (channelCount != inputAudioFormat.channelCount) {
+      channelCount = inputAudioFormat.channelCount;
+      channelBuffers = new float[channelCount][0];
+    }
+    // Start with enough silence for the first output frame to be centered on the first input frame.
+    bufferedFrameCount = 0;
+    ensureSpaceForAdditionalFrames(filter.halfTapCount - 1);
+    for (int channel = 0; channel < channelCount; channel++) {
+      Arrays.fill(channelBuffers[channel], 0, filter.halfTapCount - 1, 0f);
+    }
+    bufferedFrameCount = filter.halfTapCount - 1;
+    bufferPosition = 0;
+    phase = 0;
+    inputFrameCount = 0;
+    outputFrameCount = 0;
+  }
+
+  @Override
+  protected void onReset() {
+    pendingOutputSampleRateHz = SAMPLE_RATE_NO_CHANGE;
+    pendingQuality = QUALITY_MEDIUM;
+    quality = QUALITY_MEDIUM;
+    filter = null;
+    channelCount = 0;
+    channelBuffers = new float[0][];
+    interpolatedCoefficients = new float[0];
+    bufferedFrameCount = 0;
+  }
+
+  // Internal methods.
+
+  /**
+   * Outputs as many frames as can be computed from the buffered input, up to {@code
+   * maxOutputFrameCount}, and discards input frames that are no longer needed.
+   */
+  private void resample(int maxOutputFrameCount) {
+    Filter filter = Assertions.checkNotNull(this.filter);
+    int upsampleFactor = filter.upsampleFactor;
+    int tapCount = filter.tapCount;
+    // An output frame can be computed if all of its taps are buffered, which is the case while its
+    // position is before (bufferedFrameCount - tapCount + 1) * upsampleFactor.
+    long availablePositions =
+        (long) (bufferedFrameCount - tapCount + 1 - bufferPosition) * upsampleFactor - phase;
+    int frameCount =
+        availablePositions <= 0
+            ? 0
+            : (int)
+                Math.min(
+                    maxOutputFrameCount,
+                    Util.ceilDivide(availablePositions, filter.downsampleFactor));
+    if (frameCount > 0) {
+      ByteBuffer buffer = replaceOutputBuffer(frameCount * outputAudioFormat.bytesPerFrame);
+      boolean isOutput16Bit = outputAudioFormat.encoding == C.ENCODING_PCM_16BIT;
+      int positionStep = filter.downsampleFactor / upsampleFactor;
+      int phaseStep = filter.downsampleFactor % upsampleFactor;
+      for (int i = 0; i < frameCount; i++) {
+        float[] coefficients;
+        int coefficientsOffset;
+        if (filter.interpolatePhases) {
+          filter.interpolateCoefficients(phase, interpolatedCoefficients);
+          coefficients = interpolatedCoefficients;
+          coefficientsOffset = 0;
+        } else {
+          coefficients = filter.coefficients;
+          coefficientsOffset = phase * tapCount;
+        }
+        for (int channel = 0; channel < channelCount; channel++) {
+          float sample =
+              dotProduct(
+                  channelBuffers[channel],
+                  bufferPosition,
+                  coefficients,
+                  coefficientsOffset,
+                  tapCount);
+          if (isOutput16Bit) {
+            int value = Math.round(sample * 32768f);
+            buffer.putShort((short) Util.constrainValue(value, Short.MIN_VALUE, Short.MAX_VALUE));
+          } else {
+            buffer.putFloat(sample);
+          }
+        }
+        bufferPosition += positionStep;
+        phase += phaseStep;
+        if (phase >= upsampleFactor) {
+          phase -= upsampleFactor;
+          bufferPosition++;
+        }
+      }
+      buffer.flip();
+      outputFrameCount += frameCount;
+    }
+
+    // Discard input frames before the start of the next output frame's taps.
+    int discardFrameCount = Math.min(bufferPosition, bufferedFrameCount);
+    if (discardFrameCount > 0) {
+      int remainingFrameCount = bufferedFrameCount - discardFrameCount;
+      for (int channel = 0; channel < channelCount; channel++) {
+        float[] channelBuffer = channelBuffers[channel];
+        System.arraycopy(channelBuffer, discardFrameCount, channelBuffer, 0, remainingFrameCount);
+      }
+      bufferedFrameCount = remainingFrameCount;
+      bufferPosition -= discardFrameCount;
+    }
+  }
+
+  private void ensureSpaceForAdditionalFrames(int additionalFrameCount) {
+    int requiredCapacity = bufferedFrameCount + additionalFrameCount;
+    for (int channel = 0; channel < channelCount; channel++) {
+      float[] channelBuffer = channelBuffers[channel];
+      if (channelBuffer.length < requiredCapacity) {
+        channelBuffers[channel] =
+            Arrays.copyOf(channelBuffer, Math.max(requiredCapacity, 3 * channelBuffer.length / 2));
+      }
+    }
+  }
+
+  /**
+   * Returns the dot product of {@code length} samples and coefficients, starting at the specified
+   * offsets. {@code length} must be a multiple of four. Independent partial sums break the
+   * dependency between successive additions.
+   */
+  private static float dotProduct(
+      float[] samples,
+      int samplesOffset,
+      float[] coefficients,
+      int coefficientsOffset,
+      int length) {
+    float sum0 = 0;
+    float sum1 = 0;
+    float sum2 = 0;
+    float sum3 = 0;
+    for (int i = 0; i < length; i += 4) {
+      sum0 += samples[samplesOffset + i] * coefficients[coefficientsOffset + i];
+      sum1 += samples[samplesOffset + i + 1] * coefficients[coefficientsOffset + i + 1];
+      sum2 += samples[samplesOffset + i + 2] * coefficients[coefficientsOffset + i + 2];
+      sum3 += samples[samplesOffset + i + 3] * coefficients[coefficientsOffset + i + 3];
+    }
+    return (sum0 + sum1) + (sum2 + sum3);
+  }
+
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int remainder = a % b;
+      a = b;
+      b = remainder;
+    }
+    return a;
+  }
+
+  /** Precomputed filter coefficients for a pair of sample rates and a quality. */
+  private static final class Filter {
+
+    public final int inputSampleRateHz;
+    public final int outputSampleRateHz;
+    @Quality public final int quality;
+    /** The output sample rate divided by the greatest common divisor of the sample rates. */
+    public final int upsampleFactor;
+    /** The input sample rate divided by the greatest common divisor of the sample rates. */
+    public final int downsampleFactor;
+    public final int halfTapCount;
+    public final int tapCount;
+    /**
+     * Whether {@link #coefficients} holds {@link PolyphaseResamplingAudioProcessor#MAX_PHASE_COUNT}
+     * + 1 evenly spaced phases to be interpolated between, rather than one row for each of the
+     * {@link #upsampleFactor} phases.
+     */
+    public final boolean interpolatePhases;
+    /** Rows of {@link #tapCount} coefficients, one for each precomputed phase. */
+    public final float[] coefficients;
+
+    public Filter(int inputSampleRateHz, int outputSampleRateHz, @Quality int quality) {
+      this.inputSampleRateHz = inputSampleRateHz;
+      this.outputSampleRateHz = outputSampleRateHz;
+      this.quality = quality;
+      int gcd = gcd(inputSampleRateHz, outputSampleRateHz);
+      upsampleFactor = outputSampleRateHz / gcd;
+      downsampleFactor = inputSampleRateHz / gcd;
+      // When downsampling, the cutoff frequency is lowered relative to the input sample rate, so
+      // the filter needs proportionally more taps for the same transition band.
+      double cutoffScale = Math.min(1, (double) outputSampleRateHz / inputSampleRateHz);
+      int halfTapCount = (int) Math.ceil(HALF_TAP_COUNTS[quality] / cutoffScale);
+      // Round up to an even number, so that the tap count is a multiple of four.
+      this.halfTapCount = halfTapCount + (halfTapCount & 1);
+      tapCount = 2 * this.halfTapCount;
+      interpolatePhases = upsampleFactor > MAX_PHASE_COUNT;
+      int rowCount = interpolatePhases ? MAX_PHASE_COUNT + 1 : upsampleFactor;
+      int rowPhaseCount = interpolatePhases ? MAX_PHASE_COUNT : upsampleFactor;
+      coefficients = new float[rowCount * tapCount];
+      double cutoff = CUTOFFS[quality] * cutoffScale;
+      double beta = KAISER_BETAS[quality];
+      double windowScale = 1 / besselI0(beta);
+      for (int row = 0; row < rowCount; row++) {
+        double fraction = (double) row / rowPhaseCount;
+        double sum = 0;
+        for (int tap = 0; tap < tapCount; tap++) {
+          // The distance from the output frame to this tap's input frame, in input frames.
+          double distance = tap - (this.halfTapCount - 1) - fraction;
+          double windowPosition = distance / this.halfTapCount;
+          double window =
+              Math.abs(windowPosition) >= 1
+                  ? 0
+                  : besselI0(beta * Math.sqrt(1 - windowPosition * windowPosition)) * windowScale;
+          double coefficient = cutoff * sinc(cutoff * distance) * window;
+          coefficients[row * tapCount + tap] = (float) coefficient;
+          sum += coefficient;
+        }
+        // Normalize each phase for unity gain at DC.
+        for (int tap = 0; tap < tapCount; tap++) {
+          coefficients[row * tapCount + tap] /= (float) sum;
+        }
+      }
+    }
+
+    public boolean matches(int inputSampleRateHz, int outputSampleRateHz, @Quality int quality) {
+      return this.inputSampleRateHz == inputSampleRateHz
+          && this.outputSampleRateHz == outputSampleRateHz
+          && this.quality == quality;
+    }
+
+    /**
+     * Writes the coefficients for {@code phase} to {@code output}, interpolating linearly between
+     * the nearest precomputed phases.
+     */
+    public void interpolateCoefficients(int phase, float[] output) {
+      long scaledPhase = (long) phase * MAX_PHASE_COUNT;
+      int row = (int) (scaledPhase / upsampleFactor);
+      float weight = (float) (scaledPhase % upsampleFactor) / upsampleFactor;
+      int rowOffset = row * tapCount;
+      int nextRowOffset = rowOffset + tapCount;
+      for (int tap = 0; tap < tapCount; tap++) {
+        float coefficient = coefficients[rowOffset + tap];
+        output[tap] = coefficient + weight * (coefficients[nextRowOffset + tap] - coefficient);
+      }
+    }
+
+    private static double sinc(double x) {
+      return x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+
+    /** Returns the zeroth order modified Bessel function of the first kind at {@code x}. */
+    private static double besselI0(double x) {
+      double sum = 1;
+      double term = 1;
+      double halfX = x / 2;
+      for (int k = 1; term > sum * 1e-12; k++) {
+        term *= (halfX / k) * (halfX / k);
+        sum += term;
+      }
+      return sum;
+    }
+  }
+}
@@ -470,6 +470,21 @@ public abstract class SimpleDecoderAudioRenderer extends BaseRenderer implements
     return outputStreamEnded && audioSink.isEnded();
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (outputBuffer != null || outputStreamEnded) {
+      // The sink didn't accept the pending output buffer, or there's no more output. No progress
+      // can be made until the sink has played out some of its data.
+      long pendingDataDurationUs = audioSink.getPendingDataDurationUs();
+      if (pendingDataDurationUs != C.TIME_UNSET) {
+        // Leave a margin so that the sink doesn't underrun before it's given more data. The sink's
+        // data is played out in real time, so convert its duration to media time.
+        return (long) (pendingDataDurationUs / 2 * audioSink.getPlaybackParameters().speed);
+      }
+    }
+    return super.getDurationToProgressUs(positionUs, elapsedRealtimeUs);
+  }
+
   @Override
   public boolean isReady() {
     return audioSink.hasPendingData()
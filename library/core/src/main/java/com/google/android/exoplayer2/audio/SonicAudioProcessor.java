@@ -22,10 +22,14 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 /**
  * An {@link AudioProcessor} that uses the Sonic library to modify audio speed/pitch/sample rate.
+ *
+ * <p>The processor handles {@link C#ENCODING_PCM_16BIT} and {@link C#ENCODING_PCM_FLOAT} input,
+ * and outputs audio in the same encoding.
  */
 public final class SonicAudioProcessor implements AudioProcessor {
 
@@ -63,8 +67,10 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   private boolean pendingSonicRecreation;
   @Nullable private Sonic sonic;
+  @Nullable private FloatSonic floatSonic;
   private ByteBuffer buffer;
   private ShortBuffer shortBuffer;
+  private FloatBuffer floatBuffer;
   private ByteBuffer outputBuffer;
   private long inputBytes;
   private long outputBytes;
@@ -81,6 +87,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
   }
@@ -137,7 +144,8 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public AudioFormat configure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
-    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
     int outputSampleRateHz =
@@ -146,7 +154,8 @@ public final class SonicAudioProcessor implements AudioProcessor {
             : pendingOutputSampleRate;
     pendingInputAudioFormat = inputAudioFormat;
     pendingOutputAudioFormat =
-        new AudioFormat(outputSampleRateHz, inputAudioFormat.channelCount, C.ENCODING_PCM_16BIT);
+        new AudioFormat(
+            outputSampleRateHz, inputAudioFormat.channelCount, inputAudioFormat.encoding);
     pendingSonicRecreation = true;
     return pendingOutputAudioFormat;
   }
@@ -160,6 +169,10 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public void queueInput(ByteBuffer inputBuffer) {
+    if (floatSonic != null) {
+      queueFloatInput(floatSonic, inputBuffer);
+      return;
+    }
     Sonic sonic = Assertions.checkNotNull(this.sonic);
     if (inputBuffer.hasRemaining()) {
       ShortBuffer shortBuffer = inputBuffer.asShortBuffer();
@@ -170,13 +183,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
     }
     int outputSize = sonic.getOutputSize();
     if (outputSize > 0) {
-      if (buffer.capacity() < outputSize) {
-        buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
-        shortBuffer = buffer.asShortBuffer();
-      } else {
-        buffer.clear();
-        shortBuffer.clear();
-      }
+      ensureBufferCapacity(outputSize);
       sonic.getOutput(shortBuffer);
       outputBytes += outputSize;
       buffer.limit(outputSize);
@@ -189,6 +196,9 @@ public final class SonicAudioProcessor implements AudioProcessor {
     if (sonic != null) {
       sonic.queueEndOfStream();
     }
+    if (floatSonic != null) {
+      floatSonic.queueEndOfStream();
+    }
     inputEnded = true;
   }
 
@@ -201,7 +211,9 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public boolean isEnded() {
-    return inputEnded && (sonic == null || sonic.getOutputSize() == 0);
+    return inputEnded
+        && (sonic == null || sonic.getOutputSize() == 0)
+        && (floatSonic == null || floatSonic.getOutputSize() == 0);
   }
 
   @Override
@@ -210,14 +222,27 @@ public final class SonicAudioProcessor implements AudioProcessor {
       inputAudioFormat = pendingInputAudioFormat;
       outputAudioFormat = pendingOutputAudioFormat;
       if (pendingSonicRecreation) {
-        sonic =
-            new Sonic(
-                inputAudioFormat.sampleRate,
-                inputAudioFormat.channelCount,
-                speed,
-                outputAudioFormat.sampleRate);
+        if (inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+          sonic = null;
+          floatSonic =
+              new FloatSonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  outputAudioFormat.sampleRate);
+        } else {
+          floatSonic = null;
+          sonic =
+              new Sonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  outputAudioFormat.sampleRate);
+        }
       } else if (sonic != null) {
         sonic.flush();
+      } else if (floatSonic != null) {
+        floatSonic.flush();
       }
     }
     outputBuffer = EMPTY_BUFFER;
@@ -235,13 +260,45 @@ public final class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
     pendingSonicRecreation = false;
     sonic = null;
+    floatSonic = null;
     inputBytes = 0;
     outputBytes = 0;
     inputEnded = false;
   }
 
+  private void queueFloatInput(FloatSonic floatSonic, ByteBuffer inputBuffer) {
+    if (inputBuffer.hasRemaining()) {
+      FloatBuffer floatBuffer = inputBuffer.asFloatBuffer();
+      int inputSize = inputBuffer.remaining();
+      inputBytes += inputSize;
+      floatSonic.queueInput(floatBuffer);
+      inputBuffer.position(inputBuffer.position() + inputSize);
+    }
+    int outputSize = floatSonic.getOutputSize();
+    if (outputSize > 0) {
+      ensureBufferCapacity(outputSize);
+      floatSonic.getOutput(floatBuffer);
+      outputBytes += outputSize;
+      buffer.limit(outputSize);
+      outputBuffer = buffer;
+    }
+  }
+
+  private void ensureBufferCapacity(int size) {
+    if (buffer.capacity() < size) {
+      buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+      shortBuffer = buffer.asShortBuffer();
+      floatBuffer = buffer.asFloatBuffer();
+    } else {
+      buffer.clear();
+      shortBuffer.clear();
+      floatBuffer.clear();
+    }
+  }
+
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.media.MediaCodec;
+import java.util.NoSuchElementException;
+
+/**
+ * Array-based unbounded queue of {@link MediaCodec.BufferInfo} values with amortized O(1) add and
+ * remove.
+ *
+ * <p>The fields of each {@link MediaCodec.BufferInfo} are copied into parallel primitive arrays, so
+ * that queueing output buffer information doesn't retain the instances passed by {@link
+ * MediaCodec.Callback#onOutputBufferAvailable} and neither adding nor removing allocates once the
+ * queue has grown to its working size.
+ */
+/* package */ final class BufferInfoArrayQueue {
+
+  /** Default capacity needs to be a power of 2. */
+  private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+  private int headIndex;
+  private int size;
+  private int[] offsets;
+  private int[] sizes;
+  private long[] presentationTimesUs;
+  private int[] flags;
+  private int wrapAroundMask;
+
+  public BufferInfoArrayQueue() {
+    offsets = new int[DEFAULT_INITIAL_CAPACITY];
+    sizes = new int[DEFAULT_INITIAL_CAPACITY];
+    presentationTimesUs = new long[DEFAULT_INITIAL_CAPACITY];
+    flags = new int[DEFAULT_INITIAL_CAPACITY];
+    wrapAroundMask = DEFAULT_INITIAL_CAPACITY - 1;
+  }
+
+  /** Adds a copy of {@code bufferInfo} to the queue. */
+  public void add(MediaCodec.BufferInfo bufferInfo) {
+    if (size == offsets.length) {
+      doubleArraySize();
+    }
+
+    int tailIndex = (headIndex + size) & wrapAroundMask;
+    offsets[tailIndex] = bufferInfo.offset;
+    sizes[tailIndex] = bufferInfo.size;
+    presentationTimesUs[tailIndex] = bufferInfo.presentationTimeUs;
+    flags[tailIndex] = bufferInfo.flags;
+    size++;
+  }
+
+  /**
+   * Removes an item from the queue, setting its values on {@code bufferInfo}.
+   *
+   * @param bufferInfo The {@link MediaCodec.BufferInfo} to set.
+   * @throws NoSuchElementException if the queue is empty.
+   */
+  public void remove(MediaCodec.BufferInfo bufferInfo) {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+
+    bufferInfo.set(
+        offsets[headIndex], sizes[headIndex], presentationTimesUs[headIndex], flags[headIndex]);
+    headIndex = (headIndex + 1) & wrapAroundMask;
+    size--;
+  }
+
+  /** Returns the number of items in the queue. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns whether the queue is empty. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Clears the queue. */
+  public void clear() {
+    headIndex = 0;
+    size = 0;
+  }
+
+  /** Returns the length of the backing arrays. */
+  public int capacity() {
+    return offsets.length;
+  }
+
+  private void doubleArraySize() {
+    int newCapacity = offsets.length << 1;
+    if (newCapacity < 0) {
+      throw new IllegalStateException();
+    }
+
+    offsets = copyUnwrapped(offsets, new int[newCapacity]);
+    sizes = copyUnwrapped(sizes, new int[newCapacity]);
+    presentationTimesUs = copyUnwrapped(presentationTimesUs, new long[newCapacity]);
+    flags = copyUnwrapped(flags, new int[newCapacity]);
+    headIndex = 0;
+    wrapAroundMask = newCapacity - 1;
+  }
+
+  private <T> T copyUnwrapped(T data, T newData) {
+    int itemsToRight = size - headIndex;
+    System.arraycopy(data, headIndex, newData, 0, itemsToRight);
+    System.arraycopy(data, 0, newData, itemsToRight, headIndex);
+    return newData;
+  }
+}
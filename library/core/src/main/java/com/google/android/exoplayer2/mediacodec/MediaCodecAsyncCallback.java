@@ -29,7 +29,7 @@ import java.util.ArrayDeque;
 /* package */ final class MediaCodecAsyncCallback extends MediaCodec.Callback {
   private final IntArrayQueue availableInputBuffers;
   private final IntArrayQueue availableOutputBuffers;
-  private final ArrayDeque<MediaCodec.BufferInfo> bufferInfos;
+  private final BufferInfoArrayQueue bufferInfos;
   private final ArrayDeque<MediaFormat> formats;
   @Nullable private MediaFormat currentFormat;
   @Nullable private IllegalStateException mediaCodecException;
@@ -38,7 +38,7 @@ import java.util.ArrayDeque;
   public MediaCodecAsyncCallback() {
     availableInputBuffers = new IntArrayQueue();
     availableOutputBuffers = new IntArrayQueue();
-    bufferInfos = new ArrayDeque<>();
+    bufferInfos = new BufferInfoArrayQueue();
     formats = new ArrayDeque<>();
   }
 
@@ -64,12 +64,7 @@ import java.util.ArrayDeque;
     } else {
       int bufferIndex = availableOutputBuffers.remove();
       if (bufferIndex >= 0) {
-        MediaCodec.BufferInfo nextBufferInfo = bufferInfos.remove();
-        bufferInfo.set(
-            nextBufferInfo.offset,
-            nextBufferInfo.size,
-            nextBufferInfo.presentationTimeUs,
-            nextBufferInfo.flags);
+        bufferInfos.remove(bufferInfo);
       } else if (bufferIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
         currentFormat = formats.remove();
       }
@@ -71,7 +71,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private final IntArrayQueue availableOutputBuffers;
 
   @GuardedBy("outputBufferLock")
-  private final ArrayDeque<MediaCodec.BufferInfo> bufferInfos;
+  private final BufferInfoArrayQueue bufferInfos;
 
   @GuardedBy("outputBufferLock")
   private final ArrayDeque<MediaFormat> formats;
@@ -140,7 +140,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     objectStateLock = new Object();
     availableInputBuffers = new IntArrayQueue();
     availableOutputBuffers = new IntArrayQueue();
-    bufferInfos = new ArrayDeque<>();
+    bufferInfos = new BufferInfoArrayQueue();
     formats = new ArrayDeque<>();
     codecException = null;
     this.handlerThread = handlerThread;
@@ -261,12 +261,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         if (bufferIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
           currentFormat = formats.remove();
         } else if (bufferIndex >= 0) {
-          MediaCodec.BufferInfo outBufferInfo = bufferInfos.remove();
-          bufferInfo.set(
-              outBufferInfo.offset,
-              outBufferInfo.size,
-              outBufferInfo.presentationTimeUs,
-              outBufferInfo.flags);
+          bufferInfos.remove(bufferInfo);
         }
       }
     }
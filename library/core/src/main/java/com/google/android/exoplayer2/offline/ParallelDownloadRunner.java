@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a number of independent items, such as the segments of a stream or the byte ranges of
+ * a file, using the calling thread and optionally additional threads.
+ */
+/* package */ final class ParallelDownloadRunner {
+
+  /** Downloads a single item. */
+  public interface ItemDownloader {
+
+    /**
+     * Downloads the item at {@code index}. May be called on several threads at the same time, for
+     * different items.
+     *
+     * @param index The index of the item to download.
+     * @param dataSource A {@link CacheDataSource} used only by the calling thread.
+     * @param buffer A buffer used only by the calling thread.
+     * @throws IOException If an error occurs downloading the item.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    void download(int index, CacheDataSource dataSource, byte[] buffer)
+        throws IOException, InterruptedException;
+  }
+
+  private static final int BUFFER_SIZE_BYTES = 128 * 1024;
+
+  private ParallelDownloadRunner() {}
+
+  /**
+   * Downloads items in order of their indices, using the calling thread and up to {@code
+   * parallelDownloads - 1} additional threads, each of which takes the next item to download once
+   * it has finished its previous one.
+   *
+   * <p>If downloading an item fails, no further items are started. If the calling thread fails or
+   * is interrupted, the additional threads are interrupted. In all cases this method returns only
+   * once all threads have stopped, after which it rethrows the first exception thrown on the
+   * calling thread, or else the first exception thrown on an additional thread.
+   *
+   * @param itemCount The number of items to download.
+   * @param parallelDownloads The maximum number of items to download at the same time.
+   * @param dataSource The {@link CacheDataSource} to use on the calling thread.
+   * @param constructorHelper The {@link DownloaderConstructorHelper} from which {@link
+   *     CacheDataSource}s are created for additional threads.
+   * @param itemDownloader The {@link ItemDownloader}.
+   * @throws IOException If an error occurs downloading an item.
+   * @throws InterruptedException If a thread was interrupted.
+   */
+  public static void download(
+      int itemCount,
+      int parallelDownloads,
+      CacheDataSource dataSource,
+      DownloaderConstructorHelper constructorHelper,
+      ItemDownloader itemDownloader)
+      throws IOException, InterruptedException {
+    AtomicInteger nextItemIndex = new AtomicInteger();
+    parallelDownloads = Math.min(parallelDownloads, itemCount);
+    if (parallelDownloads <= 1) {
+      downloadItems(itemCount, nextItemIndex, dataSource, itemDownloader);
+      return;
+    }
+
+    ArrayList<DownloadThread> threads = new ArrayList<>();
+    for (int i = 1; i < parallelDownloads; i++) {
+      DownloadThread thread =
+          new DownloadThread(
+              itemCount, nextItemIndex, constructorHelper.createCacheDataSource(), itemDownloader);
+      threads.add(thread);
+      thread.start();
+    }
+    boolean finished = false;
+    try {
+      downloadItems(itemCount, nextItemIndex, dataSource, itemDownloader);
+      finished = true;
+    } finally {
+      if (!finished) {
+        // Stop the other threads as soon as possible. Their exceptions are superseded by the one
+        // thrown on the calling thread.
+        stop(threads, nextItemIndex, itemCount);
+      }
+      // Wait for the other threads even if interrupted, so that they never write to the cache
+      // after this method returns.
+      boolean interrupted = false;
+      for (DownloadThread thread : threads) {
+        while (thread.isAlive()) {
+          try {
+            thread.join();
+          } catch (InterruptedException e) {
+            interrupted = true;
+            stop(threads, nextItemIndex, itemCount);
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (DownloadThread thread : threads) {
+      thread.maybeThrowException();
+    }
+  }
+
+  private static void downloadItems(
+      int itemCount,
+      AtomicInteger nextItemIndex,
+      CacheDataSource dataSource,
+      ItemDownloader itemDownloader)
+      throws IOException, InterruptedException {
+    byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+    int itemIndex;
+    while ((itemIndex = nextItemIndex.getAndIncrement()) < itemCount) {
+      itemDownloader.download(itemIndex, dataSource, buffer);
+    }
+  }
+
+  private static void stop(
+      ArrayList<DownloadThread> threads, AtomicInteger nextItemIndex, int itemCount) {
+    nextItemIndex.set(itemCount);
+    for (DownloadThread thread : threads) {
+      thread.interrupt();
+    }
+  }
+
+  private static final class DownloadThread extends Thread {
+
+    private final int itemCount;
+    private final AtomicInteger nextItemIndex;
+    private final CacheDataSource dataSource;
+    private final ItemDownloader itemDownloader;
+
+    @Nullable private volatile Exception exception;
+
+    public DownloadThread(
+        int itemCount,
+        AtomicInteger nextItemIndex,
+        CacheDataSource dataSource,
+        ItemDownloader itemDownloader) {
+      super("ExoPlayer:ParallelDownloadRunner");
+      this.itemCount = itemCount;
+      this.nextItemIndex = nextItemIndex;
+      this.dataSource = dataSource;
+      this.itemDownloader = itemDownloader;
+    }
+
+    @Override
+    public void run() {
+      try {
+        downloadItems(itemCount, nextItemIndex, dataSource, itemDownloader);
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        exception = e;
+        // Don't start downloading any more items, since the download is going to fail.
+        nextItemIndex.set(itemCount);
+      }
+    }
+
+    /** Rethrows the exception that stopped the thread, if any. Must only be called once joined. */
+    public void maybeThrowException() throws IOException, InterruptedException {
+      @Nullable Exception exception = this.exception;
+      if (exception instanceof IOException) {
+        throw (IOException) exception;
+      } else if (exception instanceof InterruptedException) {
+        throw (InterruptedException) exception;
+      } else if (exception != null) {
+        throw (RuntimeException) exception;
+      }
+    }
+  }
+}
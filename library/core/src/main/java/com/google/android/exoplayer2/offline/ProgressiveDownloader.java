@@ -24,6 +24,7 @@ import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
 import com.google.android.exoplayer2.upstream.cache.CacheUtil;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -35,16 +36,25 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * specify a custom cache key for the downloaded bytes.
  *
  * <p>The downloader will avoid downloading already-downloaded media bytes.
+ *
+ * <p>If the {@link DownloaderConstructorHelper} allows parallel downloads and the length of the
+ * media is known, or can be determined by opening it, the media is split into up to {@link
+ * DownloaderConstructorHelper#getMaxParallelDownloads()} byte ranges that are downloaded at the
+ * same time, each on its own thread.
  */
 public final class ProgressiveDownloader implements Downloader {
 
   private static final int BUFFER_SIZE_BYTES = 128 * 1024;
+  /** The minimum length of each byte range, when downloading byte ranges in parallel. */
+  private static final long MIN_PARALLEL_RANGE_LENGTH = 1024 * 1024;
 
   private final DataSpec dataSpec;
+  private final DownloaderConstructorHelper constructorHelper;
   private final Cache cache;
   private final CacheDataSource dataSource;
   private final CacheKeyFactory cacheKeyFactory;
   private final PriorityTaskManager priorityTaskManager;
+  private final int maxParallelDownloads;
   private final AtomicBoolean isCanceled;
 
   /**
@@ -61,10 +71,12 @@ public final class ProgressiveDownloader implements Downloader {
             .setKey(customCacheKey)
             .setFlags(DataSpec.FLAG_ALLOW_CACHE_FRAGMENTATION)
             .build();
+    this.constructorHelper = constructorHelper;
     this.cache = constructorHelper.getCache();
     this.dataSource = constructorHelper.createCacheDataSource();
     this.cacheKeyFactory = constructorHelper.getCacheKeyFactory();
     this.priorityTaskManager = constructorHelper.getPriorityTaskManager();
+    this.maxParallelDownloads = constructorHelper.getMaxParallelDownloads();
     isCanceled = new AtomicBoolean();
   }
 
@@ -73,6 +85,15 @@ public final class ProgressiveDownloader implements Downloader {
       throws InterruptedException, IOException {
     priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
     try {
+      long contentLength = maxParallelDownloads > 1 ? resolveContentLength() : C.LENGTH_UNSET;
+      int rangeCount =
+          contentLength == C.LENGTH_UNSET
+              ? 1
+              : (int) Math.min(maxParallelDownloads, contentLength / MIN_PARALLEL_RANGE_LENGTH);
+      if (rangeCount > 1) {
+        downloadRanges(contentLength, rangeCount, progressListener);
+        return;
+      }
       CacheUtil.cache(
           dataSpec,
           cache,
@@ -89,6 +110,61 @@ public final class ProgressiveDownloader implements Downloader {
     }
   }
 
+  /**
+   * Returns the length of the media, opening it to determine the length if it isn't stored in the
+   * cache already, or {@link C#LENGTH_UNSET} if unknown.
+   */
+  private long resolveContentLength() throws IOException {
+    long contentLength = CacheUtil.getCached(dataSpec, cache, cacheKeyFactory).first;
+    if (contentLength == C.LENGTH_UNSET) {
+      // If the data isn't cached, opening it writes its length to the cache's content metadata.
+      try {
+        contentLength = dataSource.open(dataSpec);
+      } finally {
+        dataSource.close();
+      }
+    }
+    return contentLength;
+  }
+
+  /**
+   * Splits the media into {@code rangeCount} byte ranges of similar length and downloads them in
+   * parallel. Parts of each range that are already cached aren't downloaded again.
+   */
+  private void downloadRanges(
+      long contentLength, int rangeCount, @Nullable ProgressListener progressListener)
+      throws IOException, InterruptedException {
+    @Nullable
+    RangeProgressNotifier progressNotifier =
+        progressListener != null
+            ? new RangeProgressNotifier(
+                progressListener,
+                contentLength,
+                CacheUtil.getCached(dataSpec, cache, cacheKeyFactory).second)
+            : null;
+    long rangeLength = Util.ceilDivide(contentLength, rangeCount);
+    ParallelDownloadRunner.download(
+        rangeCount,
+        maxParallelDownloads,
+        dataSource,
+        constructorHelper,
+        (index, threadDataSource, buffer) -> {
+          long rangePosition = index * rangeLength;
+          CacheUtil.cache(
+              dataSpec.subrange(
+                  rangePosition, Math.min(rangeLength, contentLength - rangePosition)),
+              cache,
+              cacheKeyFactory,
+              threadDataSource,
+              buffer,
+              priorityTaskManager,
+              C.PRIORITY_DOWNLOAD,
+              progressNotifier,
+              isCanceled,
+              /* enableEOFException= */ true);
+        });
+  }
+
   @Override
   public void cancel() {
     isCanceled.set(true);
@@ -116,4 +192,27 @@ public final class ProgressiveDownloader implements Downloader {
       progessListener.onProgress(contentLength, bytesCached, percentDownloaded);
     }
   }
+
+  private static final class RangeProgressNotifier implements CacheUtil.ProgressListener {
+
+    private final ProgressListener progressListener;
+    private final long contentLength;
+
+    private long bytesDownloaded;
+
+    public RangeProgressNotifier(
+        ProgressListener progressListener, long contentLength, long bytesDownloaded) {
+      this.progressListener = progressListener;
+      this.contentLength = contentLength;
+      this.bytesDownloaded = bytesDownloaded;
+    }
+
+    @Override
+    public synchronized void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+      bytesDownloaded += newBytesCached;
+      float percentDownloaded =
+          contentLength == 0 ? C.PERCENTAGE_UNSET : ((bytesDownloaded * 100f) / contentLength);
+      progressListener.onProgress(contentLength, bytesDownloaded, percentDownloaded);
+    }
+  }
 }
@@ -38,6 +38,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * Base class for multi segment stream downloaders.
  *
+ * <p>Segments are downloaded in order of their start times. If the {@link
+ * DownloaderConstructorHelper} allows parallel downloads, up to {@link
+ * DownloaderConstructorHelper#getMaxParallelDownloads()} segments are downloaded at the same time,
+ * each on its own thread. Progress is then reported from several threads, although never
+ * concurrently.
+ *
  * @param <M> The type of the manifest object.
  */
 public abstract class SegmentDownloader<M extends FilterableManifest<M>> implements Downloader {
@@ -63,16 +69,17 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
   }
 
-  private static final int BUFFER_SIZE_BYTES = 128 * 1024;
   private static final long MAX_MERGED_SEGMENT_START_TIME_DIFF_US = 20 * C.MICROS_PER_SECOND;
 
   private final DataSpec manifestDataSpec;
+  private final DownloaderConstructorHelper constructorHelper;
   private final Cache cache;
   private final CacheDataSource dataSource;
   private final CacheDataSource offlineDataSource;
   private final CacheKeyFactory cacheKeyFactory;
   private final PriorityTaskManager priorityTaskManager;
   private final ArrayList<StreamKey> streamKeys;
+  private final int maxParallelDownloads;
   private final AtomicBoolean isCanceled;
 
   /**
@@ -85,11 +92,13 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       Uri manifestUri, List<StreamKey> streamKeys, DownloaderConstructorHelper constructorHelper) {
     this.manifestDataSpec = getCompressibleDataSpec(manifestUri);
     this.streamKeys = new ArrayList<>(streamKeys);
+    this.constructorHelper = constructorHelper;
     this.cache = constructorHelper.getCache();
     this.dataSource = constructorHelper.createCacheDataSource();
     this.offlineDataSource = constructorHelper.createOfflineCacheDataSource();
     this.cacheKeyFactory = constructorHelper.getCacheKeyFactory();
     this.priorityTaskManager = constructorHelper.getPriorityTaskManager();
+    this.maxParallelDownloads = constructorHelper.getMaxParallelDownloads();
     isCanceled = new AtomicBoolean();
   }
 
@@ -141,33 +150,37 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       }
 
       // Download the segments.
-      @Nullable ProgressNotifier progressNotifier = null;
-      if (progressListener != null) {
-        progressNotifier =
-            new ProgressNotifier(
-                progressListener,
-                contentLength,
-                totalSegments,
-                bytesDownloaded,
-                segmentsDownloaded);
-      }
-      byte[] buffer = new byte[BUFFER_SIZE_BYTES];
-      for (int i = 0; i < segments.size(); i++) {
-        CacheUtil.cache(
-            segments.get(i).dataSpec,
-            cache,
-            cacheKeyFactory,
-            dataSource,
-            buffer,
-            priorityTaskManager,
-            C.PRIORITY_DOWNLOAD,
-            progressNotifier,
-            isCanceled,
-            true);
-        if (progressNotifier != null) {
-          progressNotifier.onSegmentDownloaded();
-        }
-      }
+      @Nullable
+      ProgressNotifier progressNotifier =
+          progressListener != null
+              ? new ProgressNotifier(
+                  progressListener,
+                  contentLength,
+                  totalSegments,
+                  bytesDownloaded,
+                  segmentsDownloaded)
+              : null;
+      ParallelDownloadRunner.download(
+          segments.size(),
+          maxParallelDownloads,
+          dataSource,
+          constructorHelper,
+          (index, threadDataSource, buffer) -> {
+            CacheUtil.cache(
+                segments.get(index).dataSpec,
+                cache,
+                cacheKeyFactory,
+                threadDataSource,
+                buffer,
+                priorityTaskManager,
+                C.PRIORITY_DOWNLOAD,
+                progressNotifier,
+                isCanceled,
+                true);
+            if (progressNotifier != null) {
+              progressNotifier.onSegmentDownloaded();
+            }
+          });
     } finally {
       priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
     }
@@ -293,12 +306,12 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
 
     @Override
-    public void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+    public synchronized void onProgress(long requestLength, long bytesCached, long newBytesCached) {
       bytesDownloaded += newBytesCached;
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
     }
 
-    public void onSegmentDownloaded() {
+    public synchronized void onSegmentDownloaded() {
       segmentsDownloaded++;
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
     }
@@ -21,12 +21,14 @@ import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.AbstractConcatenatedTimeline;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.source.ConcatenatingMediaSource.MediaSourceHolder;
 import com.google.android.exoplayer2.source.ShuffleOrder.DefaultShuffleOrder;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,6 +55,13 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
   private static final int MSG_SET_SHUFFLE_ORDER = 3;
   private static final int MSG_UPDATE_TIMELINE = 4;
   private static final int MSG_ON_COMPLETION = 5;
+  private static final int MSG_UPDATE_PRELOADING = 6;
+
+  /**
+   * The interval at which preloading checks whether its priority allows it to proceed, in
+   * milliseconds.
+   */
+  private static final long PRELOAD_PRIORITY_CHECK_INTERVAL_MS = 500;
 
   // Accessed on any thread.
   @GuardedBy("this")
@@ -65,6 +74,23 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
   @Nullable
   private Handler playbackThreadHandler;
 
+  @GuardedBy("this")
+  private int preloadCount;
+
+  @GuardedBy("this")
+  @Nullable
+  private PriorityTaskManager preloadPriorityTaskManager;
+
+  @GuardedBy("this")
+  private int preloadPriority;
+
+  @GuardedBy("this")
+  @Player.RepeatMode
+  private int preloadRepeatMode;
+
+  @GuardedBy("this")
+  private boolean preloadShuffleModeEnabled;
+
   // Accessed on the playback thread only.
   private final List<MediaSourceHolder> mediaSourceHolders;
   private final Map<MediaPeriod, MediaSourceHolder> mediaSourceByMediaPeriod;
@@ -76,6 +102,9 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
   private boolean timelineUpdateScheduled;
   private Set<HandlerAndRunnable> nextTimelineUpdateOnCompletionActions;
   private ShuffleOrder shuffleOrder;
+  @Nullable private MediaSourceHolder lastPeriodMediaSourceHolder;
+  @Nullable private PriorityTaskManager registeredPreloadPriorityTaskManager;
+  private int registeredPreloadPriority;
 
   /**
    * @param mediaSources The {@link MediaSource}s to concatenate. It is valid for the same
@@ -435,6 +464,66 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
     setPublicShuffleOrder(shuffleOrder, handler, onCompletionAction);
   }
 
+  /**
+   * Sets the number of media sources to preload. When the player creates a period of a media
+   * source, preparation of the given number of media sources following it in playback order is
+   * started immediately, so that their manifests are loaded by the time the player starts
+   * buffering them. The playback order is set with {@link #setPreloadPlaybackOrder(int,
+   * boolean)}.
+   *
+   * <p>Only has an effect if playlist items are prepared lazily, as all of them are prepared
+   * immediately otherwise.
+   *
+   * @param preloadCount The number of media sources to preload.
+   */
+  public synchronized void setPreloadCount(int preloadCount) {
+    setPreloadCount(preloadCount, /* priorityTaskManager= */ null, /* priority= */ 0);
+  }
+
+  /**
+   * Sets the number of media sources to preload, as {@link #setPreloadCount(int)} does, and makes
+   * preloading proceed only while it has the highest priority of the tasks registered with a
+   * {@link PriorityTaskManager}.
+   *
+   * <p>Passing the {@link PriorityTaskManager} used by the player's {@link
+   * com.google.android.exoplayer2.LoadControl} and a priority lower than {@link
+   * C#PRIORITY_PLAYBACK} defers preloading while the player is buffering.
+   *
+   * @param preloadCount The number of media sources to preload.
+   * @param priorityTaskManager The {@link PriorityTaskManager} with which preloading is registered,
+   *     or null if preloading should proceed immediately.
+   * @param priority The priority with which preloading is registered.
+   */
+  public synchronized void setPreloadCount(
+      int preloadCount, @Nullable PriorityTaskManager priorityTaskManager, int priority) {
+    Assertions.checkArgument(preloadCount >= 0);
+    this.preloadCount = preloadCount;
+    this.preloadPriorityTaskManager = priorityTaskManager;
+    this.preloadPriority = priority;
+    if (playbackThreadHandler != null) {
+      playbackThreadHandler.obtainMessage(MSG_UPDATE_PRELOADING).sendToTarget();
+    }
+  }
+
+  /**
+   * Sets the repeat mode and shuffle mode that determine which media sources follow the one being
+   * played, and are therefore preloaded. Should match the modes of the player, for example by
+   * calling this method from {@link Player.EventListener#onRepeatModeChanged(int)} and {@link
+   * Player.EventListener#onShuffleModeEnabledChanged(boolean)}. The default is {@link
+   * Player#REPEAT_MODE_OFF} with shuffle mode disabled.
+   *
+   * @param repeatMode The {@link Player.RepeatMode}.
+   * @param shuffleModeEnabled Whether shuffle mode is enabled.
+   */
+  public synchronized void setPreloadPlaybackOrder(
+      @Player.RepeatMode int repeatMode, boolean shuffleModeEnabled) {
+    this.preloadRepeatMode = repeatMode;
+    this.preloadShuffleModeEnabled = shuffleModeEnabled;
+    if (playbackThreadHandler != null) {
+      playbackThreadHandler.obtainMessage(MSG_UPDATE_PRELOADING).sendToTarget();
+    }
+  }
+
   // CompositeMediaSource implementation.
 
   @Override
@@ -480,6 +569,8 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
         holder.mediaSource.createPeriod(childMediaPeriodId, allocator, startPositionUs);
     mediaSourceByMediaPeriod.put(mediaPeriod, holder);
     disableUnusedMediaSources();
+    lastPeriodMediaSourceHolder = holder;
+    updatePreloading();
     return mediaPeriod;
   }
 
@@ -514,6 +605,8 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
     }
     timelineUpdateScheduled = false;
     nextTimelineUpdateOnCompletionActions.clear();
+    lastPeriodMediaSourceHolder = null;
+    unregisterPreloadTask();
     dispatchOnCompletionActions(pendingOnCompletionActions);
   }
 
@@ -701,6 +794,9 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
         Set<HandlerAndRunnable> actions = (Set<HandlerAndRunnable>) Util.castNonNull(msg.obj);
         dispatchOnCompletionActions(actions);
         break;
+      case MSG_UPDATE_PRELOADING:
+        updatePreloading();
+        break;
       default:
         throw new IllegalStateException();
     }
@@ -729,6 +825,92 @@ public final class ConcatenatingMediaSource extends CompositeMediaSource<MediaSo
     getPlaybackThreadHandlerOnPlaybackThread()
         .obtainMessage(MSG_ON_COMPLETION, onCompletionActions)
         .sendToTarget();
+    // The playlist may have changed after the last created period.
+    updatePreloading();
+  }
+
+  private synchronized void updatePreloading() {
+    Handler playbackThreadHandler = getPlaybackThreadHandlerOnPlaybackThread();
+    playbackThreadHandler.removeMessages(MSG_UPDATE_PRELOADING);
+    @Nullable MediaSourceHolder nextHolder = getNextMediaSourceHolderToPreload();
+    if (nextHolder == null) {
+      unregisterPreloadTask();
+      return;
+    }
+    @Nullable PriorityTaskManager priorityTaskManager = preloadPriorityTaskManager;
+    if (priorityTaskManager != null) {
+      registerPreloadTask(priorityTaskManager, preloadPriority);
+      if (!priorityTaskManager.proceedNonBlocking(preloadPriority)) {
+        playbackThreadHandler.sendEmptyMessageDelayed(
+            MSG_UPDATE_PRELOADING, PRELOAD_PRIORITY_CHECK_INTERVAL_MS);
+        return;
+      }
+    }
+    while (nextHolder != null) {
+      nextHolder.mediaSource.startPreparing();
+      nextHolder = getNextMediaSourceHolderToPreload();
+    }
+    unregisterPreloadTask();
+  }
+
+  @GuardedBy("this")
+  @Nullable
+  private MediaSourceHolder getNextMediaSourceHolderToPreload() {
+    @Nullable MediaSourceHolder lastPeriodMediaSourceHolder = this.lastPeriodMediaSourceHolder;
+    if (lastPeriodMediaSourceHolder == null || lastPeriodMediaSourceHolder.isRemoved) {
+      return null;
+    }
+    // Follow the order of the concatenated timeline. Atomic playlists are never shuffled and
+    // repeat as a whole, while skipping to the next item in repeat one mode moves on as if repeat
+    // was off.
+    boolean shuffleModeEnabled = preloadShuffleModeEnabled && !isAtomic;
+    boolean repeatAll =
+        preloadRepeatMode == Player.REPEAT_MODE_ALL
+            || (isAtomic && preloadRepeatMode == Player.REPEAT_MODE_ONE);
+    int currentChildIndex = lastPeriodMediaSourceHolder.childIndex;
+    int childIndex = currentChildIndex;
+    for (int i = 0; i < preloadCount; i++) {
+      childIndex = getNextChildIndex(childIndex, repeatAll, shuffleModeEnabled);
+      if (childIndex == C.INDEX_UNSET || childIndex == currentChildIndex) {
+        break;
+      }
+      MediaSourceHolder holder = mediaSourceHolders.get(childIndex);
+      if (!holder.mediaSource.hasStartedPreparing()) {
+        return holder;
+      }
+    }
+    return null;
+  }
+
+  private int getNextChildIndex(int childIndex, boolean repeatAll, boolean shuffleModeEnabled) {
+    int nextChildIndex;
+    if (shuffleModeEnabled) {
+      nextChildIndex = shuffleOrder.getNextIndex(childIndex);
+    } else {
+      nextChildIndex = childIndex < mediaSourceHolders.size() - 1 ? childIndex + 1 : C.INDEX_UNSET;
+    }
+    if (nextChildIndex == C.INDEX_UNSET && repeatAll) {
+      nextChildIndex = shuffleModeEnabled ? shuffleOrder.getFirstIndex() : 0;
+    }
+    return nextChildIndex;
+  }
+
+  private void registerPreloadTask(PriorityTaskManager priorityTaskManager, int priority) {
+    if (registeredPreloadPriorityTaskManager == priorityTaskManager
+        && registeredPreloadPriority == priority) {
+      return;
+    }
+    unregisterPreloadTask();
+    priorityTaskManager.add(priority);
+    registeredPreloadPriorityTaskManager = priorityTaskManager;
+    registeredPreloadPriority = priority;
+  }
+
+  private void unregisterPreloadTask() {
+    if (registeredPreloadPriorityTaskManager != null) {
+      registeredPreloadPriorityTaskManager.remove(registeredPreloadPriority);
+      registeredPreloadPriorityTaskManager = null;
+    }
   }
 
   @SuppressWarnings("GuardedBy")
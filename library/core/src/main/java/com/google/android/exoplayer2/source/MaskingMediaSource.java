@@ -83,6 +83,23 @@ public final class MaskingMediaSource extends CompositeMediaSource<Void> {
     }
   }
 
+  /** Returns whether preparation of the wrapped media source has started. */
+  /* package */ boolean hasStartedPreparing() {
+    return hasStartedPreparing;
+  }
+
+  /**
+   * Starts preparing the wrapped media source ahead of the creation of its first period, if it's
+   * prepared lazily and preparation hasn't started yet. Must only be called while this source is
+   * prepared.
+   */
+  /* package */ void startPreparing() {
+    if (!hasStartedPreparing) {
+      hasStartedPreparing = true;
+      prepareChildSource(/* id= */ null, mediaSource);
+    }
+  }
+
   @Nullable
   @Override
   public Object getTag() {
@@ -112,10 +129,7 @@ public final class MaskingMediaSource extends CompositeMediaSource<Void> {
       unpreparedMaskingMediaPeriodEventDispatcher =
           createEventDispatcher(/* windowIndex= */ 0, id, /* mediaTimeOffsetMs= */ 0);
       unpreparedMaskingMediaPeriodEventDispatcher.mediaPeriodCreated();
-      if (!hasStartedPreparing) {
-        hasStartedPreparing = true;
-        prepareChildSource(/* id= */ null, mediaSource);
-      }
+      startPreparing();
     }
     return mediaPeriod;
   }
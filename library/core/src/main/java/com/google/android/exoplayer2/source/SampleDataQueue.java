@@ -24,6 +24,7 @@ import com.google.android.exoplayer2.extractor.TrackOutput.CryptoData;
 import com.google.android.exoplayer2.source.SampleQueue.SampleExtrasHolder;
 import com.google.android.exoplayer2.upstream.Allocation;
 import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
@@ -40,6 +41,9 @@ import java.util.Arrays;
   private final int allocationLength;
   private final ParsableByteArray scratch;
 
+  // Used to write into allocations that can only be accessed through a direct buffer.
+  @Nullable private byte[] writeScratch;
+
   // References into the linked list of allocations.
   private AllocationNode firstAllocationNode;
   private AllocationNode readAllocationNode;
@@ -180,11 +184,22 @@ import java.util.Arrays;
   public int sampleData(SampleDataReader input, int length, boolean allowEndOfInput)
       throws IOException, InterruptedException {
     length = preAppend(length);
-    int bytesAppended =
-        input.read(
-            writeAllocationNode.allocation.data,
-            writeAllocationNode.translateOffset(totalBytesWritten),
-            length);
+    Allocation allocation = writeAllocationNode.allocation;
+    int bytesAppended;
+    if (allocation.hasArray()) {
+      bytesAppended =
+          input.read(
+              allocation.data, writeAllocationNode.translateOffset(totalBytesWritten), length);
+    } else {
+      if (writeScratch == null) {
+        writeScratch = new byte[allocationLength];
+      }
+      bytesAppended = input.read(writeScratch, /* offset= */ 0, length);
+      if (bytesAppended != C.RESULT_END_OF_INPUT) {
+        ByteBuffer target = writeAllocationNode.getWriteBuffer(totalBytesWritten);
+        target.put(writeScratch, /* offset= */ 0, bytesAppended);
+      }
+    }
     if (bytesAppended == C.RESULT_END_OF_INPUT) {
       if (allowEndOfInput) {
         return C.RESULT_END_OF_INPUT;
@@ -198,10 +213,15 @@ import java.util.Arrays;
   public void sampleData(ParsableByteArray buffer, int length) {
     while (length > 0) {
       int bytesAppended = preAppend(length);
-      buffer.readBytes(
-          writeAllocationNode.allocation.data,
-          writeAllocationNode.translateOffset(totalBytesWritten),
-          bytesAppended);
+      Allocation allocation = writeAllocationNode.allocation;
+      if (allocation.hasArray()) {
+        buffer.readBytes(
+            allocation.data, writeAllocationNode.translateOffset(totalBytesWritten), bytesAppended);
+      } else {
+        ByteBuffer target = writeAllocationNode.getWriteBuffer(totalBytesWritten);
+        target.put(buffer.data, buffer.getPosition(), bytesAppended);
+        buffer.skipBytes(bytesAppended);
+      }
       length -= bytesAppended;
       postAppend(bytesAppended);
     }
@@ -307,7 +327,14 @@ import java.util.Arrays;
     while (remaining > 0) {
       int toCopy = Math.min(remaining, (int) (readAllocationNode.endPosition - absolutePosition));
       Allocation allocation = readAllocationNode.allocation;
-      target.put(allocation.data, readAllocationNode.translateOffset(absolutePosition), toCopy);
+      if (allocation.buffer != null) {
+        // Bulk copy between buffers, which is a single native copy if both are direct.
+        ByteBuffer source = readAllocationNode.getReadBuffer(absolutePosition);
+        source.limit(source.position() + toCopy);
+        target.put(source);
+      } else {
+        target.put(allocation.data, readAllocationNode.translateOffset(absolutePosition), toCopy);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == readAllocationNode.endPosition) {
@@ -329,12 +356,16 @@ import java.util.Arrays;
     while (remaining > 0) {
       int toCopy = Math.min(remaining, (int) (readAllocationNode.endPosition - absolutePosition));
       Allocation allocation = readAllocationNode.allocation;
-      System.arraycopy(
-          allocation.data,
-          readAllocationNode.translateOffset(absolutePosition),
-          target,
-          length - remaining,
-          toCopy);
+      if (allocation.hasArray()) {
+        System.arraycopy(
+            allocation.data,
+            readAllocationNode.translateOffset(absolutePosition),
+            target,
+            length - remaining,
+            toCopy);
+      } else {
+        readAllocationNode.getReadBuffer(absolutePosition).get(target, length - remaining, toCopy);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == readAllocationNode.endPosition) {
@@ -425,6 +456,17 @@ import java.util.Arrays;
      */
     @Nullable public AllocationNode next;
 
+    /**
+     * A view of the {@link #allocation}'s {@link Allocation#buffer} used only by the writing
+     * thread, or {@code null} if the allocation isn't backed by a buffer.
+     */
+    @Nullable private ByteBuffer writeBuffer;
+    /**
+     * A view of the {@link #allocation}'s {@link Allocation#buffer} used only by the reading
+     * thread, or {@code null} if the allocation isn't backed by a buffer.
+     */
+    @Nullable private ByteBuffer readBuffer;
+
     /**
      * @param startPosition See {@link #startPosition}.
      * @param allocationLength The length of the {@link Allocation} with which this node will be
@@ -444,6 +486,13 @@ import java.util.Arrays;
     public void initialize(Allocation allocation, AllocationNode next) {
       this.allocation = allocation;
       this.next = next;
+      @Nullable ByteBuffer buffer = allocation.buffer;
+      if (buffer != null) {
+        // The loading and playback threads may access the same node at the same time, so each gets
+        // its own view rather than modifying the position and limit of the shared buffer.
+        writeBuffer = buffer.duplicate();
+        readBuffer = buffer.duplicate();
+      }
       wasInitialized = true;
     }
 
@@ -458,6 +507,30 @@ import java.util.Arrays;
       return (int) (absolutePosition - startPosition) + allocation.offset;
     }
 
+    /**
+     * Returns a view of the {@link #allocation}'s {@link Allocation#buffer} for use by the writing
+     * thread, positioned at the specified absolute position and with its limit set to the end of
+     * the allocation.
+     *
+     * @param absolutePosition The absolute position.
+     * @return The view of the allocation's buffer.
+     */
+    public ByteBuffer getWriteBuffer(long absolutePosition) {
+      return position(Assertions.checkNotNull(writeBuffer), absolutePosition);
+    }
+
+    /**
+     * Returns a view of the {@link #allocation}'s {@link Allocation#buffer} for use by the reading
+     * thread, positioned at the specified absolute position and with its limit set to the end of
+     * the allocation.
+     *
+     * @param absolutePosition The absolute position.
+     * @return The view of the allocation's buffer.
+     */
+    public ByteBuffer getReadBuffer(long absolutePosition) {
+      return position(Assertions.checkNotNull(readBuffer), absolutePosition);
+    }
+
     /**
      * Clears {@link #allocation} and {@link #next}.
      *
@@ -465,9 +538,17 @@ import java.util.Arrays;
      */
     public AllocationNode clear() {
       allocation = null;
+      writeBuffer = null;
+      readBuffer = null;
       AllocationNode temp = next;
       next = null;
       return temp;
     }
+
+    private ByteBuffer position(ByteBuffer buffer, long absolutePosition) {
+      buffer.clear();
+      buffer.position((int) (absolutePosition - startPosition));
+      return buffer;
+    }
   }
 }
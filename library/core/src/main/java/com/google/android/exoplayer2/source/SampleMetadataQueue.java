@@ -0,0 +1,498 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.TrackOutput.CryptoData;
+import com.google.android.exoplayer2.util.Assertions;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A queue of sample metadata, addressed by absolute sample index.
+ *
+ * <p>Metadata is stored in fixed size blocks of primitive arrays, which are held in a ring. Growing
+ * the queue adds a block rather than copying the metadata of queued samples, and a block released
+ * from the front of the queue is reused for the next block needed at the back.
+ *
+ * <p>Formats and crypto data usually repeat for long runs of samples, so each distinct value is
+ * stored once in a table and samples store its id in the table.
+ */
+/* package */ final class SampleMetadataQueue {
+
+  /** The number of samples in each block. */
+  public static final int BLOCK_LENGTH = 1024;
+
+  private static final int BLOCK_SHIFT = 10;
+  private static final int BLOCK_MASK = BLOCK_LENGTH - 1;
+  private static final int INITIAL_BLOCK_CAPACITY = 4;
+  private static final int INITIAL_INDEX_LIST_CAPACITY = 16;
+
+  private final ValueTable<Format> formats;
+  private final ValueTable<@NullableType CryptoData> cryptoDatas;
+
+  private @NullableType Block[] blocks;
+  private int firstBlockSlot;
+  private int blockCount;
+  @Nullable private Block spareBlock;
+
+  /** The indices of the keyframes in the queue. */
+  private final IndexList keyframeIndices;
+  /** The indices of samples whose timestamp is less than that of the previous sample. */
+  private final IndexList decreasingTimeIndices;
+  /** The indices of keyframes whose timestamp is less than that of an earlier sample. */
+  private final IndexList irregularKeyframeIndices;
+
+  private int firstIndex;
+  private int writeIndex;
+  private long largestTimeUs;
+
+  public SampleMetadataQueue() {
+    formats = new ValueTable<>();
+    cryptoDatas = new ValueTable<>();
+    blocks = new Block[INITIAL_BLOCK_CAPACITY];
+    keyframeIndices = new IndexList();
+    decreasingTimeIndices = new IndexList();
+    irregularKeyframeIndices = new IndexList();
+  }
+
+  /** Returns the index of the first sample in the queue. */
+  public int getFirstIndex() {
+    return firstIndex;
+  }
+
+  /** Returns the index that will be assigned to the next sample appended to the queue. */
+  public int getWriteIndex() {
+    return writeIndex;
+  }
+
+  /**
+   * Appends a sample to the queue.
+   *
+   * @param timeUs The sample timestamp in microseconds.
+   * @param flags The sample {@link C.BufferFlags}.
+   * @param offset The absolute offset of the sample data.
+   * @param size The size of the sample data.
+   * @param cryptoData The sample {@link CryptoData}, if any.
+   * @param format The sample {@link Format}.
+   * @param sourceId The source id of the sample.
+   */
+  public void append(
+      long timeUs,
+      @C.BufferFlags int flags,
+      long offset,
+      int size,
+      @Nullable CryptoData cryptoData,
+      Format format,
+      int sourceId) {
+    boolean isKeyframe = (flags & C.BUFFER_FLAG_KEY_FRAME) != 0;
+    if (writeIndex == firstIndex) {
+      largestTimeUs = timeUs;
+    } else {
+      if (timeUs < getTimeUs(writeIndex - 1)) {
+        decreasingTimeIndices.add(writeIndex);
+      }
+      if (isKeyframe && timeUs < largestTimeUs) {
+        irregularKeyframeIndices.add(writeIndex);
+      }
+      largestTimeUs = Math.max(largestTimeUs, timeUs);
+    }
+    if (isKeyframe) {
+      keyframeIndices.add(writeIndex);
+    }
+    if ((writeIndex >>> BLOCK_SHIFT) - (firstIndex >>> BLOCK_SHIFT) == blockCount) {
+      addBlock();
+    }
+    Block block = getBlock(writeIndex);
+    int blockIndex = writeIndex & BLOCK_MASK;
+    block.timesUs[blockIndex] = timeUs;
+    block.offsets[blockIndex] = offset;
+    block.sizes[blockIndex] = size;
+    block.flags[blockIndex] = flags;
+    block.sourceIds[blockIndex] = sourceId;
+    block.formatIds[blockIndex] = formats.append(format);
+    block.cryptoDataIds[blockIndex] = cryptoDatas.append(cryptoData);
+    writeIndex++;
+  }
+
+  /** Returns the timestamp of the sample at {@code index}, in microseconds. */
+  public long getTimeUs(int index) {
+    return getBlock(index).timesUs[index & BLOCK_MASK];
+  }
+
+  /** Returns the absolute offset of the data of the sample at {@code index}. */
+  public long getOffset(int index) {
+    return getBlock(index).offsets[index & BLOCK_MASK];
+  }
+
+  /** Returns the size of the data of the sample at {@code index}. */
+  public int getSize(int index) {
+    return getBlock(index).sizes[index & BLOCK_MASK];
+  }
+
+  /** Returns the {@link C.BufferFlags} of the sample at {@code index}. */
+  @C.BufferFlags
+  public int getFlags(int index) {
+    return getBlock(index).flags[index & BLOCK_MASK];
+  }
+
+  /** Returns whether the sample at {@code index} is a keyframe. */
+  public boolean isKeyframe(int index) {
+    return (getFlags(index) & C.BUFFER_FLAG_KEY_FRAME) != 0;
+  }
+
+  /** Returns the source id of the sample at {@code index}. */
+  public int getSourceId(int index) {
+    return getBlock(index).sourceIds[index & BLOCK_MASK];
+  }
+
+  /** Returns the {@link Format} of the sample at {@code index}. */
+  public Format getFormat(int index) {
+    return formats.get(getBlock(index).formatIds[index & BLOCK_MASK]);
+  }
+
+  /** Returns the {@link CryptoData} of the sample at {@code index}, if any. */
+  @Nullable
+  public CryptoData getCryptoData(int index) {
+    return cryptoDatas.get(getBlock(index).cryptoDataIds[index & BLOCK_MASK]);
+  }
+
+  /**
+   * Returns whether {@link #binarySearchIndexAfter} can search a range, which is the case if the
+   * timestamps of the samples in the range don't decrease.
+   *
+   * @param fromIndex The index of the first sample in the range.
+   * @param toIndex The index after the last sample in the range.
+   */
+  public boolean canBinarySearchTimes(int fromIndex, int toIndex) {
+    return !decreasingTimeIndices.containsInRange(fromIndex + 1, toIndex);
+  }
+
+  /**
+   * Finds the first sample in a range whose timestamp is greater than {@code timeUs}, using a
+   * binary search. Must only be called if {@link #canBinarySearchTimes} returns true for the range.
+   *
+   * @param timeUs The time in microseconds.
+   * @param fromIndex The index of the first sample in the range.
+   * @param toIndex The index after the last sample in the range.
+   * @return The index of the first sample in the range whose timestamp is greater than {@code
+   *     timeUs}, or {@code toIndex} if there's no such sample.
+   */
+  public int binarySearchIndexAfter(long timeUs, int fromIndex, int toIndex) {
+    int low = fromIndex;
+    int high = toIndex;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getTimeUs(mid) <= timeUs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns whether {@link #binarySearchKeyframeBefore} can search a range, which is the case if
+   * each keyframe in the range after the first sample has a timestamp greater than or equal to
+   * those of all earlier samples. Frame reordering doesn't prevent the search, as long as no frame
+   * is reordered across a keyframe.
+   *
+   * @param fromIndex The index of the first sample in the range.
+   * @param toIndex The index after the last sample in the range.
+   */
+  public boolean canBinarySearchKeyframes(int fromIndex, int toIndex) {
+    return !irregularKeyframeIndices.containsInRange(fromIndex + 1, toIndex);
+  }
+
+  /**
+   * Finds the last keyframe in a range whose timestamp is less than or equal to {@code timeUs},
+   * using a binary search over the keyframes in the queue. Must only be called if {@link
+   * #canBinarySearchKeyframes} returns true for the range.
+   *
+   * <p>Because no sample before a keyframe in the range has a greater timestamp, the result is the
+   * same as that of a linear search from {@code fromIndex} that stops at the first sample whose
+   * timestamp is greater than {@code timeUs}.
+   *
+   * @param timeUs The time in microseconds.
+   * @param fromIndex The index of the first sample in the range.
+   * @param toIndex The index after the last sample in the range.
+   * @return The index of the keyframe, or {@link C#INDEX_UNSET} if there's no such keyframe.
+   */
+  public int binarySearchKeyframeBefore(long timeUs, int fromIndex, int toIndex) {
+    int firstPosition = keyframeIndices.binarySearchCeil(fromIndex);
+    int low = firstPosition;
+    int high = keyframeIndices.binarySearchCeil(toIndex);
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getTimeUs(keyframeIndices.get(mid)) <= timeUs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low > firstPosition ? keyframeIndices.get(low - 1) : C.INDEX_UNSET;
+  }
+
+  /**
+   * Discards samples from the front of the queue.
+   *
+   * @param discardToIndex The index of the first sample to keep.
+   */
+  public void discardTo(int discardToIndex) {
+    Assertions.checkArgument(firstIndex <= discardToIndex && discardToIndex <= writeIndex);
+    int releaseCount =
+        discardToIndex == writeIndex
+            ? blockCount
+            : (discardToIndex >>> BLOCK_SHIFT) - (firstIndex >>> BLOCK_SHIFT);
+    for (int i = 0; i < releaseCount; i++) {
+      releaseBlock((firstBlockSlot + i) & (blocks.length - 1));
+    }
+    firstBlockSlot = (firstBlockSlot + releaseCount) & (blocks.length - 1);
+    blockCount -= releaseCount;
+    firstIndex = discardToIndex;
+    keyframeIndices.removeBefore(firstIndex);
+    decreasingTimeIndices.removeBefore(firstIndex);
+    irregularKeyframeIndices.removeBefore(firstIndex);
+    if (firstIndex == writeIndex) {
+      formats.discardTo(formats.getNextId());
+      cryptoDatas.discardTo(cryptoDatas.getNextId());
+    } else {
+      Block firstBlock = getBlock(firstIndex);
+      formats.discardTo(firstBlock.formatIds[firstIndex & BLOCK_MASK]);
+      cryptoDatas.discardTo(firstBlock.cryptoDataIds[firstIndex & BLOCK_MASK]);
+    }
+  }
+
+  /**
+   * Discards samples from the back of the queue.
+   *
+   * @param discardFromIndex The index of the first sample to discard.
+   */
+  public void discardFrom(int discardFromIndex) {
+    Assertions.checkArgument(firstIndex <= discardFromIndex && discardFromIndex <= writeIndex);
+    int keepCount =
+        discardFromIndex == firstIndex
+            ? 0
+            : ((discardFromIndex - 1) >>> BLOCK_SHIFT) - (firstIndex >>> BLOCK_SHIFT) + 1;
+    for (int i = keepCount; i < blockCount; i++) {
+      releaseBlock((firstBlockSlot + i) & (blocks.length - 1));
+    }
+    blockCount = keepCount;
+    writeIndex = discardFromIndex;
+    if (writeIndex == firstIndex) {
+      formats.discardFrom(formats.getFirstId());
+      cryptoDatas.discardFrom(cryptoDatas.getFirstId());
+    } else {
+      Block lastBlock = getBlock(writeIndex - 1);
+      formats.discardFrom(lastBlock.formatIds[(writeIndex - 1) & BLOCK_MASK] + 1);
+      cryptoDatas.discardFrom(lastBlock.cryptoDataIds[(writeIndex - 1) & BLOCK_MASK] + 1);
+    }
+    keyframeIndices.removeFrom(writeIndex);
+    decreasingTimeIndices.removeFrom(writeIndex);
+    irregularKeyframeIndices.removeFrom(writeIndex);
+    // largestTimeUs may now be greater than the timestamps of all remaining samples. It isn't
+    // recomputed, which at worst causes later keyframes to be treated as irregular.
+  }
+
+  /** Discards all samples and resets the sample indices to zero. */
+  public void clear() {
+    discardTo(writeIndex);
+    firstIndex = 0;
+    writeIndex = 0;
+    firstBlockSlot = 0;
+  }
+
+  private Block getBlock(int index) {
+    int blockOffset = (index >>> BLOCK_SHIFT) - (firstIndex >>> BLOCK_SHIFT);
+    return Assertions.checkNotNull(blocks[(firstBlockSlot + blockOffset) & (blocks.length - 1)]);
+  }
+
+  private void addBlock() {
+    if (blockCount == blocks.length) {
+      // Only the block references are copied. The blocks themselves are reused.
+      @NullableType Block[] newBlocks = new Block[blocks.length * 2];
+      for (int i = 0; i < blockCount; i++) {
+        newBlocks[i] = blocks[(firstBlockSlot + i) & (blocks.length - 1)];
+      }
+      blocks = newBlocks;
+      firstBlockSlot = 0;
+    }
+    Block block = spareBlock != null ? spareBlock : new Block();
+    spareBlock = null;
+    blocks[(firstBlockSlot + blockCount) & (blocks.length - 1)] = block;
+    blockCount++;
+  }
+
+  private void releaseBlock(int slot) {
+    if (spareBlock == null) {
+      spareBlock = blocks[slot];
+    }
+    blocks[slot] = null;
+  }
+
+  /** Metadata of {@link #BLOCK_LENGTH} consecutive samples. */
+  private static final class Block {
+
+    public final long[] timesUs;
+    public final long[] offsets;
+    public final int[] sizes;
+    public final int[] flags;
+    public final int[] sourceIds;
+    public final int[] formatIds;
+    public final int[] cryptoDataIds;
+
+    public Block() {
+      timesUs = new long[BLOCK_LENGTH];
+      offsets = new long[BLOCK_LENGTH];
+      sizes = new int[BLOCK_LENGTH];
+      flags = new int[BLOCK_LENGTH];
+      sourceIds = new int[BLOCK_LENGTH];
+      formatIds = new int[BLOCK_LENGTH];
+      cryptoDataIds = new int[BLOCK_LENGTH];
+    }
+  }
+
+  /**
+   * A table of values with increasing ids. A value appended immediately after the same value (by
+   * reference) reuses its id, so a run of samples sharing a value shares a single entry.
+   */
+  private static final class ValueTable<V> {
+
+    private @NullableType Object[] values;
+    private int firstId;
+    private int nextId;
+
+    public ValueTable() {
+      values = new Object[INITIAL_BLOCK_CAPACITY];
+    }
+
+    public int getFirstId() {
+      return firstId;
+    }
+
+    public int getNextId() {
+      return nextId;
+    }
+
+    @SuppressWarnings("ReferenceEquality")
+    public int append(V value) {
+      if (nextId != firstId && get(nextId - 1) == value) {
+        return nextId - 1;
+      }
+      if (nextId - firstId == values.length) {
+        @NullableType Object[] newValues = new Object[values.length * 2];
+        for (int id = firstId; id < nextId; id++) {
+          newValues[id & (newValues.length - 1)] = values[id & (values.length - 1)];
+        }
+        values = newValues;
+      }
+      values[nextId & (values.length - 1)] = value;
+      return nextId++;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+      return (V) values[id & (values.length - 1)];
+    }
+
+    /** Discards the values with ids less than {@code id}. */
+    public void discardTo(int id) {
+      for (; firstId < id; firstId++) {
+        values[firstId & (values.length - 1)] = null;
+      }
+    }
+
+    /** Discards the values with ids greater than or equal to {@code id}. */
+    public void discardFrom(int id) {
+      while (nextId > id) {
+        nextId--;
+        values[nextId & (values.length - 1)] = null;
+      }
+    }
+  }
+
+  /** A list of increasing sample indices, held in a ring. */
+  private static final class IndexList {
+
+    private int[] indices;
+    private int first;
+    private int size;
+
+    public IndexList() {
+      indices = new int[INITIAL_INDEX_LIST_CAPACITY];
+    }
+
+    /** Returns the index at {@code position} in the list. */
+    public int get(int position) {
+      return indices[(first + position) & (indices.length - 1)];
+    }
+
+    /** Appends an index, which must be greater than the indices in the list. */
+    public void add(int index) {
+      if (size == indices.length) {
+        int[] newIndices = new int[indices.length * 2];
+        for (int i = 0; i < size; i++) {
+          newIndices[i] = get(i);
+        }
+        indices = newIndices;
+        first = 0;
+      }
+      indices[(first + size) & (indices.length - 1)] = index;
+      size++;
+    }
+
+    /** Removes the indices less than {@code index}. */
+    public void removeBefore(int index) {
+      while (size > 0 && get(0) < index) {
+        first = (first + 1) & (indices.length - 1);
+        size--;
+      }
+    }
+
+    /** Removes the indices greater than or equal to {@code index}. */
+    public void removeFrom(int index) {
+      while (size > 0 && get(size - 1) >= index) {
+        size--;
+      }
+    }
+
+    /**
+     * Returns the position of the first index in the list that's greater than or equal to {@code
+     * index}, or the size of the list if there's no such index.
+     */
+    public int binarySearchCeil(int index) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (get(mid) < index) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /** Returns whether the list contains an index in {@code [fromIndex, toIndex)}. */
+    public boolean containsInRange(int fromIndex, int toIndex) {
+      int position = binarySearchCeil(fromIndex);
+      return position < size && get(position) < toIndex;
+    }
+  }
+}
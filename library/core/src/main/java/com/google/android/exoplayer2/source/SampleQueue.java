@@ -30,11 +30,12 @@ import com.google.android.exoplayer2.extractor.SampleDataReader;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.MetricsCollector;
+import com.google.android.exoplayer2.util.MetricsUtil;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
-import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /** A queue of media samples. */
 public class SampleQueue implements TrackOutput {
@@ -50,9 +51,11 @@ public class SampleQueue implements TrackOutput {
     void onUpstreamFormatChanged(Format format);
   }
 
-  @VisibleForTesting /* package */ static final int SAMPLE_CAPACITY_INCREMENT = 1000;
+  @VisibleForTesting
+  /* package */ static final int SAMPLE_CAPACITY_INCREMENT = SampleMetadataQueue.BLOCK_LENGTH;
 
   private final SampleDataQueue sampleDataQueue;
+  private final SampleMetadataQueue sampleMetadataQueue;
   private final SampleExtrasHolder extrasHolder;
   private final DrmSessionManager<?> drmSessionManager;
   @Nullable private UpstreamFormatChangedListener upstreamFormatChangeListener;
@@ -60,18 +63,8 @@ public class SampleQueue implements TrackOutput {
   @Nullable private Format downstreamFormat;
   @Nullable private DrmSession<?> currentDrmSession;
 
-  private int capacity;
-  private int[] sourceIds;
-  private long[] offsets;
-  private int[] sizes;
-  private int[] flags;
-  private long[] timesUs;
-  private @NullableType CryptoData[] cryptoDatas;
-  private Format[] formats;
-
   private int length;
   private int absoluteFirstIndex;
-  private int relativeFirstIndex;
   private int readPosition;
 
   private long largestDiscardedTimestampUs;
@@ -97,16 +90,9 @@ public class SampleQueue implements TrackOutput {
    */
   public SampleQueue(Allocator allocator, DrmSessionManager<?> drmSessionManager) {
     sampleDataQueue = new SampleDataQueue(allocator);
+    sampleMetadataQueue = new SampleMetadataQueue();
     this.drmSessionManager = drmSessionManager;
     extrasHolder = new SampleExtrasHolder();
-    capacity = SAMPLE_CAPACITY_INCREMENT;
-    sourceIds = new int[capacity];
-    offsets = new long[capacity];
-    timesUs = new long[capacity];
-    flags = new int[capacity];
-    sizes = new int[capacity];
-    cryptoDatas = new CryptoData[capacity];
-    formats = new Format[capacity];
     largestDiscardedTimestampUs = Long.MIN_VALUE;
     largestQueuedTimestampUs = Long.MIN_VALUE;
     upstreamFormatRequired = true;
@@ -138,9 +124,9 @@ public class SampleQueue implements TrackOutput {
   @CallSuper
   public void reset(boolean resetUpstreamFormat) {
     sampleDataQueue.reset();
+    sampleMetadataQueue.clear();
     length = 0;
     absoluteFirstIndex = 0;
-    relativeFirstIndex = 0;
     readPosition = 0;
     upstreamKeyframeRequired = true;
     largestDiscardedTimestampUs = Long.MIN_VALUE;
@@ -222,8 +208,9 @@ public class SampleQueue implements TrackOutput {
    * @return The source id.
    */
   public final synchronized int peekSourceId() {
-    int relativeReadIndex = getRelativeIndex(readPosition);
-    return hasNextSample() ? sourceIds[relativeReadIndex] : upstreamSourceId;
+    return hasNextSample()
+        ? sampleMetadataQueue.getSourceId(getSampleIndex(readPosition))
+        : upstreamSourceId;
   }
 
   /** Returns the upstream {@link Format} in which samples are being queued. */
@@ -261,7 +248,7 @@ public class SampleQueue implements TrackOutput {
 
   /** Returns the timestamp of the first sample, or {@link Long#MIN_VALUE} if the queue is empty. */
   public final synchronized long getFirstTimestampUs() {
-    return length == 0 ? Long.MIN_VALUE : timesUs[relativeFirstIndex];
+    return length == 0 ? Long.MIN_VALUE : sampleMetadataQueue.getTimeUs(absoluteFirstIndex);
   }
 
   /**
@@ -283,12 +270,12 @@ public class SampleQueue implements TrackOutput {
           || isLastSampleQueued
           || (upstreamFormat != null && upstreamFormat != downstreamFormat);
     }
-    int relativeReadIndex = getRelativeIndex(readPosition);
-    if (formats[relativeReadIndex] != downstreamFormat) {
+    int readIndex = getSampleIndex(readPosition);
+    if (sampleMetadataQueue.getFormat(readIndex) != downstreamFormat) {
       // A format can be read.
       return true;
     }
-    return mayReadSample(relativeReadIndex);
+    return mayReadSample(readIndex);
   }
 
   /**
@@ -325,12 +312,20 @@ public class SampleQueue implements TrackOutput {
       boolean formatRequired,
       boolean loadingFinished,
       long decodeOnlyUntilUs) {
+    MetricsCollector metrics = MetricsUtil.getCollector();
+    boolean recordMetrics = metrics.isEnabled();
+    long readStartTimeNs = recordMetrics ? System.nanoTime() : 0;
     int result =
         readSampleMetadata(
             formatHolder, buffer, formatRequired, loadingFinished, decodeOnlyUntilUs, extrasHolder);
     if (result == C.RESULT_BUFFER_READ && !buffer.isEndOfStream() && !buffer.isFlagsOnly()) {
       sampleDataQueue.readToBuffer(buffer, extrasHolder);
     }
+    if (recordMetrics) {
+      metrics.recordValue(
+          MetricsCollector.HISTOGRAM_SAMPLE_QUEUE_READ_TIME_NS,
+          System.nanoTime() - readStartTimeNs);
+    }
     return result;
   }
 
@@ -359,14 +354,13 @@ public class SampleQueue implements TrackOutput {
    */
   public final synchronized boolean seekTo(long timeUs, boolean allowTimeBeyondBuffer) {
     rewind();
-    int relativeReadIndex = getRelativeIndex(readPosition);
+    int readIndex = getSampleIndex(readPosition);
     if (!hasNextSample()
-        || timeUs < timesUs[relativeReadIndex]
+        || timeUs < sampleMetadataQueue.getTimeUs(readIndex)
         || (timeUs > largestQueuedTimestampUs && !allowTimeBeyondBuffer)) {
       return false;
     }
-    int offset =
-        findSampleBefore(relativeReadIndex, length - readPosition, timeUs, /* keyframe= */ true);
+    int offset = findSampleBefore(readIndex, length - readPosition, timeUs, /* keyframe= */ true);
     if (offset == -1) {
       return false;
     }
@@ -381,12 +375,11 @@ public class SampleQueue implements TrackOutput {
    * @return The number of samples that were skipped, which may be equal to 0.
    */
   public final synchronized int advanceTo(long timeUs) {
-    int relativeReadIndex = getRelativeIndex(readPosition);
-    if (!hasNextSample() || timeUs < timesUs[relativeReadIndex]) {
+    int readIndex = getSampleIndex(readPosition);
+    if (!hasNextSample() || timeUs < sampleMetadataQueue.getTimeUs(readIndex)) {
       return 0;
     }
-    int offset =
-        findSampleBefore(relativeReadIndex, length - readPosition, timeUs, /* keyframe= */ true);
+    int offset = findSampleBefore(readIndex, length - readPosition, timeUs, /* keyframe= */ true);
     if (offset == -1) {
       return 0;
     }
@@ -546,12 +539,13 @@ public class SampleQueue implements TrackOutput {
     // This is a temporary fix for https://github.com/google/ExoPlayer/issues/6155.
     // TODO: Remove it and replace it with a fix that discards samples when writing to the queue.
     boolean hasNextSample;
-    int relativeReadIndex = C.INDEX_UNSET;
+    int readIndex = C.INDEX_UNSET;
     while ((hasNextSample = hasNextSample())) {
-      relativeReadIndex = getRelativeIndex(readPosition);
-      long timeUs = timesUs[relativeReadIndex];
+      readIndex = getSampleIndex(readPosition);
+      long timeUs = sampleMetadataQueue.getTimeUs(readIndex);
       if (timeUs < decodeOnlyUntilUs
-          && MimeTypes.allSamplesAreSyncSamples(formats[relativeReadIndex].sampleMimeType)) {
+          && MimeTypes.allSamplesAreSyncSamples(
+              sampleMetadataQueue.getFormat(readIndex).sampleMimeType)) {
         readPosition++;
       } else {
         break;
@@ -570,26 +564,27 @@ public class SampleQueue implements TrackOutput {
       }
     }
 
-    if (formatRequired || formats[relativeReadIndex] != downstreamFormat) {
-      onFormatResult(formats[relativeReadIndex], formatHolder);
+    Format format = sampleMetadataQueue.getFormat(readIndex);
+    if (formatRequired || format != downstreamFormat) {
+      onFormatResult(format, formatHolder);
       return C.RESULT_FORMAT_READ;
     }
 
-    if (!mayReadSample(relativeReadIndex)) {
+    if (!mayReadSample(readIndex)) {
       return C.RESULT_NOTHING_READ;
     }
 
-    buffer.setFlags(flags[relativeReadIndex]);
-    buffer.timeUs = timesUs[relativeReadIndex];
+    buffer.setFlags(sampleMetadataQueue.getFlags(readIndex));
+    buffer.timeUs = sampleMetadataQueue.getTimeUs(readIndex);
     if (buffer.timeUs < decodeOnlyUntilUs) {
       buffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
     }
     if (buffer.isFlagsOnly()) {
       return C.RESULT_BUFFER_READ;
     }
-    extrasHolder.size = sizes[relativeReadIndex];
-    extrasHolder.offset = offsets[relativeReadIndex];
-    extrasHolder.cryptoData = cryptoDatas[relativeReadIndex];
+    extrasHolder.size = sampleMetadataQueue.getSize(readIndex);
+    extrasHolder.offset = sampleMetadataQueue.getOffset(readIndex);
+    extrasHolder.cryptoData = sampleMetadataQueue.getCryptoData(readIndex);
 
     readPosition++;
     return C.RESULT_BUFFER_READ;
@@ -616,11 +611,11 @@ public class SampleQueue implements TrackOutput {
 
   private synchronized long discardSampleMetadataTo(
       long timeUs, boolean toKeyframe, boolean stopAtReadPosition) {
-    if (length == 0 || timeUs < timesUs[relativeFirstIndex]) {
+    if (length == 0 || timeUs < sampleMetadataQueue.getTimeUs(absoluteFirstIndex)) {
       return C.POSITION_UNSET;
     }
     int searchLength = stopAtReadPosition && readPosition != length ? readPosition + 1 : length;
-    int discardCount = findSampleBefore(relativeFirstIndex, searchLength, timeUs, toKeyframe);
+    int discardCount = findSampleBefore(absoluteFirstIndex, searchLength, timeUs, toKeyframe);
     if (discardCount == -1) {
       return C.POSITION_UNSET;
     }
@@ -668,53 +663,16 @@ public class SampleQueue implements TrackOutput {
     isLastSampleQueued = (sampleFlags & C.BUFFER_FLAG_LAST_SAMPLE) != 0;
     largestQueuedTimestampUs = Math.max(largestQueuedTimestampUs, timeUs);
 
-    int relativeEndIndex = getRelativeIndex(length);
-    timesUs[relativeEndIndex] = timeUs;
-    offsets[relativeEndIndex] = offset;
-    sizes[relativeEndIndex] = size;
-    flags[relativeEndIndex] = sampleFlags;
-    cryptoDatas[relativeEndIndex] = cryptoData;
-    formats[relativeEndIndex] = upstreamFormat;
-    sourceIds[relativeEndIndex] = upstreamSourceId;
+    sampleMetadataQueue.append(
+        timeUs,
+        sampleFlags,
+        offset,
+        size,
+        cryptoData,
+        Assertions.checkNotNull(upstreamFormat),
+        upstreamSourceId);
     upstreamCommittedFormat = upstreamFormat;
-
     length++;
-    if (length == capacity) {
-      // Increase the capacity.
-      int newCapacity = capacity + SAMPLE_CAPACITY_INCREMENT;
-      int[] newSourceIds = new int[newCapacity];
-      long[] newOffsets = new long[newCapacity];
-      long[] newTimesUs = new long[newCapacity];
-      int[] newFlags = new int[newCapacity];
-      int[] newSizes = new int[newCapacity];
-      CryptoData[] newCryptoDatas = new CryptoData[newCapacity];
-      Format[] newFormats = new Format[newCapacity];
-      int beforeWrap = capacity - relativeFirstIndex;
-      System.arraycopy(offsets, relativeFirstIndex, newOffsets, 0, beforeWrap);
-      System.arraycopy(timesUs, relativeFirstIndex, newTimesUs, 0, beforeWrap);
-      System.arraycopy(flags, relativeFirstIndex, newFlags, 0, beforeWrap);
-      System.arraycopy(sizes, relativeFirstIndex, newSizes, 0, beforeWrap);
-      System.arraycopy(cryptoDatas, relativeFirstIndex, newCryptoDatas, 0, beforeWrap);
-      System.arraycopy(formats, relativeFirstIndex, newFormats, 0, beforeWrap);
-      System.arraycopy(sourceIds, relativeFirstIndex, newSourceIds, 0, beforeWrap);
-      int afterWrap = relativeFirstIndex;
-      System.arraycopy(offsets, 0, newOffsets, beforeWrap, afterWrap);
-      System.arraycopy(timesUs, 0, newTimesUs, beforeWrap, afterWrap);
-      System.arraycopy(flags, 0, newFlags, beforeWrap, afterWrap);
-      System.arraycopy(sizes, 0, newSizes, beforeWrap, afterWrap);
-      System.arraycopy(cryptoDatas, 0, newCryptoDatas, beforeWrap, afterWrap);
-      System.arraycopy(formats, 0, newFormats, beforeWrap, afterWrap);
-      System.arraycopy(sourceIds, 0, newSourceIds, beforeWrap, afterWrap);
-      offsets = newOffsets;
-      timesUs = newTimesUs;
-      flags = newFlags;
-      sizes = newSizes;
-      cryptoDatas = newCryptoDatas;
-      formats = newFormats;
-      sourceIds = newSourceIds;
-      relativeFirstIndex = 0;
-      capacity = newCapacity;
-    }
   }
 
   /**
@@ -734,13 +692,9 @@ public class SampleQueue implements TrackOutput {
       return false;
     }
     int retainCount = length;
-    int relativeSampleIndex = getRelativeIndex(length - 1);
-    while (retainCount > readPosition && timesUs[relativeSampleIndex] >= timeUs) {
+    while (retainCount > readPosition
+        && sampleMetadataQueue.getTimeUs(getSampleIndex(retainCount - 1)) >= timeUs) {
       retainCount--;
-      relativeSampleIndex--;
-      if (relativeSampleIndex == -1) {
-        relativeSampleIndex = capacity - 1;
-      }
     }
     discardUpstreamSampleMetadata(absoluteFirstIndex + retainCount);
     return true;
@@ -750,11 +704,13 @@ public class SampleQueue implements TrackOutput {
     int discardCount = getWriteIndex() - discardFromIndex;
     Assertions.checkArgument(0 <= discardCount && discardCount <= (length - readPosition));
     length -= discardCount;
+    sampleMetadataQueue.discardFrom(discardFromIndex);
     largestQueuedTimestampUs = Math.max(largestDiscardedTimestampUs, getLargestTimestamp(length));
     isLastSampleQueued = discardCount == 0 && isLastSampleQueued;
     if (length != 0) {
-      int relativeLastWriteIndex = getRelativeIndex(length - 1);
-      return offsets[relativeLastWriteIndex] + sizes[relativeLastWriteIndex];
+      int lastWriteIndex = getSampleIndex(length - 1);
+      return sampleMetadataQueue.getOffset(lastWriteIndex)
+          + sampleMetadataQueue.getSize(lastWriteIndex);
     }
     return 0;
   }
@@ -807,10 +763,10 @@ public class SampleQueue implements TrackOutput {
   /**
    * Returns whether it's possible to read the next sample.
    *
-   * @param relativeReadIndex The relative read index of the next sample.
+   * @param readIndex The absolute index of the next sample.
    * @return Whether it's possible to read the next sample.
    */
-  private boolean mayReadSample(int relativeReadIndex) {
+  private boolean mayReadSample(int readIndex) {
     if (drmSessionManager == DrmSessionManager.DUMMY) {
       // TODO: Remove once renderers are migrated [Internal ref: b/122519809].
       // For protected content it's likely that the DrmSessionManager is still being injected into
@@ -819,7 +775,7 @@ public class SampleQueue implements TrackOutput {
     }
     return currentDrmSession == null
         || currentDrmSession.getState() == DrmSession.STATE_OPENED_WITH_KEYS
-        || ((flags[relativeReadIndex] & C.BUFFER_FLAG_ENCRYPTED) == 0
+        || ((sampleMetadataQueue.getFlags(readIndex) & C.BUFFER_FLAG_ENCRYPTED) == 0
             && currentDrmSession.playClearSamplesWithoutKeys());
   }
 
@@ -827,28 +783,33 @@ public class SampleQueue implements TrackOutput {
    * Finds the sample in the specified range that's before or at the specified time. If {@code
    * keyframe} is {@code true} then the sample is additionally required to be a keyframe.
    *
-   * @param relativeStartIndex The relative index from which to start searching.
+   * @param startIndex The absolute index from which to start searching.
    * @param length The length of the range being searched.
    * @param timeUs The specified time.
    * @param keyframe Whether only keyframes should be considered.
-   * @return The offset from {@code relativeFirstIndex} to the found sample, or -1 if no matching
-   *     sample was found.
+   * @return The offset from {@code startIndex} to the found sample, or -1 if no matching sample was
+   *     found.
    */
-  private int findSampleBefore(int relativeStartIndex, int length, long timeUs, boolean keyframe) {
-    // This could be optimized to use a binary search, however in practice callers to this method
-    // normally pass times near to the start of the search region. Hence it's unclear whether
-    // switching to a binary search would yield any real benefit.
+  private int findSampleBefore(int startIndex, int length, long timeUs, boolean keyframe) {
+    int endIndex = startIndex + length;
+    if (keyframe && sampleMetadataQueue.canBinarySearchKeyframes(startIndex, endIndex)) {
+      int keyframeIndex =
+          sampleMetadataQueue.binarySearchKeyframeBefore(timeUs, startIndex, endIndex);
+      return keyframeIndex == C.INDEX_UNSET ? -1 : keyframeIndex - startIndex;
+    }
+    if (!keyframe && sampleMetadataQueue.canBinarySearchTimes(startIndex, endIndex)) {
+      // The timestamps in the range don't decrease, so the samples before the first later sample
+      // are the ones that a linear search from startIndex would visit.
+      return sampleMetadataQueue.binarySearchIndexAfter(timeUs, startIndex, endIndex)
+          - startIndex
+          - 1;
+    }
     int sampleCountToTarget = -1;
-    int searchIndex = relativeStartIndex;
-    for (int i = 0; i < length && timesUs[searchIndex] <= timeUs; i++) {
-      if (!keyframe || (flags[searchIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+    for (int i = 0; i < length && sampleMetadataQueue.getTimeUs(startIndex + i) <= timeUs; i++) {
+      if (!keyframe || sampleMetadataQueue.isKeyframe(startIndex + i)) {
         // We've found a suitable sample.
         sampleCountToTarget = i;
       }
-      searchIndex++;
-      if (searchIndex == capacity) {
-        searchIndex = 0;
-      }
     }
     return sampleCountToTarget;
   }
@@ -862,22 +823,23 @@ public class SampleQueue implements TrackOutput {
   private long discardSamples(int discardCount) {
     largestDiscardedTimestampUs =
         Math.max(largestDiscardedTimestampUs, getLargestTimestamp(discardCount));
+    long discardToOffset;
+    if (discardCount == length) {
+      int lastDiscardIndex = getSampleIndex(length - 1);
+      discardToOffset =
+          sampleMetadataQueue.getOffset(lastDiscardIndex)
+              + sampleMetadataQueue.getSize(lastDiscardIndex);
+    } else {
+      discardToOffset = sampleMetadataQueue.getOffset(getSampleIndex(discardCount));
+    }
     length -= discardCount;
     absoluteFirstIndex += discardCount;
-    relativeFirstIndex += discardCount;
-    if (relativeFirstIndex >= capacity) {
-      relativeFirstIndex -= capacity;
-    }
+    sampleMetadataQueue.discardTo(absoluteFirstIndex);
     readPosition -= discardCount;
     if (readPosition < 0) {
       readPosition = 0;
     }
-    if (length == 0) {
-      int relativeLastDiscardIndex = (relativeFirstIndex == 0 ? capacity : relativeFirstIndex) - 1;
-      return offsets[relativeLastDiscardIndex] + sizes[relativeLastDiscardIndex];
-    } else {
-      return offsets[relativeFirstIndex];
-    }
+    return discardToOffset;
   }
 
   /**
@@ -893,28 +855,22 @@ public class SampleQueue implements TrackOutput {
       return Long.MIN_VALUE;
     }
     long largestTimestampUs = Long.MIN_VALUE;
-    int relativeSampleIndex = getRelativeIndex(length - 1);
-    for (int i = 0; i < length; i++) {
-      largestTimestampUs = Math.max(largestTimestampUs, timesUs[relativeSampleIndex]);
-      if ((flags[relativeSampleIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+    for (int i = getSampleIndex(length - 1); i >= absoluteFirstIndex; i--) {
+      largestTimestampUs = Math.max(largestTimestampUs, sampleMetadataQueue.getTimeUs(i));
+      if (sampleMetadataQueue.isKeyframe(i)) {
         break;
       }
-      relativeSampleIndex--;
-      if (relativeSampleIndex == -1) {
-        relativeSampleIndex = capacity - 1;
-      }
     }
     return largestTimestampUs;
   }
 
   /**
-   * Returns the relative index for a given offset from the start of the queue.
+   * Returns the absolute index for a given offset from the start of the queue.
    *
    * @param offset The offset, which must be in the range [0, length].
    */
-  private int getRelativeIndex(int offset) {
-    int relativeIndex = relativeFirstIndex + offset;
-    return relativeIndex < capacity ? relativeIndex : relativeIndex - capacity;
+  private int getSampleIndex(int offset) {
+    return absoluteFirstIndex + offset;
   }
 
   /** A holder for sample metadata not held by {@link DecoderInputBuffer}. */
@@ -29,7 +29,10 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.util.XmlPullParserUtil;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -74,11 +77,6 @@ public final class TtmlDecoder extends SimpleSubtitleDecoder {
   private static final String ATTR_REGION = "region";
   private static final String ATTR_IMAGE = "backgroundImage";
 
-  private static final Pattern CLOCK_TIME =
-      Pattern.compile("^([0-9][0-9]+):([0-9][0-9]):([0-9][0-9])"
-          + "(?:(\\.[0-9]+)|:([0-9][0-9])(?:\\.([0-9]+))?)?$");
-  private static final Pattern OFFSET_TIME =
-      Pattern.compile("^([0-9]+(?:\\.[0-9]+)?)(h|m|s|ms|f|t)$");
   private static final Pattern FONT_SIZE = Pattern.compile("^(([0-9]*.)?[0-9]+)(px|em|%)$");
   private static final Pattern PERCENTAGE_COORDINATES =
       Pattern.compile("^(\\d+\\.?\\d*?)% (\\d+\\.?\\d*?)%$");
@@ -88,15 +86,44 @@ public final class TtmlDecoder extends SimpleSubtitleDecoder {
 
   private static final int DEFAULT_FRAME_RATE = 30;
 
+  /**
+   * The maximum number of digits in a decimal number that is parsed without allocating, such that
+   * the number and the power of ten dividing it are exactly representable as doubles.
+   */
+  private static final int MAX_FAST_DECIMAL_DIGITS = 15;
+  /** The maximum number of digits in an integer that is parsed without allocating. */
+  private static final int MAX_FAST_INTEGER_DIGITS = 18;
+  private static final byte[] HEAD_TAG_BYTES = Util.getUtf8Bytes(TtmlNode.TAG_HEAD);
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+  };
+
   private static final FrameAndTickRate DEFAULT_FRAME_AND_TICK_RATE =
       new FrameAndTickRate(DEFAULT_FRAME_RATE, 1, 1);
   private static final CellResolution DEFAULT_CELL_RESOLUTION =
       new CellResolution(/* columns= */ 32, /* rows= */ 15);
 
   private final XmlPullParserFactory xmlParserFactory;
+  private final boolean enableHeadCaching;
+
+  @Nullable private byte[] cachedHeadPrefix;
+  @Nullable private Head cachedHead;
 
   public TtmlDecoder() {
+    this(/* enableHeadCaching= */ false);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param enableHeadCaching Whether to reuse the styles, regions and images parsed from the head
+   *     of the previous document if a document is identical to it up to the end of its head, as is
+   *     typically the case for consecutive segments of a stream. The head of such a document is not
+   *     parsed again.
+   */
+  public TtmlDecoder(boolean enableHeadCaching) {
     super("TtmlDecoder");
+    this.enableHeadCaching = enableHeadCaching;
     try {
       xmlParserFactory = XmlPullParserFactory.newInstance();
       xmlParserFactory.setNamespaceAware(true);
@@ -110,11 +137,28 @@ public final class TtmlDecoder extends SimpleSubtitleDecoder {
       throws SubtitleDecoderException {
     try {
       XmlPullParser xmlParser = xmlParserFactory.newPullParser();
-      Map<String, TtmlStyle> globalStyles = new HashMap<>();
-      Map<String, TtmlRegion> regionMap = new HashMap<>();
-      Map<String, String> imageMap = new HashMap<>();
-      regionMap.put(TtmlNode.ANONYMOUS_REGION_ID, new TtmlRegion(TtmlNode.ANONYMOUS_REGION_ID));
-      ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes, 0, length);
+      InputStream inputStream = new ByteArrayInputStream(bytes, 0, length);
+      int headStart = enableHeadCaching ? findHeadStart(bytes, length) : C.INDEX_UNSET;
+      int headEnd =
+          headStart != C.INDEX_UNSET ? findHeadEnd(bytes, headStart, length) : C.INDEX_UNSET;
+      Head head;
+      boolean isHeadCached = false;
+      if (headEnd != C.INDEX_UNSET
+          && cachedHead != null
+          && startsWith(bytes, headEnd, Assertions.checkNotNull(cachedHeadPrefix))) {
+        // Parse the document without its head, which is the same as that of the previous document.
+        head = cachedHead;
+        isHeadCached = true;
+        inputStream =
+            new SequenceInputStream(
+                new ByteArrayInputStream(bytes, 0, headStart),
+                new ByteArrayInputStream(bytes, headEnd, length - headEnd));
+      } else {
+        head = new Head();
+      }
+      Map<String, TtmlStyle> globalStyles = head.globalStyles;
+      Map<String, TtmlRegion> regionMap = head.regionMap;
+      Map<String, String> imageMap = head.imageMap;
       xmlParser.setInput(inputStream, null);
       @Nullable TtmlSubtitle ttmlSubtitle = null;
       ArrayDeque<TtmlNode> nodeStack = new ArrayDeque<>();
@@ -172,6 +216,10 @@ public final class TtmlDecoder extends SimpleSubtitleDecoder {
         eventType = xmlParser.getEventType();
       }
       if (ttmlSubtitle != null) {
+        if (headEnd != C.INDEX_UNSET && !isHeadCached) {
+          cachedHeadPrefix = Arrays.copyOf(bytes, headEnd);
+          cachedHead = head;
+        }
         return ttmlSubtitle;
       } else {
         throw new SubtitleDecoderException("No TTML subtitles found");
@@ -721,56 +769,249 @@ public final class TtmlDecoder extends SimpleSubtitleDecoder {
    */
   private static long parseTimeExpression(String time, FrameAndTickRate frameAndTickRate)
       throws SubtitleDecoderException {
-    Matcher matcher = CLOCK_TIME.matcher(time);
-    if (matcher.matches()) {
-      String hours = Assertions.checkNotNull(matcher.group(1));
-      double durationSeconds = Long.parseLong(hours) * 3600;
-      String minutes = Assertions.checkNotNull(matcher.group(2));
-      durationSeconds += Long.parseLong(minutes) * 60;
-      String seconds = Assertions.checkNotNull(matcher.group(3));
-      durationSeconds += Long.parseLong(seconds);
-      @Nullable String fraction = matcher.group(4);
-      durationSeconds += (fraction != null) ? Double.parseDouble(fraction) : 0;
-      @Nullable String frames = matcher.group(5);
-      durationSeconds += (frames != null)
-          ? Long.parseLong(frames) / frameAndTickRate.effectiveFrameRate : 0;
-      @Nullable String subframes = matcher.group(6);
-      durationSeconds += (subframes != null)
-          ? ((double) Long.parseLong(subframes)) / frameAndTickRate.subFrameRate
-              / frameAndTickRate.effectiveFrameRate
-          : 0;
-      return (long) (durationSeconds * C.MICROS_PER_SECOND);
-    }
-    matcher = OFFSET_TIME.matcher(time);
-    if (matcher.matches()) {
-      String timeValue = Assertions.checkNotNull(matcher.group(1));
-      double offsetSeconds = Double.parseDouble(timeValue);
-      String unit = Assertions.checkNotNull(matcher.group(2));
-      switch (unit) {
-        case "h":
-          offsetSeconds *= 3600;
-          break;
-        case "m":
-          offsetSeconds *= 60;
-          break;
-        case "s":
-          // Do nothing.
-          break;
-        case "ms":
-          offsetSeconds /= 1000;
-          break;
-        case "f":
-          offsetSeconds /= frameAndTickRate.effectiveFrameRate;
-          break;
-        case "t":
-          offsetSeconds /= frameAndTickRate.tickRate;
-          break;
+    // Time expressions are parsed by hand rather than with regular expressions, because most nodes
+    // of a document have at least two of them.
+    int length = time.length();
+    int integerEnd = skipDigits(time, 0);
+    if (integerEnd >= 2
+        && integerEnd + 6 <= length
+        && time.charAt(integerEnd) == ':'
+        && skipDigits(time, integerEnd + 1) == integerEnd + 3
+        && time.charAt(integerEnd + 3) == ':'
+        && skipDigits(time, integerEnd + 4) == integerEnd + 6) {
+      // Clock time: hours:minutes:seconds, optionally followed by a fraction or by frames.
+      double durationSeconds = parseLong(time, 0, integerEnd) * 3600;
+      durationSeconds += parseLong(time, integerEnd + 1, integerEnd + 3) * 60;
+      durationSeconds += parseLong(time, integerEnd + 4, integerEnd + 6);
+      int position = integerEnd + 6;
+      if (position == length) {
+        return (long) (durationSeconds * C.MICROS_PER_SECOND);
+      } else if (time.charAt(position) == '.') {
+        if (position + 1 < length && skipDigits(time, position + 1) == length) {
+          durationSeconds += parseDecimal(time, position, length);
+          return (long) (durationSeconds * C.MICROS_PER_SECOND);
+        }
+      } else if (time.charAt(position) == ':'
+          && skipDigits(time, position + 1) >= position + 3) {
+        durationSeconds +=
+            parseLong(time, position + 1, position + 3) / frameAndTickRate.effectiveFrameRate;
+        position += 3;
+        if (position == length) {
+          return (long) (durationSeconds * C.MICROS_PER_SECOND);
+        } else if (time.charAt(position) == '.'
+            && position + 1 < length
+            && skipDigits(time, position + 1) == length) {
+          durationSeconds +=
+              ((double) parseLong(time, position + 1, length))
+                  / frameAndTickRate.subFrameRate
+                  / frameAndTickRate.effectiveFrameRate;
+          return (long) (durationSeconds * C.MICROS_PER_SECOND);
+        }
+      }
+    } else if (integerEnd > 0 && integerEnd < length) {
+      // Offset time: a decimal number followed by a metric.
+      int numberEnd = integerEnd;
+      if (time.charAt(integerEnd) == '.') {
+        numberEnd = skipDigits(time, integerEnd + 1);
+        if (numberEnd == integerEnd + 1) {
+          numberEnd = C.INDEX_UNSET;
+        }
+      }
+      int metricLength = length - numberEnd;
+      if (numberEnd != C.INDEX_UNSET && (metricLength == 1 || metricLength == 2)) {
+        double offsetSeconds = parseDecimal(time, 0, numberEnd);
+        char metric = time.charAt(numberEnd);
+        if (metricLength == 2) {
+          if (metric == 'm' && time.charAt(numberEnd + 1) == 's') {
+            return (long) (offsetSeconds / 1000 * C.MICROS_PER_SECOND);
+          }
+        } else if (metric == 'h') {
+          return (long) (offsetSeconds * 3600 * C.MICROS_PER_SECOND);
+        } else if (metric == 'm') {
+          return (long) (offsetSeconds * 60 * C.MICROS_PER_SECOND);
+        } else if (metric == 's') {
+          return (long) (offsetSeconds * C.MICROS_PER_SECOND);
+        } else if (metric == 'f') {
+          return (long) (offsetSeconds / frameAndTickRate.effectiveFrameRate * C.MICROS_PER_SECOND);
+        } else if (metric == 't') {
+          return (long) (offsetSeconds / frameAndTickRate.tickRate * C.MICROS_PER_SECOND);
+        }
       }
-      return (long) (offsetSeconds * C.MICROS_PER_SECOND);
     }
     throw new SubtitleDecoderException("Malformed time expression: " + time);
   }
 
+  /** Returns the index of the first character at or after {@code position} that isn't a digit. */
+  private static int skipDigits(String string, int position) {
+    int length = string.length();
+    while (position < length && isDigit(string.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Parses the digits of {@code string} between {@code start} and {@code end}, returning the same
+   * value as {@link Long#parseLong(String)}.
+   */
+  private static long parseLong(String string, int start, int end) {
+    if (end - start > MAX_FAST_INTEGER_DIGITS) {
+      return Long.parseLong(string.substring(start, end));
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      value = value * 10 + (string.charAt(i) - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Parses the decimal number of {@code string} between {@code start} and {@code end}, which
+   * consists of digits and at most one point, returning the same value as {@link
+   * Double#parseDouble(String)}.
+   */
+  private static double parseDecimal(String string, int start, int end) {
+    if (end - start > MAX_FAST_DECIMAL_DIGITS) {
+      return Double.parseDouble(string.substring(start, end));
+    }
+    long digits = 0;
+    int fractionDigitCount = 0;
+    boolean isFraction = false;
+    for (int i = start; i < end; i++) {
+      char c = string.charAt(i);
+      if (c == '.') {
+        isFraction = true;
+      } else {
+        digits = digits * 10 + (c - '0');
+        if (isFraction) {
+          fractionDigitCount++;
+        }
+      }
+    }
+    // The digits and the power of ten are exact, so the quotient is correctly rounded.
+    return digits / POWERS_OF_TEN[fractionDigitCount];
+  }
+
+  /**
+   * Returns the index of the start of the head element in a document, or {@link C#INDEX_UNSET} if
+   * it can't be determined by a simple scan of the document's bytes.
+   */
+  private static int findHeadStart(byte[] bytes, int length) {
+    int elementCount = 0;
+    int position = indexOf(bytes, 0, length, '<');
+    while (position != C.INDEX_UNSET && position + 1 < length) {
+      byte next = bytes[position + 1];
+      if (next == '!') {
+        // Comments may contain tags, and other declarations aren't expected before the head.
+        return C.INDEX_UNSET;
+      } else if (next == '?') {
+        // Skip the processing instruction.
+        position = indexOf(bytes, position + 1, length, '>');
+        if (position == C.INDEX_UNSET) {
+          return C.INDEX_UNSET;
+        }
+      } else if (isHeadTag(bytes, position + 1, length)) {
+        return position;
+      } else if (++elementCount > 1) {
+        // The head must be the first child of the root element.
+        return C.INDEX_UNSET;
+      }
+      position = indexOf(bytes, position + 1, length, '<');
+    }
+    return C.INDEX_UNSET;
+  }
+
+  /**
+   * Returns the index following the end tag of the head element that starts at {@code headStart},
+   * or {@link C#INDEX_UNSET} if it can't be determined by a simple scan of the document's bytes.
+   */
+  private static int findHeadEnd(byte[] bytes, int headStart, int length) {
+    int nameEnd = headStart + 1;
+    while (nameEnd < length && !isNameEnd(bytes[nameEnd])) {
+      nameEnd++;
+    }
+    int nameLength = nameEnd - headStart - 1;
+    int position = indexOf(bytes, nameEnd, length, '<');
+    while (position != C.INDEX_UNSET && position + 1 < length) {
+      if (bytes[position + 1] == '!') {
+        // Comments and CDATA sections may contain tags.
+        return C.INDEX_UNSET;
+      }
+      int tagNameEnd = position + 2 + nameLength;
+      if (bytes[position + 1] == '/'
+          && tagNameEnd < length
+          && regionMatches(bytes, position + 2, bytes, headStart + 1, nameLength)
+          && isNameEnd(bytes[tagNameEnd])) {
+        int tagEnd = indexOf(bytes, tagNameEnd, length, '>');
+        return tagEnd == C.INDEX_UNSET ? C.INDEX_UNSET : tagEnd + 1;
+      }
+      position = indexOf(bytes, position + 1, length, '<');
+    }
+    return C.INDEX_UNSET;
+  }
+
+  /** Returns whether the tag name starting at {@code position} has a local name of head. */
+  private static boolean isHeadTag(byte[] bytes, int position, int length) {
+    int localNameStart = position;
+    int nameEnd = position;
+    while (nameEnd < length && !isNameEnd(bytes[nameEnd])) {
+      if (bytes[nameEnd] == ':') {
+        localNameStart = nameEnd + 1;
+      }
+      nameEnd++;
+    }
+    return nameEnd - localNameStart == HEAD_TAG_BYTES.length
+        && nameEnd < length
+        && bytes[nameEnd] != '/'
+        && regionMatches(bytes, localNameStart, HEAD_TAG_BYTES, 0, HEAD_TAG_BYTES.length);
+  }
+
+  private static boolean isNameEnd(byte b) {
+    return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+
+  private static int indexOf(byte[] bytes, int position, int length, char c) {
+    for (int i = position; i < length; i++) {
+      if (bytes[i] == c) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  private static boolean regionMatches(
+      byte[] bytes, int position, byte[] otherBytes, int otherPosition, int length) {
+    for (int i = 0; i < length; i++) {
+      if (bytes[position + i] != otherBytes[otherPosition + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether the first {@code length} bytes of {@code bytes} are {@code prefix}. */
+  private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+    return length == prefix.length && regionMatches(bytes, 0, prefix, 0, length);
+  }
+
+  /** The styles, regions and images declared in the head of a document. */
+  private static final class Head {
+    final Map<String, TtmlStyle> globalStyles;
+    final Map<String, TtmlRegion> regionMap;
+    final Map<String, String> imageMap;
+
+    Head() {
+      globalStyles = new HashMap<>();
+      regionMap = new HashMap<>();
+      imageMap = new HashMap<>();
+      regionMap.put(TtmlNode.ANONYMOUS_REGION_ID, new TtmlRegion(TtmlNode.ANONYMOUS_REGION_ID));
+    }
+  }
+
   private static final class FrameAndTickRate {
     final float effectiveFrameRate;
     final int subFrameRate;
@@ -15,8 +15,12 @@
  */
 package com.google.android.exoplayer2.upstream;
 
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+
 /**
- * An allocation within a byte array.
+ * An allocation within a byte array, or within a direct {@link ByteBuffer}.
  * <p>
  * The allocation's length is obtained by calling {@link Allocator#getIndividualAllocationLength()}
  * on the {@link Allocator} from which it was obtained.
@@ -26,6 +30,9 @@ public final class Allocation {
   /**
    * The array containing the allocated space. The allocated space might not be at the start of the
    * array, and so {@link #offset} must be used when indexing into it.
+   * <p>
+   * If the allocation is backed by a {@link #buffer} that does not expose a backing array, this is
+   * an empty array and the allocated space must be accessed through {@link #buffer}.
    */
   public final byte[] data;
 
@@ -34,6 +41,21 @@ public final class Allocation {
    */
   public final int offset;
 
+  /**
+   * The direct buffer containing the allocated space from position zero, or null if the allocation
+   * is backed only by {@link #data}. If the buffer exposes a backing array, {@link #data} and
+   * {@link #offset} refer to the same memory. The buffer's position and limit are not preserved, so
+   * threads that may access the allocation at the same time should each use their own {@link
+   * ByteBuffer#duplicate() duplicate} of the buffer.
+   */
+  @Nullable public final ByteBuffer buffer;
+
+  /**
+   * The next allocation in the pool of free allocations of a {@link ConcurrentAllocator}, which
+   * links its pooled allocations through this field so that releasing them doesn't allocate.
+   */
+  @Nullable /* package */ Allocation nextInPool;
+
   /**
    * @param data The array containing the allocated space.
    * @param offset The offset of the allocated space in {@code data}.
@@ -41,6 +63,30 @@ public final class Allocation {
   public Allocation(byte[] data, int offset) {
     this.data = data;
     this.offset = offset;
+    buffer = null;
+  }
+
+  /**
+   * @param buffer The direct buffer containing the allocated space from position zero.
+   */
+  public Allocation(ByteBuffer buffer) {
+    this.buffer = buffer;
+    if (buffer.hasArray()) {
+      // On Android, direct buffers are backed by non-movable arrays that can be accessed directly.
+      data = buffer.array();
+      offset = buffer.arrayOffset();
+    } else {
+      data = Util.EMPTY_BYTE_ARRAY;
+      offset = 0;
+    }
+  }
+
+  /**
+   * Returns whether the allocated space can be accessed through {@link #data}. If false, it must
+   * be accessed through {@link #buffer}.
+   */
+  public boolean hasArray() {
+    return buffer == null || buffer.hasArray();
   }
 
 }
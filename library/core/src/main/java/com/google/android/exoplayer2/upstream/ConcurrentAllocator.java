@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.MetricsCollector;
+import com.google.android.exoplayer2.util.MetricsUtil;
+import com.google.android.exoplayer2.util.Util;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * An {@link Allocator} that does not block when allocations are released by multiple threads
+ * concurrently, and rarely blocks when they're obtained.
+ *
+ * <p>Each thread has a small cache of free {@link Allocation}s, which it uses before falling back
+ * to a pool shared by all threads. Allocations are released to the pool without locking, and only
+ * threads taking allocations from the pool synchronize with each other. This avoids contention on
+ * the lock of {@link DefaultAllocator} when several loader threads write sample data while playback
+ * threads release it, for example when running multiple players or preloading sources
+ * concurrently.
+ *
+ * <p>Trimming and the target buffer size behave as for {@link DefaultAllocator}. Free allocations
+ * held in the caches of other threads are returned to the shared pool when the allocator is
+ * trimmed.
+ */
+public final class ConcurrentAllocator implements TargetBufferSizeAllocator {
+
+  /** The default maximum number of free allocations cached by each thread. */
+  public static final int DEFAULT_THREAD_CACHE_SIZE = 4;
+
+  private final boolean trimOnReset;
+  private final int individualAllocationSize;
+  private final int threadCacheSize;
+  @Nullable private final byte[] initialAllocationBlock;
+  private final AtomicInteger allocatedCount;
+  private final AtomicInteger pooledCount;
+  private final AtomicReference<@NullableType Allocation> poolHead;
+  private final CopyOnWriteArrayList<ThreadCache> threadCaches;
+  private final ThreadLocal<ThreadCache> threadCache;
+
+  private volatile int targetBufferSize;
+
+  /**
+   * Constructs an instance without creating any {@link Allocation}s up front.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   */
+  public ConcurrentAllocator(boolean trimOnReset, int individualAllocationSize) {
+    this(
+        trimOnReset,
+        individualAllocationSize,
+        /* initialAllocationCount= */ 0,
+        DEFAULT_THREAD_CACHE_SIZE);
+  }
+
+  /**
+   * Constructs an instance with some {@link Allocation}s created up front.
+   *
+   * <p>Note: {@link Allocation}s created up front will never be discarded by {@link #trim()}.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param initialAllocationCount The number of allocations to create up front.
+   * @param threadCacheSize The maximum number of free allocations cached by each thread. Zero
+   *     disables the per-thread caches.
+   */
+  public ConcurrentAllocator(
+      boolean trimOnReset,
+      int individualAllocationSize,
+      int initialAllocationCount,
+      int threadCacheSize) {
+    Assertions.checkArgument(individualAllocationSize > 0);
+    Assertions.checkArgument(initialAllocationCount >= 0);
+    Assertions.checkArgument(threadCacheSize >= 0);
+    this.trimOnReset = trimOnReset;
+    this.individualAllocationSize = individualAllocationSize;
+    this.threadCacheSize = threadCacheSize;
+    allocatedCount = new AtomicInteger();
+    pooledCount = new AtomicInteger();
+    poolHead = new AtomicReference<>();
+    threadCaches = new CopyOnWriteArrayList<>();
+    threadCache =
+        new ThreadLocal<ThreadCache>() {
+          @Override
+          protected ThreadCache initialValue() {
+            ThreadCache cache = new ThreadCache(Thread.currentThread(), threadCacheSize);
+            threadCaches.add(cache);
+            return cache;
+          }
+        };
+    if (initialAllocationCount > 0) {
+      initialAllocationBlock = new byte[initialAllocationCount * individualAllocationSize];
+      for (int i = 0; i < initialAllocationCount; i++) {
+        int allocationOffset = i * individualAllocationSize;
+        pushToPool(new Allocation(initialAllocationBlock, allocationOffset));
+      }
+    } else {
+      initialAllocationBlock = null;
+    }
+  }
+
+  @Override
+  public void reset() {
+    if (trimOnReset) {
+      setTargetBufferSize(0);
+    }
+  }
+
+  @Override
+  public void setTargetBufferSize(int targetBufferSize) {
+    boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
+    this.targetBufferSize = targetBufferSize;
+    if (targetBufferSizeReduced) {
+      trim();
+    }
+  }
+
+  @Override
+  public Allocation allocate() {
+    int currentAllocatedCount = allocatedCount.incrementAndGet();
+    @Nullable Allocation allocation = threadCacheSize > 0 ? threadCache.get().poll() : null;
+    if (allocation == null) {
+      allocation = popFromPool();
+    }
+    if (allocation == null) {
+      allocation = new Allocation(new byte[individualAllocationSize], 0);
+    }
+    MetricsCollector metrics = MetricsUtil.getCollector();
+    if (metrics.isEnabled()) {
+      metrics.incrementCounter(MetricsCollector.COUNTER_ALLOCATIONS, /* delta= */ 1);
+      metrics.recordValue(
+          MetricsCollector.HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES,
+          (long) currentAllocatedCount * individualAllocationSize);
+    }
+    return allocation;
+  }
+
+  @Override
+  public void release(Allocation allocation) {
+    releaseInternal(allocation);
+    allocatedCount.decrementAndGet();
+  }
+
+  @Override
+  public void release(Allocation[] allocations) {
+    for (Allocation allocation : allocations) {
+      releaseInternal(allocation);
+    }
+    allocatedCount.addAndGet(-allocations.length);
+  }
+
+  @Override
+  public void trim() {
+    // Return free allocations cached by all threads to the pool, so that they can be discarded.
+    for (ThreadCache cache : threadCaches) {
+      cache.drainTo(this);
+      if (!cache.isOwnerAlive()) {
+        threadCaches.remove(cache);
+      }
+    }
+
+    int targetAllocationCount = Util.ceilDivide(targetBufferSize, individualAllocationSize);
+    int targetPooledCount = Math.max(0, targetAllocationCount - allocatedCount.get());
+    int discardCount = pooledCount.get() - targetPooledCount;
+    if (discardCount <= 0) {
+      // We're already at or below the target.
+      return;
+    }
+
+    // Discard allocations beyond the target, holding onto any that are backed by the initial block.
+    @Nullable ArrayList<Allocation> retainedAllocations = null;
+    for (int i = 0; i < discardCount; i++) {
+      @Nullable Allocation allocation = popFromPool();
+      if (allocation == null) {
+        break;
+      }
+      if (allocation.data == initialAllocationBlock) {
+        if (retainedAllocations == null) {
+          retainedAllocations = new ArrayList<>();
+        }
+        retainedAllocations.add(allocation);
+      }
+    }
+    if (retainedAllocations != null) {
+      for (int i = 0; i < retainedAllocations.size(); i++) {
+        pushToPool(retainedAllocations.get(i));
+      }
+    }
+  }
+
+  @Override
+  public int getTotalBytesAllocated() {
+    return allocatedCount.get() * individualAllocationSize;
+  }
+
+  @Override
+  public int getIndividualAllocationLength() {
+    return individualAllocationSize;
+  }
+
+  private void releaseInternal(Allocation allocation) {
+    if (threadCacheSize == 0 || !threadCache.get().offer(allocation)) {
+      pushToPool(allocation);
+    }
+  }
+
+  private void pushToPool(Allocation allocation) {
+    do {
+      allocation.nextInPool = poolHead.get();
+    } while (!poolHead.compareAndSet(allocation.nextInPool, allocation));
+    pooledCount.incrementAndGet();
+  }
+
+  // Pushes don't block, but pops are serialized. An allocation is pushed again after it's been
+  // popped, so if pops ran concurrently, one could pop and push back the head read by another with
+  // a different successor, and the other's compare-and-set would install a stale successor.
+  @Nullable
+  private synchronized Allocation popFromPool() {
+    while (true) {
+      @Nullable Allocation head = poolHead.get();
+      if (head == null) {
+        return null;
+      }
+      if (poolHead.compareAndSet(head, head.nextInPool)) {
+        head.nextInPool = null;
+        pooledCount.decrementAndGet();
+        return head;
+      }
+    }
+  }
+
+  /**
+   * Free allocations cached by a single thread. The owning thread polls and offers allocations, and
+   * other threads may drain the cache when trimming, so slots are accessed atomically.
+   */
+  private static final class ThreadCache {
+
+    private final WeakReference<Thread> owner;
+    private final AtomicReferenceArray<@NullableType Allocation> slots;
+
+    public ThreadCache(Thread owner, int size) {
+      this.owner = new WeakReference<>(owner);
+      slots = new AtomicReferenceArray<>(size);
+    }
+
+    @Nullable
+    public Allocation poll() {
+      for (int i = slots.length() - 1; i >= 0; i--) {
+        if (slots.get(i) != null) {
+          @Nullable Allocation allocation = slots.getAndSet(i, null);
+          if (allocation != null) {
+            return allocation;
+          }
+        }
+      }
+      return null;
+    }
+
+    public boolean offer(Allocation allocation) {
+      for (int i = 0; i < slots.length(); i++) {
+        if (slots.get(i) == null && slots.compareAndSet(i, null, allocation)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public void drainTo(ConcurrentAllocator allocator) {
+      for (int i = 0; i < slots.length(); i++) {
+        @Nullable Allocation allocation = slots.getAndSet(i, null);
+        if (allocation != null) {
+          allocator.pushToPool(allocation);
+        }
+      }
+    }
+
+    public boolean isOwnerAlive() {
+      @Nullable Thread ownerThread = owner.get();
+      return ownerThread != null && ownerThread.isAlive();
+    }
+  }
+}
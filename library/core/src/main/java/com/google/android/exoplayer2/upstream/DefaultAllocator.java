@@ -17,13 +17,18 @@ package com.google.android.exoplayer2.upstream;
 
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.MetricsCollector;
+import com.google.android.exoplayer2.util.MetricsUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.util.Arrays;
 
 /**
  * Default implementation of {@link Allocator}.
+ *
+ * <p>All operations synchronize on the allocator instance. {@link ConcurrentAllocator} may perform
+ * better when allocations are obtained and released by several threads concurrently.
  */
-public final class DefaultAllocator implements Allocator {
+public final class DefaultAllocator implements TargetBufferSizeAllocator {
 
   private static final int AVAILABLE_EXTRA_CAPACITY = 100;
 
@@ -78,12 +83,14 @@ public final class DefaultAllocator implements Allocator {
     singleAllocationReleaseHolder = new Allocation[1];
   }
 
+  @Override
   public synchronized void reset() {
     if (trimOnReset) {
       setTargetBufferSize(0);
     }
   }
 
+  @Override
   public synchronized void setTargetBufferSize(int targetBufferSize) {
     boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
     this.targetBufferSize = targetBufferSize;
@@ -102,6 +109,13 @@ public final class DefaultAllocator implements Allocator {
     } else {
       allocation = new Allocation(new byte[individualAllocationSize], 0);
     }
+    MetricsCollector metrics = MetricsUtil.getCollector();
+    if (metrics.isEnabled()) {
+      metrics.incrementCounter(MetricsCollector.COUNTER_ALLOCATIONS, /* delta= */ 1);
+      metrics.recordValue(
+          MetricsCollector.HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES,
+          (long) allocatedCount * individualAllocationSize);
+    }
     return allocation;
   }
 
@@ -25,16 +25,30 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.MetricsCollector;
+import com.google.android.exoplayer2.util.MetricsUtil;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages the background loading of {@link Loadable}s.
+ *
+ * <p>By default each loader loads on its own thread. Loaders can instead share the threads of an
+ * {@link Executor}, such as one created by {@link #createSharedExecutor(String, int)}, which
+ * reduces the number of threads used by players with many loaders. The loads and release callbacks
+ * of a single loader are always run one at a time, in order.
  */
 public final class Loader implements LoaderErrorThrower {
 
@@ -188,7 +202,12 @@ public final class Loader implements LoaderErrorThrower {
     }
   }
 
-  private final ExecutorService downloadExecutorService;
+  /** The time for which idle threads of a {@link #createSharedExecutor shared executor} wait. */
+  private static final long SHARED_EXECUTOR_KEEP_ALIVE_MS = 10_000;
+
+  private final Executor downloadExecutor;
+  @Nullable private final ExecutorService downloadExecutorService;
+  @Nullable private final BlockingQueue<Runnable> sharedExecutorQueue;
 
   @Nullable private LoadTask<? extends Loadable> currentTask;
   @Nullable private IOException fatalError;
@@ -198,6 +217,49 @@ public final class Loader implements LoaderErrorThrower {
    */
   public Loader(String threadName) {
     this.downloadExecutorService = Util.newSingleThreadExecutor(threadName);
+    this.downloadExecutor = downloadExecutorService;
+    this.sharedExecutorQueue = null;
+  }
+
+  /**
+   * Creates a loader that loads on the threads of an {@link Executor}, which may be shared with
+   * other loaders. The loads of this loader are run one at a time, in order.
+   *
+   * <p>Loads block the thread on which they run, so if the executor has a bounded number of
+   * threads, it should have enough threads for all of the loads that are expected to be in progress
+   * at the same time. Otherwise loads wait until a thread becomes available.
+   *
+   * @param executor The {@link Executor} on which to load. The executor isn't shut down when the
+   *     loader is released.
+   */
+  public Loader(Executor executor) {
+    this.downloadExecutor = new SerialExecutor(executor);
+    this.downloadExecutorService = null;
+    this.sharedExecutorQueue =
+        executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue() : null;
+  }
+
+  /**
+   * Creates an {@link ExecutorService} that can be shared by several loaders. The executor runs up
+   * to {@code maxThreadCount} loads at the same time, creating threads as they're needed. Threads
+   * stop after they've been idle for a while.
+   *
+   * @param threadName A name for the executor's threads.
+   * @param maxThreadCount The maximum number of threads.
+   * @return The {@link ExecutorService}.
+   */
+  public static ExecutorService createSharedExecutor(String threadName, int maxThreadCount) {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            /* corePoolSize= */ maxThreadCount,
+            maxThreadCount,
+            SHARED_EXECUTOR_KEEP_ALIVE_MS,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> new Thread(runnable, threadName + "-" + threadCount.incrementAndGet()));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   /**
@@ -244,6 +306,8 @@ public final class Loader implements LoaderErrorThrower {
       T loadable, Callback<T> callback, int defaultMinRetryCount) {
     Looper looper = Assertions.checkStateNotNull(Looper.myLooper());
     fatalError = null;
+    MetricsUtil.getCollector()
+        .incrementCounter(MetricsCollector.COUNTER_LOADS_STARTED, /* delta= */ 1);
     long startTimeMs = SystemClock.elapsedRealtime();
     new LoadTask<>(looper, loadable, callback, defaultMinRetryCount, startTimeMs).start(0);
     return startTimeMs;
@@ -279,9 +343,11 @@ public final class Loader implements LoaderErrorThrower {
       currentTask.cancel(true);
     }
     if (callback != null) {
-      downloadExecutorService.execute(new ReleaseTask(callback));
+      downloadExecutor.execute(new ReleaseTask(callback));
+    }
+    if (downloadExecutorService != null) {
+      downloadExecutorService.shutdown();
     }
-    downloadExecutorService.shutdown();
   }
 
   // LoaderErrorThrower implementation.
@@ -322,6 +388,7 @@ public final class Loader implements LoaderErrorThrower {
     @Nullable private Loader.Callback<T> callback;
     @Nullable private IOException currentError;
     private int errorCount;
+    private long executeTimeNs;
 
     @Nullable private volatile Thread executorThread;
     private volatile boolean canceled;
@@ -363,9 +430,11 @@ public final class Loader implements LoaderErrorThrower {
       } else {
         canceled = true;
         loadable.cancelLoad();
-        @Nullable Thread executorThread = this.executorThread;
-        if (executorThread != null) {
-          executorThread.interrupt();
+        synchronized (this) {
+          @Nullable Thread executorThread = this.executorThread;
+          if (executorThread != null) {
+            executorThread.interrupt();
+          }
         }
       }
       if (released) {
@@ -384,13 +453,31 @@ public final class Loader implements LoaderErrorThrower {
     @Override
     public void run() {
       try {
-        executorThread = Thread.currentThread();
-        if (!canceled) {
+        boolean shouldLoad;
+        synchronized (this) {
+          shouldLoad = !canceled;
+          if (shouldLoad) {
+            executorThread = Thread.currentThread();
+          }
+        }
+        MetricsCollector metrics = MetricsUtil.getCollector();
+        if (executeTimeNs != C.TIME_UNSET && metrics.isEnabled()) {
+          metrics.recordValue(
+              MetricsCollector.HISTOGRAM_LOADER_QUEUE_TIME_US,
+              (System.nanoTime() - executeTimeNs) / 1000);
+        }
+        if (shouldLoad) {
           TraceUtil.beginSection("load:" + loadable.getClass().getSimpleName());
           try {
             loadable.load();
           } finally {
             TraceUtil.endSection();
+            synchronized (this) {
+              executorThread = null;
+              // Clear the interrupted flag if cancelation set it, so that it doesn't leak into the
+              // next task run on this thread.
+              Thread.interrupted();
+            }
           }
         }
         if (!released) {
@@ -490,7 +577,18 @@ public final class Loader implements LoaderErrorThrower {
 
     private void execute() {
       currentError = null;
-      downloadExecutorService.execute(Assertions.checkNotNull(currentTask));
+      MetricsCollector metrics = MetricsUtil.getCollector();
+      if (metrics.isEnabled()) {
+        @Nullable BlockingQueue<Runnable> sharedExecutorQueue = Loader.this.sharedExecutorQueue;
+        if (sharedExecutorQueue != null) {
+          metrics.recordValue(
+              MetricsCollector.HISTOGRAM_LOADER_QUEUE_DEPTH, sharedExecutorQueue.size());
+        }
+        executeTimeNs = System.nanoTime();
+      } else {
+        executeTimeNs = C.TIME_UNSET;
+      }
+      downloadExecutor.execute(Assertions.checkNotNull(currentTask));
     }
 
     private void finish() {
@@ -518,4 +616,40 @@ public final class Loader implements LoaderErrorThrower {
 
   }
 
+  /** Runs tasks one at a time, in the order in which they're submitted, on another executor. */
+  private static final class SerialExecutor implements Executor {
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks;
+
+    @Nullable private Runnable activeTask;
+
+    public SerialExecutor(Executor executor) {
+      this.executor = executor;
+      tasks = new ArrayDeque<>();
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+      tasks.add(
+          () -> {
+            try {
+              task.run();
+            } finally {
+              scheduleNext();
+            }
+          });
+      if (activeTask == null) {
+        scheduleNext();
+      }
+    }
+
+    private synchronized void scheduleNext() {
+      activeTask = tasks.poll();
+      if (activeTask != null) {
+        executor.execute(activeTask);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory LRU cache of parsed manifests, keyed by the {@link Uri} from which they were loaded.
+ * A single instance can be shared by media sources that load the same manifests, so that they
+ * reuse each other's parsed manifests rather than loading and parsing them again.
+ *
+ * <p>Each manifest is cached for a time to live determined from the manifest itself, which is
+ * capped at a maximum set on the cache. Cached manifests must be immutable. Media sources that use
+ * different parsers for the same {@link Uri} must not share an instance. Access to this class is
+ * thread-safe.
+ */
+public final class ManifestCache {
+
+  /**
+   * Determines for how long a parsed manifest may be served from the cache.
+   *
+   * @param <T> The type of the manifest.
+   */
+  public interface TimeToLiveProvider<T> {
+
+    /**
+     * Returns the time for which {@code manifest} may be served from the cache, in milliseconds.
+     *
+     * @param manifest The manifest.
+     * @return The time to live in milliseconds, 0 if the manifest must not be cached, or {@link
+     *     C#TIME_UNSET} if it's limited only by the maximum time to live of the cache.
+     */
+    long getTimeToLiveMs(T manifest);
+  }
+
+  /** A cached manifest. */
+  public static final class Entry {
+
+    /** The {@link Uri} from which the manifest was read, after any redirection. */
+    public final Uri uri;
+    /** The parsed manifest. */
+    public final Object manifest;
+
+    private final long expiryTimeMs;
+
+    private Entry(Uri uri, Object manifest, long expiryTimeMs) {
+      this.uri = uri;
+      this.manifest = manifest;
+      this.expiryTimeMs = expiryTimeMs;
+    }
+  }
+
+  /** The default maximum number of cached manifests. */
+  public static final int DEFAULT_MAX_ENTRY_COUNT = 16;
+  /** The default maximum time for which a manifest is cached, in milliseconds. */
+  public static final long DEFAULT_MAX_TIME_TO_LIVE_MS = 5 * 60 * 1000;
+
+  private final long maxTimeToLiveMs;
+  private final Clock clock;
+  private final LinkedHashMap<Uri, Entry> entries;
+
+  /** Creates an instance with default limits. */
+  public ManifestCache() {
+    this(DEFAULT_MAX_ENTRY_COUNT, DEFAULT_MAX_TIME_TO_LIVE_MS);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxEntryCount The maximum number of cached manifests. When exceeded, the least recently
+   *     used manifest is evicted.
+   * @param maxTimeToLiveMs The maximum time for which a manifest is cached, in milliseconds.
+   */
+  public ManifestCache(int maxEntryCount, long maxTimeToLiveMs) {
+    this(maxEntryCount, maxTimeToLiveMs, Clock.DEFAULT);
+  }
+
+  @VisibleForTesting
+  /* package */ ManifestCache(int maxEntryCount, long maxTimeToLiveMs, Clock clock) {
+    Assertions.checkArgument(maxEntryCount > 0 && maxTimeToLiveMs >= 0);
+    this.maxTimeToLiveMs = maxTimeToLiveMs;
+    this.clock = clock;
+    entries =
+        new LinkedHashMap<Uri, Entry>(
+            /* initialCapacity= */ maxEntryCount + 1,
+            /* loadFactor= */ 1,
+            /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Uri, Entry> eldest) {
+            return size() > maxEntryCount;
+          }
+        };
+  }
+
+  /**
+   * Returns the unexpired {@link Entry} cached for a {@link Uri}, or null if there is none.
+   *
+   * @param uri The {@link Uri} that was requested to load the manifest.
+   */
+  @Nullable
+  public synchronized Entry get(Uri uri) {
+    @Nullable Entry entry = entries.get(uri);
+    if (entry != null && clock.elapsedRealtime() >= entry.expiryTimeMs) {
+      entries.remove(uri);
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Caches a manifest, replacing any manifest cached for the same {@link Uri}. If the time to live
+   * is zero, the manifest isn't cached and any manifest cached for the {@link Uri} is removed.
+   *
+   * @param uri The {@link Uri} that was requested to load the manifest.
+   * @param loadedUri The {@link Uri} from which the manifest was read, after any redirection.
+   * @param manifest The parsed manifest, which must be immutable.
+   * @param timeToLiveMs The time for which the manifest may be served from the cache, in
+   *     milliseconds, or {@link C#TIME_UNSET} to cache it for the maximum time to live.
+   */
+  public synchronized void put(Uri uri, Uri loadedUri, Object manifest, long timeToLiveMs) {
+    if (timeToLiveMs == C.TIME_UNSET || timeToLiveMs > maxTimeToLiveMs) {
+      timeToLiveMs = maxTimeToLiveMs;
+    }
+    if (timeToLiveMs <= 0) {
+      entries.remove(uri);
+      return;
+    }
+    entries.put(uri, new Entry(loadedUri, manifest, clock.elapsedRealtime() + timeToLiveMs));
+  }
+
+  /**
+   * Removes the manifest cached for a {@link Uri}, if any.
+   *
+   * @param uri The {@link Uri} that was requested to load the manifest.
+   */
+  public synchronized void remove(Uri uri) {
+    entries.remove(uri);
+  }
+
+  /** Removes all cached manifests. */
+  public synchronized void clear() {
+    entries.clear();
+  }
+}
@@ -99,8 +99,11 @@ public final class ParsingLoadable<T> implements Loadable {
 
   private final StatsDataSource dataSource;
   private final Parser<? extends T> parser;
+  @Nullable private final ManifestCache manifestCache;
+  private final ManifestCache.TimeToLiveProvider<? super T> timeToLiveProvider;
 
   private volatile @Nullable T result;
+  private volatile @Nullable Uri cachedUri;
 
   /**
    * @param dataSource A {@link DataSource} to use when loading the data.
@@ -124,10 +127,48 @@ public final class ParsingLoadable<T> implements Loadable {
    */
   public ParsingLoadable(DataSource dataSource, DataSpec dataSpec, int type,
       Parser<? extends T> parser) {
+    this(dataSource, dataSpec, type, parser, /* manifestCache= */ null, manifest -> 0);
+  }
+
+  /**
+   * @param dataSource A {@link DataSource} to use when loading the data.
+   * @param uri The {@link Uri} from which the object should be loaded.
+   * @param type See {@link #type}.
+   * @param parser Parses the object from the response.
+   * @param manifestCache A {@link ManifestCache} from which the object is read instead of being
+   *     loaded if it's cached for {@code uri}, and to which it's added once loaded. May be null.
+   * @param timeToLiveProvider Determines for how long a loaded object may be served from {@code
+   *     manifestCache}.
+   */
+  public ParsingLoadable(
+      DataSource dataSource,
+      Uri uri,
+      int type,
+      Parser<? extends T> parser,
+      @Nullable ManifestCache manifestCache,
+      ManifestCache.TimeToLiveProvider<? super T> timeToLiveProvider) {
+    this(
+        dataSource,
+        new DataSpec.Builder().setUri(uri).setFlags(DataSpec.FLAG_ALLOW_GZIP).build(),
+        type,
+        parser,
+        manifestCache,
+        timeToLiveProvider);
+  }
+
+  private ParsingLoadable(
+      DataSource dataSource,
+      DataSpec dataSpec,
+      int type,
+      Parser<? extends T> parser,
+      @Nullable ManifestCache manifestCache,
+      ManifestCache.TimeToLiveProvider<? super T> timeToLiveProvider) {
     this.dataSource = new StatsDataSource(dataSource);
     this.dataSpec = dataSpec;
     this.type = type;
     this.parser = parser;
+    this.manifestCache = manifestCache;
+    this.timeToLiveProvider = timeToLiveProvider;
   }
 
   /** Returns the loaded object, or null if an object has not been loaded. */
@@ -150,7 +191,16 @@ public final class ParsingLoadable<T> implements Loadable {
    * redirected uri. Must only be called after the load completed, failed, or was canceled.
    */
   public Uri getUri() {
-    return dataSource.getLastOpenedUri();
+    @Nullable Uri cachedUri = this.cachedUri;
+    return cachedUri != null ? cachedUri : dataSource.getLastOpenedUri();
+  }
+
+  /**
+   * Returns whether the object was read from a {@link ManifestCache} rather than loaded. Must only
+   * be called after the load completed.
+   */
+  public boolean isFromCache() {
+    return cachedUri != null;
   }
 
   /**
@@ -167,16 +217,36 @@ public final class ParsingLoadable<T> implements Loadable {
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public final void load() throws IOException {
     // We always load from the beginning, so reset bytesRead to 0.
     dataSource.resetBytesRead();
+    cachedUri = null;
+    if (manifestCache != null) {
+      @Nullable ManifestCache.Entry cachedEntry = manifestCache.get(dataSpec.uri);
+      if (cachedEntry != null) {
+        cachedUri = cachedEntry.uri;
+        result = (T) cachedEntry.manifest;
+        return;
+      }
+    }
     DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, dataSpec);
+    Uri dataSourceUri;
+    T result;
     try {
       inputStream.open();
-      Uri dataSourceUri = Assertions.checkNotNull(dataSource.getUri());
+      dataSourceUri = Assertions.checkNotNull(dataSource.getUri());
       result = parser.parse(dataSourceUri, inputStream);
+      this.result = result;
     } finally {
       Util.closeQuietly(inputStream);
     }
+    if (manifestCache != null && result != null) {
+      manifestCache.put(
+          dataSpec.uri,
+          dataSourceUri,
+          result,
+          timeToLiveProvider.getTimeToLiveMs(result));
+    }
   }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+/**
+ * An {@link Allocator} that retains released {@link Allocation}s for reuse, up to a target buffer
+ * size.
+ */
+public interface TargetBufferSizeAllocator extends Allocator {
+
+  /** Resets the allocator, freeing retained memory if the allocator is configured to do so. */
+  void reset();
+
+  /**
+   * Sets the target buffer size. Released {@link Allocation}s are retained for reuse as long as the
+   * total size of allocated and retained allocations does not exceed this size. Reducing the target
+   * buffer size causes excess allocations to be discarded.
+   *
+   * @param targetBufferSize The target buffer size in bytes.
+   */
+  void setTargetBufferSize(int targetBufferSize);
+}
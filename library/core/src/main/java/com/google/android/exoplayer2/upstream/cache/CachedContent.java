@@ -16,9 +16,11 @@
 package com.google.android.exoplayer2.upstream.cache;
 
 import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.TreeSet;
 
 /** Defines the cached content for a single stream. */
@@ -34,8 +36,8 @@ import java.util.TreeSet;
   private final TreeSet<SimpleCacheSpan> cachedSpans;
   /** Metadata values. */
   private DefaultContentMetadata metadata;
-  /** Whether the content is locked. */
-  private boolean locked;
+  /** The ranges of the content that are locked for writing. */
+  private final ArrayList<Range> lockedRanges;
 
   /**
    * Creates a CachedContent.
@@ -52,6 +54,7 @@ import java.util.TreeSet;
     this.key = key;
     this.metadata = metadata;
     this.cachedSpans = new TreeSet<>();
+    this.lockedRanges = new ArrayList<>();
   }
 
   /** Returns the metadata. */
@@ -70,14 +73,68 @@ import java.util.TreeSet;
     return !metadata.equals(oldMetadata);
   }
 
-  /** Returns whether the content is locked. */
-  public boolean isLocked() {
-    return locked;
+  /** Returns whether no part of the content is locked. */
+  public boolean isFullyUnlocked() {
+    return lockedRanges.isEmpty();
   }
 
-  /** Sets the locked state of the content. */
-  public void setLocked(boolean locked) {
-    this.locked = locked;
+  /** Returns whether the data at {@code position} is locked. */
+  public boolean isLocked(long position) {
+    for (int i = 0; i < lockedRanges.size(); i++) {
+      if (lockedRanges.get(i).contains(position)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the length of the unlocked range starting at {@code position}, up to {@code length}
+   * bytes.
+   *
+   * @param position The starting position of the range.
+   * @param length The maximum length of the range, or {@link C#LENGTH_UNSET} if unbounded.
+   * @return The length of the unlocked range, which is 0 if the data at {@code position} is locked,
+   *     or {@link C#LENGTH_UNSET} if the range is unbounded and no data after {@code position} is
+   *     locked.
+   */
+  public long getUnlockedLength(long position, long length) {
+    for (int i = 0; i < lockedRanges.size(); i++) {
+      Range lockedRange = lockedRanges.get(i);
+      if (lockedRange.contains(position)) {
+        return 0;
+      } else if (lockedRange.position > position
+          && (length == C.LENGTH_UNSET || lockedRange.position - position < length)) {
+        length = lockedRange.position - position;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Locks a range of the content. The range must not overlap any range that's already locked.
+   *
+   * @param position The starting position of the range.
+   * @param length The length of the range, or {@link C#LENGTH_UNSET} if unbounded.
+   */
+  public void lockRange(long position, long length) {
+    Assertions.checkState(getUnlockedLength(position, length) == length);
+    lockedRanges.add(new Range(position, length));
+  }
+
+  /**
+   * Unlocks the locked range starting at {@code position}.
+   *
+   * @throws IllegalStateException If no locked range starts at {@code position}.
+   */
+  public void unlockRange(long position) {
+    for (int i = 0; i < lockedRanges.size(); i++) {
+      if (lockedRanges.get(i).position == position) {
+        lockedRanges.remove(i);
+        return;
+      }
+    }
+    throw new IllegalStateException();
   }
 
   /** Adds the given {@link SimpleCacheSpan} which contains a part of the content. */
@@ -205,4 +262,23 @@ import java.util.TreeSet;
         && cachedSpans.equals(that.cachedSpans)
         && metadata.equals(that.metadata);
   }
+
+  private static final class Range {
+
+    /** The starting position of the range. */
+    public final long position;
+    /** The length of the range, or {@link C#LENGTH_UNSET} if unbounded. */
+    public final long length;
+
+    public Range(long position, long length) {
+      this.position = position;
+      this.length = length;
+    }
+
+    /** Returns whether the range contains {@code otherPosition}. */
+    public boolean contains(long otherPosition) {
+      return position <= otherPosition
+          && (length == C.LENGTH_UNSET || otherPosition < position + length);
+    }
+  }
 }
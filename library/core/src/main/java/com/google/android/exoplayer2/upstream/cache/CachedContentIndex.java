@@ -39,9 +39,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -51,6 +54,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.zip.CRC32;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
@@ -59,10 +63,16 @@ import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 
-/** Maintains the index of cached content. */
+/**
+ * Maintains the index of cached content.
+ *
+ * <p>Methods are synchronized on the index. Collections returned by {@link #getAll()} and {@link
+ * #getKeys()} are backed by the index, and must only be accessed whilst synchronized on it.
+ */
 /* package */ class CachedContentIndex {
 
   /* package */ static final String FILE_NAME_ATOMIC = "cached_content_index.exi";
+  /* package */ static final String FILE_NAME_LOG = "cached_content_index.exl";
 
   private static final int INCREMENTAL_METADATA_READ_LENGTH = 10 * 1024 * 1024;
 
@@ -99,7 +109,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   /** Returns whether the file is an index file. */
   public static boolean isIndexFile(String fileName) {
     // Atomic file backups add additional suffixes to the file name.
-    return fileName.startsWith(FILE_NAME_ATOMIC);
+    return fileName.startsWith(FILE_NAME_ATOMIC) || fileName.startsWith(FILE_NAME_LOG);
   }
 
   /**
@@ -117,6 +127,32 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     DatabaseStorage.delete(databaseProvider, uid);
   }
 
+  /**
+   * Creates an instance that persists the index as an append-only log of changes, which is
+   * periodically compacted. Storing the index then takes time proportional to the number of changes
+   * since it was last stored, rather than to the size of the index.
+   *
+   * <p>An index previously persisted in database storage, or in unencrypted legacy storage if
+   * {@code databaseProvider} is {@code null}, is migrated to the log when the index is initialized.
+   *
+   * @param databaseProvider Provides the database from which any existing index is migrated, or
+   *     {@code null} to migrate from unencrypted legacy storage.
+   * @param storageDir The directory in which the log is stored.
+   * @return The created instance.
+   */
+  public static CachedContentIndex createWithLogStorage(
+      @Nullable DatabaseProvider databaseProvider, File storageDir) {
+    Storage previousStorage =
+        databaseProvider != null
+            ? new DatabaseStorage(databaseProvider)
+            : new LegacyStorage(
+                new File(storageDir, FILE_NAME_ATOMIC),
+                /* secretKey= */ null,
+                /* encrypt= */ false);
+    return new CachedContentIndex(
+        new LogStorage(new File(storageDir, FILE_NAME_LOG)), previousStorage);
+  }
+
   /**
    * Creates an instance supporting database storage only.
    *
@@ -175,6 +211,15 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
   }
 
+  private CachedContentIndex(Storage storage, @Nullable Storage previousStorage) {
+    keyToContent = new HashMap<>();
+    idToKey = new SparseArray<>();
+    removedIds = new SparseBooleanArray();
+    newIds = new SparseBooleanArray();
+    this.storage = storage;
+    this.previousStorage = previousStorage;
+  }
+
   /**
    * Loads the index data for the given cache UID.
    *
@@ -184,7 +229,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @throws IOException If an error occurs initializing the index data.
    */
   @WorkerThread
-  public void initialize(long uid) throws IOException {
+  public synchronized void initialize(long uid) throws IOException {
     storage.initialize(uid);
     if (previousStorage != null) {
       previousStorage.initialize(uid);
@@ -211,7 +256,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @throws IOException If an error occurs storing the index data.
    */
   @WorkerThread
-  public void store() throws IOException {
+  public synchronized void store() throws IOException {
     storage.storeIncremental(keyToContent);
     // Make ids that were removed since the index was last stored eligible for re-use.
     int removedIdCount = removedIds.size();
@@ -228,14 +273,14 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @param key The cache key that uniquely identifies the original stream.
    * @return A new or existing CachedContent instance with the given key.
    */
-  public CachedContent getOrAdd(String key) {
+  public synchronized CachedContent getOrAdd(String key) {
     @Nullable CachedContent cachedContent = keyToContent.get(key);
     return cachedContent == null ? addNew(key) : cachedContent;
   }
 
   /** Returns a CachedContent instance with the given key or null if there isn't one. */
   @Nullable
-  public CachedContent get(String key) {
+  public synchronized CachedContent get(String key) {
     return keyToContent.get(key);
   }
 
@@ -246,25 +291,25 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * (except through the iterator's own remove operation), the results of the iteration are
    * undefined.
    */
-  public Collection<CachedContent> getAll() {
+  public synchronized Collection<CachedContent> getAll() {
     return keyToContent.values();
   }
 
   /** Returns an existing or new id assigned to the given key. */
-  public int assignIdForKey(String key) {
+  public synchronized int assignIdForKey(String key) {
     return getOrAdd(key).id;
   }
 
   /** Returns the key which has the given id assigned, or {@code null} if no such key exists. */
   @Nullable
-  public String getKeyForId(int id) {
+  public synchronized String getKeyForId(int id) {
     return idToKey.get(id);
   }
 
   /** Removes {@link CachedContent} with the given key from index if it's empty and not locked. */
-  public void maybeRemove(String key) {
+  public synchronized void maybeRemove(String key) {
     @Nullable CachedContent cachedContent = keyToContent.get(key);
-    if (cachedContent != null && cachedContent.isEmpty() && !cachedContent.isLocked()) {
+    if (cachedContent != null && cachedContent.isEmpty() && cachedContent.isFullyUnlocked()) {
       keyToContent.remove(key);
       int id = cachedContent.id;
       boolean neverStored = newIds.get(id);
@@ -283,7 +328,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   }
 
   /** Removes empty and not locked {@link CachedContent} instances from index. */
-  public void removeEmpty() {
+  public synchronized void removeEmpty() {
     String[] keys = new String[keyToContent.size()];
     keyToContent.keySet().toArray(keys);
     for (String key : keys) {
@@ -297,7 +342,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * iteration over the set is in progress (except through the iterator's own remove operation), the
    * results of the iteration are undefined.
    */
-  public Set<String> getKeys() {
+  public synchronized Set<String> getKeys() {
     return keyToContent.keySet();
   }
 
@@ -305,7 +350,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * Applies {@code mutations} to the {@link ContentMetadata} for the given key. A new {@link
    * CachedContent} is added if there isn't one already with the given key.
    */
-  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations) {
+  public synchronized void applyContentMetadataMutations(
+      String key, ContentMetadataMutations mutations) {
     CachedContent cachedContent = getOrAdd(key);
     if (cachedContent.applyMetadataMutations(mutations)) {
       storage.onUpdate(cachedContent);
@@ -313,7 +359,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   }
 
   /** Returns a {@link ContentMetadata} for the given key. */
-  public ContentMetadata getContentMetadata(String key) {
+  public synchronized ContentMetadata getContentMetadata(String key) {
     CachedContent cachedContent = get(key);
     return cachedContent != null ? cachedContent.getMetadata() : DefaultContentMetadata.EMPTY;
   }
@@ -724,6 +770,238 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
   }
 
+  /**
+   * {@link Storage} implementation that appends changes to a log file, and compacts the log by
+   * rewriting it once it holds many more records than there are {@link CachedContent} instances.
+   *
+   * <p>The log consists of a version number followed by records, each of which is prefixed by the
+   * length and a CRC32 checksum of its payload. When the log is loaded, a record that was only
+   * partially written (e.g. because the process was killed whilst the index was being stored) is
+   * discarded along with anything that follows it, and the log is truncated so that further records
+   * are appended after the last valid one.
+   */
+  private static final class LogStorage implements Storage {
+
+    private static final int VERSION = 1;
+    private static final int VERSION_LENGTH = 4;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int RECORD_TYPE_UPDATE = 1;
+    private static final int RECORD_TYPE_REMOVE = 2;
+    /** The number of records below which the log is never compacted. */
+    private static final int MIN_COMPACTION_RECORD_COUNT = 1024;
+
+    private final File file;
+    private final AtomicFile atomicFile;
+    private final SparseArray<@NullableType CachedContent> pendingUpdates;
+    private final ByteArrayOutputStream payloadBuffer;
+    private final DataOutputStream payloadOutput;
+    private final CRC32 crc32;
+
+    private int recordCount;
+    private boolean compactionRequired;
+
+    public LogStorage(File file) {
+      this.file = file;
+      atomicFile = new AtomicFile(file);
+      pendingUpdates = new SparseArray<>();
+      payloadBuffer = new ByteArrayOutputStream();
+      payloadOutput = new DataOutputStream(payloadBuffer);
+      crc32 = new CRC32();
+    }
+
+    @Override
+    public void initialize(long uid) {
+      // Do nothing. Log storage uses a separate file for each cache.
+    }
+
+    @Override
+    public boolean exists() {
+      return atomicFile.exists();
+    }
+
+    @Override
+    public void delete() {
+      atomicFile.delete();
+      recordCount = 0;
+    }
+
+    @Override
+    public void load(
+        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+        throws IOException {
+      Assertions.checkState(pendingUpdates.size() == 0);
+      if (!atomicFile.exists()) {
+        return;
+      }
+      byte[] data;
+      InputStream inputStream = atomicFile.openRead();
+      try {
+        data = Util.toByteArray(inputStream);
+      } finally {
+        Util.closeQuietly(inputStream);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      if (data.length < VERSION_LENGTH || buffer.getInt(0) != VERSION) {
+        atomicFile.delete();
+        return;
+      }
+
+      SparseArray<@NullableType CachedContent> idToContent = new SparseArray<>();
+      int validLength = VERSION_LENGTH;
+      int validRecordCount = 0;
+      while (data.length - validLength >= RECORD_HEADER_LENGTH) {
+        int payloadLength = buffer.getInt(validLength);
+        int payloadChecksum = buffer.getInt(validLength + 4);
+        int payloadOffset = validLength + RECORD_HEADER_LENGTH;
+        if (payloadLength <= 0 || payloadLength > data.length - payloadOffset) {
+          break;
+        }
+        crc32.reset();
+        crc32.update(data, payloadOffset, payloadLength);
+        if ((int) crc32.getValue() != payloadChecksum) {
+          break;
+        }
+        try {
+          readRecord(
+              new DataInputStream(new ByteArrayInputStream(data, payloadOffset, payloadLength)),
+              idToContent);
+        } catch (IOException e) {
+          break;
+        }
+        validLength = payloadOffset + payloadLength;
+        validRecordCount++;
+      }
+      if (validLength < data.length) {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+          randomAccessFile.setLength(validLength);
+        }
+      }
+
+      for (int i = 0; i < idToContent.size(); i++) {
+        @Nullable CachedContent cachedContent = idToContent.valueAt(i);
+        if (cachedContent != null) {
+          content.put(cachedContent.key, cachedContent);
+          idToKey.put(cachedContent.id, cachedContent.key);
+        }
+      }
+      recordCount = validRecordCount;
+    }
+
+    @Override
+    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+      ByteArrayOutputStream logBuffer = new ByteArrayOutputStream();
+      DataOutputStream logOutput = new DataOutputStream(logBuffer);
+      logOutput.writeInt(VERSION);
+      for (CachedContent cachedContent : content.values()) {
+        writeUpdateRecord(cachedContent, logOutput);
+      }
+      @Nullable OutputStream outputStream = null;
+      try {
+        outputStream = atomicFile.startWrite();
+        logBuffer.writeTo(outputStream);
+        atomicFile.endWrite(outputStream);
+        outputStream = null;
+      } finally {
+        Util.closeQuietly(outputStream);
+      }
+      recordCount = content.size();
+      compactionRequired = false;
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void storeIncremental(HashMap<String, CachedContent> content) throws IOException {
+      int pendingUpdateCount = pendingUpdates.size();
+      if (pendingUpdateCount == 0) {
+        return;
+      }
+      int maxRecordCount = Math.max(MIN_COMPACTION_RECORD_COUNT, 2 * content.size());
+      if (compactionRequired
+          || !file.exists()
+          || recordCount + pendingUpdateCount > maxRecordCount) {
+        storeFully(content);
+        return;
+      }
+
+      ByteArrayOutputStream logBuffer = new ByteArrayOutputStream();
+      DataOutputStream logOutput = new DataOutputStream(logBuffer);
+      for (int i = 0; i < pendingUpdateCount; i++) {
+        @Nullable CachedContent cachedContent = pendingUpdates.valueAt(i);
+        if (cachedContent == null) {
+          writeRemoveRecord(pendingUpdates.keyAt(i), logOutput);
+        } else {
+          writeUpdateRecord(cachedContent, logOutput);
+        }
+      }
+      // If appending fails part way through, records appended by later stores would follow a torn
+      // record and be discarded when the log is loaded. Rewrite the log on the next store instead.
+      compactionRequired = true;
+      try (FileOutputStream outputStream = new FileOutputStream(file, /* append= */ true)) {
+        logBuffer.writeTo(outputStream);
+        outputStream.getFD().sync();
+      }
+      compactionRequired = false;
+      recordCount += pendingUpdateCount;
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void onUpdate(CachedContent cachedContent) {
+      pendingUpdates.put(cachedContent.id, cachedContent);
+    }
+
+    @Override
+    public void onRemove(CachedContent cachedContent, boolean neverStored) {
+      if (neverStored) {
+        pendingUpdates.delete(cachedContent.id);
+      } else {
+        pendingUpdates.put(cachedContent.id, null);
+      }
+    }
+
+    private void writeUpdateRecord(CachedContent cachedContent, DataOutputStream output)
+        throws IOException {
+      payloadBuffer.reset();
+      payloadOutput.writeByte(RECORD_TYPE_UPDATE);
+      payloadOutput.writeInt(cachedContent.id);
+      payloadOutput.writeUTF(cachedContent.key);
+      writeContentMetadata(cachedContent.getMetadata(), payloadOutput);
+      writeRecord(output);
+    }
+
+    private void writeRemoveRecord(int id, DataOutputStream output) throws IOException {
+      payloadBuffer.reset();
+      payloadOutput.writeByte(RECORD_TYPE_REMOVE);
+      payloadOutput.writeInt(id);
+      writeRecord(output);
+    }
+
+    private void writeRecord(DataOutputStream output) throws IOException {
+      byte[] payload = payloadBuffer.toByteArray();
+      crc32.reset();
+      crc32.update(payload, 0, payload.length);
+      output.writeInt(payload.length);
+      output.writeInt((int) crc32.getValue());
+      output.write(payload);
+    }
+
+    private static void readRecord(
+        DataInputStream input, SparseArray<@NullableType CachedContent> idToContent)
+        throws IOException {
+      int type = input.readUnsignedByte();
+      int id = input.readInt();
+      if (type == RECORD_TYPE_UPDATE) {
+        String key = input.readUTF();
+        DefaultContentMetadata metadata = readContentMetadata(input);
+        idToContent.put(id, new CachedContent(id, key, metadata));
+      } else if (type == RECORD_TYPE_REMOVE) {
+        idToContent.remove(id);
+      } else {
+        throw new IOException("Invalid record type: " + type);
+      }
+    }
+  }
+
   /** {@link Storage} implementation that uses an SQL database. */
   private static final class DatabaseStorage implements Storage {
 
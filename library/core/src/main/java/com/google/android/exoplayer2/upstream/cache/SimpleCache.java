@@ -43,6 +43,20 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *
  * <p>Only one instance of SimpleCache is allowed for a given directory at a given time.
  *
+ * <p>By default operations on the cache are serialized by a single lock. If the cache is
+ * constructed with {@code lockPerKey} set to {@code true}, operations that only concern a single
+ * cache key are instead serialized by a lock for that key, so that several downloads and readers of
+ * different content can use the cache concurrently. Eviction and notifying {@link Listener}s are
+ * serialized by a separate lock, which is also required to read from the cache if the {@link
+ * CacheEvictor} {@link CacheEvictor#requiresCacheSpanTouches() requires cache span touches}. Index
+ * and file metadata persistence is then serialized by a lock on the index, which is also held when
+ * the cache is released.
+ *
+ * <p>A cache may be constructed to initialize lazily, in which case it can be used as soon as its
+ * index has been loaded and its directory listed. Spans for a cache key are then created from the
+ * key's files when the key is first accessed, and the remaining files are reconciled with the index
+ * by the initialization thread in the background. See {@link ReconciliationListener}.
+ *
  * <p>To delete a SimpleCache, use {@link #delete(File, DatabaseProvider)} rather than deleting the
  * directory and its contents directly. This is necessary to ensure that associated index data is
  * also removed.
@@ -59,9 +73,29 @@ public final class SimpleCache implements Cache {
   private static final int SUBDIRECTORY_COUNT = 10;
 
   private static final String UID_FILE_SUFFIX = ".uid";
+  /** The number of locks between which cache keys are distributed if locking per key. */
+  private static final int KEY_LOCK_COUNT = 64;
 
   private static final HashSet<File> lockedCacheDirs = new HashSet<>();
 
+  /** Listener for the progress of reconciling a lazily initialized cache with its directory. */
+  public interface ReconciliationListener {
+
+    /**
+     * Called on the cache's initialization thread as the files in the cache directory are
+     * reconciled with the cache index, and once more when reconciliation has completed, in which
+     * case {@code reconciledFileCount} equals {@code fileCount}.
+     *
+     * <p>Once reconciliation has completed, {@link SimpleCache#getCacheSpace()} returns the space
+     * used by all files in the cache.
+     *
+     * @param cache The cache being reconciled.
+     * @param reconciledFileCount The number of files reconciled so far.
+     * @param fileCount The total number of files to reconcile.
+     */
+    void onReconciliationProgress(SimpleCache cache, int reconciledFileCount, int fileCount);
+  }
+
   private final File cacheDir;
   private final CacheEvictor evictor;
   private final CachedContentIndex contentIndex;
@@ -69,11 +103,24 @@ public final class SimpleCache implements Cache {
   private final HashMap<String, ArrayList<Listener>> listeners;
   private final Random random;
   private final boolean touchCacheSpans;
+  @Nullable private final Object[] keyLocks;
+  private final ConditionVariable initializationCondition;
+  @Nullable private final ReconciliationListener reconciliationListener;
 
   private long uid;
   private long totalSpace;
-  private boolean released;
-  private @MonotonicNonNull CacheException initializationException;
+  private volatile boolean initialized;
+  private volatile boolean released;
+  private volatile @MonotonicNonNull CacheException initializationException;
+  private volatile boolean reconciled;
+
+  // Files pending reconciliation, keyed by cache key, and their metadata. Null if the cache is not
+  // initialized lazily, or once reconciliation has completed. Accessed whilst holding the cache's
+  // own lock.
+  @Nullable private HashMap<String, ArrayList<File>> pendingFiles;
+  @Nullable private Map<String, CacheFileMetadata> pendingFileMetadata;
+  private int pendingFileCount;
+  private int reconciledFileCount;
 
   /**
    * Returns whether {@code cacheFolder} is locked by a {@link SimpleCache} instance. To unlock the
@@ -125,6 +172,38 @@ public final class SimpleCache implements Cache {
     Util.recursiveDelete(cacheDir);
   }
 
+  /**
+   * Creates a cache whose index is stored as an append-only log of changes in the cache directory.
+   * Storing the index then takes time proportional to the number of changes since it was last
+   * stored, rather than to the number of cached contents, which reduces the time for which the
+   * cache is blocked when it holds many contents. The cache will delete any unrecognized files from
+   * the cache directory. Hence the directory cannot be used to store other files.
+   *
+   * <p>An existing database index, or an existing unencrypted legacy index if {@code
+   * databaseProvider} is {@code null}, is migrated to the log when the cache is initialized.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which cache file metadata is stored, and from
+   *     which an existing database index is migrated, or {@code null} to store only the log.
+   * @param lockPerKey Whether operations concerning a single cache key are serialized by a lock for
+   *     that key rather than by a lock for the whole cache.
+   * @return The created cache.
+   */
+  public static SimpleCache createWithLogIndex(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      boolean lockPerKey) {
+    return new SimpleCache(
+        cacheDir,
+        evictor,
+        CachedContentIndex.createWithLogStorage(databaseProvider, cacheDir),
+        databaseProvider != null ? new CacheFileMetadataIndex(databaseProvider) : null,
+        lockPerKey);
+  }
+
   /**
    * Constructs the cache. The cache will delete any unrecognized files from the directory. Hence
    * the directory cannot be used to store other files.
@@ -226,6 +305,47 @@ public final class SimpleCache implements Cache {
       @Nullable byte[] legacyIndexSecretKey,
       boolean legacyIndexEncrypt,
       boolean preferLegacyIndex) {
+    this(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        legacyIndexSecretKey,
+        legacyIndexEncrypt,
+        preferLegacyIndex,
+        /* lockPerKey= */ false);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored, or {@code
+   *     null} to use a legacy index. Using a database index is highly recommended for performance
+   *     reasons.
+   * @param legacyIndexSecretKey A 16 byte AES key for reading, and optionally writing, the legacy
+   *     index. Not used by the database index, however should still be provided when using the
+   *     database index in cases where upgrading from the legacy index may be necessary.
+   * @param legacyIndexEncrypt Whether to encrypt when writing to the legacy index. Must be {@code
+   *     false} if {@code legacyIndexSecretKey} is {@code null}. Not used by the database index.
+   * @param preferLegacyIndex Whether to use the legacy index even if a {@code databaseProvider} is
+   *     provided. Should be {@code false} in nearly all cases. Setting this to {@code true} is only
+   *     useful for downgrading from the database index back to the legacy index.
+   * @param lockPerKey Whether operations concerning a single cache key are serialized by a lock for
+   *     that key rather than by a lock for the whole cache. Setting this to {@code true} improves
+   *     throughput when the cache is accessed by several threads, for example when downloading
+   *     multiple streams in parallel.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable byte[] legacyIndexSecretKey,
+      boolean legacyIndexEncrypt,
+      boolean preferLegacyIndex,
+      boolean lockPerKey) {
     this(
         cacheDir,
         evictor,
@@ -237,7 +357,42 @@ public final class SimpleCache implements Cache {
             preferLegacyIndex),
         databaseProvider != null && !preferLegacyIndex
             ? new CacheFileMetadataIndex(databaseProvider)
-            : null);
+            : null,
+        lockPerKey);
+  }
+
+  /**
+   * Constructs a cache that initializes lazily. The cache can be used as soon as its index has been
+   * loaded and its directory listed, and reconciles the files in its directory with its index in
+   * the background. The cache will delete any unrecognized files from the cache directory. Hence
+   * the directory cannot be used to store other files.
+   *
+   * <p>Until reconciliation has completed, {@link #getCacheSpace()} only accounts for the files of
+   * cache keys that have been accessed or reconciled so far, and the evictor is only aware of the
+   * corresponding spans.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored.
+   * @param lockPerKey Whether operations concerning a single cache key are serialized by a lock for
+   *     that key rather than by a lock for the whole cache.
+   * @param reconciliationListener A listener for the progress of reconciliation, or {@code null}.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      DatabaseProvider databaseProvider,
+      boolean lockPerKey,
+      @Nullable ReconciliationListener reconciliationListener) {
+    this(
+        cacheDir,
+        evictor,
+        new CachedContentIndex(databaseProvider),
+        new CacheFileMetadataIndex(databaseProvider),
+        lockPerKey,
+        /* lazyInitialization= */ true,
+        reconciliationListener);
   }
 
   /* package */ SimpleCache(
@@ -245,6 +400,33 @@ public final class SimpleCache implements Cache {
       CacheEvictor evictor,
       CachedContentIndex contentIndex,
       @Nullable CacheFileMetadataIndex fileIndex) {
+    this(cacheDir, evictor, contentIndex, fileIndex, /* lockPerKey= */ false);
+  }
+
+  /* package */ SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      CachedContentIndex contentIndex,
+      @Nullable CacheFileMetadataIndex fileIndex,
+      boolean lockPerKey) {
+    this(
+        cacheDir,
+        evictor,
+        contentIndex,
+        fileIndex,
+        lockPerKey,
+        /* lazyInitialization= */ false,
+        /* reconciliationListener= */ null);
+  }
+
+  /* package */ SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      CachedContentIndex contentIndex,
+      @Nullable CacheFileMetadataIndex fileIndex,
+      boolean lockPerKey,
+      boolean lazyInitialization,
+      @Nullable ReconciliationListener reconciliationListener) {
     if (!lockFolder(cacheDir)) {
       throw new IllegalStateException("Another SimpleCache instance uses the folder: " + cacheDir);
     }
@@ -256,7 +438,19 @@ public final class SimpleCache implements Cache {
     listeners = new HashMap<>();
     random = new Random();
     touchCacheSpans = evictor.requiresCacheSpanTouches();
+    if (lockPerKey) {
+      keyLocks = new Object[KEY_LOCK_COUNT];
+      for (int i = 0; i < KEY_LOCK_COUNT; i++) {
+        keyLocks[i] = new Object();
+      }
+    } else {
+      keyLocks = null;
+    }
+    initializationCondition = new ConditionVariable();
+    this.reconciliationListener = reconciliationListener;
     uid = UID_UNSET;
+    reconciled = !lazyInitialization;
+    pendingFiles = lazyInitialization ? new HashMap<>() : null;
 
     // Start cache initialization.
     final ConditionVariable conditionVariable = new ConditionVariable();
@@ -265,8 +459,16 @@ public final class SimpleCache implements Cache {
       public void run() {
         synchronized (SimpleCache.this) {
           conditionVariable.open();
-          initialize();
-          SimpleCache.this.evictor.onCacheInitialized();
+          try {
+            initialize();
+            SimpleCache.this.evictor.onCacheInitialized();
+          } finally {
+            initialized = true;
+            initializationCondition.open();
+          }
+        }
+        if (!reconciled && initializationException == null) {
+          reconcile();
         }
       }
     }.start();
@@ -278,7 +480,8 @@ public final class SimpleCache implements Cache {
    *
    * @throws CacheException If an error occurred during initialization.
    */
-  public synchronized void checkInitialization() throws CacheException {
+  public void checkInitialization() throws CacheException {
+    blockUntilInitialized();
     if (initializationException != null) {
       throw initializationException;
     }
@@ -296,13 +499,17 @@ public final class SimpleCache implements Cache {
     }
     listeners.clear();
     removeStaleSpans();
-    try {
-      contentIndex.store();
-    } catch (IOException e) {
-      Log.e(TAG, "Storing index file failed", e);
-    } finally {
-      unlockFolder(cacheDir);
-      released = true;
+    // Hold the index lock so that index and file metadata persistence that runs outside the cache's
+    // own lock with per key locking doesn't write to the directory once it's unlocked.
+    synchronized (contentIndex) {
+      try {
+        contentIndex.store();
+      } catch (IOException e) {
+        Log.e(TAG, "Storing index file failed", e);
+      } finally {
+        unlockFolder(cacheDir);
+        released = true;
+      }
     }
   }
 
@@ -334,20 +541,40 @@ public final class SimpleCache implements Cache {
 
   @NonNull
   @Override
-  public synchronized NavigableSet<CacheSpan> getCachedSpans(String key) {
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
     Assertions.checkState(!released);
-    CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent == null || cachedContent.isEmpty()
-        ? new TreeSet<>()
-        : new TreeSet<CacheSpan>(cachedContent.getSpans());
+    blockUntilInitialized();
+    loadPendingFiles(key);
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent == null || cachedContent.isEmpty()
+          ? new TreeSet<>()
+          : new TreeSet<CacheSpan>(cachedContent.getSpans());
+    }
   }
 
   @Override
   public synchronized Set<String> getKeys() {
     Assertions.checkState(!released);
-    return new HashSet<>(contentIndex.getKeys());
+    synchronized (contentIndex) {
+      return new HashSet<>(contentIndex.getKeys());
+    }
+  }
+
+  /**
+   * Returns whether the files in the cache directory have been reconciled with the cache index.
+   * Always true unless the cache initializes lazily.
+   */
+  public boolean isReconciled() {
+    return reconciled;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If the cache initializes lazily, the returned value is only guaranteed to account for all
+   * files in the cache once it {@link #isReconciled() has been reconciled}.
+   */
   @Override
   public synchronized long getCacheSpace() {
     Assertions.checkState(!released);
@@ -355,76 +582,103 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized CacheSpan startReadWrite(String key, long position)
+  public CacheSpan startReadWrite(String key, long position)
       throws InterruptedException, CacheException {
-    Assertions.checkState(!released);
-    checkInitialization();
+    return startReadWrite(key, position, C.LENGTH_UNSET);
+  }
 
+  @Override
+  public CacheSpan startReadWrite(String key, long position, long length)
+      throws InterruptedException, CacheException {
+    Object keyLock = getKeyLock(key);
     while (true) {
-      CacheSpan span = startReadWriteNonBlocking(key, position);
+      @Nullable CacheSpan span = startReadWriteNonBlocking(key, position, length);
       if (span != null) {
         return span;
-      } else {
-        // Lock not available. We'll be woken up when a span is added, or when a locked span is
-        // released. We'll be able to make progress when either:
-        // 1. A span is added for the requested key that covers the requested position, in which
-        //    case a read can be started.
-        // 2. The lock for the requested key is released, in which case a write can be started.
-        wait();
+      }
+      synchronized (keyLock) {
+        // Check again now that the key lock is held. The content is unlocked and spans are added
+        // whilst holding the key lock, so a notification cannot be missed.
+        @Nullable CachedContent cachedContent = contentIndex.get(key);
+        if (cachedContent != null
+            && cachedContent.isLocked(position)
+            && !cachedContent.getSpan(position).isCached) {
+          // Lock not available. We'll be woken up when a span is added, or when a locked span is
+          // released. We'll be able to make progress when either:
+          // 1. A span is added for the requested key that covers the requested position, in which
+          //    case a read can be started.
+          // 2. The lock covering the requested position is released, in which case a write can be
+          //    started.
+          keyLock.wait();
+        }
       }
     }
   }
 
   @Override
   @Nullable
-  public synchronized CacheSpan startReadWriteNonBlocking(String key, long position)
+  public CacheSpan startReadWriteNonBlocking(String key, long position) throws CacheException {
+    return startReadWriteNonBlocking(key, position, C.LENGTH_UNSET);
+  }
+
+  @Override
+  @Nullable
+  public CacheSpan startReadWriteNonBlocking(String key, long position, long length)
       throws CacheException {
     Assertions.checkState(!released);
     checkInitialization();
+    loadPendingFiles(key);
 
-    SimpleCacheSpan span = getSpan(key, position);
-
-    if (span.isCached) {
-      // Read case.
-      return touchSpan(key, span);
-    }
-
-    CachedContent cachedContent = contentIndex.getOrAdd(key);
-    if (!cachedContent.isLocked()) {
-      // Write case.
-      cachedContent.setLocked(true);
-      return span;
+    if (touchCacheSpans) {
+      // Touching a cached span notifies the evictor, which requires the eviction lock.
+      synchronized (this) {
+        return startReadWriteNonBlockingInternal(key, position, length);
+      }
     }
-
-    // Lock not available.
-    return null;
+    return startReadWriteNonBlockingInternal(key, position, length);
   }
 
   @Override
-  public synchronized File startFile(String key, long position, long length) throws CacheException {
+  public File startFile(String key, long position, long length) throws CacheException {
     Assertions.checkState(!released);
     checkInitialization();
 
-    CachedContent cachedContent = contentIndex.get(key);
-    Assertions.checkNotNull(cachedContent);
-    Assertions.checkState(cachedContent.isLocked());
-    if (!cacheDir.exists()) {
-      // For some reason the cache directory doesn't exist. Make a best effort to create it.
-      cacheDir.mkdirs();
-      removeStaleSpans();
+    int id;
+    synchronized (getKeyLock(key)) {
+      CachedContent cachedContent = contentIndex.get(key);
+      Assertions.checkNotNull(cachedContent);
+      Assertions.checkState(cachedContent.isLocked(position));
+      id = cachedContent.id;
+    }
+    synchronized (this) {
+      if (!cacheDir.exists()) {
+        // For some reason the cache directory doesn't exist. Make a best effort to create it.
+        cacheDir.mkdirs();
+        removeStaleSpans();
+      }
+      evictor.onStartFile(this, key, position, length);
     }
-    evictor.onStartFile(this, key, position, length);
     // Randomly distribute files into subdirectories with a uniform distribution.
     File fileDir = new File(cacheDir, Integer.toString(random.nextInt(SUBDIRECTORY_COUNT)));
     if (!fileDir.exists()) {
       fileDir.mkdir();
     }
     long lastTouchTimestamp = System.currentTimeMillis();
-    return SimpleCacheSpan.getCacheFile(fileDir, cachedContent.id, position, lastTouchTimestamp);
+    return SimpleCacheSpan.getCacheFile(fileDir, id, position, lastTouchTimestamp);
   }
 
   @Override
-  public synchronized void commitFile(File file, long length) throws CacheException {
+  public void commitFile(File file, long length) throws CacheException {
+    if (keyLocks == null) {
+      synchronized (this) {
+        commitFileInternal(file, length);
+      }
+    } else {
+      commitFileInternal(file, length);
+    }
+  }
+
+  private void commitFileInternal(File file, long length) throws CacheException {
     Assertions.checkState(!released);
     if (!file.exists()) {
       return;
@@ -436,40 +690,53 @@ public final class SimpleCache implements Cache {
 
     SimpleCacheSpan span =
         Assertions.checkNotNull(SimpleCacheSpan.createCacheEntry(file, length, contentIndex));
-    CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(span.key));
-    Assertions.checkState(cachedContent.isLocked());
-
-    // Check if the span conflicts with the set content length
-    long contentLength = ContentMetadata.getContentLength(cachedContent.getMetadata());
-    if (contentLength != C.LENGTH_UNSET) {
-      Assertions.checkState((span.position + span.length) <= contentLength);
+    Object keyLock = getKeyLock(span.key);
+    synchronized (keyLock) {
+      CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(span.key));
+      Assertions.checkState(cachedContent.isLocked(span.position));
+
+      // Check if the span conflicts with the set content length
+      long contentLength = ContentMetadata.getContentLength(cachedContent.getMetadata());
+      if (contentLength != C.LENGTH_UNSET) {
+        Assertions.checkState((span.position + span.length) <= contentLength);
+      }
     }
 
-    if (fileIndex != null) {
-      String fileName = file.getName();
-      try {
-        fileIndex.set(fileName, span.length, span.lastTouchTimestamp);
-      } catch (IOException e) {
-        throw new CacheException(e);
-      }
+    synchronized (this) {
+      addSpan(span);
     }
-    addSpan(span);
     try {
-      contentIndex.store();
+      // The cache's own lock must not be acquired while holding the index lock, as it's acquired
+      // in the opposite order elsewhere.
+      synchronized (contentIndex) {
+        if (released) {
+          // The cache was released concurrently, and must no longer write to its directory.
+          return;
+        }
+        if (fileIndex != null) {
+          fileIndex.set(file.getName(), span.length, span.lastTouchTimestamp);
+        }
+        contentIndex.store();
+      }
     } catch (IOException e) {
       throw new CacheException(e);
+    } finally {
+      synchronized (keyLock) {
+        keyLock.notifyAll();
+      }
     }
-    notifyAll();
   }
 
   @Override
-  public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
+  public void releaseHoleSpan(CacheSpan holeSpan) {
     Assertions.checkState(!released);
-    CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(holeSpan.key));
-    Assertions.checkState(cachedContent.isLocked());
-    cachedContent.setLocked(false);
-    contentIndex.maybeRemove(cachedContent.key);
-    notifyAll();
+    Object keyLock = getKeyLock(holeSpan.key);
+    synchronized (keyLock) {
+      CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(holeSpan.key));
+      cachedContent.unlockRange(holeSpan.position);
+      contentIndex.maybeRemove(cachedContent.key);
+      keyLock.notifyAll();
+    }
   }
 
   @Override
@@ -479,39 +746,128 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized boolean isCached(String key, long position, long length) {
+  public boolean isCached(String key, long position, long length) {
     Assertions.checkState(!released);
-    @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null && cachedContent.getCachedBytesLength(position, length) >= length;
+    blockUntilInitialized();
+    loadPendingFiles(key);
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent != null
+          && cachedContent.getCachedBytesLength(position, length) >= length;
+    }
   }
 
   @Override
-  public synchronized long getCachedLength(String key, long position, long length) {
+  public long getCachedLength(String key, long position, long length) {
     Assertions.checkState(!released);
-    @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    blockUntilInitialized();
+    loadPendingFiles(key);
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent != null
+          ? cachedContent.getCachedBytesLength(position, length)
+          : -length;
+    }
   }
 
   @Override
-  public synchronized void applyContentMetadataMutations(
+  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations)
+      throws CacheException {
+    if (keyLocks == null) {
+      synchronized (this) {
+        applyContentMetadataMutationsInternal(key, mutations);
+      }
+    } else {
+      applyContentMetadataMutationsInternal(key, mutations);
+    }
+  }
+
+  private void applyContentMetadataMutationsInternal(
       String key, ContentMetadataMutations mutations) throws CacheException {
     Assertions.checkState(!released);
     checkInitialization();
+    loadPendingFiles(key);
 
-    contentIndex.applyContentMetadataMutations(key, mutations);
+    synchronized (getKeyLock(key)) {
+      contentIndex.applyContentMetadataMutations(key, mutations);
+    }
     try {
-      contentIndex.store();
+      synchronized (contentIndex) {
+        if (!released) {
+          contentIndex.store();
+        }
+      }
     } catch (IOException e) {
       throw new CacheException(e);
     }
   }
 
   @Override
-  public synchronized ContentMetadata getContentMetadata(String key) {
+  public ContentMetadata getContentMetadata(String key) {
     Assertions.checkState(!released);
+    blockUntilInitialized();
     return contentIndex.getContentMetadata(key);
   }
 
+  /**
+   * Returns the lock that serializes operations concerning {@code key}.
+   *
+   * <p>To avoid deadlocks, the cache's own lock must not be acquired whilst holding a key lock.
+   * Multiple key locks may only be held at the same time whilst also holding the cache's own lock.
+   */
+  private Object getKeyLock(String key) {
+    if (keyLocks == null) {
+      return this;
+    }
+    return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % keyLocks.length];
+  }
+
+  /** Blocks until the cache's in-memory representation has been initialized. */
+  private void blockUntilInitialized() {
+    if (!initialized) {
+      initializationCondition.block();
+    }
+  }
+
+  @Nullable
+  private CacheSpan startReadWriteNonBlockingInternal(String key, long position, long length) {
+    Object keyLock = getKeyLock(key);
+    while (true) {
+      synchronized (keyLock) {
+        @Nullable SimpleCacheSpan span = getSpan(key, position);
+        if (span != null) {
+          if (span.isCached) {
+            // Read case.
+            return touchSpan(key, span);
+          }
+
+          // Write case. Lock as much of the hole as was requested, stopping short of any part of it
+          // that's already locked by another writer.
+          CachedContent cachedContent = contentIndex.getOrAdd(key);
+          long holeLength = span.length;
+          if (length != C.LENGTH_UNSET && (holeLength == C.LENGTH_UNSET || length < holeLength)) {
+            holeLength = length;
+          }
+          long lockLength = cachedContent.getUnlockedLength(position, holeLength);
+          if (lockLength != 0) {
+            cachedContent.lockRange(position, lockLength);
+            return lockLength == span.length
+                ? span
+                : SimpleCacheSpan.createClosedHole(key, position, lockLength);
+          }
+
+          // Lock not available.
+          return null;
+        }
+      }
+      // The file has been modified or deleted underneath us. It's likely that other files will have
+      // been modified too, so scan the whole in-memory representation.
+      synchronized (this) {
+        removeStaleSpans();
+      }
+    }
+  }
+
   /** Ensures that the cache's in-memory representation has been initialized. */
   private void initialize() {
     if (!cacheDir.exists()) {
@@ -549,7 +905,12 @@ public final class SimpleCache implements Cache {
         fileIndex.initialize(uid);
         Map<String, CacheFileMetadata> fileMetadata = fileIndex.getAll();
         loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata);
-        fileIndex.removeAll(fileMetadata.keySet());
+        if (pendingFiles != null) {
+          // Metadata for pending files is used, and unused metadata removed, during reconciliation.
+          pendingFileMetadata = fileMetadata;
+        } else {
+          fileIndex.removeAll(fileMetadata.keySet());
+        }
       } else {
         loadDirectory(cacheDir, /* isRoot= */ true, files, /* fileMetadata= */ null);
       }
@@ -560,6 +921,16 @@ public final class SimpleCache implements Cache {
       return;
     }
 
+    if (pendingFiles != null) {
+      // Empty content is removed during reconciliation, so ensure content without files is also
+      // reconciled.
+      for (String key : contentIndex.getKeys()) {
+        if (!pendingFiles.containsKey(key)) {
+          pendingFiles.put(key, new ArrayList<>());
+        }
+      }
+      return;
+    }
     contentIndex.removeEmpty();
     try {
       contentIndex.store();
@@ -568,6 +939,95 @@ public final class SimpleCache implements Cache {
     }
   }
 
+  /**
+   * Reconciles the files pending reconciliation with the index, one cache key at a time, and then
+   * removes empty content and unused file metadata.
+   */
+  private void reconcile() {
+    ArrayList<String> keys;
+    int fileCount;
+    synchronized (this) {
+      keys = new ArrayList<>(Assertions.checkNotNull(pendingFiles).keySet());
+      fileCount = pendingFileCount;
+    }
+    int progressInterval = Math.max(1, fileCount / 100);
+    int lastReportedFileCount = 0;
+    for (int i = 0; i < keys.size(); i++) {
+      String key = keys.get(i);
+      int reconciledFileCount;
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        if (Assertions.checkNotNull(pendingFiles).containsKey(key)) {
+          // The key hasn't been accessed, so remove its content if it turns out to be empty.
+          loadPendingFiles(key);
+          synchronized (getKeyLock(key)) {
+            contentIndex.maybeRemove(key);
+          }
+        }
+        reconciledFileCount = this.reconciledFileCount;
+      }
+      if (reconciliationListener != null
+          && reconciledFileCount - lastReportedFileCount >= progressInterval
+          && reconciledFileCount < fileCount) {
+        reconciliationListener.onReconciliationProgress(this, reconciledFileCount, fileCount);
+        lastReportedFileCount = reconciledFileCount;
+      }
+    }
+
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      pendingFiles = null;
+      if (fileIndex != null && pendingFileMetadata != null) {
+        try {
+          fileIndex.removeAll(pendingFileMetadata.keySet());
+        } catch (IOException e) {
+          // Unused entries will be removed next time the cache is initialized.
+          Log.w(TAG, "Failed to remove unused file index entries.");
+        }
+      }
+      pendingFileMetadata = null;
+      try {
+        contentIndex.store();
+      } catch (IOException e) {
+        Log.e(TAG, "Storing index file failed", e);
+      }
+      reconciled = true;
+    }
+    if (reconciliationListener != null) {
+      reconciliationListener.onReconciliationProgress(this, fileCount, fileCount);
+    }
+  }
+
+  /**
+   * Adds spans for any files belonging to {@code key} that are pending reconciliation, so that the
+   * in-memory representation is complete for the key. Files are only ever added once.
+   *
+   * <p>Must not be called whilst holding a key lock.
+   *
+   * @param key The cache key.
+   */
+  private void loadPendingFiles(String key) {
+    if (reconciled) {
+      return;
+    }
+    synchronized (this) {
+      if (pendingFiles == null) {
+        return;
+      }
+      @Nullable ArrayList<File> files = pendingFiles.remove(key);
+      if (files != null) {
+        for (int i = 0; i < files.size(); i++) {
+          loadFile(files.get(i), pendingFileMetadata);
+        }
+        reconciledFileCount += files.size();
+      }
+    }
+  }
+
   /**
    * Loads a cache directory. If the root directory is passed, also loads any subdirectories.
    *
@@ -602,26 +1062,53 @@ public final class SimpleCache implements Cache {
           // Skip expected UID and index files in the root directory.
           continue;
         }
-        long length = C.LENGTH_UNSET;
-        long lastTouchTimestamp = C.TIME_UNSET;
-        @Nullable
-        CacheFileMetadata metadata = fileMetadata != null ? fileMetadata.remove(fileName) : null;
-        if (metadata != null) {
-          length = metadata.length;
-          lastTouchTimestamp = metadata.lastTouchTimestamp;
-        }
-        @Nullable
-        SimpleCacheSpan span =
-            SimpleCacheSpan.createCacheEntry(file, length, lastTouchTimestamp, contentIndex);
-        if (span != null) {
-          addSpan(span);
-        } else {
-          file.delete();
+        if (pendingFiles != null) {
+          int id = SimpleCacheSpan.getCacheFileId(fileName);
+          @Nullable String key = id != C.INDEX_UNSET ? contentIndex.getKeyForId(id) : null;
+          if (key != null) {
+            // Defer loading the file until the key is accessed or reconciled.
+            @Nullable ArrayList<File> filesForKey = pendingFiles.get(key);
+            if (filesForKey == null) {
+              filesForKey = new ArrayList<>();
+              pendingFiles.put(key, filesForKey);
+            }
+            filesForKey.add(file);
+            pendingFileCount++;
+            continue;
+          }
         }
+        loadFile(file, fileMetadata);
       }
     }
   }
 
+  /**
+   * Loads a cache file, adding a span for it to the in-memory representation, or deleting it if it
+   * does not belong to the cache.
+   *
+   * @param file The file.
+   * @param fileMetadata A mutable map containing cache file metadata, keyed by file name, from
+   *     which the entry for the file is removed. May be null if no file metadata is available.
+   */
+  private void loadFile(File file, @Nullable Map<String, CacheFileMetadata> fileMetadata) {
+    long length = C.LENGTH_UNSET;
+    long lastTouchTimestamp = C.TIME_UNSET;
+    @Nullable
+    CacheFileMetadata metadata = fileMetadata != null ? fileMetadata.remove(file.getName()) : null;
+    if (metadata != null) {
+      length = metadata.length;
+      lastTouchTimestamp = metadata.lastTouchTimestamp;
+    }
+    @Nullable
+    SimpleCacheSpan span =
+        SimpleCacheSpan.createCacheEntry(file, length, lastTouchTimestamp, contentIndex);
+    if (span != null) {
+      addSpan(span);
+    } else {
+      file.delete();
+    }
+  }
+
   /**
    * Touches a cache span, returning the updated result. If the evictor does not require cache spans
    * to be touched, then this method does nothing and the span is returned without modification.
@@ -649,8 +1136,10 @@ public final class SimpleCache implements Cache {
       // updating the file index. Hence we only update the file if we don't have a file index.
       updateFile = true;
     }
-    SimpleCacheSpan newSpan =
-        contentIndex.get(key).setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+    SimpleCacheSpan newSpan;
+    synchronized (getKeyLock(key)) {
+      newSpan = contentIndex.get(key).setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+    }
     notifySpanTouched(span, newSpan);
     return newSpan;
   }
@@ -662,25 +1151,25 @@ public final class SimpleCache implements Cache {
    * span defines the file in which the data is stored. If the lookup position is not contained by
    * an existing entry, then the returned span defines the maximum extents of the hole in the cache.
    *
+   * <p>Must be called whilst holding the key lock for {@code key}.
+   *
    * @param key The key of the span being requested.
    * @param position The position of the span being requested.
-   * @return The corresponding cache {@link SimpleCacheSpan}.
+   * @return The corresponding cache {@link SimpleCacheSpan}, or {@code null} if the file of the
+   *     existing entry has been modified or deleted, in which case stale spans should be removed
+   *     before trying again.
    */
+  @Nullable
   private SimpleCacheSpan getSpan(String key, long position) {
     @Nullable CachedContent cachedContent = contentIndex.get(key);
     if (cachedContent == null) {
       return SimpleCacheSpan.createOpenHole(key, position);
     }
-    while (true) {
-      SimpleCacheSpan span = cachedContent.getSpan(position);
-      if (span.isCached && span.file.length() != span.length) {
-        // The file has been modified or deleted underneath us. It's likely that other files will
-        // have been modified too, so scan the whole in-memory representation.
-        removeStaleSpans();
-        continue;
-      }
-      return span;
+    SimpleCacheSpan span = cachedContent.getSpan(position);
+    if (span.isCached && span.file.length() != span.length) {
+      return null;
     }
+    return span;
   }
 
   /**
@@ -689,15 +1178,20 @@ public final class SimpleCache implements Cache {
    * @param span The span to be added.
    */
   private void addSpan(SimpleCacheSpan span) {
-    contentIndex.getOrAdd(span.key).addSpan(span);
+    synchronized (getKeyLock(span.key)) {
+      contentIndex.getOrAdd(span.key).addSpan(span);
+    }
     totalSpace += span.length;
     notifySpanAdded(span);
   }
 
   private void removeSpanInternal(CacheSpan span) {
-    @Nullable CachedContent cachedContent = contentIndex.get(span.key);
-    if (cachedContent == null || !cachedContent.removeSpan(span)) {
-      return;
+    synchronized (getKeyLock(span.key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(span.key);
+      if (cachedContent == null || !cachedContent.removeSpan(span)) {
+        return;
+      }
+      contentIndex.maybeRemove(cachedContent.key);
     }
     totalSpace -= span.length;
     if (fileIndex != null) {
@@ -710,7 +1204,6 @@ public final class SimpleCache implements Cache {
         Log.w(TAG, "Failed to remove file index entry for: " + fileName);
       }
     }
-    contentIndex.maybeRemove(cachedContent.key);
     notifySpanRemoved(span);
   }
 
@@ -719,11 +1212,18 @@ public final class SimpleCache implements Cache {
    * underlying file lengths no longer match.
    */
   private void removeStaleSpans() {
+    ArrayList<CachedContent> cachedContents;
+    synchronized (contentIndex) {
+      cachedContents = new ArrayList<>(contentIndex.getAll());
+    }
     ArrayList<CacheSpan> spansToBeRemoved = new ArrayList<>();
-    for (CachedContent cachedContent : contentIndex.getAll()) {
-      for (CacheSpan span : cachedContent.getSpans()) {
-        if (span.file.length() != span.length) {
-          spansToBeRemoved.add(span);
+    for (int i = 0; i < cachedContents.size(); i++) {
+      CachedContent cachedContent = cachedContents.get(i);
+      synchronized (getKeyLock(cachedContent.key)) {
+        for (CacheSpan span : cachedContent.getSpans()) {
+          if (span.file.length() != span.length) {
+            spansToBeRemoved.add(span);
+          }
         }
       }
     }
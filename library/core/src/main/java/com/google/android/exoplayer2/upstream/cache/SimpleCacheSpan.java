@@ -50,6 +50,28 @@ import java.util.regex.Pattern;
     return new File(cacheDir, id + "." + position + "." + timestamp + SUFFIX);
   }
 
+  /**
+   * Returns the id of the {@link CachedContent} to which a cache file belongs, or {@link
+   * C#INDEX_UNSET} if the file name is not that of a cache file in the current format.
+   *
+   * @param fileName The name of the cache file.
+   * @return The id, or {@link C#INDEX_UNSET}.
+   */
+  public static int getCacheFileId(String fileName) {
+    if (!fileName.endsWith(SUFFIX)) {
+      return C.INDEX_UNSET;
+    }
+    Matcher matcher = CACHE_FILE_PATTERN_V3.matcher(fileName);
+    if (!matcher.matches()) {
+      return C.INDEX_UNSET;
+    }
+    try {
+      return Integer.parseInt(matcher.group(1));
+    } catch (NumberFormatException e) {
+      return C.INDEX_UNSET;
+    }
+  }
+
   /**
    * Creates a lookup span.
    *
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Evicts cache files using a frequency-aware policy that resists one-off scans, such as a user
+ * seeking through a long video, better than {@link LeastRecentlyUsedCacheEvictor}.
+ *
+ * <p>New spans enter a small window that is evicted in least recently used order. Spans evicted
+ * from the window are only admitted to the main part of the cache if their cache key has been
+ * accessed more frequently than the key of the span that would otherwise be evicted in their
+ * place. Access frequencies are estimated by a compact count-min sketch keyed by cache key, which
+ * is periodically aged so that keys that stop being accessed lose their history. The main part of
+ * the cache is split into a probationary segment, from which spans are evicted, and a protected
+ * segment for spans that have been read again since being admitted.
+ */
+public final class WindowTinyLfuCacheEvictor implements CacheEvictor {
+
+  /** The default percentage of the maximum cache size used for the admission window. */
+  public static final int DEFAULT_WINDOW_PERCENTAGE = 1;
+  /** The default number of cache keys for which access frequencies are estimated accurately. */
+  public static final int DEFAULT_EXPECTED_KEY_COUNT = 4096;
+
+  private static final int PROTECTED_PERCENTAGE = 80;
+
+  private final long maxBytes;
+  private final long maxWindowBytes;
+  private final long maxProtectedBytes;
+  private final FrequencySketch sketch;
+  private final LinkedHashSet<CacheSpan> window;
+  private final LinkedHashSet<CacheSpan> probation;
+  private final LinkedHashSet<CacheSpan> protectedSpans;
+  private final ArrayDeque<CacheSpan> candidates;
+
+  private long windowBytes;
+  private long probationBytes;
+  private long protectedBytes;
+
+  /**
+   * Creates an instance with the default window percentage and expected key count.
+   *
+   * @param maxBytes The maximum size of the cache in bytes.
+   */
+  public WindowTinyLfuCacheEvictor(long maxBytes) {
+    this(maxBytes, DEFAULT_WINDOW_PERCENTAGE, DEFAULT_EXPECTED_KEY_COUNT);
+  }
+
+  /**
+   * @param maxBytes The maximum size of the cache in bytes.
+   * @param windowPercentage The percentage of {@code maxBytes} used for the admission window. Must
+   *     be between 0 and 100.
+   * @param expectedKeyCount The number of cache keys for which access frequencies should be
+   *     estimated accurately. Typically the number of distinct keys that fit in the cache.
+   */
+  public WindowTinyLfuCacheEvictor(long maxBytes, int windowPercentage, int expectedKeyCount) {
+    Assertions.checkArgument(windowPercentage >= 0 && windowPercentage <= 100);
+    Assertions.checkArgument(expectedKeyCount > 0);
+    this.maxBytes = maxBytes;
+    maxWindowBytes = maxBytes * windowPercentage / 100;
+    maxProtectedBytes = (maxBytes - maxWindowBytes) * PROTECTED_PERCENTAGE / 100;
+    sketch = new FrequencySketch(expectedKeyCount);
+    window = new LinkedHashSet<>();
+    probation = new LinkedHashSet<>();
+    protectedSpans = new LinkedHashSet<>();
+    candidates = new ArrayDeque<>();
+  }
+
+  @Override
+  public boolean requiresCacheSpanTouches() {
+    return true;
+  }
+
+  @Override
+  public void onCacheInitialized() {
+    // Do nothing.
+  }
+
+  @Override
+  public void onStartFile(Cache cache, String key, long position, long length) {
+    // Writing to the cache means the key was accessed but its data wasn't cached.
+    sketch.increment(key);
+    if (length != C.LENGTH_UNSET) {
+      evictCache(cache, length, key);
+    }
+  }
+
+  @Override
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    window.add(span);
+    windowBytes += span.length;
+    evictCache(cache, /* requiredSpace= */ 0, /* incomingKey= */ null);
+  }
+
+  @Override
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    if (window.remove(span)) {
+      windowBytes -= span.length;
+    } else if (probation.remove(span)) {
+      probationBytes -= span.length;
+    } else if (protectedSpans.remove(span)) {
+      protectedBytes -= span.length;
+    }
+  }
+
+  @Override
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    sketch.increment(newSpan.key);
+    if (probation.remove(oldSpan)) {
+      // Promote the span to the protected segment, demoting the least recently used protected spans
+      // back to probation if the protected segment is full.
+      probationBytes -= oldSpan.length;
+      protectedSpans.add(newSpan);
+      protectedBytes += newSpan.length;
+      while (protectedBytes > maxProtectedBytes && protectedSpans.size() > 1) {
+        CacheSpan demotedSpan = removeFirst(protectedSpans);
+        protectedBytes -= demotedSpan.length;
+        probation.add(demotedSpan);
+        probationBytes += demotedSpan.length;
+      }
+    } else if (protectedSpans.remove(oldSpan)) {
+      protectedSpans.add(newSpan);
+      protectedBytes += newSpan.length - oldSpan.length;
+    } else {
+      if (window.remove(oldSpan)) {
+        windowBytes -= oldSpan.length;
+      }
+      window.add(newSpan);
+      windowBytes += newSpan.length;
+    }
+  }
+
+  /**
+   * Evicts spans until the cache has space for {@code requiredSpace} more bytes.
+   *
+   * @param cache The cache from which spans are evicted.
+   * @param requiredSpace The number of bytes that are about to be written.
+   * @param incomingKey The key of the data that is about to be written, or null.
+   */
+  private void evictCache(Cache cache, long requiredSpace, @Nullable String incomingKey) {
+    // Spans that overflow the window become candidates for admission to the probationary segment.
+    while (windowBytes > maxWindowBytes && !window.isEmpty()) {
+      moveFirstWindowSpanToProbation();
+    }
+
+    while (windowBytes + probationBytes + protectedBytes + requiredSpace > maxBytes) {
+      if (incomingKey != null
+          && candidates.isEmpty()
+          && !window.isEmpty()
+          && !probation.isEmpty()
+          && sketch.frequency(incomingKey) <= sketch.frequency(probation.iterator().next().key)) {
+        // The incoming data is accessed less frequently than the next victim, so make space by
+        // letting the oldest span in the window compete for admission instead of evicting the
+        // victim outright.
+        moveFirstWindowSpanToProbation();
+      }
+      @Nullable CacheSpan spanToEvict = selectSpanToEvict();
+      if (spanToEvict == null) {
+        break;
+      }
+      try {
+        cache.removeSpan(spanToEvict);
+      } catch (CacheException e) {
+        // do nothing.
+      }
+      // Stop tracking the span even if the cache failed to remove it, so that eviction terminates.
+      onSpanRemoved(cache, spanToEvict);
+    }
+    candidates.clear();
+  }
+
+  /**
+   * Returns the span to evict next, removing it from the candidates if it is one, or null if there
+   * are no spans left to evict.
+   */
+  @Nullable
+  private CacheSpan selectSpanToEvict() {
+    // Discard candidates that are no longer in the probationary segment.
+    while (!candidates.isEmpty() && !probation.contains(candidates.peekFirst())) {
+      candidates.removeFirst();
+    }
+    if (probation.isEmpty()) {
+      return !protectedSpans.isEmpty()
+          ? protectedSpans.iterator().next()
+          : (!window.isEmpty() ? window.iterator().next() : null);
+    }
+    CacheSpan victim = probation.iterator().next();
+    if (candidates.isEmpty()) {
+      return victim;
+    }
+    CacheSpan candidate = candidates.peekFirst();
+    if (candidate == victim) {
+      // Only candidates remain in the probationary segment, so evict them in the order in which
+      // they overflowed the window.
+      candidates.removeFirst();
+      return candidate;
+    }
+    // Admit the candidate in place of the victim only if its key is accessed more frequently.
+    if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+      return victim;
+    }
+    candidates.removeFirst();
+    return candidate;
+  }
+
+  private void moveFirstWindowSpanToProbation() {
+    CacheSpan span = removeFirst(window);
+    windowBytes -= span.length;
+    probation.add(span);
+    probationBytes += span.length;
+    candidates.add(span);
+  }
+
+  private static CacheSpan removeFirst(LinkedHashSet<CacheSpan> spans) {
+    Iterator<CacheSpan> iterator = spans.iterator();
+    CacheSpan span = iterator.next();
+    iterator.remove();
+    return span;
+  }
+
+  /**
+   * A count-min sketch with four rows of 4-bit counters, which estimates how often cache keys have
+   * been accessed. All counters are halved once the number of increments reaches ten times the
+   * number of counters per row, so that the estimates favor recent accesses.
+   */
+  private static final class FrequencySketch {
+
+    private static final int MAX_TABLE_LENGTH = 1 << 24;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    // Each long holds sixteen 4-bit counters. Each key maps to one counter per row.
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+
+    private int size;
+
+    public FrequencySketch(int expectedKeyCount) {
+      int tableLength = Math.min(MAX_TABLE_LENGTH, ceilPowerOfTwo(Math.max(16, expectedKeyCount)));
+      table = new long[tableLength];
+      tableMask = tableLength - 1;
+      sampleSize = 10 * tableLength;
+    }
+
+    /** Returns the estimated number of accesses to {@code key}, up to a maximum of 15. */
+    public int frequency(String key) {
+      int hash = spread(key.hashCode());
+      int frequency = 15;
+      for (int i = 0; i < 4; i++) {
+        int shift = getCounterOffset(hash, i) << 2;
+        int count = (int) ((table[getIndex(hash, i)] >>> shift) & 0xF);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    /** Increments the estimated number of accesses to {@code key}. */
+    public void increment(String key) {
+      int hash = spread(key.hashCode());
+      boolean incremented = false;
+      for (int i = 0; i < 4; i++) {
+        incremented |= incrementCounter(getIndex(hash, i), getCounterOffset(hash, i));
+      }
+      if (incremented && ++size == sampleSize) {
+        reset();
+      }
+    }
+
+    private boolean incrementCounter(int index, int counterOffset) {
+      int shift = counterOffset << 2;
+      long mask = 0xFL << shift;
+      if ((table[index] & mask) == mask) {
+        // The counter is saturated.
+        return false;
+      }
+      table[index] += 1L << shift;
+      return true;
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length; i++) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      size /= 2;
+    }
+
+    private int getIndex(int hash, int row) {
+      long value = (hash + SEEDS[row]) * SEEDS[row];
+      value += value >>> 32;
+      return (int) value & tableMask;
+    }
+
+    private static int getCounterOffset(int hash, int row) {
+      // Select one of the long's four groups of four counters, and the row's counter within it.
+      return (((hash >>> (row << 3)) & 3) << 2) + row;
+    }
+
+    private static int spread(int hash) {
+      hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+      hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+      return (hash >>> 16) ^ hash;
+    }
+
+    private static int ceilPowerOfTwo(int value) {
+      return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+  }
+}
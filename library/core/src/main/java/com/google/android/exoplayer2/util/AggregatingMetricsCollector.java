@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link MetricsCollector} that aggregates counters and histograms in memory, so that they can be
+ * read back or dumped as text.
+ *
+ * <p>Histograms have fixed power of two buckets. Bucket zero holds values less than or equal to
+ * zero, and bucket {@code i > 0} holds values in {@code [2^(i - 1), 2^i - 1]}. Recording a value
+ * updates preallocated arrays only, and doesn't allocate.
+ */
+public final class AggregatingMetricsCollector implements MetricsCollector {
+
+  /** The number of buckets in each histogram. */
+  public static final int BUCKET_COUNT = 64;
+
+  private final AtomicLongArray counters;
+  private final AtomicLongArray bucketCounts;
+  private final AtomicLongArray sums;
+  private final AtomicLongArray maxima;
+
+  public AggregatingMetricsCollector() {
+    counters = new AtomicLongArray(COUNTER_COUNT);
+    bucketCounts = new AtomicLongArray(HISTOGRAM_COUNT * BUCKET_COUNT);
+    sums = new AtomicLongArray(HISTOGRAM_COUNT);
+    maxima = new AtomicLongArray(HISTOGRAM_COUNT);
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void incrementCounter(@Counter int counter, long delta) {
+    counters.addAndGet(counter, delta);
+  }
+
+  @Override
+  public void recordValue(@Histogram int histogram, long value) {
+    bucketCounts.incrementAndGet(histogram * BUCKET_COUNT + getBucketIndex(value));
+    sums.addAndGet(histogram, value);
+    long max = maxima.get(histogram);
+    while (value > max && !maxima.compareAndSet(histogram, max, value)) {
+      max = maxima.get(histogram);
+    }
+  }
+
+  /** Returns the value of a {@link Counter}. */
+  public long getCounter(@Counter int counter) {
+    return counters.get(counter);
+  }
+
+  /** Returns the number of values recorded in a {@link Histogram}. */
+  public long getHistogramCount(@Histogram int histogram) {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += bucketCounts.get(histogram * BUCKET_COUNT + i);
+    }
+    return count;
+  }
+
+  /** Returns the number of values recorded in a bucket of a {@link Histogram}. */
+  public long getBucketCount(@Histogram int histogram, int bucketIndex) {
+    Assertions.checkIndex(bucketIndex, /* start= */ 0, BUCKET_COUNT);
+    return bucketCounts.get(histogram * BUCKET_COUNT + bucketIndex);
+  }
+
+  /** Returns the sum of the values recorded in a {@link Histogram}. */
+  public long getHistogramSum(@Histogram int histogram) {
+    return sums.get(histogram);
+  }
+
+  /**
+   * Returns the maximum value recorded in a {@link Histogram}, or 0 if no positive values have been
+   * recorded.
+   */
+  public long getHistogramMax(@Histogram int histogram) {
+    return maxima.get(histogram);
+  }
+
+  /**
+   * Returns an upper bound for a percentile of the values recorded in a {@link Histogram}. The
+   * bound is the largest value of the bucket containing the percentile, capped at the maximum
+   * recorded value.
+   *
+   * @param histogram The {@link Histogram}.
+   * @param percentile The percentile, in the range [0, 100].
+   * @return The upper bound, or 0 if no values have been recorded.
+   */
+  public long getHistogramPercentile(@Histogram int histogram, double percentile) {
+    Assertions.checkArgument(percentile >= 0 && percentile <= 100);
+    long count = getHistogramCount(histogram);
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long cumulativeCount = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulativeCount += bucketCounts.get(histogram * BUCKET_COUNT + i);
+      if (cumulativeCount >= rank) {
+        return Math.min(getBucketUpperBound(i), getHistogramMax(histogram));
+      }
+    }
+    return getHistogramMax(histogram);
+  }
+
+  /** Resets all counters and histograms to zero. */
+  public void reset() {
+    for (int i = 0; i < counters.length(); i++) {
+      counters.set(i, 0);
+    }
+    for (int i = 0; i < bucketCounts.length(); i++) {
+      bucketCounts.set(i, 0);
+    }
+    for (int i = 0; i < HISTOGRAM_COUNT; i++) {
+      sums.set(i, 0);
+      maxima.set(i, 0);
+    }
+  }
+
+  /**
+   * Returns a text dump of all counters, followed by the count, mean, median, 99th percentile and
+   * maximum of each non-empty histogram.
+   */
+  public String dump() {
+    StringBuilder dump = new StringBuilder();
+    for (int i = 0; i < COUNTER_COUNT; i++) {
+      dump.append(MetricsCollector.getCounterName(i))
+          .append(": ")
+          .append(getCounter(i))
+          .append('\n');
+    }
+    for (int i = 0; i < HISTOGRAM_COUNT; i++) {
+      long count = getHistogramCount(i);
+      if (count == 0) {
+        continue;
+      }
+      dump.append(MetricsCollector.getHistogramName(i))
+          .append(": count=")
+          .append(count)
+          .append(", mean=")
+          .append(getHistogramSum(i) / count)
+          .append(", p50<=")
+          .append(getHistogramPercentile(i, /* percentile= */ 50))
+          .append(", p99<=")
+          .append(getHistogramPercentile(i, /* percentile= */ 99))
+          .append(", max=")
+          .append(getHistogramMax(i))
+          .append('\n');
+    }
+    return dump.toString();
+  }
+
+  /** Returns the index of the bucket that holds {@code value}. */
+  /* package */ static int getBucketIndex(long value) {
+    return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+  }
+
+  private static long getBucketUpperBound(int bucketIndex) {
+    return bucketIndex == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucketIndex) - 1;
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import androidx.annotation.IntDef;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Collects counters and histograms from the hot paths of the player, such as the playback loop,
+ * renderers, sample queues, loaders and allocators. The collector in use is set with {@link
+ * MetricsUtil#setCollector(MetricsCollector)}.
+ *
+ * <p>Implementations must be thread safe, because metrics are recorded on the playback thread and
+ * on loading threads. {@link #incrementCounter(int, long)} and {@link #recordValue(int, long)}
+ * should return quickly and shouldn't allocate.
+ */
+public interface MetricsCollector {
+
+  /**
+   * Counters. One of {@link #COUNTER_PLAYBACK_LOOP_ITERATIONS}, {@link
+   * #COUNTER_RENDERER_FORMATS_READ}, {@link #COUNTER_RENDERER_BUFFERS_READ}, {@link
+   * #COUNTER_RENDERER_EMPTY_READS}, {@link #COUNTER_LOADS_STARTED} or {@link
+   * #COUNTER_ALLOCATIONS}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({
+    COUNTER_PLAYBACK_LOOP_ITERATIONS,
+    COUNTER_RENDERER_FORMATS_READ,
+    COUNTER_RENDERER_BUFFERS_READ,
+    COUNTER_RENDERER_EMPTY_READS,
+    COUNTER_LOADS_STARTED,
+    COUNTER_ALLOCATIONS
+  })
+  @interface Counter {}
+  /** The number of iterations of the playback loop. */
+  int COUNTER_PLAYBACK_LOOP_ITERATIONS = 0;
+  /** The number of formats read from their streams by renderers. */
+  int COUNTER_RENDERER_FORMATS_READ = 1;
+  /** The number of buffers read from their streams by renderers. */
+  int COUNTER_RENDERER_BUFFERS_READ = 2;
+  /** The number of times renderers tried to read from their streams, but nothing was read. */
+  int COUNTER_RENDERER_EMPTY_READS = 3;
+  /** The number of loads started by loaders, excluding retries. */
+  int COUNTER_LOADS_STARTED = 4;
+  /** The number of allocations made by allocators. */
+  int COUNTER_ALLOCATIONS = 5;
+  /** The number of counters. */
+  int COUNTER_COUNT = 6;
+
+  /**
+   * Histograms. One of {@link #HISTOGRAM_PLAYBACK_LOOP_TIME_US}, {@link
+   * #HISTOGRAM_VIDEO_RENDER_TIME_US}, {@link #HISTOGRAM_AUDIO_RENDER_TIME_US}, {@link
+   * #HISTOGRAM_TEXT_RENDER_TIME_US}, {@link #HISTOGRAM_METADATA_RENDER_TIME_US}, {@link
+   * #HISTOGRAM_OTHER_RENDER_TIME_US}, {@link #HISTOGRAM_SAMPLE_QUEUE_READ_TIME_NS}, {@link
+   * #HISTOGRAM_LOADER_QUEUE_DEPTH}, {@link #HISTOGRAM_LOADER_QUEUE_TIME_US} or {@link
+   * #HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({
+    HISTOGRAM_PLAYBACK_LOOP_TIME_US,
+    HISTOGRAM_VIDEO_RENDER_TIME_US,
+    HISTOGRAM_AUDIO_RENDER_TIME_US,
+    HISTOGRAM_TEXT_RENDER_TIME_US,
+    HISTOGRAM_METADATA_RENDER_TIME_US,
+    HISTOGRAM_OTHER_RENDER_TIME_US,
+    HISTOGRAM_SAMPLE_QUEUE_READ_TIME_NS,
+    HISTOGRAM_LOADER_QUEUE_DEPTH,
+    HISTOGRAM_LOADER_QUEUE_TIME_US,
+    HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES
+  })
+  @interface Histogram {}
+  /** The time taken by each iteration of the playback loop, in microseconds. */
+  int HISTOGRAM_PLAYBACK_LOOP_TIME_US = 0;
+  /** The time taken by each call to render a video renderer, in microseconds. */
+  int HISTOGRAM_VIDEO_RENDER_TIME_US = 1;
+  /** The time taken by each call to render an audio renderer, in microseconds. */
+  int HISTOGRAM_AUDIO_RENDER_TIME_US = 2;
+  /** The time taken by each call to render a text renderer, in microseconds. */
+  int HISTOGRAM_TEXT_RENDER_TIME_US = 3;
+  /** The time taken by each call to render a metadata renderer, in microseconds. */
+  int HISTOGRAM_METADATA_RENDER_TIME_US = 4;
+  /** The time taken by each call to render any other renderer, in microseconds. */
+  int HISTOGRAM_OTHER_RENDER_TIME_US = 5;
+  /** The time taken by each read from a sample queue, in nanoseconds. */
+  int HISTOGRAM_SAMPLE_QUEUE_READ_TIME_NS = 6;
+  /**
+   * The number of loads waiting for a thread of a shared executor when a load is started. Only
+   * recorded by loaders that load on a {@link java.util.concurrent.ThreadPoolExecutor}, such as one
+   * created by {@link com.google.android.exoplayer2.upstream.Loader#createSharedExecutor}.
+   */
+  int HISTOGRAM_LOADER_QUEUE_DEPTH = 7;
+  /** The time between a load being started and it running on a thread, in microseconds. */
+  int HISTOGRAM_LOADER_QUEUE_TIME_US = 8;
+  /** The number of bytes allocated by an allocator, sampled each time it allocates. */
+  int HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES = 9;
+  /** The number of histograms. */
+  int HISTOGRAM_COUNT = 10;
+
+  /** A collector that discards all metrics. */
+  MetricsCollector NO_OP =
+      new MetricsCollector() {
+        @Override
+        public boolean isEnabled() {
+          return false;
+        }
+
+        @Override
+        public void incrementCounter(@Counter int counter, long delta) {
+          // Do nothing.
+        }
+
+        @Override
+        public void recordValue(@Histogram int histogram, long value) {
+          // Do nothing.
+        }
+      };
+
+  /**
+   * Returns whether the collector records metrics. If false, callers may skip work that is only
+   * needed to record metrics, such as measuring time.
+   */
+  boolean isEnabled();
+
+  /**
+   * Adds to a counter.
+   *
+   * @param counter The {@link Counter}.
+   * @param delta The amount to add.
+   */
+  void incrementCounter(@Counter int counter, long delta);
+
+  /**
+   * Records a value in a histogram.
+   *
+   * @param histogram The {@link Histogram}.
+   * @param value The value.
+   */
+  void recordValue(@Histogram int histogram, long value);
+
+  /** Returns a name for a {@link Counter}. */
+  static String getCounterName(@Counter int counter) {
+    switch (counter) {
+      case COUNTER_PLAYBACK_LOOP_ITERATIONS:
+        return "playbackLoopIterations";
+      case COUNTER_RENDERER_FORMATS_READ:
+        return "rendererFormatsRead";
+      case COUNTER_RENDERER_BUFFERS_READ:
+        return "rendererBuffersRead";
+      case COUNTER_RENDERER_EMPTY_READS:
+        return "rendererEmptyReads";
+      case COUNTER_LOADS_STARTED:
+        return "loadsStarted";
+      case COUNTER_ALLOCATIONS:
+        return "allocations";
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  /** Returns a name for a {@link Histogram}. */
+  static String getHistogramName(@Histogram int histogram) {
+    switch (histogram) {
+      case HISTOGRAM_PLAYBACK_LOOP_TIME_US:
+        return "playbackLoopTimeUs";
+      case HISTOGRAM_VIDEO_RENDER_TIME_US:
+        return "videoRenderTimeUs";
+      case HISTOGRAM_AUDIO_RENDER_TIME_US:
+        return "audioRenderTimeUs";
+      case HISTOGRAM_TEXT_RENDER_TIME_US:
+        return "textRenderTimeUs";
+      case HISTOGRAM_METADATA_RENDER_TIME_US:
+        return "metadataRenderTimeUs";
+      case HISTOGRAM_OTHER_RENDER_TIME_US:
+        return "otherRenderTimeUs";
+      case HISTOGRAM_SAMPLE_QUEUE_READ_TIME_NS:
+        return "sampleQueueReadTimeNs";
+      case HISTOGRAM_LOADER_QUEUE_DEPTH:
+        return "loaderQueueDepth";
+      case HISTOGRAM_LOADER_QUEUE_TIME_US:
+        return "loaderQueueTimeUs";
+      case HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES:
+        return "allocatorAllocatedBytes";
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+}
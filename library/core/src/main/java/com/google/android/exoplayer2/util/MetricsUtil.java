@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+/**
+ * Holds the {@link MetricsCollector} to which the player records metrics. By default metrics are
+ * discarded by {@link MetricsCollector#NO_OP}.
+ */
+public final class MetricsUtil {
+
+  private static volatile MetricsCollector collector = MetricsCollector.NO_OP;
+
+  private MetricsUtil() {}
+
+  /**
+   * Sets the collector to which metrics are recorded. Should be called before the player is
+   * created, as components may record to the previous collector until their next operation.
+   *
+   * @param collector The collector, or {@link MetricsCollector#NO_OP} to discard metrics.
+   */
+  public static void setCollector(MetricsCollector collector) {
+    MetricsUtil.collector = collector;
+  }
+
+  /** Returns the collector to which metrics are recorded. */
+  public static MetricsCollector getCollector() {
+    return collector;
+  }
+}
@@ -94,6 +94,17 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   /** Magic frame render timestamp that indicates the EOS in tunneling mode. */
   private static final long TUNNELING_EOS_PRESENTATION_TIME_US = Long.MAX_VALUE;
 
+  /**
+   * The maximum time before its release time at which an output buffer is rendered on API level 21
+   * and above, where the framework times the release.
+   */
+  private static final long MAX_EARLY_US_TO_RENDER_V21 = 50_000;
+  /**
+   * The maximum time before its release time at which an output buffer is rendered below API level
+   * 21, where the renderer times the release itself.
+   */
+  private static final long MAX_EARLY_US_TO_RENDER = 30_000;
+
   /** A {@link DecoderException} with additional surface information. */
   public static final class VideoDecoderException extends DecoderException {
 
@@ -131,6 +142,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private boolean renderedFirstFrame;
   private long initialPositionUs;
   private long joiningDeadlineMs;
+  private long pendingOutputBufferRenderPositionUs;
   private long droppedFrameAccumulationStartTimeMs;
   private int droppedFrames;
   private int consecutiveDroppedFrameCount;
@@ -243,6 +255,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
     deviceNeedsNoPostProcessWorkaround = deviceNeedsNoPostProcessWorkaround();
     joiningDeadlineMs = C.TIME_UNSET;
+    pendingOutputBufferRenderPositionUs = C.TIME_UNSET;
     currentWidth = Format.NO_VALUE;
     currentHeight = Format.NO_VALUE;
     currentPixelWidthHeightRatio = Format.NO_VALUE;
@@ -414,9 +427,19 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     videoFrameProcessingOffsetCount = 0;
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (pendingOutputBufferRenderPositionUs != C.TIME_UNSET) {
+      // The held output buffer can't be rendered before this position.
+      return Math.max(0, pendingOutputBufferRenderPositionUs - positionUs);
+    }
+    return super.getDurationToProgressUs(positionUs, elapsedRealtimeUs);
+  }
+
   @Override
   protected void onStopped() {
     joiningDeadlineMs = C.TIME_UNSET;
+    pendingOutputBufferRenderPositionUs = C.TIME_UNSET;
     maybeNotifyDroppedFrames();
     maybeNotifyVideoFrameProcessingOffset();
     super.onStopped();
@@ -578,6 +601,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   protected void resetCodecStateForFlush() {
     super.resetCodecStateForFlush();
     buffersInCodecCount = 0;
+    pendingOutputBufferRenderPositionUs = C.TIME_UNSET;
   }
 
   @Override
@@ -705,6 +729,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     if (initialPositionUs == C.TIME_UNSET) {
       initialPositionUs = positionUs;
     }
+    pendingOutputBufferRenderPositionUs = C.TIME_UNSET;
 
     long outputStreamOffsetUs = getOutputStreamOffsetUs();
     long presentationTimeUs = bufferPresentationTimeUs - outputStreamOffsetUs;
@@ -781,7 +806,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
 
     if (Util.SDK_INT >= 21) {
       // Let the underlying framework time the release.
-      if (earlyUs < 50000) {
+      if (earlyUs < MAX_EARLY_US_TO_RENDER_V21) {
         notifyFrameMetadataListener(
             presentationTimeUs, adjustedReleaseTimeNs, format, currentMediaFormat);
         renderOutputBufferV21(codec, bufferIndex, presentationTimeUs, adjustedReleaseTimeNs);
@@ -790,7 +815,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       }
     } else {
       // We need to time the release ourselves.
-      if (earlyUs < 30000) {
+      if (earlyUs < MAX_EARLY_US_TO_RENDER) {
         if (earlyUs > 11000) {
           // We're a little too early to render the frame. Sleep until the frame can be rendered.
           // Note: The 11ms threshold was chosen fairly arbitrarily.
@@ -810,7 +835,11 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       }
     }
 
-    // We're either not playing, or it's not time to render the frame yet.
+    // We're either not playing, or it's not time to render the frame yet. Record the position from
+    // which the frame can be rendered.
+    long maxEarlyUsToRender =
+        Util.SDK_INT >= 21 ? MAX_EARLY_US_TO_RENDER_V21 : MAX_EARLY_US_TO_RENDER;
+    pendingOutputBufferRenderPositionUs = positionUs + earlyUs - maxEarlyUsToRender;
     return false;
   }
 
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
@@ -44,6 +45,7 @@ import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
 import com.google.android.exoplayer2.source.MediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.source.SampleStream;
 import com.google.android.exoplayer2.source.TrackGroup;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.source.ads.AdPlaybackState;
@@ -61,16 +63,22 @@ import com.google.android.exoplayer2.testutil.FakeMediaClockRenderer;
 import com.google.android.exoplayer2.testutil.FakeMediaPeriod;
 import com.google.android.exoplayer2.testutil.FakeMediaSource;
 import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.FakeSampleStream;
+import com.google.android.exoplayer2.testutil.FakeSampleStream.FakeSampleStreamItem;
 import com.google.android.exoplayer2.testutil.FakeShuffleOrder;
 import com.google.android.exoplayer2.testutil.FakeTimeline;
 import com.google.android.exoplayer2.testutil.FakeTimeline.TimelineWindowDefinition;
 import com.google.android.exoplayer2.testutil.FakeTrackSelection;
 import com.google.android.exoplayer2.testutil.FakeTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.AggregatingMetricsCollector;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.MetricsCollector;
+import com.google.android.exoplayer2.util.MetricsUtil;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -3549,6 +3557,21 @@ public final class ExoPlayerTest {
         .blockUntilEnded(TIMEOUT_MS);
   }
 
+  @Test
+  public void dynamicScheduling_audioOnly_reducesPlaybackLoopWakeUps() throws Exception {
+    long wakeUpCount =
+        playAudioOnlyAndGetPlaybackLoopWakeUpCount(/* dynamicSchedulingEnabled= */ false);
+    long dynamicWakeUpCount =
+        playAudioOnlyAndGetPlaybackLoopWakeUpCount(/* dynamicSchedulingEnabled= */ true);
+
+    long durationS = TimelineWindowDefinition.DEFAULT_WINDOW_DURATION_US / C.MICROS_PER_SECOND;
+    assertWithMessage(
+            "Wake-ups per second: fixed=%s, dynamic=%s",
+            wakeUpCount / durationS, dynamicWakeUpCount / durationS)
+        .that(dynamicWakeUpCount)
+        .isLessThan(wakeUpCount / 5);
+  }
+
   @Test
   public void testMoveMediaItem() throws Exception {
     TimelineWindowDefinition firstWindowDefinition =
@@ -5802,6 +5825,108 @@ public final class ExoPlayerTest {
       timeline = player.getCurrentTimeline();
     }
   }
+
+  private long playAudioOnlyAndGetPlaybackLoopWakeUpCount(boolean dynamicSchedulingEnabled)
+      throws Exception {
+    int sampleDurationUs = 20_000;
+    FakeMediaSource mediaSource =
+        new FakeMediaSource(new FakeTimeline(/* windowCount= */ 1), Builder.AUDIO_FORMAT) {
+          @Override
+          protected FakeMediaPeriod createFakeMediaPeriod(
+              MediaPeriodId id,
+              TrackGroupArray trackGroupArray,
+              Allocator allocator,
+              EventDispatcher eventDispatcher,
+              @Nullable TransferListener transferListener) {
+            return new FakeMediaPeriod(trackGroupArray, eventDispatcher) {
+              @Override
+              protected SampleStream createSampleStream(
+                  long positionUs, TrackSelection selection, EventDispatcher eventDispatcher) {
+                int sampleCount =
+                    (int)
+                        ((TimelineWindowDefinition.DEFAULT_WINDOW_DURATION_US - positionUs)
+                            / sampleDurationUs);
+                FakeSampleStreamItem[] items = new FakeSampleStreamItem[sampleCount + 1];
+                for (int i = 0; i < sampleCount; i++) {
+                  items[i] = new FakeSampleStreamItem(new byte[] {0});
+                }
+                items[sampleCount] = FakeSampleStreamItem.END_OF_STREAM_ITEM;
+                return new FakeSampleStream(
+                    selection.getSelectedFormat(),
+                    eventDispatcher,
+                    positionUs,
+                    sampleDurationUs,
+                    items);
+              }
+            };
+          }
+        };
+    ActionSchedule actionSchedule =
+        new ActionSchedule.Builder("playAudioOnlyAndGetPlaybackLoopWakeUpCount")
+            .executeRunnable(
+                new PlayerRunnable() {
+                  @Override
+                  public void run(SimpleExoPlayer player) {
+                    player.experimental_setDynamicSchedulingEnabled(dynamicSchedulingEnabled);
+                  }
+                })
+            .build();
+    AggregatingMetricsCollector metricsCollector = new AggregatingMetricsCollector();
+    MetricsUtil.setCollector(metricsCollector);
+    try {
+      new ExoPlayerTestRunner.Builder()
+          .setClock(new AutoAdvancingFakeClock())
+          .setMediaSources(mediaSource)
+          .setRenderers(new SinkLikeAudioRenderer())
+          .setActionSchedule(actionSchedule)
+          .build(context)
+          .start()
+          .blockUntilActionScheduleFinished(TIMEOUT_MS)
+          .blockUntilEnded(TIMEOUT_MS);
+    } finally {
+      MetricsUtil.setCollector(MetricsCollector.NO_OP);
+    }
+    return metricsCollector.getCounter(MetricsCollector.COUNTER_PLAYBACK_LOOP_ITERATIONS);
+  }
+
+  /**
+   * A {@link FakeRenderer} for audio that buffers ahead of the playback position like an audio
+   * renderer writing to an audio sink, and that reports when it can next make progress in the same
+   * way.
+   */
+  private static final class SinkLikeAudioRenderer extends FakeRenderer {
+
+    private static final long BUFFER_DURATION_US = 250_000;
+
+    private long durationToProgressUs;
+
+    public SinkLikeAudioRenderer() {
+      super(Builder.AUDIO_FORMAT);
+    }
+
+    @Override
+    public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+      durationToProgressUs = DEFAULT_DURATION_TO_PROGRESS_US;
+      super.render(positionUs, elapsedRealtimeUs);
+    }
+
+    @Override
+    public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+      return durationToProgressUs;
+    }
+
+    @Override
+    protected boolean shouldProcessBuffer(long bufferTimeUs, long playbackPositionUs) {
+      long bufferedDurationUs = bufferTimeUs - playbackPositionUs;
+      if (bufferedDurationUs < BUFFER_DURATION_US) {
+        return true;
+      }
+      // The buffer is full. Wake up when half of it has played out.
+      durationToProgressUs = bufferedDurationUs / 2;
+      return false;
+    }
+  }
+
   /**
    * Provides a wrapper for a {@link Runnable} which does collect playback states and window counts.
    * Can be used with {@link ActionSchedule.Builder#executeRunnable(Runnable)} to verify that a
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit test for {@link FloatSonic}, checking that its output is equivalent to that of {@link
+ * Sonic} for the same audio.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class FloatSonicTest {
+
+  private static final int SAMPLE_RATE_HZ = 44100;
+  private static final int DURATION_FRAMES = 2 * SAMPLE_RATE_HZ;
+  private static final int CHUNK_FRAMES = 1024;
+  /**
+   * The amplitude of the test signal. It is kept low because {@link Sonic} accumulates differences
+   * between 16-bit samples in integers, which can overflow for loud input.
+   */
+  private static final double AMPLITUDE = 0.02;
+
+  @Test
+  public void speedUpMono_matchesSonic() {
+    assertOutputMatchesSonic(
+        /* channelCount= */ 1,
+        /* speed= */ 1.5f,
+        /* outputSampleRateHz= */ SAMPLE_RATE_HZ,
+        /* minSignalToNoiseRatioDb= */ 50);
+  }
+
+  @Test
+  public void speedUpStereo_matchesSonic() {
+    assertOutputMatchesSonic(
+        /* channelCount= */ 2,
+        /* speed= */ 1.5f,
+        /* outputSampleRateHz= */ SAMPLE_RATE_HZ,
+        /* minSignalToNoiseRatioDb= */ 40);
+  }
+
+  @Test
+  public void slowDownStereo_matchesSonic() {
+    assertOutputMatchesSonic(
+        /* channelCount= */ 2,
+        /* speed= */ 0.75f,
+        /* outputSampleRateHz= */ SAMPLE_RATE_HZ,
+        /* minSignalToNoiseRatioDb= */ 40);
+  }
+
+  @Test
+  public void speedUpAndResampleStereo_matchesSonic() {
+    assertOutputMatchesSonic(
+        /* channelCount= */ 2,
+        /* speed= */ 1.25f,
+        /* outputSampleRateHz= */ 48000,
+        /* minSignalToNoiseRatioDb= */ 40);
+  }
+
+  private static void assertOutputMatchesSonic(
+      int channelCount, float speed, int outputSampleRateHz, double minSignalToNoiseRatioDb) {
+    short[] input = createInput(channelCount);
+    float[] floatInput = new float[input.length];
+    for (int i = 0; i < input.length; i++) {
+      floatInput[i] = input[i] / 32768f;
+    }
+    Sonic sonic = new Sonic(SAMPLE_RATE_HZ, channelCount, speed, outputSampleRateHz);
+    FloatSonic floatSonic = new FloatSonic(SAMPLE_RATE_HZ, channelCount, speed, outputSampleRateHz);
+    // Leave room for slowing down and upsampling.
+    ShortBuffer output = ShortBuffer.allocate(4 * input.length);
+    FloatBuffer floatOutput = FloatBuffer.allocate(4 * input.length);
+
+    int chunkSize = CHUNK_FRAMES * channelCount;
+    for (int position = 0; position < input.length; position += chunkSize) {
+      int length = Math.min(chunkSize, input.length - position);
+      sonic.queueInput(ShortBuffer.wrap(input, position, length));
+      sonic.getOutput(output);
+      floatSonic.queueInput(FloatBuffer.wrap(floatInput, position, length));
+      floatSonic.getOutput(floatOutput);
+    }
+    sonic.queueEndOfStream();
+    sonic.getOutput(output);
+    floatSonic.queueEndOfStream();
+    floatSonic.getOutput(floatOutput);
+
+    assertThat(floatOutput.position()).isEqualTo(output.position());
+    double signalEnergy = 0;
+    double errorEnergy = 0;
+    for (int i = 0; i < output.position(); i++) {
+      double expected = output.get(i) / 32768.0;
+      double error = floatOutput.get(i) - expected;
+      signalEnergy += expected * expected;
+      errorEnergy += error * error;
+    }
+    assertThat(10 * Math.log10(signalEnergy / errorEnergy)).isAtLeast(minSignalToNoiseRatioDb);
+  }
+
+  /**
+   * Returns 16-bit audio with a harmonic tone whose pitch sweeps between 100 Hz and 200 Hz, plus
+   * some noise. Each channel has a different level.
+   */
+  private static short[] createInput(int channelCount) {
+    Random random = new Random(/* seed= */ 0);
+    short[] input = new short[DURATION_FRAMES * channelCount];
+    for (int i = 0; i < DURATION_FRAMES; i++) {
+      double timeS = (double) i / SAMPLE_RATE_HZ;
+      double phase = 2 * Math.PI * (150 * timeS - 50 / Math.PI * Math.cos(Math.PI * timeS));
+      double value = 0;
+      for (int harmonic = 1; harmonic <= 8; harmonic++) {
+        value += Math.sin(harmonic * phase) / harmonic;
+      }
+      value = AMPLITUDE * (value + random.nextGaussian() / 30);
+      for (int channel = 0; channel < channelCount; channel++) {
+        input[i * channelCount + channel] =
+            (short) Math.round(value * (channel + 1) / channelCount * Short.MAX_VALUE);
+      }
+    }
+    return input;
+  }
+}
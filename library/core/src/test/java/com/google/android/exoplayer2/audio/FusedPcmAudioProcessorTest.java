@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit test for {@link FusedPcmAudioProcessor}, checking that its output matches that of the
+ * separate processors it replaces.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class FusedPcmAudioProcessorTest {
+
+  private static final int SAMPLE_RATE = 44100;
+  private static final int INPUT_FRAME_COUNT = 1000;
+
+  @Test
+  public void isNotActiveWithNoChange() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor();
+    processor.setChannelMap(new int[] {0, 1});
+
+    processor.configure(new AudioFormat(SAMPLE_RATE, /* channelCount= */ 2, C.ENCODING_PCM_16BIT));
+
+    assertThat(processor.isActive()).isFalse();
+  }
+
+  @Test
+  public void convert24Bit_matchesSeparateProcessors() throws Exception {
+    assertOutputMatchesSeparateProcessors(
+        C.ENCODING_PCM_24BIT,
+        /* channelCount= */ 2,
+        /* outputChannels= */ null,
+        /* trimStartFrames= */ 0,
+        /* trimEndFrames= */ 0);
+  }
+
+  @Test
+  public void mapChannels_matchesSeparateProcessors() throws Exception {
+    assertOutputMatchesSeparateProcessors(
+        C.ENCODING_PCM_16BIT,
+        /* channelCount= */ 6,
+        /* outputChannels= */ new int[] {0, 2, 1, 5, 4, 3},
+        /* trimStartFrames= */ 0,
+        /* trimEndFrames= */ 0);
+  }
+
+  @Test
+  public void trim_matchesSeparateProcessors() throws Exception {
+    assertOutputMatchesSeparateProcessors(
+        C.ENCODING_PCM_16BIT,
+        /* channelCount= */ 2,
+        /* outputChannels= */ null,
+        /* trimStartFrames= */ 123,
+        /* trimEndFrames= */ 45);
+  }
+
+  @Test
+  public void convertMapAndTrim_matchesSeparateProcessors() throws Exception {
+    int[] encodings = {
+      C.ENCODING_PCM_8BIT,
+      C.ENCODING_PCM_16BIT_BIG_ENDIAN,
+      C.ENCODING_PCM_24BIT,
+      C.ENCODING_PCM_32BIT
+    };
+    for (int encoding : encodings) {
+      assertOutputMatchesSeparateProcessors(
+          encoding,
+          /* channelCount= */ 3,
+          /* outputChannels= */ new int[] {2, 0},
+          /* trimStartFrames= */ 7,
+          /* trimEndFrames= */ 300);
+    }
+  }
+
+  @Test
+  public void convertAndMap_withNonNativeByteOrderInput_matchesNativeByteOrderInput()
+      throws Exception {
+    ByteOrder nonNativeOrder =
+        ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+            ? ByteOrder.BIG_ENDIAN
+            : ByteOrder.LITTLE_ENDIAN;
+    int[] encodings = {
+      C.ENCODING_PCM_16BIT,
+      C.ENCODING_PCM_16BIT_BIG_ENDIAN,
+      C.ENCODING_PCM_24BIT,
+      C.ENCODING_PCM_32BIT
+    };
+    for (int encoding : encodings) {
+      byte[] input = createInput(encoding, /* channelCount= */ 2);
+      AudioFormat audioFormat = new AudioFormat(SAMPLE_RATE, /* channelCount= */ 2, encoding);
+      int chunkSize = 13 * audioFormat.bytesPerFrame;
+      FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor();
+      processor.setChannelMap(new int[] {1, 0});
+      AudioProcessor[] processors =
+          configure(new AudioProcessor[] {processor}, encoding, /* channelCount= */ 2);
+
+      byte[] expectedOutput = process(processors, input, chunkSize, ByteOrder.nativeOrder());
+      processor.flush();
+      byte[] output = process(processors, input, chunkSize, nonNativeOrder);
+
+      assertThat(output).isEqualTo(expectedOutput);
+    }
+  }
+
+  @Test
+  public void drainAfterReconfiguration_trimsEndAndCountsTrimmedFrames() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor();
+    processor.setTrimFrameCount(/* trimStartFrames= */ 10, /* trimEndFrames= */ 20);
+    AudioFormat audioFormat =
+        new AudioFormat(SAMPLE_RATE, /* channelCount= */ 2, C.ENCODING_PCM_24BIT);
+    processor.configure(audioFormat);
+    processor.flush();
+
+    byte[] output =
+        process(
+            new AudioProcessor[] {processor},
+            createInput(C.ENCODING_PCM_24BIT, /* channelCount= */ 2),
+            /* chunkSize= */ 600);
+    // Reconfiguring before draining indicates a gapless transition, so the end is trimmed.
+    processor.configure(audioFormat);
+    byte[] drainedOutput = drain(new AudioProcessor[] {processor});
+
+    assertThat(output).hasLength((INPUT_FRAME_COUNT - 30) * 4);
+    assertThat(drainedOutput).isEmpty();
+    assertThat(processor.getTrimmedFrameCount()).isEqualTo(30);
+  }
+
+  private static void assertOutputMatchesSeparateProcessors(
+      @C.PcmEncoding int encoding,
+      int channelCount,
+      @Nullable int[] outputChannels,
+      int trimStartFrames,
+      int trimEndFrames)
+      throws UnhandledAudioFormatException {
+    byte[] input = createInput(encoding, channelCount);
+    int inputBytesPerFrame = new AudioFormat(SAMPLE_RATE, channelCount, encoding).bytesPerFrame;
+    int[] chunkFrameCounts = {1, 13, INPUT_FRAME_COUNT};
+    for (int chunkFrameCount : chunkFrameCounts) {
+      int chunkSize = chunkFrameCount * inputBytesPerFrame;
+      ChannelMappingAudioProcessor channelMappingProcessor = new ChannelMappingAudioProcessor();
+      channelMappingProcessor.setChannelMap(outputChannels);
+      TrimmingAudioProcessor trimmingProcessor = new TrimmingAudioProcessor();
+      trimmingProcessor.setTrimFrameCount(trimStartFrames, trimEndFrames);
+      AudioProcessor[] separateProcessors =
+          configure(
+              new AudioProcessor[] {
+                new ResamplingAudioProcessor(), channelMappingProcessor, trimmingProcessor
+              },
+              encoding,
+              channelCount);
+      FusedPcmAudioProcessor fusedProcessor = new FusedPcmAudioProcessor();
+      fusedProcessor.setChannelMap(outputChannels);
+      fusedProcessor.setTrimFrameCount(trimStartFrames, trimEndFrames);
+      AudioProcessor[] fusedProcessors =
+          configure(new AudioProcessor[] {fusedProcessor}, encoding, channelCount);
+
+      byte[] expectedOutput = process(separateProcessors, input, chunkSize);
+      byte[] output = process(fusedProcessors, input, chunkSize);
+
+      assertThat(output).isEqualTo(expectedOutput);
+      assertThat(fusedProcessor.getTrimmedFrameCount())
+          .isEqualTo(trimmingProcessor.getTrimmedFrameCount());
+      // Draining in the middle of the stream outputs the end buffer.
+      assertThat(drain(fusedProcessors)).isEqualTo(drain(separateProcessors));
+    }
+  }
+
+  /** Configures and flushes {@code processors}, returning those that are active. */
+  private static AudioProcessor[] configure(
+      AudioProcessor[] processors, @C.PcmEncoding int encoding, int channelCount)
+      throws UnhandledAudioFormatException {
+    AudioFormat audioFormat = new AudioFormat(SAMPLE_RATE, channelCount, encoding);
+    List<AudioProcessor> activeProcessors = new ArrayList<>();
+    for (AudioProcessor processor : processors) {
+      AudioFormat outputAudioFormat = processor.configure(audioFormat);
+      if (processor.isActive()) {
+        audioFormat = outputAudioFormat;
+        activeProcessors.add(processor);
+      }
+      processor.flush();
+    }
+    return activeProcessors.toArray(new AudioProcessor[0]);
+  }
+
+  /** Queues {@code input} to the first of {@code processors} in chunks, returning the output. */
+  private static byte[] process(AudioProcessor[] processors, byte[] input, int chunkSize) {
+    return process(processors, input, chunkSize, ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Queues {@code input} to the first of {@code processors} in chunks held in buffers with the
+   * given byte order, returning the output.
+   */
+  private static byte[] process(
+      AudioProcessor[] processors, byte[] input, int chunkSize, ByteOrder byteOrder) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (int position = 0; position < input.length; position += chunkSize) {
+      int size = Math.min(chunkSize, input.length - position);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(byteOrder);
+      buffer.put(input, position, size).flip();
+      for (AudioProcessor processor : processors) {
+        processor.queueInput(buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        buffer = processor.getOutput();
+      }
+      writeRemaining(buffer, output);
+    }
+    return output.toByteArray();
+  }
+
+  /** Drains {@code processors} to the end of stream in order, returning the output. */
+  private static byte[] drain(AudioProcessor[] processors) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (int i = 0; i < processors.length; i++) {
+      processors[i].queueEndOfStream();
+      ByteBuffer buffer = processors[i].getOutput();
+      for (int j = i + 1; j < processors.length; j++) {
+        processors[j].queueInput(buffer);
+        buffer = processors[j].getOutput();
+      }
+      writeRemaining(buffer, output);
+      assertThat(processors[i].isEnded()).isTrue();
+    }
+    return output.toByteArray();
+  }
+
+  private static void writeRemaining(ByteBuffer buffer, ByteArrayOutputStream output) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    output.write(bytes, 0, bytes.length);
+  }
+
+  private static byte[] createInput(@C.PcmEncoding int encoding, int channelCount) {
+    int bytesPerFrame = new AudioFormat(SAMPLE_RATE, channelCount, encoding).bytesPerFrame;
+    return TestUtil.buildTestData(INPUT_FRAME_COUNT * bytesPerFrame, new Random(/* seed= */ 0));
+  }
+}
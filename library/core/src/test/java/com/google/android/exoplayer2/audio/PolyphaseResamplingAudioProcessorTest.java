@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PolyphaseResamplingAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class PolyphaseResamplingAudioProcessorTest {
+
+  /** The number of frames at each end of the output not to compare, due to the filter's edges. */
+  private static final int EDGE_FRAME_COUNT = 2000;
+
+  private PolyphaseResamplingAudioProcessor processor;
+
+  @Before
+  public void setUp() {
+    processor = new PolyphaseResamplingAudioProcessor();
+  }
+
+  @Test
+  public void isNotActiveWithNoSampleRateChange() throws Exception {
+    processor.configure(createAudioFormat(/* sampleRate= */ 44100, C.ENCODING_PCM_16BIT));
+    assertThat(processor.isActive()).isFalse();
+
+    processor.setOutputSampleRateHz(44100);
+    processor.configure(createAudioFormat(/* sampleRate= */ 44100, C.ENCODING_PCM_16BIT));
+    assertThat(processor.isActive()).isFalse();
+  }
+
+  @Test
+  public void configure_withSampleRateChange_outputsInputEncoding() throws Exception {
+    processor.setOutputSampleRateHz(48000);
+
+    AudioFormat outputAudioFormat =
+        processor.configure(createAudioFormat(/* sampleRate= */ 44100, C.ENCODING_PCM_FLOAT));
+
+    assertThat(processor.isActive()).isTrue();
+    assertThat(outputAudioFormat.sampleRate).isEqualTo(48000);
+    assertThat(outputAudioFormat.channelCount).isEqualTo(1);
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+  }
+
+  @Test
+  public void configure_withUnsupportedEncoding_throws() {
+    processor.setOutputSampleRateHz(48000);
+    try {
+      processor.configure(createAudioFormat(/* sampleRate= */ 44100, C.ENCODING_PCM_24BIT));
+      fail();
+    } catch (UnhandledAudioFormatException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void upsample_outputsSineWaveAtOutputSampleRate() throws Exception {
+    float[] output =
+        resample(
+            createSineWave(/* sampleRate= */ 44100, /* frequencyHz= */ 1000),
+            /* inputSampleRate= */ 44100,
+            /* outputSampleRate= */ 48000,
+            PolyphaseResamplingAudioProcessor.QUALITY_MEDIUM,
+            /* chunkFrameCount= */ 1024);
+
+    assertThat(output).hasLength(48000);
+    float[] expectedOutput = createSineWave(/* sampleRate= */ 48000, /* frequencyHz= */ 1000);
+    assertThat(getErrorDb(output, expectedOutput)).isLessThan(-80.0);
+  }
+
+  @Test
+  public void downsample_outputsSineWaveAtOutputSampleRate() throws Exception {
+    float[] output =
+        resample(
+            createSineWave(/* sampleRate= */ 48000, /* frequencyHz= */ 1000),
+            /* inputSampleRate= */ 48000,
+            /* outputSampleRate= */ 44100,
+            PolyphaseResamplingAudioProcessor.QUALITY_MEDIUM,
+            /* chunkFrameCount= */ 1024);
+
+    assertThat(output).hasLength(44100);
+    float[] expectedOutput = createSineWave(/* sampleRate= */ 44100, /* frequencyHz= */ 1000);
+    assertThat(getErrorDb(output, expectedOutput)).isLessThan(-80.0);
+  }
+
+  @Test
+  public void downsample_attenuatesFrequenciesAboveOutputNyquistFrequency() throws Exception {
+    float[] output =
+        resample(
+            createSineWave(/* sampleRate= */ 48000, /* frequencyHz= */ 23000),
+            /* inputSampleRate= */ 48000,
+            /* outputSampleRate= */ 44100,
+            PolyphaseResamplingAudioProcessor.QUALITY_MEDIUM,
+            /* chunkFrameCount= */ 1024);
+
+    float[] silence = new float[output.length];
+    assertThat(getErrorDb(silence, output)).isLessThan(-75.0);
+  }
+
+  @Test
+  public void resample_withInterpolatedPhases_outputsSineWaveAtOutputSampleRate()
+      throws Exception {
+    // Converting from 44100 Hz to 47999 Hz has more phases than are precomputed.
+    float[] output =
+        resample(
+            createSineWave(/* sampleRate= */ 44100, /* frequencyHz= */ 1000),
+            /* inputSampleRate= */ 44100,
+            /* outputSampleRate= */ 47999,
+            PolyphaseResamplingAudioProcessor.QUALITY_MEDIUM,
+            /* chunkFrameCount= */ 1024);
+
+    assertThat(output).hasLength(47999);
+    float[] expectedOutput = createSineWave(/* sampleRate= */ 47999, /* frequencyHz= */ 1000);
+    assertThat(getErrorDb(output, expectedOutput)).isLessThan(-80.0);
+  }
+
+  @Test
+  public void resample_higherQuality_hasLowerError() throws Exception {
+    float[] input = createSineWave(/* sampleRate= */ 44100, /* frequencyHz= */ 15000);
+    float[] expectedOutput = createSineWave(/* sampleRate= */ 48000, /* frequencyHz= */ 15000);
+
+    double lowQualityErrorDb =
+        getErrorDb(
+            resample(input, 44100, 48000, PolyphaseResamplingAudioProcessor.QUALITY_LOW, 1024),
+            expectedOutput);
+    double mediumQualityErrorDb =
+        getErrorDb(
+            resample(input, 44100, 48000, PolyphaseResamplingAudioProcessor.QUALITY_MEDIUM, 1024),
+            expectedOutput);
+    double highQualityErrorDb =
+        getErrorDb(
+            resample(input, 44100, 48000, PolyphaseResamplingAudioProcessor.QUALITY_HIGH, 1024),
+            expectedOutput);
+
+    assertThat(mediumQualityErrorDb).isLessThan(lowQualityErrorDb);
+    assertThat(highQualityErrorDb).isLessThan(mediumQualityErrorDb);
+  }
+
+  @Test
+  public void resample_16Bit_outputDoesNotDependOnInputChunkSize() throws Exception {
+    float[] input = createSineWave(/* sampleRate= */ 44100, /* frequencyHz= */ 440);
+
+    float[] output =
+        resample(
+            input,
+            /* inputSampleRate= */ 44100,
+            /* outputSampleRate= */ 48000,
+            PolyphaseResamplingAudioProcessor.QUALITY_MEDIUM,
+            /* chunkFrameCount= */ input.length,
+            C.ENCODING_PCM_16BIT);
+    float[] outputWithSmallChunks =
+        resample(
+            input,
+            /* inputSampleRate= */ 44100,
+            /* outputSampleRate= */ 48000,
+            PolyphaseResamplingAudioProcessor.QUALITY_MEDIUM,
+            /* chunkFrameCount= */ 7,
+            C.ENCODING_PCM_16BIT);
+
+    assertThat(output).hasLength(48000);
+    assertThat(outputWithSmallChunks).isEqualTo(output);
+  }
+
+  private float[] resample(
+      float[] input,
+      int inputSampleRate,
+      int outputSampleRate,
+      @PolyphaseResamplingAudioProcessor.Quality int quality,
+      int chunkFrameCount)
+      throws UnhandledAudioFormatException {
+    return resample(
+        input, inputSampleRate, outputSampleRate, quality, chunkFrameCount, C.ENCODING_PCM_FLOAT);
+  }
+
+  /** Resamples mono {@code input} in chunks, returning the output as floats. */
+  private float[] resample(
+      float[] input,
+      int inputSampleRate,
+      int outputSampleRate,
+      @PolyphaseResamplingAudioProcessor.Quality int quality,
+      int chunkFrameCount,
+      @C.PcmEncoding int encoding)
+      throws UnhandledAudioFormatException {
+    processor.setOutputSampleRateHz(outputSampleRate);
+    processor.setQuality(quality);
+    processor.configure(createAudioFormat(inputSampleRate, encoding));
+    processor.flush();
+    boolean is16Bit = encoding == C.ENCODING_PCM_16BIT;
+    int bytesPerSample = is16Bit ? 2 : 4;
+    FloatBuffer output = FloatBuffer.allocate(2 * input.length);
+    for (int position = 0; position < input.length; position += chunkFrameCount) {
+      int frameCount = Math.min(chunkFrameCount, input.length - position);
+      ByteBuffer inputBuffer =
+          ByteBuffer.allocateDirect(frameCount * bytesPerSample).order(ByteOrder.nativeOrder());
+      for (int i = position; i < position + frameCount; i++) {
+        if (is16Bit) {
+          inputBuffer.putShort((short) Math.round(input[i] * Short.MAX_VALUE));
+        } else {
+          inputBuffer.putFloat(input[i]);
+        }
+      }
+      inputBuffer.flip();
+      processor.queueInput(inputBuffer);
+      assertThat(inputBuffer.hasRemaining()).isFalse();
+      readOutput(processor.getOutput(), is16Bit, output);
+    }
+    processor.queueEndOfStream();
+    while (!processor.isEnded()) {
+      readOutput(processor.getOutput(), is16Bit, output);
+    }
+    float[] result = new float[output.position()];
+    output.flip();
+    output.get(result);
+    return result;
+  }
+
+  private static void readOutput(ByteBuffer buffer, boolean is16Bit, FloatBuffer output) {
+    while (buffer.hasRemaining()) {
+      output.put(is16Bit ? buffer.getShort() / 32768f : buffer.getFloat());
+    }
+  }
+
+  /**
+   * Returns the energy of the difference between {@code actual} and {@code expected} relative to
+   * the energy of a full scale sine wave, in decibels, ignoring frames near either end.
+   */
+  private static double getErrorDb(float[] actual, float[] expected) {
+    int length = Math.min(actual.length, expected.length) - EDGE_FRAME_COUNT;
+    double errorEnergy = 0;
+    for (int i = EDGE_FRAME_COUNT; i < length; i++) {
+      double error = actual[i] - expected[i];
+      errorEnergy += error * error;
+    }
+    return 10 * Math.log10(2 * errorEnergy / (length - EDGE_FRAME_COUNT));
+  }
+
+  /** Returns one second of a half scale sine wave. */
+  private static float[] createSineWave(int sampleRate, int frequencyHz) {
+    float[] samples = new float[sampleRate];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = (float) (0.5 * Math.sin(2 * Math.PI * frequencyHz * i / sampleRate));
+    }
+    return samples;
+  }
+
+  private static AudioFormat createAudioFormat(int sampleRate, @C.PcmEncoding int encoding) {
+    return new AudioFormat(sampleRate, /* channelCount= */ 1, encoding);
+  }
+}
@@ -22,6 +22,8 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
 import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -91,6 +93,31 @@ public final class SonicAudioProcessorTest {
     assertThat(sonicAudioProcessor.isActive()).isFalse();
   }
 
+  @Test
+  public void testFloatInputOutputsFloat() throws Exception {
+    AudioFormat inputAudioFormat =
+        new AudioFormat(
+            /* sampleRate= */ 44100, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_FLOAT);
+    sonicAudioProcessor.setSpeed(2f);
+    AudioFormat outputAudioFormat = sonicAudioProcessor.configure(inputAudioFormat);
+    sonicAudioProcessor.flush();
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+
+    int inputFrameCount = 44100;
+    ByteBuffer inputBuffer =
+        ByteBuffer.allocateDirect(inputFrameCount * 2 * 4).order(ByteOrder.nativeOrder());
+    sonicAudioProcessor.queueInput(inputBuffer);
+    int outputSize = sonicAudioProcessor.getOutput().remaining();
+    sonicAudioProcessor.queueEndOfStream();
+    sonicAudioProcessor.queueInput(AudioProcessor.EMPTY_BUFFER);
+    outputSize += sonicAudioProcessor.getOutput().remaining();
+
+    assertThat(inputBuffer.hasRemaining()).isFalse();
+    assertThat(sonicAudioProcessor.isEnded()).isTrue();
+    assertThat(outputSize).isEqualTo(inputFrameCount / 2 * 2 * 4);
+  }
+
   @Test
   public void testDoesNotSupportNon16BitInput() throws Exception {
     try {
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.android.exoplayer2.testutil.TestUtil.assertBufferInfosEqual;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.media.MediaCodec;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.NoSuchElementException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link BufferInfoArrayQueue}. */
+@RunWith(AndroidJUnit4.class)
+public class BufferInfoArrayQueueTest {
+
+  @Test
+  public void remove_returnsValuesInOrderOfAddition() {
+    BufferInfoArrayQueue queue = new BufferInfoArrayQueue();
+    queue.add(createBufferInfo(/* index= */ 0));
+    queue.add(createBufferInfo(/* index= */ 1));
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+    queue.remove(bufferInfo);
+    assertBufferInfosEqual(createBufferInfo(/* index= */ 0), bufferInfo);
+    queue.remove(bufferInfo);
+    assertBufferInfosEqual(createBufferInfo(/* index= */ 1), bufferInfo);
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void add_doesNotRetainCallerBufferInfo() {
+    BufferInfoArrayQueue queue = new BufferInfoArrayQueue();
+    MediaCodec.BufferInfo bufferInfo = createBufferInfo(/* index= */ 0);
+    queue.add(bufferInfo);
+    // Reuse the same instance for the next buffer, as a caller recycling its BufferInfo would.
+    bufferInfo.set(/* newOffset= */ 1, /* newSize= */ 101, /* newTimeUs= */ 7, /* newFlags= */ 0);
+    queue.add(bufferInfo);
+    bufferInfo.set(/* newOffset= */ 5, /* newSize= */ 6, /* newTimeUs= */ 7, /* newFlags= */ 8);
+
+    MediaCodec.BufferInfo outBufferInfo = new MediaCodec.BufferInfo();
+    queue.remove(outBufferInfo);
+    assertBufferInfosEqual(createBufferInfo(/* index= */ 0), outBufferInfo);
+    queue.remove(outBufferInfo);
+    assertThat(outBufferInfo.offset).isEqualTo(1);
+    assertThat(outBufferInfo.size).isEqualTo(101);
+    assertThat(outBufferInfo.presentationTimeUs).isEqualTo(7);
+    assertThat(outBufferInfo.flags).isEqualTo(0);
+  }
+
+  @Test
+  public void add_whenWrappedAround_doublesCapacityAndKeepsOrder() {
+    BufferInfoArrayQueue queue = new BufferInfoArrayQueue();
+    int capacity = queue.capacity();
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    // Move the head of the queue away from the start of the arrays.
+    queue.add(createBufferInfo(/* index= */ -1));
+    queue.remove(bufferInfo);
+
+    for (int i = 0; i <= capacity; i++) {
+      queue.add(createBufferInfo(i));
+    }
+
+    assertThat(queue.capacity()).isEqualTo(2 * capacity);
+    assertThat(queue.size()).isEqualTo(capacity + 1);
+    for (int i = 0; i <= capacity; i++) {
+      queue.remove(bufferInfo);
+      assertBufferInfosEqual(createBufferInfo(i), bufferInfo);
+    }
+  }
+
+  @Test
+  public void remove_afterClear_throwsNoSuchElementException() {
+    BufferInfoArrayQueue queue = new BufferInfoArrayQueue();
+    queue.add(createBufferInfo(/* index= */ 0));
+
+    queue.clear();
+
+    assertThat(queue.size()).isEqualTo(0);
+    assertThrows(
+        NoSuchElementException.class, () -> queue.remove(new MediaCodec.BufferInfo()));
+  }
+
+  private static MediaCodec.BufferInfo createBufferInfo(int index) {
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    bufferInfo.set(
+        /* newOffset= */ index,
+        /* newSize= */ 100 + index,
+        /* newTimeUs= */ 1_000_000_000_000L + index,
+        /* newFlags= */ index & MediaCodec.BUFFER_FLAG_KEY_FRAME);
+    return bufferInfo;
+  }
+}
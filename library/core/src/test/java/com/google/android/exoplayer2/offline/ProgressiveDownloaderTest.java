@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static com.google.android.exoplayer2.testutil.CacheAsserts.assertDataCached;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ProgressiveDownloader}. */
+@RunWith(AndroidJUnit4.class)
+public final class ProgressiveDownloaderTest {
+
+  private static final Uri URI = Uri.parse("https://test.com/video.mp4");
+  private static final int CONTENT_LENGTH = 4 * 1024 * 1024 + 123;
+
+  private File tempFolder;
+  private SimpleCache cache;
+  private byte[] data;
+  private List<Long> openedPositions;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFolder =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    cache = new SimpleCache(tempFolder, new NoOpCacheEvictor());
+    data = TestUtil.buildTestData(CONTENT_LENGTH);
+    openedPositions = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(tempFolder);
+  }
+
+  @Test
+  public void download_sequential_cachesContent() throws Exception {
+    ProgressListener progressListener = new ProgressListener();
+
+    createDownloader(/* maxParallelDownloads= */ 1).download(progressListener);
+
+    assertContentCached();
+    assertThat(progressListener.bytesDownloaded).isEqualTo(CONTENT_LENGTH);
+    assertThat(openedPositions).containsExactly(0L);
+  }
+
+  @Test
+  public void download_parallel_cachesIdenticalContentUsingByteRanges() throws Exception {
+    ProgressListener progressListener = new ProgressListener();
+
+    createDownloader(/* maxParallelDownloads= */ 4).download(progressListener);
+
+    assertContentCached();
+    assertThat(progressListener.contentLength).isEqualTo(CONTENT_LENGTH);
+    assertThat(progressListener.bytesDownloaded).isEqualTo(CONTENT_LENGTH);
+    // The content is opened once to determine its length, and then once for each byte range.
+    long rangeLength = Util.ceilDivide(CONTENT_LENGTH, 4);
+    assertThat(openedPositions)
+        .containsExactly(0L, 0L, rangeLength, 2 * rangeLength, 3 * rangeLength);
+  }
+
+  @Test
+  public void download_parallelWithPartiallyCachedContent_resumesAndCachesIdenticalContent()
+      throws Exception {
+    // Simulate an interrupted download, which cached the content length, part of the first range
+    // and the whole of the third range.
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, CONTENT_LENGTH);
+    cache.applyContentMetadataMutations(URI.toString(), mutations);
+    DataSpec dataSpec = new DataSpec(URI);
+    long rangeLength = Util.ceilDivide(CONTENT_LENGTH, 4);
+    cacheSubrange(dataSpec.subrange(/* offset= */ 1000, /* length= */ 5000));
+    cacheSubrange(dataSpec.subrange(2 * rangeLength, rangeLength));
+    ProgressListener progressListener = new ProgressListener();
+
+    createDownloader(/* maxParallelDownloads= */ 4).download(progressListener);
+
+    assertContentCached();
+    assertThat(progressListener.bytesDownloaded).isEqualTo(CONTENT_LENGTH);
+    assertThat(openedPositions).containsExactly(0L, 6000L, rangeLength, 3 * rangeLength);
+  }
+
+  @Test
+  public void download_parallelWithSmallContent_downloadsSequentially() throws Exception {
+    data = TestUtil.buildTestData(/* length= */ 1024);
+
+    createDownloader(/* maxParallelDownloads= */ 4).download(/* progressListener= */ null);
+
+    assertContentCached();
+    assertThat(openedPositions).containsExactly(0L, 0L);
+  }
+
+  private ProgressiveDownloader createDownloader(int maxParallelDownloads) {
+    // FakeDataSource instances share the read state of their data, so use ByteArrayDataSources,
+    // which can read the same data concurrently.
+    DataSource.Factory upstreamFactory =
+        () -> {
+          ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+          dataSource.addTransferListener(new OpenedPositionRecorder());
+          return dataSource;
+        };
+    return new ProgressiveDownloader(
+        URI,
+        /* customCacheKey= */ null,
+        new DownloaderConstructorHelper(
+            cache,
+            upstreamFactory,
+            /* cacheReadDataSourceFactory= */ null,
+            /* cacheWriteDataSinkFactory= */ null,
+            /* priorityTaskManager= */ null,
+            /* cacheKeyFactory= */ null,
+            maxParallelDownloads));
+  }
+
+  private void cacheSubrange(DataSpec dataSpec) throws Exception {
+    CacheUtil.cache(
+        dataSpec,
+        cache,
+        /* cacheKeyFactory= */ null,
+        new ByteArrayDataSource(data),
+        /* progressListener= */ null,
+        /* isCanceled= */ null);
+  }
+
+  private void assertContentCached() throws Exception {
+    assertDataCached(cache, new DataSpec(URI), data);
+    assertThat(cache.getCacheSpace()).isEqualTo(data.length);
+  }
+
+  /** Records the positions at which upstream data sources are opened. */
+  private final class OpenedPositionRecorder implements TransferListener {
+
+    @Override
+    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      openedPositions.add(dataSpec.position);
+    }
+
+    @Override
+    public void onBytesTransferred(
+        DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      // Do nothing.
+    }
+  }
+
+  private static final class ProgressListener implements Downloader.ProgressListener {
+
+    private long contentLength;
+    private long bytesDownloaded;
+
+    @Override
+    public void onProgress(long contentLength, long bytesDownloaded, float percentDownloaded) {
+      this.contentLength = contentLength;
+      this.bytesDownloaded = bytesDownloaded;
+    }
+  }
+}
@@ -33,6 +33,7 @@ import com.google.android.exoplayer2.testutil.FakeTimeline;
 import com.google.android.exoplayer2.testutil.FakeTimeline.TimelineWindowDefinition;
 import com.google.android.exoplayer2.testutil.MediaSourceTestRunner;
 import com.google.android.exoplayer2.testutil.TimelineAsserts;
+import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -1012,6 +1013,91 @@ public final class ConcatenatingMediaSourceTest {
     mediaSource.removeMediaSource(0);
   }
 
+  @Test
+  public void testNextChildSourcesArePreloadedWithLazyPreparationAfterPeriodCreation()
+      throws IOException {
+    FakeMediaSource[] childSources = createMediaSources(/* count= */ 4);
+    mediaSource =
+        new ConcatenatingMediaSource(
+            /* isAtomic= */ false,
+            /* useLazyPreparation= */ true,
+            new DefaultShuffleOrder(0),
+            childSources);
+    mediaSource.setPreloadCount(/* preloadCount= */ 2);
+    testRunner = new MediaSourceTestRunner(mediaSource, /* allocator= */ null);
+    Timeline timeline = testRunner.prepareSource();
+
+    assertThat(childSources[0].isPrepared()).isFalse();
+    assertThat(childSources[1].isPrepared()).isFalse();
+
+    testRunner.createPeriod(
+        new MediaPeriodId(
+            timeline.getUidOfPeriod(/* periodIndex= */ 0), /* windowSequenceNumber= */ 0));
+
+    assertThat(childSources[0].isPrepared()).isTrue();
+    assertThat(childSources[1].isPrepared()).isTrue();
+    assertThat(childSources[2].isPrepared()).isTrue();
+    assertThat(childSources[3].isPrepared()).isFalse();
+  }
+
+  @Test
+  public void testNextChildSourcesArePreloadedInShuffledOrderWithRepeatAll() throws IOException {
+    FakeMediaSource[] childSources = createMediaSources(/* count= */ 4);
+    mediaSource =
+        new ConcatenatingMediaSource(
+            /* isAtomic= */ false,
+            /* useLazyPreparation= */ true,
+            new FakeShuffleOrder(/* length= */ 0),
+            childSources);
+    mediaSource.setPreloadCount(/* preloadCount= */ 2);
+    mediaSource.setPreloadPlaybackOrder(Player.REPEAT_MODE_ALL, /* shuffleModeEnabled= */ true);
+    testRunner = new MediaSourceTestRunner(mediaSource, /* allocator= */ null);
+    Timeline timeline = testRunner.prepareSource();
+
+    testRunner.createPeriod(
+        new MediaPeriodId(
+            timeline.getUidOfPeriod(/* periodIndex= */ 1), /* windowSequenceNumber= */ 0));
+
+    // The shuffled order is 3, 2, 1, 0, so source 0 follows source 1, and source 3 follows after
+    // wrapping around.
+    assertThat(childSources[0].isPrepared()).isTrue();
+    assertThat(childSources[1].isPrepared()).isTrue();
+    assertThat(childSources[2].isPrepared()).isFalse();
+    assertThat(childSources[3].isPrepared()).isTrue();
+  }
+
+  @Test
+  public void testChildSourcesArePreloadedOnlyWhenPreloadPriorityIsHighest() throws IOException {
+    FakeMediaSource[] childSources = createMediaSources(/* count= */ 2);
+    mediaSource =
+        new ConcatenatingMediaSource(
+            /* isAtomic= */ false,
+            /* useLazyPreparation= */ true,
+            new DefaultShuffleOrder(0),
+            childSources);
+    PriorityTaskManager priorityTaskManager = new PriorityTaskManager();
+    int preloadPriority = C.PRIORITY_PLAYBACK - 1;
+    mediaSource.setPreloadCount(/* preloadCount= */ 1, priorityTaskManager, preloadPriority);
+    testRunner = new MediaSourceTestRunner(mediaSource, /* allocator= */ null);
+    Timeline timeline = testRunner.prepareSource();
+    priorityTaskManager.add(C.PRIORITY_PLAYBACK);
+
+    testRunner.createPeriod(
+        new MediaPeriodId(
+            timeline.getUidOfPeriod(/* periodIndex= */ 0), /* windowSequenceNumber= */ 0));
+
+    assertThat(childSources[1].isPrepared()).isFalse();
+
+    priorityTaskManager.remove(C.PRIORITY_PLAYBACK);
+    // Trigger an update rather than waiting for the next priority check.
+    mediaSource.setPreloadCount(/* preloadCount= */ 1, priorityTaskManager, preloadPriority);
+    testRunner.runOnPlaybackThread(() -> {});
+
+    assertThat(childSources[1].isPrepared()).isTrue();
+    // Preloading unregisters once it has completed.
+    assertThat(priorityTaskManager.proceedNonBlocking(preloadPriority)).isFalse();
+  }
+
   @Test
   public void testSetShuffleOrderBeforePreparation() throws Exception {
     mediaSource.setShuffleOrder(new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 0));
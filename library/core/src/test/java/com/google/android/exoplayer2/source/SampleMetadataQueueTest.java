@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.TrackOutput.CryptoData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SampleMetadataQueue}. */
+@RunWith(AndroidJUnit4.class)
+public final class SampleMetadataQueueTest {
+
+  private static final int BLOCK_LENGTH = SampleMetadataQueue.BLOCK_LENGTH;
+  private static final Format FORMAT_1 = Format.createSampleFormat("1", "mimeType");
+  private static final Format FORMAT_2 = Format.createSampleFormat("2", "mimeType");
+  private static final CryptoData CRYPTO_DATA =
+      new CryptoData(
+          C.CRYPTO_MODE_AES_CTR,
+          /* encryptionKey= */ new byte[16],
+          /* encryptedBlocks= */ 0,
+          /* clearBlocks= */ 0);
+
+  private SampleMetadataQueue queue;
+
+  @Before
+  public void setUp() {
+    queue = new SampleMetadataQueue();
+  }
+
+  @Test
+  public void append_acrossBlocks_retainsMetadata() {
+    int sampleCount = 3 * BLOCK_LENGTH + 1;
+    appendSamples(/* firstTimeUs= */ 0, sampleCount);
+
+    assertThat(queue.getFirstIndex()).isEqualTo(0);
+    assertThat(queue.getWriteIndex()).isEqualTo(sampleCount);
+    for (int i = 0; i < sampleCount; i++) {
+      assertSample(i, /* timeUs= */ i * 1000L);
+    }
+  }
+
+  @Test
+  public void discardTo_thenAppend_retainsMetadataOfRemainingSamples() {
+    appendSamples(/* firstTimeUs= */ 0, 2 * BLOCK_LENGTH);
+
+    queue.discardTo(BLOCK_LENGTH + 10);
+    appendSamples(/* firstTimeUs= */ 2 * BLOCK_LENGTH * 1000L, 2 * BLOCK_LENGTH);
+
+    assertThat(queue.getFirstIndex()).isEqualTo(BLOCK_LENGTH + 10);
+    assertThat(queue.getWriteIndex()).isEqualTo(4 * BLOCK_LENGTH);
+    for (int i = BLOCK_LENGTH + 10; i < 4 * BLOCK_LENGTH; i++) {
+      assertSample(i, /* timeUs= */ i * 1000L);
+    }
+  }
+
+  @Test
+  public void discardTo_end_allowsAppendingAtWriteIndex() {
+    appendSamples(/* firstTimeUs= */ 0, BLOCK_LENGTH / 2);
+
+    queue.discardTo(BLOCK_LENGTH / 2);
+    appendSamples(/* firstTimeUs= */ BLOCK_LENGTH / 2 * 1000L, BLOCK_LENGTH);
+
+    assertThat(queue.getFirstIndex()).isEqualTo(BLOCK_LENGTH / 2);
+    for (int i = BLOCK_LENGTH / 2; i < BLOCK_LENGTH * 3 / 2; i++) {
+      assertSample(i, /* timeUs= */ i * 1000L);
+    }
+  }
+
+  @Test
+  public void discardFrom_thenAppend_replacesDiscardedFormats() {
+    appendSamples(/* firstTimeUs= */ 0, BLOCK_LENGTH + 1);
+    queue.append(
+        /* timeUs= */ 0,
+        /* flags= */ 0,
+        /* offset= */ 0,
+        /* size= */ 0,
+        /* cryptoData= */ null,
+        FORMAT_2,
+        /* sourceId= */ 0);
+
+    queue.discardFrom(BLOCK_LENGTH - 1);
+    queue.append(
+        /* timeUs= */ 0,
+        /* flags= */ 0,
+        /* offset= */ 0,
+        /* size= */ 0,
+        CRYPTO_DATA,
+        FORMAT_2,
+        /* sourceId= */ 0);
+
+    assertThat(queue.getWriteIndex()).isEqualTo(BLOCK_LENGTH);
+    assertThat(queue.getFormat(BLOCK_LENGTH - 2)).isSameInstanceAs(FORMAT_1);
+    assertThat(queue.getFormat(BLOCK_LENGTH - 1)).isSameInstanceAs(FORMAT_2);
+    assertThat(queue.getCryptoData(BLOCK_LENGTH - 2)).isNull();
+    assertThat(queue.getCryptoData(BLOCK_LENGTH - 1)).isSameInstanceAs(CRYPTO_DATA);
+  }
+
+  @Test
+  public void clear_resetsIndices() {
+    appendSamples(/* firstTimeUs= */ 0, BLOCK_LENGTH + 1);
+    queue.discardTo(5);
+
+    queue.clear();
+    appendSamples(/* firstTimeUs= */ 0, 1);
+
+    assertThat(queue.getFirstIndex()).isEqualTo(0);
+    assertThat(queue.getWriteIndex()).isEqualTo(1);
+    assertSample(/* index= */ 0, /* timeUs= */ 0);
+  }
+
+  @Test
+  public void binarySearchIndexAfter_withIncreasingTimestamps_findsFirstLaterSample() {
+    appendSamples(/* firstTimeUs= */ 0, 3 * BLOCK_LENGTH);
+
+    assertThat(queue.canBinarySearchTimes(0, 3 * BLOCK_LENGTH)).isTrue();
+    assertThat(queue.binarySearchIndexAfter(/* timeUs= */ 0, 0, 3 * BLOCK_LENGTH)).isEqualTo(1);
+    assertThat(queue.binarySearchIndexAfter(/* timeUs= */ 1_500_500, 0, 3 * BLOCK_LENGTH))
+        .isEqualTo(1501);
+    assertThat(queue.binarySearchIndexAfter(/* timeUs= */ -1, 0, 3 * BLOCK_LENGTH)).isEqualTo(0);
+    assertThat(queue.binarySearchIndexAfter(/* timeUs= */ Long.MAX_VALUE, 10, 20)).isEqualTo(20);
+  }
+
+  @Test
+  public void canBinarySearchTimes_withDecreasingTimestamp_returnsFalseForRangesContainingIt() {
+    appendSamples(/* firstTimeUs= */ 1000, 10);
+    appendSamples(/* firstTimeUs= */ 0, 10);
+
+    assertThat(queue.canBinarySearchTimes(0, 20)).isFalse();
+    assertThat(queue.canBinarySearchTimes(0, 10)).isTrue();
+    assertThat(queue.canBinarySearchTimes(10, 20)).isTrue();
+  }
+
+  @Test
+  public void binarySearchIndexAfter_afterDecreasingTimestampDiscarded_findsFirstLaterSample() {
+    appendSamples(/* firstTimeUs= */ 1000, 10);
+    appendSamples(/* firstTimeUs= */ 0, 10);
+
+    queue.discardTo(10);
+
+    assertThat(queue.canBinarySearchTimes(10, 20)).isTrue();
+    assertThat(queue.binarySearchIndexAfter(/* timeUs= */ 5000, 10, 20)).isEqualTo(16);
+  }
+
+  @Test
+  public void canBinarySearchTimes_afterDecreasingTimestampDiscardedFromBack_returnsTrue() {
+    appendSamples(/* firstTimeUs= */ 1000, 10);
+    appendSamples(/* firstTimeUs= */ 0, 10);
+
+    queue.discardFrom(10);
+    appendSamples(/* firstTimeUs= */ 10_000, 10);
+
+    assertThat(queue.canBinarySearchTimes(0, 20)).isTrue();
+  }
+
+  @Test
+  public void binarySearchKeyframeBefore_withReorderedFrames_findsLastKeyframeAtOrBeforeTime() {
+    // Keyframes every 30 samples, with the frames between them reordered.
+    for (int i = 0; i < 3 * BLOCK_LENGTH; i++) {
+      long timeUs = i % 30 == 0 ? i * 1000L : (i + (i % 2 == 0 ? 1 : -1)) * 1000L;
+      queue.append(
+          timeUs,
+          i % 30 == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0,
+          /* offset= */ 0,
+          /* size= */ 0,
+          /* cryptoData= */ null,
+          FORMAT_1,
+          /* sourceId= */ 0);
+    }
+
+    assertThat(queue.canBinarySearchTimes(0, 3 * BLOCK_LENGTH)).isFalse();
+    assertThat(queue.canBinarySearchKeyframes(0, 3 * BLOCK_LENGTH)).isTrue();
+    assertThat(queue.binarySearchKeyframeBefore(/* timeUs= */ 0, 0, 3 * BLOCK_LENGTH))
+        .isEqualTo(0);
+    assertThat(queue.binarySearchKeyframeBefore(/* timeUs= */ 1_529_000, 0, 3 * BLOCK_LENGTH))
+        .isEqualTo(1500);
+    assertThat(queue.binarySearchKeyframeBefore(/* timeUs= */ 1_530_000, 0, 3 * BLOCK_LENGTH))
+        .isEqualTo(1530);
+    assertThat(queue.binarySearchKeyframeBefore(/* timeUs= */ 1_530_000, 1, 3 * BLOCK_LENGTH))
+        .isEqualTo(1530);
+    assertThat(queue.binarySearchKeyframeBefore(/* timeUs= */ 1_530_000, 1, 1530))
+        .isEqualTo(1500);
+    assertThat(queue.binarySearchKeyframeBefore(/* timeUs= */ 10_000, 1, 3 * BLOCK_LENGTH))
+        .isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void canBinarySearchKeyframes_withKeyframeBeforeEarlierSample_returnsFalse() {
+    appendSamples(/* firstTimeUs= */ 0, 30);
+    // A keyframe whose timestamp is less than that of the sample before it.
+    queue.append(
+        /* timeUs= */ 1000,
+        C.BUFFER_FLAG_KEY_FRAME,
+        /* offset= */ 0,
+        /* size= */ 0,
+        /* cryptoData= */ null,
+        FORMAT_1,
+        /* sourceId= */ 0);
+
+    assertThat(queue.canBinarySearchKeyframes(0, 31)).isFalse();
+    assertThat(queue.canBinarySearchKeyframes(30, 31)).isTrue();
+  }
+
+  private void appendSamples(long firstTimeUs, int count) {
+    for (int i = 0; i < count; i++) {
+      int index = queue.getWriteIndex();
+      queue.append(
+          firstTimeUs + i * 1000L,
+          index % 30 == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0,
+          /* offset= */ index * 10L,
+          /* size= */ index,
+          /* cryptoData= */ null,
+          FORMAT_1,
+          /* sourceId= */ index);
+    }
+  }
+
+  private void assertSample(int index, long timeUs) {
+    assertThat(queue.getTimeUs(index)).isEqualTo(timeUs);
+    assertThat(queue.isKeyframe(index)).isEqualTo(index % 30 == 0);
+    assertThat(queue.getOffset(index)).isEqualTo(index * 10L);
+    assertThat(queue.getSize(index)).isEqualTo(index);
+    assertThat(queue.getSourceId(index)).isEqualTo(index);
+    assertThat(queue.getFormat(index)).isSameInstanceAs(FORMAT_1);
+    assertThat(queue.getCryptoData(index)).isNull();
+  }
+}
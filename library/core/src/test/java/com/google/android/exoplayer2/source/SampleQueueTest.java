@@ -40,6 +40,7 @@ import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DirectBufferAllocator;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.io.IOException;
 import java.util.Arrays;
@@ -318,6 +319,17 @@ public final class SampleQueueTest {
     assertAllocationCount(0);
   }
 
+  @Test
+  public void testReadMultiSamplesWithDirectBufferAllocator() {
+    allocator = new DirectBufferAllocator(/* trimOnReset= */ false, ALLOCATION_SIZE);
+    sampleQueue = new SampleQueue(allocator, mockDrmSessionManager);
+    writeTestData();
+    assertAllocationCount(10);
+    assertReadTestData();
+    sampleQueue.discardToRead();
+    assertAllocationCount(0);
+  }
+
   @Test
   public void testReadMultiWithSeek() {
     writeTestData();
@@ -415,6 +427,18 @@ public final class SampleQueueTest {
     assertThat(formatHolder.drmSession).isSameInstanceAs(mockDrmSession);
   }
 
+  @Test
+  public void testReadEncryptedSectionsWithDirectBufferAllocator() {
+    allocator = new DirectBufferAllocator(/* trimOnReset= */ false, ALLOCATION_SIZE);
+    sampleQueue = new SampleQueue(allocator, mockDrmSessionManager);
+    when(mockDrmSession.getState()).thenReturn(DrmSession.STATE_OPENED_WITH_KEYS);
+    writeTestDataWithEncryptedSections();
+
+    assertReadFormat(/* formatRequired= */ false, FORMAT_ENCRYPTED);
+    assertReadEncryptedSample(/* sampleIndex= */ 0);
+    assertReadEncryptedSample(/* sampleIndex= */ 1);
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testAllowPlaceholderSessionPopulatesDrmSession() {
@@ -709,6 +733,36 @@ public final class SampleQueueTest {
     assertNoSamplesToRead(FORMAT_2);
   }
 
+  @Test
+  public void seekTo_inLongBufferWithReorderedFrames_seeksToKeyframeBeforeTime() {
+    int sampleCount = 100_000;
+    int keyframeInterval = 60;
+    writeLongBufferWithReorderedFrames(sampleCount, keyframeInterval);
+
+    for (int sampleIndex = 0; sampleIndex < sampleCount; sampleIndex += 997) {
+      boolean success =
+          sampleQueue.seekTo(
+              /* timeUs= */ sampleIndex * 1000L + 500, /* allowTimeBeyondBuffer= */ false);
+
+      assertThat(success).isTrue();
+      assertThat(sampleQueue.getReadIndex())
+          .isEqualTo(sampleIndex / keyframeInterval * keyframeInterval);
+    }
+  }
+
+  @Test
+  public void advanceToAndDiscardTo_inLongBufferWithReorderedFrames_stopAtKeyframeBeforeTime() {
+    writeLongBufferWithReorderedFrames(/* sampleCount= */ 100_000, /* keyframeInterval= */ 60);
+
+    assertThat(sampleQueue.seekTo(/* sampleIndex= */ 0)).isTrue();
+    assertThat(sampleQueue.advanceTo(/* timeUs= */ 50_000_500)).isEqualTo(49_980);
+    sampleQueue.discardTo(
+        /* timeUs= */ 74_999_500, /* toKeyframe= */ true, /* stopAtReadPosition= */ false);
+
+    assertThat(sampleQueue.getFirstIndex()).isEqualTo(74_940);
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(74_940);
+  }
+
   @Test
   public void testDiscardToEnd() {
     writeTestData();
@@ -1045,6 +1099,25 @@ public final class SampleQueueTest {
         DATA, SAMPLE_SIZES, SAMPLE_OFFSETS, SAMPLE_TIMESTAMPS, SAMPLE_FORMATS, SAMPLE_FLAGS);
   }
 
+  /**
+   * Writes {@code sampleCount} samples without data to {@code sampleQueue}, with a keyframe every
+   * {@code keyframeInterval} samples. Sample {@code i} is presented at {@code i} milliseconds, and
+   * pairs of samples between keyframes are queued in swapped order, as in a stream with B-frames.
+   */
+  private void writeLongBufferWithReorderedFrames(int sampleCount, int keyframeInterval) {
+    sampleQueue.format(FORMAT_1);
+    for (int i = 0; i < sampleCount; i++) {
+      boolean keyframe = i % keyframeInterval == 0;
+      int presentationIndex = keyframe ? i : i + (i % 2 == 0 ? 1 : -1);
+      sampleQueue.sampleMetadata(
+          /* timeUs= */ presentationIndex * 1000L,
+          keyframe ? C.BUFFER_FLAG_KEY_FRAME : 0,
+          /* size= */ 0,
+          /* offset= */ 0,
+          /* cryptoData= */ null);
+    }
+  }
+
   private void writeTestDataWithEncryptedSections() {
     writeTestData(
         ENCRYPTED_SAMPLE_DATA,
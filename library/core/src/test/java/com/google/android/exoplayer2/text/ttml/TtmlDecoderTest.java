@@ -56,6 +56,7 @@ public final class TtmlDecoderTest {
   private static final String FONT_SIZE_INVALID_TTML_FILE = "ttml/font_size_invalid.xml";
   private static final String FONT_SIZE_EMPTY_TTML_FILE = "ttml/font_size_empty.xml";
   private static final String FRAME_RATE_TTML_FILE = "ttml/frame_rate.xml";
+  private static final String TIME_EXPRESSIONS_TTML_FILE = "ttml/time_expressions.xml";
   private static final String BITMAP_REGION_FILE = "ttml/bitmap_percentage_region.xml";
   private static final String BITMAP_PIXEL_REGION_FILE = "ttml/bitmap_pixel_region.xml";
   private static final String BITMAP_UNSUPPORTED_REGION_FILE = "ttml/bitmap_unsupported_region.xml";
@@ -503,6 +504,24 @@ public final class TtmlDecoderTest {
     assertThat((double) subtitle.getEventTime(3)).isWithin(2000).of(2_002_000_000);
   }
 
+  @Test
+  public void testTimeExpressions() throws IOException, SubtitleDecoderException {
+    TtmlSubtitle subtitle = getSubtitle(TIME_EXPRESSIONS_TTML_FILE);
+
+    // The paragraph with malformed time expressions is ignored, and 1500ms is the same event time
+    // as 00:00:01.5.
+    assertThat(subtitle.getEventTimeCount()).isEqualTo(9);
+    assertThat(subtitle.getEventTime(0)).isEqualTo(400_000);
+    assertThat(subtitle.getEventTime(1)).isEqualTo(1_000_000);
+    assertThat(subtitle.getEventTime(2)).isEqualTo(1_500_000);
+    assertThat(subtitle.getEventTime(3)).isEqualTo(2_000_000);
+    assertThat(subtitle.getEventTime(4)).isEqualTo(2_200_000);
+    assertThat(subtitle.getEventTime(5)).isEqualTo(2_220_000);
+    assertThat(subtitle.getEventTime(6)).isEqualTo(10_500_000);
+    assertThat(subtitle.getEventTime(7)).isEqualTo(3_600_000_000L);
+    assertThat(subtitle.getEventTime(8)).isEqualTo(3_660_000_000L);
+  }
+
   @Test
   public void testBitmapPercentageRegion() throws IOException, SubtitleDecoderException {
     TtmlSubtitle subtitle = getSubtitle(BITMAP_REGION_FILE);
@@ -606,6 +625,51 @@ public final class TtmlDecoderTest {
     assertThat(thirdCue).hasNoHorizontalTextInVerticalContextSpanBetween(0, thirdCue.length());
   }
 
+  @Test
+  public void testHeadCaching_reusesUnchangedHead() throws IOException, SubtitleDecoderException {
+    TtmlDecoder ttmlDecoder = new TtmlDecoder(/* enableHeadCaching= */ true);
+
+    TtmlSubtitle firstSubtitle = getSubtitle(ttmlDecoder, INHERIT_STYLE_TTML_FILE);
+    // This document has the same head as the first one, but a different body.
+    TtmlSubtitle secondSubtitle = getSubtitle(ttmlDecoder, INHERIT_STYLE_OVERRIDE_TTML_FILE);
+
+    assertThat(secondSubtitle.getGlobalStyles().get("s0"))
+        .isSameInstanceAs(firstSubtitle.getGlobalStyles().get("s0"));
+    assertThat(secondSubtitle.getEventTimeCount()).isEqualTo(4);
+    Spanned secondCueText = getOnlyCueTextAtTimeUs(secondSubtitle, 20_000_000);
+    assertThat(secondCueText.toString()).isEqualTo("text 2");
+    assertThat(secondCueText)
+        .hasTypefaceSpanBetween(0, secondCueText.length())
+        .withFamily("sansSerif");
+    assertThat(secondCueText).hasItalicSpanBetween(0, secondCueText.length());
+    assertThat(secondCueText)
+        .hasBackgroundColorSpanBetween(0, secondCueText.length())
+        .withColor(0xFFFF0000);
+    // Inline styles don't modify the cached global style.
+    TtmlSubtitle thirdSubtitle = getSubtitle(ttmlDecoder, INHERIT_STYLE_TTML_FILE);
+    Spanned firstCueText = getOnlyCueTextAtTimeUs(thirdSubtitle, 10_000_000);
+    assertThat(firstCueText).hasTypefaceSpanBetween(0, firstCueText.length()).withFamily("serif");
+    assertThat(firstCueText).hasBoldItalicSpanBetween(0, firstCueText.length());
+    assertThat(firstCueText)
+        .hasBackgroundColorSpanBetween(0, firstCueText.length())
+        .withColor(0xFF0000FF);
+  }
+
+  @Test
+  public void testHeadCaching_parsesChangedHead() throws IOException, SubtitleDecoderException {
+    TtmlDecoder ttmlDecoder = new TtmlDecoder(/* enableHeadCaching= */ true);
+
+    getSubtitle(ttmlDecoder, INHERIT_STYLE_TTML_FILE);
+    TtmlSubtitle subtitle = getSubtitle(ttmlDecoder, MULTIPLE_REGIONS_TTML_FILE);
+
+    assertThat(subtitle.getGlobalStyles()).isEmpty();
+    Cue cue = getOnlyCueAtTimeUs(subtitle, 5_000_000);
+    assertThat(cue.text.toString()).isEqualTo("ipsum");
+    assertThat(cue.position).isEqualTo(40f / 100f);
+    assertThat(cue.line).isEqualTo(40f / 100f);
+    assertThat(cue.size).isEqualTo(20f / 100f);
+  }
+
   private static Spanned getOnlyCueTextAtTimeUs(Subtitle subtitle, long timeUs) {
     Cue cue = getOnlyCueAtTimeUs(subtitle, timeUs);
     assertThat(cue.text).isInstanceOf(Spanned.class);
@@ -632,7 +696,11 @@ public final class TtmlDecoderTest {
 
   private static TtmlSubtitle getSubtitle(String file)
       throws IOException, SubtitleDecoderException {
-    TtmlDecoder ttmlDecoder = new TtmlDecoder();
+    return getSubtitle(new TtmlDecoder(), file);
+  }
+
+  private static TtmlSubtitle getSubtitle(TtmlDecoder ttmlDecoder, String file)
+      throws IOException, SubtitleDecoderException {
     byte[] bytes = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), file);
     return (TtmlSubtitle) ttmlDecoder.decode(bytes, bytes.length, false);
   }
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ConcurrentAllocator}. */
+@RunWith(AndroidJUnit4.class)
+public final class ConcurrentAllocatorTest {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  @Test
+  public void allocate_returnsAllocationOfIndividualSize() {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+
+    Allocation allocation = allocator.allocate();
+
+    assertThat(allocation.data.length - allocation.offset).isAtLeast(ALLOCATION_SIZE);
+    assertThat(allocator.getIndividualAllocationLength()).isEqualTo(ALLOCATION_SIZE);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(ALLOCATION_SIZE);
+  }
+
+  @Test
+  public void release_decreasesTotalBytesAllocated() {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    Allocation allocation1 = allocator.allocate();
+    Allocation allocation2 = allocator.allocate();
+    Allocation allocation3 = allocator.allocate();
+
+    allocator.release(allocation1);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(2 * ALLOCATION_SIZE);
+    allocator.release(new Allocation[] {allocation2, allocation3});
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  @Test
+  public void allocate_afterRelease_reusesReleasedAllocations() {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(
+            /* trimOnReset= */ true,
+            ALLOCATION_SIZE,
+            /* initialAllocationCount= */ 0,
+            /* threadCacheSize= */ 2);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 5);
+    allocator.release(allocations.toArray(new Allocation[0]));
+
+    // Two allocations are reused from the thread cache, and three from the shared pool.
+    List<Allocation> reusedAllocations = allocate(allocator, /* count= */ 5);
+
+    assertThat(newIdentitySet(reusedAllocations)).containsExactlyElementsIn(allocations);
+  }
+
+  @Test
+  public void setTargetBufferSize_reduced_discardsExcessAllocations() {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 10);
+    allocator.release(allocations.toArray(new Allocation[0]));
+
+    allocator.setTargetBufferSize(3 * ALLOCATION_SIZE);
+    Set<Allocation> reusedAllocations = newIdentitySet(allocate(allocator, /* count= */ 10));
+    reusedAllocations.retainAll(newIdentitySet(allocations));
+
+    assertThat(reusedAllocations).hasSize(3);
+  }
+
+  @Test
+  public void reset_withTrimOnReset_discardsAllAllocations() {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 10);
+    allocator.release(allocations.toArray(new Allocation[0]));
+
+    allocator.reset();
+    Set<Allocation> reusedAllocations = newIdentitySet(allocate(allocator, /* count= */ 10));
+    reusedAllocations.retainAll(newIdentitySet(allocations));
+
+    assertThat(reusedAllocations).isEmpty();
+  }
+
+  @Test
+  public void trim_retainsInitialAllocations() {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(
+            /* trimOnReset= */ true,
+            ALLOCATION_SIZE,
+            /* initialAllocationCount= */ 4,
+            ConcurrentAllocator.DEFAULT_THREAD_CACHE_SIZE);
+    List<Allocation> initialAllocations = allocate(allocator, /* count= */ 4);
+    byte[] initialAllocationBlock = initialAllocations.get(0).data;
+    allocator.release(initialAllocations.toArray(new Allocation[0]));
+
+    allocator.trim();
+
+    for (Allocation allocation : allocate(allocator, /* count= */ 4)) {
+      assertThat(allocation.data).isSameInstanceAs(initialAllocationBlock);
+    }
+  }
+
+  @Test
+  public void trim_returnsAllocationsCachedByOtherThreadsToPool() throws InterruptedException {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 2);
+    Thread releasingThread =
+        new Thread(() -> allocator.release(allocations.toArray(new Allocation[0])));
+    releasingThread.start();
+    releasingThread.join();
+
+    allocator.trim();
+
+    // The allocations released to the other thread's cache are available to this thread.
+    assertThat(newIdentitySet(allocate(allocator, /* count= */ 2)))
+        .containsExactlyElementsIn(allocations);
+  }
+
+  @Test
+  public void allocateAndRelease_concurrently_neverHandsOutAllocationTwice() throws Exception {
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(1000 * ALLOCATION_SIZE);
+    Set<Allocation> allocationsInUse =
+        Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    AtomicBoolean allocatedTwice = new AtomicBoolean();
+    int threadCount = 4;
+    CountDownLatch startLatch = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  startLatch.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int j = 0; j < 10_000; j++) {
+                  List<Allocation> allocations = allocate(allocator, /* count= */ 1 + j % 8);
+                  for (Allocation allocation : allocations) {
+                    if (!allocationsInUse.add(allocation)) {
+                      allocatedTwice.set(true);
+                    }
+                  }
+                  for (Allocation allocation : allocations) {
+                    allocationsInUse.remove(allocation);
+                  }
+                  allocator.release(allocations.toArray(new Allocation[0]));
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(allocatedTwice.get()).isFalse();
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  private static List<Allocation> allocate(Allocator allocator, int count) {
+    List<Allocation> allocations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      allocations.add(allocator.allocate());
+    }
+    return allocations;
+  }
+
+  private static Set<Allocation> newIdentitySet(List<Allocation> allocations) {
+    Set<Allocation> set = Collections.newSetFromMap(new IdentityHashMap<>());
+    set.addAll(allocations);
+    return set;
+  }
+}
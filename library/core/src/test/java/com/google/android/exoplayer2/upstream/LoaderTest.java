@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link Loader}. */
+@RunWith(AndroidJUnit4.class)
+public final class LoaderTest {
+
+  private static final long TIMEOUT_MS = 10_000;
+  private static final int LOADER_COUNT = 8;
+
+  private List<Loader> loaders;
+  private ExecutorService sharedExecutor;
+
+  @Before
+  public void setUp() {
+    loaders = new ArrayList<>();
+    sharedExecutor = Loader.createSharedExecutor("LoaderTest", /* maxThreadCount= */ 2);
+  }
+
+  @After
+  public void tearDown() {
+    for (Loader loader : loaders) {
+      loader.release();
+    }
+    sharedExecutor.shutdownNow();
+  }
+
+  @Test
+  public void startLoading_withDedicatedThreads_usesThreadPerLoader() throws Exception {
+    Set<Thread> loadThreads = Collections.synchronizedSet(new HashSet<>());
+    CountDownLatch loadsFinished = new CountDownLatch(LOADER_COUNT);
+
+    for (int i = 0; i < LOADER_COUNT; i++) {
+      startLoading(
+          createLoader(/* shared= */ false),
+          new RecordingLoadable(loadThreads, loadsFinished, /* blockUntilCanceled= */ false));
+    }
+
+    assertThat(loadsFinished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(loadThreads).hasSize(LOADER_COUNT);
+  }
+
+  @Test
+  public void startLoading_withSharedExecutor_usesBoundedNumberOfThreads() throws Exception {
+    Set<Thread> loadThreads = Collections.synchronizedSet(new HashSet<>());
+    CountDownLatch loadsFinished = new CountDownLatch(LOADER_COUNT);
+
+    for (int i = 0; i < LOADER_COUNT; i++) {
+      startLoading(
+          createLoader(/* shared= */ true),
+          new RecordingLoadable(loadThreads, loadsFinished, /* blockUntilCanceled= */ false));
+    }
+
+    assertThat(loadsFinished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(loadThreads.size()).isAtMost(2);
+  }
+
+  @Test
+  public void release_withSharedExecutor_callsBackAfterLoadExits() throws Exception {
+    Loader loader = new Loader(sharedExecutor);
+    CountDownLatch loadStarted = new CountDownLatch(1);
+    AtomicBoolean loadExited = new AtomicBoolean();
+    AtomicBoolean loadExitedBeforeRelease = new AtomicBoolean();
+    CountDownLatch released = new CountDownLatch(1);
+    startLoading(
+        loader,
+        new Loader.Loadable() {
+          @Override
+          public void cancelLoad() {}
+
+          @Override
+          public void load() throws InterruptedException {
+            loadStarted.countDown();
+            try {
+              Thread.sleep(TIMEOUT_MS);
+            } finally {
+              loadExited.set(true);
+            }
+          }
+        });
+    assertThat(loadStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+
+    loader.release(
+        () -> {
+          loadExitedBeforeRelease.set(loadExited.get());
+          released.countDown();
+        });
+
+    assertThat(released.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(loadExitedBeforeRelease.get()).isTrue();
+    assertThat(sharedExecutor.isShutdown()).isFalse();
+  }
+
+  @Test
+  public void cancelLoading_withSharedExecutor_doesNotInterruptNextLoadOnSameThread()
+      throws Exception {
+    ExecutorService singleThreadExecutor =
+        Loader.createSharedExecutor("LoaderTest", /* maxThreadCount= */ 1);
+    try {
+      Loader canceledLoader = new Loader(singleThreadExecutor);
+      Loader nextLoader = new Loader(singleThreadExecutor);
+      loaders.add(canceledLoader);
+      loaders.add(nextLoader);
+      Set<Thread> loadThreads = Collections.synchronizedSet(new HashSet<>());
+      CountDownLatch loadsFinished = new CountDownLatch(2);
+      RecordingLoadable canceledLoadable =
+          new RecordingLoadable(loadThreads, loadsFinished, /* blockUntilCanceled= */ true);
+      RecordingLoadable nextLoadable =
+          new RecordingLoadable(loadThreads, loadsFinished, /* blockUntilCanceled= */ false);
+      startLoading(canceledLoader, canceledLoadable);
+      assertThat(canceledLoadable.loadStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+
+      canceledLoader.cancelLoading();
+      startLoading(nextLoader, nextLoadable);
+
+      assertThat(loadsFinished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+      assertThat(loadThreads).hasSize(1);
+      assertThat(nextLoadable.interruptedOnStart).isFalse();
+    } finally {
+      singleThreadExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void startLoading_withSharedExecutor_reducesThreadCountWithoutDelayingLoads()
+      throws Exception {
+    LoadStats dedicatedStats = measureLoads(/* shared= */ false);
+    LoadStats sharedStats = measureLoads(/* shared= */ true);
+
+    assertWithMessage(
+            "Threads: dedicated=%s, shared=%s. Mean startup latency (us): dedicated=%s, shared=%s",
+            dedicatedStats.threadCount,
+            sharedStats.threadCount,
+            dedicatedStats.meanStartupLatencyUs,
+            sharedStats.meanStartupLatencyUs)
+        .that(sharedStats.threadCount)
+        .isLessThan(dedicatedStats.threadCount);
+
+    // A load on the shared executor starts while the load of another loader is still blocked.
+    Set<Thread> loadThreads = Collections.synchronizedSet(new HashSet<>());
+    CountDownLatch blockedLoadFinished = new CountDownLatch(1);
+    CountDownLatch nextLoadFinished = new CountDownLatch(1);
+    RecordingLoadable blockedLoadable =
+        new RecordingLoadable(loadThreads, blockedLoadFinished, /* blockUntilCanceled= */ true);
+    RecordingLoadable nextLoadable =
+        new RecordingLoadable(loadThreads, nextLoadFinished, /* blockUntilCanceled= */ false);
+    Loader blockedLoader = createLoader(/* shared= */ true);
+    startLoading(blockedLoader, blockedLoadable);
+    assertThat(blockedLoadable.loadStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+
+    startLoading(createLoader(/* shared= */ true), nextLoadable);
+
+    assertThat(nextLoadFinished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(blockedLoadFinished.getCount()).isEqualTo(1);
+    blockedLoader.cancelLoading();
+    assertThat(blockedLoadFinished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+  }
+
+  /**
+   * Loads once with each of {@link #LOADER_COUNT} new loaders, one after the other, and returns the
+   * number of threads used and the mean time between starting a load and the load running.
+   */
+  private LoadStats measureLoads(boolean shared) throws Exception {
+    Set<Thread> loadThreads = Collections.synchronizedSet(new HashSet<>());
+    long totalLatencyNs = 0;
+    for (int i = 0; i < LOADER_COUNT; i++) {
+      CountDownLatch loadFinished = new CountDownLatch(1);
+      RecordingLoadable loadable =
+          new RecordingLoadable(loadThreads, loadFinished, /* blockUntilCanceled= */ false);
+      long startTimeNs = System.nanoTime();
+      startLoading(createLoader(shared), loadable);
+      assertThat(loadFinished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+      totalLatencyNs += loadable.loadStartTimeNs - startTimeNs;
+    }
+    return new LoadStats(loadThreads.size(), totalLatencyNs / LOADER_COUNT / 1000);
+  }
+
+  private Loader createLoader(boolean shared) {
+    Loader loader = shared ? new Loader(sharedExecutor) : new Loader("LoaderTest");
+    loaders.add(loader);
+    return loader;
+  }
+
+  private static void startLoading(Loader loader, Loader.Loadable loadable) {
+    loader.startLoading(loadable, new NoOpCallback(), /* defaultMinRetryCount= */ 0);
+  }
+
+  /** Records the thread on which it loads and the time at which its load starts. */
+  private static final class RecordingLoadable implements Loader.Loadable {
+
+    private final Set<Thread> loadThreads;
+    private final CountDownLatch loadFinished;
+    private final boolean blockUntilCanceled;
+    private final CountDownLatch loadStarted;
+
+    private volatile boolean canceled;
+    private volatile boolean interruptedOnStart;
+    private volatile long loadStartTimeNs;
+
+    public RecordingLoadable(
+        Set<Thread> loadThreads, CountDownLatch loadFinished, boolean blockUntilCanceled) {
+      this.loadThreads = loadThreads;
+      this.loadFinished = loadFinished;
+      this.blockUntilCanceled = blockUntilCanceled;
+      loadStarted = new CountDownLatch(1);
+    }
+
+    @Override
+    public void cancelLoad() {
+      canceled = true;
+    }
+
+    @Override
+    public void load() {
+      loadStartTimeNs = System.nanoTime();
+      interruptedOnStart = Thread.currentThread().isInterrupted();
+      loadThreads.add(Thread.currentThread());
+      loadStarted.countDown();
+      // Ignore interruption, as a load blocked in uninterruptible I/O would.
+      while (blockUntilCanceled && !canceled) {
+        Thread.yield();
+      }
+      loadFinished.countDown();
+    }
+  }
+
+  private static final class NoOpCallback implements Loader.Callback<Loader.Loadable> {
+
+    @Override
+    public void onLoadCompleted(
+        Loader.Loadable loadable, long elapsedRealtimeMs, long loadDurationMs) {}
+
+    @Override
+    public void onLoadCanceled(
+        Loader.Loadable loadable, long elapsedRealtimeMs, long loadDurationMs, boolean released) {}
+
+    @Override
+    public Loader.LoadErrorAction onLoadError(
+        Loader.Loadable loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        IOException error,
+        int errorCount) {
+      return Loader.DONT_RETRY;
+    }
+  }
+
+  private static final class LoadStats {
+
+    public final int threadCount;
+    public final long meanStartupLatencyUs;
+
+    public LoadStats(int threadCount, long meanStartupLatencyUs) {
+      this.threadCount = threadCount;
+      this.meanStartupLatencyUs = meanStartupLatencyUs;
+    }
+  }
+}
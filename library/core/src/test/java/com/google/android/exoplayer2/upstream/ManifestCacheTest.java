@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ManifestCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class ManifestCacheTest {
+
+  private static final Uri URI_1 = Uri.parse("https://example.com/1.mpd");
+  private static final Uri URI_2 = Uri.parse("https://example.com/2.mpd");
+  private static final Uri URI_3 = Uri.parse("https://example.com/3.mpd");
+  private static final long MAX_TIME_TO_LIVE_MS = 60_000;
+
+  private FakeClock clock;
+  private ManifestCache manifestCache;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock(/* initialTimeMs= */ 0);
+    manifestCache = new ManifestCache(/* maxEntryCount= */ 2, MAX_TIME_TO_LIVE_MS, clock);
+  }
+
+  @Test
+  public void get_beforeTimeToLiveElapses_returnsCachedManifest() {
+    Object manifest = new Object();
+    Uri redirectedUri = Uri.parse("https://cdn.example.com/1.mpd");
+
+    manifestCache.put(URI_1, redirectedUri, manifest, /* timeToLiveMs= */ 1000);
+    clock.advanceTime(999);
+    ManifestCache.Entry entry = manifestCache.get(URI_1);
+
+    assertThat(entry.manifest).isSameInstanceAs(manifest);
+    assertThat(entry.uri).isEqualTo(redirectedUri);
+  }
+
+  @Test
+  public void get_afterTimeToLiveElapses_returnsNull() {
+    manifestCache.put(URI_1, URI_1, new Object(), /* timeToLiveMs= */ 1000);
+    clock.advanceTime(1000);
+
+    assertThat(manifestCache.get(URI_1)).isNull();
+  }
+
+  @Test
+  public void put_withUnsetTimeToLive_cachesForMaximumTimeToLive() {
+    manifestCache.put(URI_1, URI_1, new Object(), C.TIME_UNSET);
+    manifestCache.put(URI_2, URI_2, new Object(), /* timeToLiveMs= */ 10 * MAX_TIME_TO_LIVE_MS);
+    clock.advanceTime(MAX_TIME_TO_LIVE_MS - 1);
+
+    assertThat(manifestCache.get(URI_1)).isNotNull();
+    assertThat(manifestCache.get(URI_2)).isNotNull();
+
+    clock.advanceTime(1);
+
+    assertThat(manifestCache.get(URI_1)).isNull();
+    assertThat(manifestCache.get(URI_2)).isNull();
+  }
+
+  @Test
+  public void put_withZeroTimeToLive_removesCachedManifest() {
+    manifestCache.put(URI_1, URI_1, new Object(), C.TIME_UNSET);
+
+    manifestCache.put(URI_1, URI_1, new Object(), /* timeToLiveMs= */ 0);
+
+    assertThat(manifestCache.get(URI_1)).isNull();
+  }
+
+  @Test
+  public void put_beyondMaxEntryCount_evictsLeastRecentlyUsedManifest() {
+    manifestCache.put(URI_1, URI_1, new Object(), C.TIME_UNSET);
+    manifestCache.put(URI_2, URI_2, new Object(), C.TIME_UNSET);
+    manifestCache.get(URI_1);
+
+    manifestCache.put(URI_3, URI_3, new Object(), C.TIME_UNSET);
+
+    assertThat(manifestCache.get(URI_1)).isNotNull();
+    assertThat(manifestCache.get(URI_2)).isNull();
+    assertThat(manifestCache.get(URI_3)).isNotNull();
+  }
+
+  @Test
+  public void parsingLoadable_withCachedManifest_doesNotLoad() throws IOException {
+    ParsingLoadable<String> loadable =
+        new ParsingLoadable<>(
+            new ByteArrayDataSource(Util.getUtf8Bytes("manifest")),
+            URI_1,
+            C.DATA_TYPE_MANIFEST,
+            (uri, inputStream) -> Util.fromUtf8Bytes(Util.toByteArray(inputStream)),
+            manifestCache,
+            manifest -> C.TIME_UNSET);
+    loadable.load();
+    // DummyDataSource fails to open, so the second load must be served from the cache.
+    ParsingLoadable<String> cachedLoadable =
+        new ParsingLoadable<>(
+            DummyDataSource.INSTANCE,
+            URI_1,
+            C.DATA_TYPE_MANIFEST,
+            (uri, inputStream) -> "unexpected",
+            manifestCache,
+            manifest -> C.TIME_UNSET);
+    cachedLoadable.load();
+
+    assertThat(loadable.isFromCache()).isFalse();
+    assertThat(cachedLoadable.isFromCache()).isTrue();
+    assertThat(cachedLoadable.getResult()).isSameInstanceAs(loadable.getResult());
+    assertThat(cachedLoadable.getUri()).isEqualTo(URI_1);
+    assertThat(cachedLoadable.bytesLoaded()).isEqualTo(0);
+  }
+}
@@ -24,12 +24,14 @@ import android.util.SparseArray;
 import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Collection;
 import java.util.Set;
 import org.junit.After;
@@ -191,6 +193,123 @@ public class CachedContentIndexTest {
     assertThat(ContentMetadata.getContentLength(metadata2)).isEqualTo(2560);
   }
 
+  @Test
+  public void testLogStoreAndLoad() throws Exception {
+    assertStoredAndLoadedEqual(newLogInstance(), newLogInstance());
+  }
+
+  @Test
+  public void testLogStoreAndLoadIncrementalChanges() throws Exception {
+    CachedContentIndex index = newLogInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("KLMNO");
+    index.getOrAdd("ABCDE");
+    index.store();
+    File logFile = new File(cacheDir, CachedContentIndex.FILE_NAME_LOG);
+    long initialLogLength = logFile.length();
+
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 2560);
+    index.applyContentMetadataMutations("KLMNO", mutations);
+    index.maybeRemove("ABCDE");
+    index.getOrAdd("FGHIJ");
+    index.store();
+
+    assertThat(logFile.length()).isGreaterThan(initialLogLength);
+    CachedContentIndex index2 = newLogInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(index2.getKeys()).containsExactly("KLMNO", "FGHIJ");
+    assertThat(index2.get("KLMNO")).isEqualTo(index.get("KLMNO"));
+    assertThat(index2.get("FGHIJ")).isEqualTo(index.get("FGHIJ"));
+  }
+
+  @Test
+  public void testLogLoadWithTornRecordRestoresLastCompleteStore() throws Exception {
+    CachedContentIndex index = newLogInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("KLMNO");
+    index.store();
+    File logFile = new File(cacheDir, CachedContentIndex.FILE_NAME_LOG);
+    long completeLogLength = logFile.length();
+    index.getOrAdd("ABCDE");
+    index.store();
+    // Simulate the process being killed whilst the second record was being appended.
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(logFile, "rw")) {
+      randomAccessFile.setLength(logFile.length() - 3);
+    }
+
+    CachedContentIndex index2 = newLogInstance();
+    index2.initialize(/* uid= */ 0);
+
+    assertThat(index2.getKeys()).containsExactly("KLMNO");
+    assertThat(logFile.length()).isEqualTo(completeLogLength);
+    // Records appended after recovery are loaded.
+    index2.getOrAdd("FGHIJ");
+    index2.store();
+    CachedContentIndex index3 = newLogInstance();
+    index3.initialize(/* uid= */ 0);
+    assertThat(index3.getKeys()).containsExactly("KLMNO", "FGHIJ");
+  }
+
+  @Test
+  public void testLogLoadWithCorruptTailIgnoresTail() throws Exception {
+    CachedContentIndex index = newLogInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("KLMNO");
+    index.getOrAdd("ABCDE");
+    index.store();
+    File logFile = new File(cacheDir, CachedContentIndex.FILE_NAME_LOG);
+    try (FileOutputStream outputStream = new FileOutputStream(logFile, /* append= */ true)) {
+      // A record header with a valid length but an invalid checksum, followed by its payload.
+      outputStream.write(new byte[] {0, 0, 0, 5, 1, 2, 3, 4, 2, 0, 0, 0, 0});
+    }
+
+    CachedContentIndex index2 = newLogInstance();
+    index2.initialize(/* uid= */ 0);
+
+    assertThat(index2.getKeys()).containsExactly("KLMNO", "ABCDE");
+  }
+
+  @Test
+  public void testLogStoreCompactsLog() throws Exception {
+    CachedContentIndex index = newLogInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("KLMNO");
+    index.store();
+    File logFile = new File(cacheDir, CachedContentIndex.FILE_NAME_LOG);
+    long initialLogLength = logFile.length();
+
+    int storeCount = 5000;
+    for (int i = 1; i <= storeCount; i++) {
+      ContentMetadataMutations mutations = new ContentMetadataMutations();
+      ContentMetadataMutations.setContentLength(mutations, i);
+      index.applyContentMetadataMutations("KLMNO", mutations);
+      index.store();
+    }
+
+    // Without compaction the log would hold a record for every store.
+    assertThat(logFile.length()).isLessThan(storeCount * initialLogLength / 2);
+    CachedContentIndex index2 = newLogInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(ContentMetadata.getContentLength(index2.getContentMetadata("KLMNO")))
+        .isEqualTo(storeCount);
+  }
+
+  @Test
+  public void testLogMigratesFromLegacyStorage() throws Exception {
+    CachedContentIndex legacyIndex = newLegacyInstance();
+    legacyIndex.initialize(/* uid= */ 0);
+    legacyIndex.getOrAdd("KLMNO");
+    legacyIndex.store();
+
+    CachedContentIndex index = newLogInstance();
+    index.initialize(/* uid= */ 0);
+
+    assertThat(index.getKeys()).containsExactly("KLMNO");
+    assertThat(new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC).exists()).isFalse();
+    assertThat(new File(cacheDir, CachedContentIndex.FILE_NAME_LOG).exists()).isTrue();
+  }
+
   @Test
   public void testAssignIdForKeyAndGetKeyForId() {
     CachedContentIndex index = newInstance();
@@ -301,7 +420,7 @@ public class CachedContentIndexTest {
   public void testCantRemoveLockedCachedContent() {
     CachedContentIndex index = newInstance();
     CachedContent cachedContent = index.getOrAdd("key1");
-    cachedContent.setLocked(true);
+    cachedContent.lockRange(/* position= */ 0, C.LENGTH_UNSET);
 
     index.maybeRemove(cachedContent.key);
 
@@ -332,6 +451,10 @@ public class CachedContentIndexTest {
     return new CachedContentIndex(TestUtil.getInMemoryDatabaseProvider());
   }
 
+  private CachedContentIndex newLogInstance() {
+    return CachedContentIndex.createWithLogStorage(/* databaseProvider= */ null, cacheDir);
+  }
+
   private CachedContentIndex newLegacyInstance() {
     return newLegacyInstance(null);
   }
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.doAnswer;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
 import com.google.android.exoplayer2.util.Util;
@@ -30,9 +31,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -132,6 +139,42 @@ public class SimpleCacheTest {
     simpleCache.releaseHoleSpan(cacheSpan1);
   }
 
+  @Test
+  public void testStartReadWriteWithLengthLocksRequestedRange() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+
+    CacheSpan holeSpan1 = simpleCache.startReadWrite(KEY_1, 0, /* length= */ 15);
+    assertThat(holeSpan1.isHoleSpan()).isTrue();
+    assertThat(holeSpan1.length).isEqualTo(15);
+    // Data after the locked range can be written concurrently.
+    CacheSpan holeSpan2 = simpleCache.startReadWriteNonBlocking(KEY_1, 15, LENGTH_UNSET);
+    assertThat(holeSpan2).isNotNull();
+    assertThat(holeSpan2.isOpenEnded()).isTrue();
+    // Data in either locked range can't.
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 10, LENGTH_UNSET)).isNull();
+    assertThat(simpleCache.startReadWriteNonBlocking(KEY_1, 20, LENGTH_UNSET)).isNull();
+
+    addCache(simpleCache, KEY_1, 15, 5);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan2);
+    simpleCache.releaseHoleSpan(holeSpan1);
+
+    assertThat(simpleCache.getCachedLength(KEY_1, 0, 20)).isEqualTo(20);
+  }
+
+  @Test
+  public void testStartReadWriteStopsShortOfLockedRange() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+
+    CacheSpan holeSpan1 = simpleCache.startReadWrite(KEY_1, 10, LENGTH_UNSET);
+    CacheSpan holeSpan2 = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+
+    assertThat(holeSpan2.isHoleSpan()).isTrue();
+    assertThat(holeSpan2.length).isEqualTo(10);
+    simpleCache.releaseHoleSpan(holeSpan2);
+    simpleCache.releaseHoleSpan(holeSpan1);
+  }
+
   @Test
   public void testSetGetContentMetadata() throws Exception {
     SimpleCache simpleCache = getSimpleCache();
@@ -390,6 +433,147 @@ public class SimpleCacheTest {
     new SimpleCache(cacheDir, new NoOpCacheEvictor());
   }
 
+  @Test
+  public void testConcurrentReadWriteWithLockPerKey() throws Exception {
+    SimpleCache simpleCache = getSimpleCacheWithLockPerKey(new NoOpCacheEvictor());
+    String[] keys = new String[] {KEY_1, KEY_2, "key3", "key4"};
+    int segmentCount = 20;
+    int segmentLength = 100;
+
+    // Use two threads per key, so that threads both contend for keys and access different keys
+    // concurrently.
+    runConcurrently(
+        /* threadsPerKey= */ 2,
+        keys,
+        key -> {
+          for (int i = 0; i < segmentCount; i++) {
+            int position = i * segmentLength;
+            CacheSpan span = simpleCache.startReadWrite(key, position);
+            if (span.isCached) {
+              assertCachedDataReadCorrect(span);
+            } else {
+              addCache(simpleCache, key, position, segmentLength);
+              simpleCache.releaseHoleSpan(span);
+            }
+          }
+        });
+
+    int contentLength = segmentCount * segmentLength;
+    assertThat(simpleCache.getKeys()).containsExactlyElementsIn(keys);
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(keys.length * contentLength);
+    for (String key : keys) {
+      assertThat(simpleCache.getCachedLength(key, 0, contentLength)).isEqualTo(contentLength);
+      for (CacheSpan span : simpleCache.getCachedSpans(key)) {
+        assertCachedDataReadCorrect(span);
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentReadWriteWithLockPerKeyAndEviction() throws Exception {
+    int segmentLength = 100;
+    long maxCacheSize = 10 * segmentLength;
+    SimpleCache simpleCache =
+        getSimpleCacheWithLockPerKey(new LeastRecentlyUsedCacheEvictor(maxCacheSize));
+    String[] keys = new String[] {KEY_1, KEY_2, "key3", "key4"};
+
+    // Writing to one key evicts spans of other keys, which requires holding several key locks.
+    runConcurrently(
+        /* threadsPerKey= */ 2,
+        keys,
+        key -> {
+          for (int i = 0; i < 20; i++) {
+            CacheSpan span = simpleCache.startReadWrite(key, i * segmentLength);
+            if (!span.isCached) {
+              addCache(simpleCache, key, i * segmentLength, segmentLength);
+              simpleCache.releaseHoleSpan(span);
+            }
+            simpleCache.isCached(key, 0, segmentLength);
+          }
+        });
+
+    assertThat(simpleCache.getCacheSpace()).isAtMost(maxCacheSize);
+  }
+
+  @Test
+  public void testLazyInitialization() throws Exception {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    SimpleCache simpleCache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+    CacheSpan holeSpan1 = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    addCache(simpleCache, KEY_1, 15, 5);
+    simpleCache.releaseHoleSpan(holeSpan1);
+    CacheSpan holeSpan2 = simpleCache.startReadWrite(KEY_2, 0);
+    addCache(simpleCache, KEY_2, 0, 10);
+    simpleCache.releaseHoleSpan(holeSpan2);
+    simpleCache.release();
+
+    CountDownLatch reconciledLatch = new CountDownLatch(1);
+    AtomicInteger reconciledFileCount = new AtomicInteger();
+    simpleCache =
+        new SimpleCache(
+            cacheDir,
+            new NoOpCacheEvictor(),
+            databaseProvider,
+            /* lockPerKey= */ false,
+            (cache, reconciledFiles, fileCount) -> {
+              if (reconciledFiles == fileCount) {
+                reconciledFileCount.set(reconciledFiles);
+                reconciledLatch.countDown();
+              }
+            });
+
+    // The spans for a key are available on first access, whether or not it has been reconciled.
+    assertThat(simpleCache.getCachedLength(KEY_1, 0, 20)).isEqualTo(20);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_2, 0));
+    assertThat(reconciledLatch.await(/* timeout= */ 10, TimeUnit.SECONDS)).isTrue();
+    assertThat(reconciledFileCount.get()).isEqualTo(3);
+    assertThat(simpleCache.isReconciled()).isTrue();
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(30);
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(2);
+  }
+
+  @Test
+  public void testLazyInitializationRemovesEmptyContentOnceReconciled() throws Exception {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    SimpleCache simpleCache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 15);
+    simpleCache.applyContentMetadataMutations(KEY_1, mutations);
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_2, 0);
+    addCache(simpleCache, KEY_2, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    simpleCache.release();
+
+    CountDownLatch reconciledLatch = new CountDownLatch(1);
+    simpleCache =
+        new SimpleCache(
+            cacheDir,
+            new NoOpCacheEvictor(),
+            databaseProvider,
+            /* lockPerKey= */ false,
+            (cache, reconciledFiles, fileCount) -> {
+              if (reconciledFiles == fileCount) {
+                reconciledLatch.countDown();
+              }
+            });
+    assertThat(reconciledLatch.await(/* timeout= */ 10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(simpleCache.getKeys()).containsExactly(KEY_2);
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(15);
+  }
+
+  private SimpleCache getSimpleCacheWithLockPerKey(CacheEvictor evictor) {
+    return new SimpleCache(
+        cacheDir,
+        evictor,
+        TestUtil.getInMemoryDatabaseProvider(),
+        /* legacyIndexSecretKey= */ null,
+        /* legacyIndexEncrypt= */ false,
+        /* preferLegacyIndex= */ false,
+        /* lockPerKey= */ true);
+  }
+
   private SimpleCache getSimpleCache() {
     return new SimpleCache(cacheDir, new NoOpCacheEvictor());
   }
@@ -435,4 +619,43 @@ public class SimpleCacheTest {
     return bytes;
   }
 
+  /**
+   * Runs {@code task} for each key on {@code threadsPerKey} threads concurrently, and rethrows the
+   * first failure.
+   */
+  private static void runConcurrently(int threadsPerKey, String[] keys, KeyTask task)
+      throws Exception {
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    CountDownLatch startLatch = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (String key : keys) {
+      for (int i = 0; i < threadsPerKey; i++) {
+        Thread thread =
+            new Thread(
+                () -> {
+                  try {
+                    startLatch.await();
+                    task.run(key);
+                  } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                  }
+                });
+        threads.add(thread);
+        thread.start();
+      }
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join(/* millis= */ 10_000);
+      assertWithMessage("Thread did not finish").that(thread.isAlive()).isFalse();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+  }
+
+  private interface KeyTask {
+    void run(String key) throws Exception;
+  }
+
 }
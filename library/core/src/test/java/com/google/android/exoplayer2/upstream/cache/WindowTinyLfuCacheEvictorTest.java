@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link WindowTinyLfuCacheEvictor}. */
+@RunWith(AndroidJUnit4.class)
+public final class WindowTinyLfuCacheEvictorTest {
+
+  private static final long SEGMENT_LENGTH = 1000;
+  private static final long MAX_BYTES = 200 * SEGMENT_LENGTH;
+
+  @Test
+  public void access_withinMaxBytes_doesNotEvict() throws Exception {
+    CacheSimulator simulator = new CacheSimulator(new WindowTinyLfuCacheEvictor(MAX_BYTES));
+
+    for (int i = 0; i < 200; i++) {
+      simulator.access("key" + i);
+    }
+
+    assertThat(simulator.getCachedKeyCount()).isEqualTo(200);
+  }
+
+  @Test
+  public void access_beyondMaxBytes_evictsToMaxBytes() throws Exception {
+    CacheSimulator simulator = new CacheSimulator(new WindowTinyLfuCacheEvictor(MAX_BYTES));
+
+    for (int i = 0; i < 1000; i++) {
+      simulator.access("key" + i);
+    }
+
+    assertThat(simulator.getCachedKeyCount()).isEqualTo(200);
+  }
+
+  @Test
+  public void access_scanOfNewKeys_retainsFrequentlyAccessedKeys() throws Exception {
+    CacheSimulator simulator = new CacheSimulator(new WindowTinyLfuCacheEvictor(MAX_BYTES));
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 100; j++) {
+        simulator.access("popular" + j);
+      }
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      simulator.access("scan" + i);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(simulator.isCached("popular" + i)).isTrue();
+    }
+  }
+
+  @Test
+  public void simulatedTrace_hasHigherHitRatioThanLeastRecentlyUsed() throws Exception {
+    List<String> trace = createTrace(/* length= */ 50_000, new Random(/* seed= */ 0));
+
+    double leastRecentlyUsedHitRatio =
+        new CacheSimulator(new LeastRecentlyUsedCacheEvictor(MAX_BYTES)).replay(trace);
+    double windowTinyLfuHitRatio =
+        new CacheSimulator(new WindowTinyLfuCacheEvictor(MAX_BYTES)).replay(trace);
+
+    assertWithMessage(
+            "Hit ratio: LeastRecentlyUsedCacheEvictor=%s, WindowTinyLfuCacheEvictor=%s",
+            leastRecentlyUsedHitRatio, windowTinyLfuHitRatio)
+        .that(windowTinyLfuHitRatio)
+        .isGreaterThan(leastRecentlyUsedHitRatio);
+  }
+
+  /**
+   * Returns a trace of segment accesses, in which segments of popular content are requested with a
+   * Zipf distribution, interrupted by occasional scans through the segments of a long video.
+   */
+  private static List<String> createTrace(int length, Random random) {
+    int popularSegmentCount = 1000;
+    double[] cumulativeWeights = new double[popularSegmentCount];
+    double totalWeight = 0;
+    for (int i = 0; i < popularSegmentCount; i++) {
+      totalWeight += 1.0 / (i + 1);
+      cumulativeWeights[i] = totalWeight;
+    }
+    List<String> trace = new ArrayList<>();
+    int scanPosition = 0;
+    while (trace.size() < length) {
+      if (random.nextInt(20) == 0) {
+        int scanLength = 100 + random.nextInt(300);
+        for (int i = 0; i < scanLength; i++) {
+          trace.add("vod/segment" + scanPosition++);
+        }
+      } else {
+        for (int i = 0; i < 100; i++) {
+          int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+          trace.add("popular/segment" + (index >= 0 ? index : -index - 1));
+        }
+      }
+    }
+    return trace;
+  }
+
+  /**
+   * Simulates a cache holding a single span of {@link #SEGMENT_LENGTH} bytes for each cached key,
+   * notifying an evictor of accesses in the same way as {@link SimpleCache}.
+   */
+  private static final class CacheSimulator {
+
+    private final CacheEvictor evictor;
+    private final Cache cache;
+    private final HashMap<String, CacheSpan> cachedSpans;
+
+    private long time;
+
+    public CacheSimulator(CacheEvictor evictor) throws Exception {
+      this.evictor = evictor;
+      cachedSpans = new HashMap<>();
+      cache = mock(Cache.class);
+      doAnswer(
+              invocation -> {
+                CacheSpan span = invocation.getArgument(0);
+                if (cachedSpans.remove(span.key) != null) {
+                  evictor.onSpanRemoved(cache, span);
+                }
+                return null;
+              })
+          .when(cache)
+          .removeSpan(any());
+      evictor.onCacheInitialized();
+    }
+
+    /** Accesses the span for {@code key}, returning whether it was cached. */
+    public boolean access(String key) {
+      time++;
+      CacheSpan newSpan =
+          new CacheSpan(key, /* position= */ 0, SEGMENT_LENGTH, time, new File(key));
+      @Nullable CacheSpan oldSpan = cachedSpans.get(key);
+      if (oldSpan != null) {
+        cachedSpans.put(key, newSpan);
+        evictor.onSpanTouched(cache, oldSpan, newSpan);
+        return true;
+      }
+      evictor.onStartFile(cache, key, /* position= */ 0, SEGMENT_LENGTH);
+      cachedSpans.put(key, newSpan);
+      evictor.onSpanAdded(cache, newSpan);
+      return false;
+    }
+
+    /** Accesses the keys of {@code trace} in order, returning the hit ratio. */
+    public double replay(List<String> trace) {
+      int hitCount = 0;
+      for (String key : trace) {
+        if (access(key)) {
+          hitCount++;
+        }
+      }
+      return (double) hitCount / trace.size();
+    }
+
+    public boolean isCached(String key) {
+      return cachedSpans.containsKey(key);
+    }
+
+    public int getCachedKeyCount() {
+      return cachedSpans.size();
+    }
+  }
+}
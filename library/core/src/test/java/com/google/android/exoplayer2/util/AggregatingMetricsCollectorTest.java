@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.ConcurrentAllocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link AggregatingMetricsCollector}. */
+@RunWith(AndroidJUnit4.class)
+public final class AggregatingMetricsCollectorTest {
+
+  private AggregatingMetricsCollector collector;
+
+  @Before
+  public void setUp() {
+    collector = new AggregatingMetricsCollector();
+  }
+
+  @After
+  public void tearDown() {
+    MetricsUtil.setCollector(MetricsCollector.NO_OP);
+  }
+
+  @Test
+  public void incrementCounter_addsDelta() {
+    collector.incrementCounter(MetricsCollector.COUNTER_LOADS_STARTED, /* delta= */ 1);
+    collector.incrementCounter(MetricsCollector.COUNTER_LOADS_STARTED, /* delta= */ 2);
+
+    assertThat(collector.getCounter(MetricsCollector.COUNTER_LOADS_STARTED)).isEqualTo(3);
+    assertThat(collector.getCounter(MetricsCollector.COUNTER_ALLOCATIONS)).isEqualTo(0);
+  }
+
+  @Test
+  public void getBucketIndex_usesPowerOfTwoBuckets() {
+    assertThat(AggregatingMetricsCollector.getBucketIndex(-1)).isEqualTo(0);
+    assertThat(AggregatingMetricsCollector.getBucketIndex(0)).isEqualTo(0);
+    assertThat(AggregatingMetricsCollector.getBucketIndex(1)).isEqualTo(1);
+    assertThat(AggregatingMetricsCollector.getBucketIndex(2)).isEqualTo(2);
+    assertThat(AggregatingMetricsCollector.getBucketIndex(3)).isEqualTo(2);
+    assertThat(AggregatingMetricsCollector.getBucketIndex(4)).isEqualTo(3);
+    assertThat(AggregatingMetricsCollector.getBucketIndex(Long.MAX_VALUE))
+        .isEqualTo(AggregatingMetricsCollector.BUCKET_COUNT - 1);
+  }
+
+  @Test
+  public void recordValue_updatesHistogramStatistics() {
+    int histogram = MetricsCollector.HISTOGRAM_PLAYBACK_LOOP_TIME_US;
+    for (int i = 1; i <= 100; i++) {
+      collector.recordValue(histogram, i);
+    }
+
+    assertThat(collector.getHistogramCount(histogram)).isEqualTo(100);
+    assertThat(collector.getHistogramSum(histogram)).isEqualTo(5050);
+    assertThat(collector.getHistogramMax(histogram)).isEqualTo(100);
+    // Values 64 to 100 are in the bucket [64, 127].
+    assertThat(collector.getBucketCount(histogram, /* bucketIndex= */ 7)).isEqualTo(37);
+    // The 50th value is in the bucket [32, 63].
+    assertThat(collector.getHistogramPercentile(histogram, /* percentile= */ 50)).isEqualTo(63);
+    // The bucket [64, 127] is capped at the maximum.
+    assertThat(collector.getHistogramPercentile(histogram, /* percentile= */ 99)).isEqualTo(100);
+    assertThat(collector.getHistogramCount(MetricsCollector.HISTOGRAM_LOADER_QUEUE_DEPTH))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void reset_clearsCountersAndHistograms() {
+    collector.incrementCounter(MetricsCollector.COUNTER_ALLOCATIONS, /* delta= */ 5);
+    collector.recordValue(MetricsCollector.HISTOGRAM_LOADER_QUEUE_TIME_US, /* value= */ 10);
+
+    collector.reset();
+
+    assertThat(collector.getCounter(MetricsCollector.COUNTER_ALLOCATIONS)).isEqualTo(0);
+    assertThat(collector.getHistogramCount(MetricsCollector.HISTOGRAM_LOADER_QUEUE_TIME_US))
+        .isEqualTo(0);
+    assertThat(collector.getHistogramMax(MetricsCollector.HISTOGRAM_LOADER_QUEUE_TIME_US))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void dump_includesCountersAndNonEmptyHistograms() {
+    collector.incrementCounter(MetricsCollector.COUNTER_LOADS_STARTED, /* delta= */ 2);
+    collector.recordValue(MetricsCollector.HISTOGRAM_LOADER_QUEUE_DEPTH, /* value= */ 3);
+
+    String dump = collector.dump();
+
+    assertThat(dump).contains("loadsStarted: 2\n");
+    assertThat(dump).contains("allocations: 0\n");
+    assertThat(dump).contains("loaderQueueDepth: count=1, mean=3, p50<=3, p99<=3, max=3\n");
+    assertThat(dump.contains("playbackLoopTimeUs")).isFalse();
+  }
+
+  @Test
+  public void defaultAllocator_recordsAllocationsToCollector() {
+    MetricsUtil.setCollector(collector);
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024);
+
+    Allocation allocation = allocator.allocate();
+    allocator.allocate();
+    allocator.release(allocation);
+    allocator.allocate();
+
+    assertThat(collector.getCounter(MetricsCollector.COUNTER_ALLOCATIONS)).isEqualTo(3);
+    assertThat(collector.getHistogramMax(MetricsCollector.HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES))
+        .isEqualTo(2048);
+  }
+
+  @Test
+  public void concurrentAllocator_recordsAllocationsToCollector() {
+    MetricsUtil.setCollector(collector);
+    ConcurrentAllocator allocator =
+        new ConcurrentAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024);
+
+    Allocation allocation = allocator.allocate();
+    allocator.allocate();
+    allocator.release(allocation);
+    allocator.allocate();
+
+    assertThat(collector.getCounter(MetricsCollector.COUNTER_ALLOCATIONS)).isEqualTo(3);
+    assertThat(collector.getHistogramMax(MetricsCollector.HISTOGRAM_ALLOCATOR_ALLOCATED_BYTES))
+        .isEqualTo(2048);
+  }
+}
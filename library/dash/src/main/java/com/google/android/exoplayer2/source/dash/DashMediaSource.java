@@ -50,6 +50,7 @@ import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
@@ -88,6 +89,7 @@ public final class DashMediaSource extends BaseMediaSource {
     private long livePresentationDelayMs;
     private boolean livePresentationDelayOverridesManifest;
     @Nullable private ParsingLoadable.Parser<? extends DashManifest> manifestParser;
+    @Nullable private ManifestCache manifestCache;
     @Nullable private List<StreamKey> streamKeys;
     @Nullable private Object tag;
 
@@ -223,6 +225,26 @@ public final class DashMediaSource extends BaseMediaSource {
       return this;
     }
 
+    /**
+     * Sets a {@link ManifestCache} from which loaded manifests are reused, and to which they're
+     * added once loaded. The cache may be shared with other factories, so that media sources for
+     * the same manifest {@link Uri} don't load and parse it again.
+     *
+     * <p>Static manifests are cached for the maximum time to live of the cache. Dynamic manifests
+     * are cached for half their {@link DashManifest#minUpdatePeriodMs}, so that refreshes aren't
+     * served the manifest loaded by the previous refresh, and aren't cached if they don't have a
+     * minimum update period. A cached manifest is removed and the cache is bypassed when the
+     * stream requests a manifest refresh, or when a loaded manifest turns out to be stale. The
+     * cache isn't used if stream keys are set.
+     *
+     * @param manifestCache A {@link ManifestCache}, or null to always load manifests.
+     * @return This factory, for convenience.
+     */
+    public Factory setManifestCache(@Nullable ManifestCache manifestCache) {
+      this.manifestCache = manifestCache;
+      return this;
+    }
+
     /**
      * Sets the factory to create composite {@link SequenceableLoader}s for when this media source
      * loads data from multiple streams (video, audio etc...). The default is an instance of {@link
@@ -260,6 +282,7 @@ public final class DashMediaSource extends BaseMediaSource {
           /* manifestUri= */ null,
           /* manifestDataSourceFactory= */ null,
           /* manifestParser= */ null,
+          /* manifestCache= */ null,
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           drmSessionManager,
@@ -321,6 +344,7 @@ public final class DashMediaSource extends BaseMediaSource {
           Assertions.checkNotNull(manifestUri),
           manifestDataSourceFactory,
           manifestParser,
+          streamKeys == null ? manifestCache : null,
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           drmSessionManager,
@@ -371,6 +395,7 @@ public final class DashMediaSource extends BaseMediaSource {
   private final boolean livePresentationDelayOverridesManifest;
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends DashManifest> manifestParser;
+  @Nullable private final ManifestCache manifestCache;
   private final ManifestCallback manifestCallback;
   private final Object manifestUriLock;
   private final SparseArray<DashMediaPeriod> periodsById;
@@ -391,6 +416,7 @@ public final class DashMediaSource extends BaseMediaSource {
   private Uri manifestUri;
   private DashManifest manifest;
   private boolean manifestLoadPending;
+  private boolean manifestCacheBypassPending;
   private long manifestLoadStartTimestampMs;
   private long manifestLoadEndTimestampMs;
   private long elapsedRealtimeOffsetMs;
@@ -446,6 +472,7 @@ public final class DashMediaSource extends BaseMediaSource {
         /* manifestUri= */ null,
         /* manifestDataSourceFactory= */ null,
         /* manifestParser= */ null,
+        /* manifestCache= */ null,
         chunkSourceFactory,
         new DefaultCompositeSequenceableLoaderFactory(),
         DrmSessionManager.getDummyDrmSessionManager(),
@@ -560,6 +587,7 @@ public final class DashMediaSource extends BaseMediaSource {
         manifestUri,
         manifestDataSourceFactory,
         manifestParser,
+        /* manifestCache= */ null,
         chunkSourceFactory,
         new DefaultCompositeSequenceableLoaderFactory(),
         DrmSessionManager.getDummyDrmSessionManager(),
@@ -579,6 +607,7 @@ public final class DashMediaSource extends BaseMediaSource {
       @Nullable Uri manifestUri,
       @Nullable DataSource.Factory manifestDataSourceFactory,
       @Nullable ParsingLoadable.Parser<? extends DashManifest> manifestParser,
+      @Nullable ManifestCache manifestCache,
       DashChunkSource.Factory chunkSourceFactory,
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
       DrmSessionManager<?> drmSessionManager,
@@ -591,6 +620,7 @@ public final class DashMediaSource extends BaseMediaSource {
     this.manifestUri = manifestUri;
     this.manifestDataSourceFactory = manifestDataSourceFactory;
     this.manifestParser = manifestParser;
+    this.manifestCache = manifestCache;
     this.chunkSourceFactory = chunkSourceFactory;
     this.drmSessionManager = drmSessionManager;
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
@@ -693,6 +723,7 @@ public final class DashMediaSource extends BaseMediaSource {
   @Override
   protected void releaseSourceInternal() {
     manifestLoadPending = false;
+    manifestCacheBypassPending = false;
     dataSource = null;
     if (loader != null) {
       loader.release();
@@ -719,6 +750,11 @@ public final class DashMediaSource extends BaseMediaSource {
 
   /* package */ void onDashManifestRefreshRequested() {
     handler.removeCallbacks(simulateManifestRefreshRunnable);
+    Uri manifestUri;
+    synchronized (manifestUriLock) {
+      manifestUri = this.manifestUri;
+    }
+    invalidateCachedManifest(manifestUri);
     startLoadingManifest();
   }
 
@@ -776,6 +812,7 @@ public final class DashMediaSource extends BaseMediaSource {
       }
 
       if (isManifestStale) {
+        invalidateCachedManifest(loadable.dataSpec.uri);
         if (staleManifestReloadAttempt++
             < loadErrorHandlingPolicy.getMinimumLoadableRetryCount(loadable.type)) {
           scheduleManifestRefresh(getManifestLoadRetryDelayMillis());
@@ -1086,12 +1123,41 @@ public final class DashMediaSource extends BaseMediaSource {
       manifestUri = this.manifestUri;
     }
     manifestLoadPending = false;
+    @Nullable ManifestCache manifestCache = manifestCacheBypassPending ? null : this.manifestCache;
+    manifestCacheBypassPending = false;
     startLoading(
-        new ParsingLoadable<>(dataSource, manifestUri, C.DATA_TYPE_MANIFEST, manifestParser),
+        new ParsingLoadable<>(
+            dataSource,
+            manifestUri,
+            C.DATA_TYPE_MANIFEST,
+            manifestParser,
+            manifestCache,
+            DashMediaSource::getManifestTimeToLiveMs),
         manifestCallback,
         loadErrorHandlingPolicy.getMinimumLoadableRetryCount(C.DATA_TYPE_MANIFEST));
   }
 
+  /**
+   * Removes any manifest cached for {@code manifestUri}, and makes the next manifest load bypass
+   * the cache. Called when the manifest needs to be reloaded from the server, so that neither this
+   * source nor others are served a manifest that's known to be out of date.
+   */
+  private void invalidateCachedManifest(Uri manifestUri) {
+    if (manifestCache != null) {
+      manifestCache.remove(manifestUri);
+      manifestCacheBypassPending = true;
+    }
+  }
+
+  private static long getManifestTimeToLiveMs(DashManifest manifest) {
+    if (!manifest.dynamic) {
+      return C.TIME_UNSET;
+    }
+    // Dynamic manifests without a minimum update period are only refreshed when the stream
+    // requests it, so they mustn't be served from the cache.
+    return manifest.minUpdatePeriodMs != C.TIME_UNSET ? manifest.minUpdatePeriodMs / 2 : 0;
+  }
+
   private long getManifestLoadRetryDelayMillis() {
     return Math.min((staleManifestReloadAttempt - 1) * 1000, 5000);
   }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A segment timeline that stores runs of consecutive segments of equal duration, as described by
+ * the S elements of a SegmentTimeline, rather than an element per segment. The start time and
+ * duration of a segment are computed from its run when they're needed.
+ *
+ * <p>Viewed as a list, the timeline contains an element for each segment, which is created when
+ * it's accessed. {@link SegmentBase.MultiSegmentBase} reads the start times and durations of
+ * segments without creating elements.
+ */
+/* package */ final class CompactSegmentTimeline extends AbstractList<SegmentTimelineElement>
+    implements RandomAccess {
+
+  private static final int INITIAL_RUN_CAPACITY = 4;
+
+  private long[] runStartTimes;
+  private long[] runDurations;
+  private int[] runFirstIndices;
+  private int runCount;
+  private int size;
+
+  public CompactSegmentTimeline() {
+    runStartTimes = new long[INITIAL_RUN_CAPACITY];
+    runDurations = new long[INITIAL_RUN_CAPACITY];
+    runFirstIndices = new int[INITIAL_RUN_CAPACITY];
+  }
+
+  /**
+   * Appends a run of consecutive segments of equal duration. The run is merged into the previous
+   * run if it continues it.
+   *
+   * @param startTime The start time of the first segment in the run.
+   * @param duration The duration of each segment in the run.
+   * @param count The number of segments in the run. Must be positive.
+   */
+  public void addRun(long startTime, long duration, int count) {
+    Assertions.checkArgument(count > 0);
+    if (runCount > 0) {
+      int lastRun = runCount - 1;
+      long lastRunEndTime =
+          runStartTimes[lastRun] + (size - runFirstIndices[lastRun]) * runDurations[lastRun];
+      if (runDurations[lastRun] == duration && lastRunEndTime == startTime) {
+        size += count;
+        return;
+      }
+    }
+    if (runCount == runStartTimes.length) {
+      int newCapacity = runCount * 2;
+      runStartTimes = Arrays.copyOf(runStartTimes, newCapacity);
+      runDurations = Arrays.copyOf(runDurations, newCapacity);
+      runFirstIndices = Arrays.copyOf(runFirstIndices, newCapacity);
+    }
+    runStartTimes[runCount] = startTime;
+    runDurations[runCount] = duration;
+    runFirstIndices[runCount] = size;
+    runCount++;
+    size += count;
+  }
+
+  /** Returns the start time of the segment at {@code index}. */
+  public long getStartTime(int index) {
+    int run = getRunIndex(index);
+    return runStartTimes[run] + (index - runFirstIndices[run]) * runDurations[run];
+  }
+
+  /** Returns the duration of the segment at {@code index}. */
+  public long getDuration(int index) {
+    return runDurations[getRunIndex(index)];
+  }
+
+  // AbstractList implementation.
+
+  @Override
+  public SegmentTimelineElement get(int index) {
+    int run = getRunIndex(index);
+    long duration = runDurations[run];
+    long startTime = runStartTimes[run] + (index - runFirstIndices[run]) * duration;
+    return new SegmentTimelineElement(startTime, duration);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private int getRunIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    int run = Arrays.binarySearch(runFirstIndices, /* fromIndex= */ 0, runCount, index);
+    // Runs are never empty, so their first indices are distinct. If the index isn't the first of a
+    // run, it's in the run before the insertion point.
+    return run >= 0 ? run : -run - 2;
+  }
+}
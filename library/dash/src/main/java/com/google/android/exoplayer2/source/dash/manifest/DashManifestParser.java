@@ -70,8 +70,20 @@ public class DashManifestParser extends DefaultHandler
       Pattern.compile("([1-9]|[1-5][0-9]|6[0-3])=.*");
 
   private final XmlPullParserFactory xmlParserFactory;
+  private final boolean useCompactSegmentTimelines;
 
   public DashManifestParser() {
+    this(/* useCompactSegmentTimelines= */ false);
+  }
+
+  /**
+   * @param useCompactSegmentTimelines Whether to store each SegmentTimeline as runs of segments of
+   *     equal duration, rather than as a {@link SegmentTimelineElement} per segment. This makes
+   *     parsing manifests with long segment timelines faster and reduces the memory they use. If
+   *     true, {@link #buildSegmentTimelineElement(long, long)} isn't called.
+   */
+  public DashManifestParser(boolean useCompactSegmentTimelines) {
+    this.useCompactSegmentTimelines = useCompactSegmentTimelines;
     try {
       xmlParserFactory = XmlPullParserFactory.newInstance();
     } catch (XmlPullParserException e) {
@@ -1006,7 +1018,8 @@ public class DashManifestParser extends DefaultHandler
   protected List<SegmentTimelineElement> parseSegmentTimeline(
       XmlPullParser xpp, long timescale, long periodDurationMs)
       throws XmlPullParserException, IOException {
-    List<SegmentTimelineElement> segmentTimeline = new ArrayList<>();
+    List<SegmentTimelineElement> segmentTimeline =
+        useCompactSegmentTimelines ? new CompactSegmentTimeline() : new ArrayList<>();
     long startTime = 0;
     long elementDuration = C.TIME_UNSET;
     int elementRepeatCount = 0;
@@ -1067,6 +1080,13 @@ public class DashManifestParser extends DefaultHandler
         elementRepeatCount >= 0
             ? 1 + elementRepeatCount
             : (int) Util.ceilDivide(endTime - startTime, elementDuration);
+    if (segmentTimeline instanceof CompactSegmentTimeline) {
+      if (count <= 0) {
+        return startTime;
+      }
+      ((CompactSegmentTimeline) segmentTimeline).addRun(startTime, elementDuration, count);
+      return startTime + count * elementDuration;
+    }
     for (int i = 0; i < count; i++) {
       segmentTimeline.add(buildSegmentTimelineElement(startTime, elementDuration));
       startTime += elementDuration;
@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.source.dash.manifest;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.util.List;
 
@@ -182,7 +183,7 @@ public abstract class SegmentBase {
     /** @see DashSegmentIndex#getDurationUs(long, long) */
     public final long getSegmentDurationUs(long sequenceNumber, long periodDurationUs) {
       if (segmentTimeline != null) {
-        long duration = segmentTimeline.get((int) (sequenceNumber - startNumber)).duration;
+        long duration = getTimelineDuration((int) (sequenceNumber - startNumber));
         return (duration * C.MICROS_PER_SECOND) / timescale;
       } else {
         int segmentCount = getSegmentCount(periodDurationUs);
@@ -198,8 +199,7 @@ public abstract class SegmentBase {
       long unscaledSegmentTime;
       if (segmentTimeline != null) {
         unscaledSegmentTime =
-            segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime
-                - presentationTimeOffset;
+            getTimelineStartTime((int) (sequenceNumber - startNumber)) - presentationTimeOffset;
       } else {
         unscaledSegmentTime = (sequenceNumber - startNumber) * duration;
       }
@@ -231,6 +231,22 @@ public abstract class SegmentBase {
       return segmentTimeline != null;
     }
 
+    /** Returns the start time of the segment at {@code index} in the segment timeline. */
+    /* package */ final long getTimelineStartTime(int index) {
+      List<SegmentTimelineElement> segmentTimeline = Assertions.checkNotNull(this.segmentTimeline);
+      return segmentTimeline instanceof CompactSegmentTimeline
+          ? ((CompactSegmentTimeline) segmentTimeline).getStartTime(index)
+          : segmentTimeline.get(index).startTime;
+    }
+
+    /** Returns the duration of the segment at {@code index} in the segment timeline. */
+    /* package */ final long getTimelineDuration(int index) {
+      List<SegmentTimelineElement> segmentTimeline = Assertions.checkNotNull(this.segmentTimeline);
+      return segmentTimeline instanceof CompactSegmentTimeline
+          ? ((CompactSegmentTimeline) segmentTimeline).getDuration(index)
+          : segmentTimeline.get(index).duration;
+    }
+
   }
 
   /** A {@link MultiSegmentBase} that uses a SegmentList to define its segments. */
@@ -350,7 +366,7 @@ public abstract class SegmentBase {
     public RangedUri getSegmentUrl(Representation representation, long sequenceNumber) {
       long time;
       if (segmentTimeline != null) {
-        time = segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime;
+        time = getTimelineStartTime((int) (sequenceNumber - startNumber));
       } else {
         time = (sequenceNumber - startNumber) * duration;
       }
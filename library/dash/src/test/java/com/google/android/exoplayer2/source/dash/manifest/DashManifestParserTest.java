@@ -23,6 +23,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.metadata.emsg.EventMessage;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.Util;
@@ -267,6 +268,78 @@ public class DashManifestParserTest {
     assertNextTag(xpp);
   }
 
+  @Test
+  public void parseSegmentTimeline_compactWithTimeOffsetsAndUndefinedRepeatCount()
+      throws Exception {
+    DashManifestParser parser = new DashManifestParser(/* useCompactSegmentTimelines= */ true);
+    XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+    xpp.setInput(
+        new StringReader(
+            "<SegmentTimeline><S t=\"0\" d=\"96000\"/><S d=\"96000\"/>"
+                + "<S t=\"192000\" d=\"48000\" r=\"-1\"/>"
+                + "</SegmentTimeline>"
+                + NEXT_TAG));
+    xpp.next();
+
+    List<SegmentTimelineElement> elements =
+        parser.parseSegmentTimeline(xpp, /* timescale= */ 48000, /* periodDurationMs= */ 10000);
+
+    assertThat(elements).isInstanceOf(CompactSegmentTimeline.class);
+    assertThat(elements)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 96000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 192000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 240000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 288000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 336000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 384000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 432000, /* duration= */ 48000))
+        .inOrder();
+    assertNextTag(xpp);
+  }
+
+  @Test
+  public void parseMediaPresentationDescription_compactSegmentTimelines_matchesDefault()
+      throws IOException {
+    DashManifest mpd =
+        new DashManifestParser()
+            .parse(
+                Uri.parse("https://example.com/test.mpd"),
+                TestUtil.getInputStream(
+                    ApplicationProvider.getApplicationContext(), SAMPLE_MPD_SEGMENT_TEMPLATE));
+    DashManifest compactMpd =
+        new DashManifestParser(/* useCompactSegmentTimelines= */ true)
+            .parse(
+                Uri.parse("https://example.com/test.mpd"),
+                TestUtil.getInputStream(
+                    ApplicationProvider.getApplicationContext(), SAMPLE_MPD_SEGMENT_TEMPLATE));
+
+    long periodDurationUs = mpd.getPeriodDurationUs(/* index= */ 0);
+    List<AdaptationSet> adaptationSets = mpd.getPeriod(0).adaptationSets;
+    List<AdaptationSet> compactAdaptationSets = compactMpd.getPeriod(0).adaptationSets;
+    assertThat(compactAdaptationSets).hasSize(adaptationSets.size());
+    for (int i = 0; i < adaptationSets.size(); i++) {
+      Representation representation = adaptationSets.get(i).representations.get(0);
+      Representation compactRepresentation = compactAdaptationSets.get(i).representations.get(0);
+      DashSegmentIndex index = representation.getIndex();
+      DashSegmentIndex compactIndex = compactRepresentation.getIndex();
+      int segmentCount = index.getSegmentCount(periodDurationUs);
+      assertThat(compactIndex.getSegmentCount(periodDurationUs)).isEqualTo(segmentCount);
+      for (long segmentNum = index.getFirstSegmentNum();
+          segmentNum < index.getFirstSegmentNum() + segmentCount;
+          segmentNum++) {
+        long timeUs = index.getTimeUs(segmentNum);
+        assertThat(compactIndex.getTimeUs(segmentNum)).isEqualTo(timeUs);
+        assertThat(compactIndex.getDurationUs(segmentNum, periodDurationUs))
+            .isEqualTo(index.getDurationUs(segmentNum, periodDurationUs));
+        assertThat(compactIndex.getSegmentNum(timeUs, periodDurationUs)).isEqualTo(segmentNum);
+        assertThat(compactIndex.getSegmentUrl(segmentNum).resolveUriString(representation.baseUrl))
+            .isEqualTo(index.getSegmentUrl(segmentNum).resolveUriString(representation.baseUrl));
+      }
+    }
+  }
+
   @Test
   public void parseLabel() throws Exception {
     DashManifestParser parser = new DashManifestParser();
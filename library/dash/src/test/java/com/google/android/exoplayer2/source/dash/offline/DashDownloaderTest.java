@@ -171,6 +171,57 @@ public class DashDownloaderTest {
     assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
   }
 
+  @Test
+  public void testDownloadAllRepresentationsInParallel() throws Exception {
+    FakeDataSet fakeDataSet = createFakeDataSetWithLatency(/* latencyMs= */ 100);
+    Factory factory = new Factory().setFakeDataSet(fakeDataSet);
+
+    long startTimeNs = System.nanoTime();
+    getDashDownloader(factory, /* maxParallelDownloads= */ 1).download(progressListener);
+    long sequentialDurationNs = System.nanoTime() - startTimeNs;
+    getDashDownloader(factory, /* maxParallelDownloads= */ 1).remove();
+    assertCacheEmpty(cache);
+
+    startTimeNs = System.nanoTime();
+    getDashDownloader(factory, /* maxParallelDownloads= */ 4).download(progressListener);
+    long parallelDurationNs = System.nanoTime() - startTimeNs;
+
+    assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
+    progressListener.assertBytesDownloaded(10 + 4 + 5 + 6 + 1 + 2 + 3 + 1 + 2 + 3);
+    // Ten segments are downloaded by four threads, so ideally in under a third of the time.
+    assertThat(parallelDurationNs).isLessThan(sequentialDurationNs / 2);
+  }
+
+  @Test
+  public void testParallelDownloadFailure() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .newData("audio_segment_2")
+            .appendReadData(TestUtil.buildTestData(2))
+            .appendReadError(new IOException())
+            .appendReadData(TestUtil.buildTestData(3))
+            .endData()
+            .setRandomData("audio_segment_3", 6);
+
+    DashDownloader dashDownloader =
+        getDashDownloader(
+            new Factory().setFakeDataSet(fakeDataSet),
+            /* maxParallelDownloads= */ 4,
+            new StreamKey(0, 0, 0));
+    try {
+      dashDownloader.download(progressListener);
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+    dashDownloader.download(progressListener);
+    assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
+    progressListener.assertBytesDownloaded(10 + 4 + 5 + 6);
+  }
+
   @Test
   public void testProgressiveDownload() throws Exception {
     FakeDataSet fakeDataSet =
@@ -335,6 +386,57 @@ public class DashDownloaderTest {
         TEST_MPD_URI, keysList(keys), new DownloaderConstructorHelper(cache, factory));
   }
 
+  private DashDownloader getDashDownloader(
+      Factory factory, int maxParallelDownloads, StreamKey... keys) {
+    return new DashDownloader(
+        TEST_MPD_URI,
+        keysList(keys),
+        new DownloaderConstructorHelper(
+            cache,
+            factory,
+            /* cacheReadDataSourceFactory= */ null,
+            /* cacheWriteDataSinkFactory= */ null,
+            /* priorityTaskManager= */ null,
+            /* cacheKeyFactory= */ null,
+            maxParallelDownloads));
+  }
+
+  /**
+   * Returns a {@link FakeDataSet} for {@link DashDownloadTestData#TEST_MPD} in which reading each
+   * segment is delayed by {@code latencyMs}, as if it were requested over a slow network.
+   */
+  private static FakeDataSet createFakeDataSetWithLatency(long latencyMs) {
+    FakeDataSet fakeDataSet = new FakeDataSet().setData(TEST_MPD_URI, TEST_MPD);
+    String[] segmentUris = {
+      "audio_init_data",
+      "audio_segment_1",
+      "audio_segment_2",
+      "audio_segment_3",
+      "text_segment_1",
+      "text_segment_2",
+      "text_segment_3",
+      "period_2_segment_1",
+      "period_2_segment_2",
+      "period_2_segment_3"
+    };
+    int[] segmentLengths = {10, 4, 5, 6, 1, 2, 3, 1, 2, 3};
+    for (int i = 0; i < segmentUris.length; i++) {
+      fakeDataSet
+          .newData(segmentUris[i])
+          .appendReadAction(
+              () -> {
+                try {
+                  Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              })
+          .appendReadData(TestUtil.buildTestData(segmentLengths[i]))
+          .endData();
+    }
+    return fakeDataSet;
+  }
+
   private static ArrayList<StreamKey> keysList(StreamKey... keys) {
     ArrayList<StreamKey> keysList = new ArrayList<>();
     Collections.addAll(keysList, keys);
@@ -50,6 +50,9 @@ public interface ElementaryStreamReader {
   /**
    * Consumes (possibly partial) data from the current packet.
    *
+   * <p>{@code data} is a view over the payload of a transport stream packet, from its current
+   * position to its limit. It must not be retained after the call returns.
+   *
    * @param data The data to consume.
    * @throws ParserException If the data could not be parsed.
    */
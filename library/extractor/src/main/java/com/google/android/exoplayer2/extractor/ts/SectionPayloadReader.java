@@ -40,9 +40,13 @@ public interface SectionPayloadReader {
   /**
    * Called by a {@link SectionReader} when a full section is received.
    *
-   * @param sectionData The data belonging to a section starting from the table_id. If
-   *     section_syntax_indicator is set to '1', {@code sectionData} excludes the CRC_32 field.
-   *     Otherwise, all bytes belonging to the table section are included.
+   * <p>{@code sectionData} may be a view over the transport stream packet that contained the
+   * section, in which case its position isn't necessarily zero. It must not be retained after the
+   * call returns.
+   *
+   * @param sectionData The data belonging to a section starting from the table_id at the
+   *     current position. If section_syntax_indicator is set to '1', {@code sectionData} excludes
+   *     the CRC_32 field. Otherwise, all bytes belonging to the table section are included.
    */
   void consume(ParsableByteArray sectionData);
 
@@ -33,6 +33,7 @@ public final class SectionReader implements TsPayloadReader {
 
   private final SectionPayloadReader reader;
   private final ParsableByteArray sectionData;
+  private final ParsableByteArray sectionView;
 
   private int totalSectionLength;
   private int bytesRead;
@@ -42,6 +43,7 @@ public final class SectionReader implements TsPayloadReader {
   public SectionReader(SectionPayloadReader reader) {
     this.reader = reader;
     sectionData = new ParsableByteArray(DEFAULT_SECTION_BUFFER_LENGTH);
+    sectionView = new ParsableByteArray();
   }
 
   @Override
@@ -86,6 +88,9 @@ public final class SectionReader implements TsPayloadReader {
             waitingForPayloadStart = true;
             return;
           }
+          if (consumeWholeSection(data)) {
+            continue;
+          }
         }
         int headerBytesToRead = Math.min(data.bytesLeft(), SECTION_HEADER_LENGTH - bytesRead);
         data.readBytes(sectionData.data, bytesRead, headerBytesToRead);
@@ -131,4 +136,44 @@ public final class SectionReader implements TsPayloadReader {
     }
   }
 
+  /**
+   * Consumes the section starting at the current position of {@code data} if it's contained
+   * entirely within {@code data}, passing a view over {@code data} to the {@link
+   * SectionPayloadReader} instead of copying the section into {@link #sectionData}.
+   *
+   * @param data The data positioned at the start of a section.
+   * @return Whether the section was contained entirely within {@code data}. If false, nothing was
+   *     consumed.
+   */
+  private boolean consumeWholeSection(ParsableByteArray data) {
+    if (data.bytesLeft() < SECTION_HEADER_LENGTH) {
+      return false;
+    }
+    byte[] bytes = data.data;
+    int sectionStart = data.getPosition();
+    int secondHeaderByte = bytes[sectionStart + 1] & 0xFF;
+    int thirdHeaderByte = bytes[sectionStart + 2] & 0xFF;
+    int sectionLength =
+        (((secondHeaderByte & 0x0F) << 8) | thirdHeaderByte) + SECTION_HEADER_LENGTH;
+    if (data.bytesLeft() < sectionLength) {
+      return false;
+    }
+    int sectionEnd = sectionStart + sectionLength;
+    data.setPosition(sectionEnd);
+    if ((secondHeaderByte & 0x80) != 0) {
+      // This section has common syntax as defined in ISO/IEC 13818-1, section 2.4.4.11.
+      if (Util.crc32(bytes, sectionStart, sectionEnd, 0xFFFFFFFF) != 0) {
+        // The CRC is invalid so discard the section.
+        waitingForPayloadStart = true;
+        data.setPosition(data.limit());
+        return true;
+      }
+      sectionEnd -= 4; // Exclude the CRC_32 field.
+    }
+    sectionView.reset(bytes, sectionEnd);
+    sectionView.setPosition(sectionStart);
+    reader.consume(sectionView);
+    return true;
+  }
+
 }
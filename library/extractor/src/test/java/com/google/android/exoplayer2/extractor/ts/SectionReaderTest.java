@@ -170,6 +170,18 @@ public final class SectionReaderTest {
     assertThat(payloadReader.parsedTableIds).isEqualTo(singletonList(0));
   }
 
+  @Test
+  public void testSectionWithinPacketExcludesCrc() {
+    byte[] packet = new byte[] {
+        (byte) 0x0, (byte) 0x0, (byte) 0xb0, (byte) 0xd, (byte) 0x0, (byte) 0x1, (byte) 0xc1,
+        (byte) 0x0, (byte) 0x0, (byte) 0x0, (byte) 0x1, (byte) 0xe1, (byte) 0x0, (byte) 0xe8,
+        (byte) 0xf9, (byte) 0x5e, (byte) 0x7d, (byte) 0xFF, (byte) 0xFF};
+    reader.consume(new ParsableByteArray(packet), FLAG_PAYLOAD_UNIT_START_INDICATOR);
+    assertThat(payloadReader.parsedTableIds).isEqualTo(singletonList(0));
+    // The section is 16 bytes long, of which the table_id has been read and CRC_32 is excluded.
+    assertThat(payloadReader.lastSectionBytesLeft).isEqualTo(11);
+  }
+
   // Internal methods.
 
   /**
@@ -190,6 +202,7 @@ public final class SectionReaderTest {
   private static final class CustomSectionPayloadReader implements SectionPayloadReader {
 
     List<Integer> parsedTableIds;
+    int lastSectionBytesLeft;
 
     @Override
     public void init(TimestampAdjuster timestampAdjuster, ExtractorOutput extractorOutput,
@@ -200,6 +213,7 @@ public final class SectionReaderTest {
     @Override
     public void consume(ParsableByteArray sectionData) {
       parsedTableIds.add(sectionData.readUnsignedByte());
+      lastSectionBytesLeft = sectionData.bytesLeft();
     }
 
   }
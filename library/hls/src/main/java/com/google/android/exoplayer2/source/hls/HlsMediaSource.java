@@ -47,6 +47,7 @@ import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
@@ -92,6 +93,7 @@ public final class HlsMediaSource extends BaseMediaSource
     private HlsExtractorFactory extractorFactory;
     private HlsPlaylistParserFactory playlistParserFactory;
     private HlsPlaylistTracker.Factory playlistTrackerFactory;
+    @Nullable private ManifestCache manifestCache;
     private CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory;
     private DrmSessionManager<?> drmSessionManager;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
@@ -213,6 +215,24 @@ public final class HlsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a {@link ManifestCache} from which loaded playlists are reused, and to which they're
+     * added once loaded. The cache may be shared with other factories, so that media sources for
+     * the same playlists don't load and parse them again.
+     *
+     * <p>The cache is passed to the {@link HlsPlaylistTracker.Factory}, and isn't used if stream
+     * keys are set. Trackers created by {@link DefaultHlsPlaylistTracker#FACTORY} use it, and
+     * {@link DefaultHlsPlaylistTracker} documents how long playlists are cached. Other factories
+     * may ignore it.
+     *
+     * @param manifestCache A {@link ManifestCache}, or null to always load playlists.
+     * @return This factory, for convenience.
+     */
+    public Factory setManifestCache(@Nullable ManifestCache manifestCache) {
+      this.manifestCache = manifestCache;
+      return this;
+    }
+
     /**
      * Sets the factory to create composite {@link SequenceableLoader}s for when this media source
      * loads data from multiple streams (video, audio etc...). The default is an instance of {@link
@@ -332,6 +352,12 @@ public final class HlsMediaSource extends BaseMediaSource
         playlistParserFactory =
             new FilteringHlsPlaylistParserFactory(playlistParserFactory, streamKeys);
       }
+      HlsPlaylistTracker playlistTracker =
+          playlistTrackerFactory.createTracker(
+              hlsDataSourceFactory,
+              loadErrorHandlingPolicy,
+              playlistParserFactory,
+              streamKeys == null ? manifestCache : null);
       return new HlsMediaSource(
           playlistUri,
           hlsDataSourceFactory,
@@ -339,8 +365,7 @@ public final class HlsMediaSource extends BaseMediaSource
           compositeSequenceableLoaderFactory,
           drmSessionManager,
           loadErrorHandlingPolicy,
-          playlistTrackerFactory.createTracker(
-              hlsDataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory),
+          playlistTracker,
           allowChunklessPreparation,
           metadataType,
           useSessionKeys,
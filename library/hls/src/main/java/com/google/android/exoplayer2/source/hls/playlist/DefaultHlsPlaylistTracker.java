@@ -29,6 +29,7 @@ import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
@@ -41,8 +42,35 @@ import java.util.List;
 public final class DefaultHlsPlaylistTracker
     implements HlsPlaylistTracker, Loader.Callback<ParsingLoadable<HlsPlaylist>> {
 
-  /** Factory for {@link DefaultHlsPlaylistTracker} instances. */
-  public static final Factory FACTORY = DefaultHlsPlaylistTracker::new;
+  /**
+   * Factory for {@link DefaultHlsPlaylistTracker} instances. Trackers created with a {@link
+   * ManifestCache} use it for master and media playlists.
+   */
+  public static final Factory FACTORY =
+      new Factory() {
+        @Override
+        public HlsPlaylistTracker createTracker(
+            HlsDataSourceFactory dataSourceFactory,
+            LoadErrorHandlingPolicy loadErrorHandlingPolicy,
+            HlsPlaylistParserFactory playlistParserFactory) {
+          return new DefaultHlsPlaylistTracker(
+              dataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory);
+        }
+
+        @Override
+        public HlsPlaylistTracker createTracker(
+            HlsDataSourceFactory dataSourceFactory,
+            LoadErrorHandlingPolicy loadErrorHandlingPolicy,
+            HlsPlaylistParserFactory playlistParserFactory,
+            @Nullable ManifestCache manifestCache) {
+          return new DefaultHlsPlaylistTracker(
+              dataSourceFactory,
+              loadErrorHandlingPolicy,
+              playlistParserFactory,
+              DEFAULT_PLAYLIST_STUCK_TARGET_DURATION_COEFFICIENT,
+              manifestCache);
+        }
+      };
 
   /**
    * Default coefficient applied on the target duration of a playlist to determine the amount of
@@ -56,8 +84,8 @@ public final class DefaultHlsPlaylistTracker
   private final HashMap<Uri, MediaPlaylistBundle> playlistBundles;
   private final List<PlaylistEventListener> listeners;
   private final double playlistStuckTargetDurationCoefficient;
+  @Nullable private final ManifestCache manifestCache;
 
-  @Nullable private ParsingLoadable.Parser<HlsPlaylist> mediaPlaylistParser;
   @Nullable private EventDispatcher eventDispatcher;
   @Nullable private Loader initialPlaylistLoader;
   @Nullable private Handler playlistRefreshHandler;
@@ -102,10 +130,41 @@ public final class DefaultHlsPlaylistTracker
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       HlsPlaylistParserFactory playlistParserFactory,
       double playlistStuckTargetDurationCoefficient) {
+    this(
+        dataSourceFactory,
+        loadErrorHandlingPolicy,
+        playlistParserFactory,
+        playlistStuckTargetDurationCoefficient,
+        /* manifestCache= */ null);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param dataSourceFactory A factory for {@link DataSource} instances.
+   * @param loadErrorHandlingPolicy The {@link LoadErrorHandlingPolicy}.
+   * @param playlistParserFactory An {@link HlsPlaylistParserFactory}.
+   * @param playlistStuckTargetDurationCoefficient A coefficient to apply to the target duration of
+   *     media playlists in order to determine that a non-changing playlist is stuck. Once a
+   *     playlist is deemed stuck, a {@link PlaylistStuckException} is thrown via {@link
+   *     #maybeThrowPlaylistRefreshError(Uri)}.
+   * @param manifestCache A {@link ManifestCache} from which loaded playlists are reused, and to
+   *     which they're added once loaded, or null to always load playlists. Master playlists and
+   *     media playlists with an end tag are cached for the maximum time to live of the cache. Other
+   *     media playlists are cached for half their target duration, so that refreshes aren't served
+   *     the playlist loaded by the previous refresh.
+   */
+  public DefaultHlsPlaylistTracker(
+      HlsDataSourceFactory dataSourceFactory,
+      LoadErrorHandlingPolicy loadErrorHandlingPolicy,
+      HlsPlaylistParserFactory playlistParserFactory,
+      double playlistStuckTargetDurationCoefficient,
+      @Nullable ManifestCache manifestCache) {
     this.dataSourceFactory = dataSourceFactory;
     this.playlistParserFactory = playlistParserFactory;
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
     this.playlistStuckTargetDurationCoefficient = playlistStuckTargetDurationCoefficient;
+    this.manifestCache = manifestCache;
     listeners = new ArrayList<>();
     playlistBundles = new HashMap<>();
     initialStartTimeUs = C.TIME_UNSET;
@@ -126,7 +185,9 @@ public final class DefaultHlsPlaylistTracker
             dataSourceFactory.createDataSource(C.DATA_TYPE_MANIFEST),
             initialPlaylistUri,
             C.DATA_TYPE_MANIFEST,
-            playlistParserFactory.createPlaylistParser());
+            playlistParserFactory.createPlaylistParser(),
+            manifestCache,
+            DefaultHlsPlaylistTracker::getPlaylistTimeToLiveMs);
     Assertions.checkState(initialPlaylistLoader == null);
     initialPlaylistLoader = new Loader("DefaultHlsPlaylistTracker:MasterPlaylist");
     long elapsedRealtime =
@@ -231,7 +292,6 @@ public final class DefaultHlsPlaylistTracker
       masterPlaylist = (HlsMasterPlaylist) result;
     }
     this.masterPlaylist = masterPlaylist;
-    mediaPlaylistParser = playlistParserFactory.createPlaylistParser(masterPlaylist);
     primaryMediaPlaylistUrl = masterPlaylist.variants.get(0).url;
     createBundles(masterPlaylist.mediaPlaylistUrls);
     MediaPlaylistBundle primaryBundle = playlistBundles.get(primaryMediaPlaylistUrl);
@@ -442,13 +502,20 @@ public final class DefaultHlsPlaylistTracker
     return mediaSequenceOffset < oldSegments.size() ? oldSegments.get(mediaSequenceOffset) : null;
   }
 
+  private static long getPlaylistTimeToLiveMs(HlsPlaylist playlist) {
+    if (playlist instanceof HlsMediaPlaylist && !((HlsMediaPlaylist) playlist).hasEndTag) {
+      return C.usToMs(((HlsMediaPlaylist) playlist).targetDurationUs) / 2;
+    }
+    return C.TIME_UNSET;
+  }
+
   /** Holds all information related to a specific Media Playlist. */
   private final class MediaPlaylistBundle
       implements Loader.Callback<ParsingLoadable<HlsPlaylist>>, Runnable {
 
     private final Uri playlistUrl;
     private final Loader mediaPlaylistLoader;
-    private final ParsingLoadable<HlsPlaylist> mediaPlaylistLoadable;
+    private final DataSource mediaPlaylistDataSource;
 
     @Nullable private HlsMediaPlaylist playlistSnapshot;
     private long lastSnapshotLoadMs;
@@ -461,12 +528,7 @@ public final class DefaultHlsPlaylistTracker
     public MediaPlaylistBundle(Uri playlistUrl) {
       this.playlistUrl = playlistUrl;
       mediaPlaylistLoader = new Loader("DefaultHlsPlaylistTracker:MediaPlaylist");
-      mediaPlaylistLoadable =
-          new ParsingLoadable<>(
-              dataSourceFactory.createDataSource(C.DATA_TYPE_MANIFEST),
-              playlistUrl,
-              C.DATA_TYPE_MANIFEST,
-              mediaPlaylistParser);
+      mediaPlaylistDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MANIFEST);
     }
 
     @Nullable
@@ -606,6 +668,17 @@ public final class DefaultHlsPlaylistTracker
     // Internal methods.
 
     private void loadPlaylistImmediately() {
+      // The parser may reuse the segments of the current snapshot, which saves parsing the whole
+      // of a long live playlist each time it's refreshed.
+      ParsingLoadable<HlsPlaylist> mediaPlaylistLoadable =
+          new ParsingLoadable<>(
+              mediaPlaylistDataSource,
+              playlistUrl,
+              C.DATA_TYPE_MANIFEST,
+              playlistParserFactory.createPlaylistParser(
+                  Assertions.checkNotNull(masterPlaylist), playlistSnapshot),
+              manifestCache,
+              DefaultHlsPlaylistTracker::getPlaylistTimeToLiveMs);
       long elapsedRealtime =
           mediaPlaylistLoader.startLoading(
               mediaPlaylistLoadable,
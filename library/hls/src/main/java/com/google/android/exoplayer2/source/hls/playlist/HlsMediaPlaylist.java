@@ -152,6 +152,29 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
       this.hasGapTag = hasGapTag;
     }
 
+    /**
+     * Returns a copy of this segment with the given position in its playlist.
+     *
+     * @param relativeDiscontinuitySequence See {@link #relativeDiscontinuitySequence}.
+     * @param relativeStartTimeUs See {@link #relativeStartTimeUs}.
+     * @return The copied segment.
+     */
+    /* package */ Segment copyWith(int relativeDiscontinuitySequence, long relativeStartTimeUs) {
+      return new Segment(
+          url,
+          initializationSegment,
+          title,
+          durationUs,
+          relativeDiscontinuitySequence,
+          relativeStartTimeUs,
+          drmInitData,
+          fullSegmentEncryptionKeyUri,
+          encryptionIV,
+          byterangeOffset,
+          byterangeLength,
+          hasGapTag);
+    }
+
     @Override
     public int compareTo(Long relativeStartTimeUs) {
       return this.relativeStartTimeUs > relativeStartTimeUs
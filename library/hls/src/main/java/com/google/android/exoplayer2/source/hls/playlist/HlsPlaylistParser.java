@@ -170,6 +170,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       Pattern.compile("\\{\\$([a-zA-Z0-9\\-_]+)\\}");
 
   private final HlsMasterPlaylist masterPlaylist;
+  @Nullable private final HlsMediaPlaylist previousMediaPlaylist;
 
   /**
    * Creates an instance where media playlists are parsed without inheriting attributes from a
@@ -186,7 +187,26 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
    * @param masterPlaylist The master playlist from which media playlists will inherit attributes.
    */
   public HlsPlaylistParser(HlsMasterPlaylist masterPlaylist) {
+    this(masterPlaylist, /* previousMediaPlaylist= */ null);
+  }
+
+  /**
+   * Creates an instance where parsed media playlists inherit attributes from the given master
+   * playlist, and reuse the segments of a previously loaded version of the same media playlist.
+   *
+   * <p>Segments of a live media playlist don't change once they've been added to the playlist, so
+   * segments that have the same media sequence number as a segment of {@code
+   * previousMediaPlaylist}, and whose tags match it, are taken from {@code previousMediaPlaylist}
+   * rather than being parsed again. This makes refreshing long live playlists cheaper.
+   *
+   * @param masterPlaylist The master playlist from which media playlists will inherit attributes.
+   * @param previousMediaPlaylist The previously loaded version of the media playlist to be parsed,
+   *     or null.
+   */
+  public HlsPlaylistParser(
+      HlsMasterPlaylist masterPlaylist, @Nullable HlsMediaPlaylist previousMediaPlaylist) {
     this.masterPlaylist = masterPlaylist;
+    this.previousMediaPlaylist = previousMediaPlaylist;
   }
 
   @Override
@@ -216,7 +236,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             || line.equals(TAG_ENDLIST)) {
           extraLines.add(line);
           return parseMediaPlaylist(
-              masterPlaylist, new LineIterator(extraLines, reader), uri.toString());
+              masterPlaylist,
+              previousMediaPlaylist,
+              new LineIterator(extraLines, reader),
+              uri.toString());
         } else {
           extraLines.add(line);
         }
@@ -575,7 +598,11 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   }
 
   private static HlsMediaPlaylist parseMediaPlaylist(
-      HlsMasterPlaylist masterPlaylist, LineIterator iterator, String baseUri) throws IOException {
+      HlsMasterPlaylist masterPlaylist,
+      @Nullable HlsMediaPlaylist previousMediaPlaylist,
+      LineIterator iterator,
+      String baseUri)
+      throws IOException {
     @HlsMediaPlaylist.PlaylistType int playlistType = HlsMediaPlaylist.PLAYLIST_TYPE_UNKNOWN;
     long startOffsetUs = C.TIME_UNSET;
     long mediaSequence = 0;
@@ -588,8 +615,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     List<Segment> segments = new ArrayList<>();
     List<String> tags = new ArrayList<>();
 
-    long segmentDurationUs = 0;
-    String segmentTitle = "";
+    // #EXTINF tags are parsed once the segment's url is known, so that they needn't be parsed if
+    // the segment is reused from the previous playlist.
+    @Nullable String segmentDurationLine = null;
+    @Nullable List<Segment> previousInitializationSegments = null;
     boolean hasDiscontinuitySequence = false;
     int playlistDiscontinuitySequence = 0;
     int relativeDiscontinuitySequence = 0;
@@ -648,6 +677,15 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
                 segmentByteRangeLength,
                 fullSegmentEncryptionKeyUri,
                 fullSegmentEncryptionIV);
+        if (previousMediaPlaylist != null) {
+          // Use the same instance as the previous playlist, so that segments referencing it can be
+          // reused.
+          if (previousInitializationSegments == null) {
+            previousInitializationSegments = getInitializationSegments(previousMediaPlaylist);
+          }
+          initializationSegment =
+              getEquivalentSegment(previousInitializationSegments, initializationSegment);
+        }
         segmentByteRangeOffset = 0;
         segmentByteRangeLength = C.LENGTH_UNSET;
       } else if (line.startsWith(TAG_TARGET_DURATION)) {
@@ -672,9 +710,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
               parseStringAttr(line, REGEX_VALUE, variableDefinitions));
         }
       } else if (line.startsWith(TAG_MEDIA_DURATION)) {
-        segmentDurationUs =
-            (long) (parseDoubleAttr(line, REGEX_MEDIA_DURATION) * C.MICROS_PER_SECOND);
-        segmentTitle = parseOptionalStringAttr(line, REGEX_MEDIA_TITLE, "", variableDefinitions);
+        segmentDurationLine = line;
       } else if (line.startsWith(TAG_KEY)) {
         String method = parseStringAttr(line, REGEX_METHOD, variableDefinitions);
         String keyFormat =
@@ -739,6 +775,11 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           segmentEncryptionIV = Long.toHexString(segmentMediaSequence);
         }
 
+        @Nullable
+        Segment previousSegment =
+            previousMediaPlaylist != null
+                ? getSegment(previousMediaPlaylist, segmentMediaSequence)
+                : null;
         segmentMediaSequence++;
         if (segmentByteRangeLength == C.LENGTH_UNSET) {
           segmentByteRangeOffset = 0;
@@ -756,23 +797,54 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         }
 
-        segments.add(
-            new Segment(
-                replaceVariableReferences(line, variableDefinitions),
-                initializationSegment,
-                segmentTitle,
-                segmentDurationUs,
-                relativeDiscontinuitySequence,
-                segmentStartTimeUs,
-                cachedDrmInitData,
-                fullSegmentEncryptionKeyUri,
-                segmentEncryptionIV,
-                segmentByteRangeOffset,
-                segmentByteRangeLength,
-                hasGapTag));
-        segmentStartTimeUs += segmentDurationUs;
-        segmentDurationUs = 0;
-        segmentTitle = "";
+        String segmentUrl = replaceVariableReferences(line, variableDefinitions);
+        Segment segment;
+        if (previousSegment != null
+            && previousSegment.url.equals(segmentUrl)
+            && previousSegment.initializationSegment == initializationSegment
+            && previousSegment.byterangeOffset == segmentByteRangeOffset
+            && previousSegment.byterangeLength == segmentByteRangeLength
+            && previousSegment.hasGapTag == hasGapTag
+            && Util.areEqual(
+                previousSegment.fullSegmentEncryptionKeyUri, fullSegmentEncryptionKeyUri)
+            && Util.areEqual(previousSegment.encryptionIV, segmentEncryptionIV)
+            && Util.areEqual(previousSegment.drmInitData, cachedDrmInitData)
+            && hasDurationAndTitle(segmentDurationLine, previousSegment)) {
+          segment =
+              previousSegment.relativeDiscontinuitySequence == relativeDiscontinuitySequence
+                      && previousSegment.relativeStartTimeUs == segmentStartTimeUs
+                  ? previousSegment
+                  : previousSegment.copyWith(relativeDiscontinuitySequence, segmentStartTimeUs);
+        } else {
+          long segmentDurationUs = 0;
+          String segmentTitle = "";
+          if (segmentDurationLine != null) {
+            segmentDurationUs =
+                (long)
+                    (parseDoubleAttr(segmentDurationLine, REGEX_MEDIA_DURATION)
+                        * C.MICROS_PER_SECOND);
+            segmentTitle =
+                parseOptionalStringAttr(
+                    segmentDurationLine, REGEX_MEDIA_TITLE, "", variableDefinitions);
+          }
+          segment =
+              new Segment(
+                  segmentUrl,
+                  initializationSegment,
+                  segmentTitle,
+                  segmentDurationUs,
+                  relativeDiscontinuitySequence,
+                  segmentStartTimeUs,
+                  cachedDrmInitData,
+                  fullSegmentEncryptionKeyUri,
+                  segmentEncryptionIV,
+                  segmentByteRangeOffset,
+                  segmentByteRangeLength,
+                  hasGapTag);
+        }
+        segments.add(segment);
+        segmentStartTimeUs += segment.durationUs;
+        segmentDurationLine = null;
         if (segmentByteRangeLength != C.LENGTH_UNSET) {
           segmentByteRangeOffset += segmentByteRangeLength;
         }
@@ -798,6 +870,110 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         segments);
   }
 
+  @Nullable
+  private static Segment getSegment(HlsMediaPlaylist playlist, long mediaSequence) {
+    long index = mediaSequence - playlist.mediaSequence;
+    return index >= 0 && index < playlist.segments.size()
+        ? playlist.segments.get((int) index)
+        : null;
+  }
+
+  /** Returns the distinct initialization segments referenced by the segments of a playlist. */
+  private static List<Segment> getInitializationSegments(HlsMediaPlaylist playlist) {
+    List<Segment> initializationSegments = new ArrayList<>();
+    @Nullable Segment lastInitializationSegment = null;
+    for (int i = 0; i < playlist.segments.size(); i++) {
+      @Nullable Segment initializationSegment = playlist.segments.get(i).initializationSegment;
+      if (initializationSegment != null && initializationSegment != lastInitializationSegment) {
+        initializationSegments.add(initializationSegment);
+        lastInitializationSegment = initializationSegment;
+      }
+    }
+    return initializationSegments;
+  }
+
+  /**
+   * Returns an initialization segment from {@code initializationSegments} that is equivalent to
+   * {@code segment}, or {@code segment} if there is none.
+   */
+  private static Segment getEquivalentSegment(
+      List<Segment> initializationSegments, Segment segment) {
+    for (int i = 0; i < initializationSegments.size(); i++) {
+      Segment initializationSegment = initializationSegments.get(i);
+      if (initializationSegment.url.equals(segment.url)
+          && initializationSegment.byterangeOffset == segment.byterangeOffset
+          && initializationSegment.byterangeLength == segment.byterangeLength
+          && Util.areEqual(
+              initializationSegment.fullSegmentEncryptionKeyUri,
+              segment.fullSegmentEncryptionKeyUri)
+          && Util.areEqual(initializationSegment.encryptionIV, segment.encryptionIV)) {
+        return initializationSegment;
+      }
+    }
+    return segment;
+  }
+
+  /**
+   * Returns whether an #EXTINF tag specifies the duration and title of {@code segment}. The tag is
+   * checked without being fully parsed. Returns false if the tag can only be checked by parsing it.
+   *
+   * @param line The #EXTINF tag, or null if the segment has no such tag.
+   * @param segment The segment.
+   * @return Whether the tag specifies the duration and title of the segment.
+   */
+  private static boolean hasDurationAndTitle(@Nullable String line, Segment segment) {
+    if (line == null) {
+      return segment.durationUs == 0 && segment.title.isEmpty();
+    }
+    int position = TAG_MEDIA_DURATION.length();
+    int length = line.length();
+    if (position >= length || line.charAt(position) != ':') {
+      return false;
+    }
+    position++;
+    long durationUs = 0;
+    long digitUs = C.MICROS_PER_SECOND;
+    boolean hasDecimalPoint = false;
+    int integerDigitCount = 0;
+    char lastChar = ':';
+    for (; position < length; position++) {
+      char c = line.charAt(position);
+      if (c == '.' && !hasDecimalPoint) {
+        hasDecimalPoint = true;
+      } else if (c >= '0' && c <= '9') {
+        if (!hasDecimalPoint) {
+          if (++integerDigitCount > 12) {
+            return false;
+          }
+          durationUs = durationUs * 10 + (c - '0') * C.MICROS_PER_SECOND;
+        } else if (digitUs > 1) {
+          // Digits beyond microsecond precision are truncated.
+          digitUs /= 10;
+          durationUs += (c - '0') * digitUs;
+        }
+      } else {
+        break;
+      }
+      lastChar = c;
+    }
+    if (lastChar < '0' || lastChar > '9') {
+      // The duration is missing or ends with a decimal point.
+      return false;
+    }
+    // Parsing the duration as a double may round it down by up to one microsecond.
+    if (Math.abs(segment.durationUs - durationUs) > 1) {
+      return false;
+    }
+    if (position == length) {
+      return segment.title.isEmpty();
+    } else if (line.charAt(position) != ',' || line.indexOf("{$", position) != -1) {
+      return false;
+    }
+    int titleLength = length - position - 1;
+    return segment.title.length() == titleLength
+        && line.regionMatches(position + 1, segment.title, 0, titleLength);
+  }
+
   @C.SelectionFlags
   private static int parseSelectionFlags(String line) {
     int flags = 0;
@@ -916,6 +1092,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
 
   private static String replaceVariableReferences(
       String string, Map<String, String> variableDefinitions) {
+    if (string.indexOf("{$") == -1) {
+      // Avoid allocating when there are no variable references, as is usually the case.
+      return string;
+    }
     Matcher matcher = REGEX_VARIABLE_REFERENCE.matcher(string);
     // TODO: Replace StringBuffer with StringBuilder once Java 9 is available.
     StringBuffer stringWithReplacements = new StringBuffer();
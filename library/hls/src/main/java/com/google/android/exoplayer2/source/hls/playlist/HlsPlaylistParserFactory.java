@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.source.hls.playlist;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 
 /** Factory for {@link HlsPlaylist} parsers. */
@@ -35,4 +36,20 @@ public interface HlsPlaylistParserFactory {
    * @return A parser for HLS playlists.
    */
   ParsingLoadable.Parser<HlsPlaylist> createPlaylistParser(HlsMasterPlaylist masterPlaylist);
+
+  /**
+   * Returns a playlist parser for refreshing a media playlist that was referenced by the given
+   * {@link HlsMasterPlaylist}. The returned parser may reuse segments of {@code
+   * previousMediaPlaylist} rather than parsing them again.
+   *
+   * <p>The default implementation returns {@link #createPlaylistParser(HlsMasterPlaylist)}.
+   *
+   * @param masterPlaylist The master playlist that referenced the media playlist.
+   * @param previousMediaPlaylist The previously loaded version of the media playlist, or null.
+   * @return A parser for HLS playlists.
+   */
+  default ParsingLoadable.Parser<HlsPlaylist> createPlaylistParser(
+      HlsMasterPlaylist masterPlaylist, @Nullable HlsMediaPlaylist previousMediaPlaylist) {
+    return createPlaylistParser(masterPlaylist);
+  }
 }
@@ -21,6 +21,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.source.MediaSourceEventListener.EventDispatcher;
 import com.google.android.exoplayer2.source.hls.HlsDataSourceFactory;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import java.io.IOException;
 
 /**
@@ -51,6 +52,26 @@ public interface HlsPlaylistTracker {
         HlsDataSourceFactory dataSourceFactory,
         LoadErrorHandlingPolicy loadErrorHandlingPolicy,
         HlsPlaylistParserFactory playlistParserFactory);
+
+    /**
+     * Creates a new tracker instance that reuses playlists from a {@link ManifestCache}.
+     *
+     * <p>The default implementation ignores the cache, and creates a tracker with {@link
+     * #createTracker(HlsDataSourceFactory, LoadErrorHandlingPolicy, HlsPlaylistParserFactory)}.
+     *
+     * @param dataSourceFactory The {@link HlsDataSourceFactory} to use for playlist loading.
+     * @param loadErrorHandlingPolicy The {@link LoadErrorHandlingPolicy} for playlist load errors.
+     * @param playlistParserFactory The {@link HlsPlaylistParserFactory} for playlist parsing.
+     * @param manifestCache The {@link ManifestCache} from which loaded playlists may be reused,
+     *     and to which they may be added once loaded, or null to always load playlists.
+     */
+    default HlsPlaylistTracker createTracker(
+        HlsDataSourceFactory dataSourceFactory,
+        LoadErrorHandlingPolicy loadErrorHandlingPolicy,
+        HlsPlaylistParserFactory playlistParserFactory,
+        @Nullable ManifestCache manifestCache) {
+      return createTracker(dataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory);
+    }
   }
 
   /** Listener for primary playlist changes. */
@@ -19,6 +19,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 
 import android.net.Uri;
+import androidx.annotation.Nullable;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
@@ -528,4 +529,158 @@ public class HlsMediaPlaylistParserTest {
       assertThat(playlist.segments.get(i - 1).url).isEqualTo("long_path" + i + ".ts");
     }
   }
+
+  @Test
+  public void testParseWithPreviousPlaylistReusesAppendedToSegments() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/live.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXT-X-MAP:URI=\"init.mp4\"\n"
+            + "#EXTINF:5.005,first\n"
+            + "10.mp4\n"
+            + "#EXTINF:5.005,\n"
+            + "11.mp4\n";
+    String playlistString = previousPlaylistString + "#EXTINF:5.005,\n" + "12.mp4\n";
+    HlsMediaPlaylist previousPlaylist =
+        parseMediaPlaylist(playlistUri, previousPlaylistString, /* previousPlaylist= */ null);
+
+    HlsMediaPlaylist playlist = parseMediaPlaylist(playlistUri, playlistString, previousPlaylist);
+
+    assertThat(playlist.segments).hasSize(3);
+    assertThat(playlist.segments.get(0)).isSameInstanceAs(previousPlaylist.segments.get(0));
+    assertThat(playlist.segments.get(1)).isSameInstanceAs(previousPlaylist.segments.get(1));
+    assertThat(playlist.segments.get(2).initializationSegment)
+        .isSameInstanceAs(previousPlaylist.segments.get(0).initializationSegment);
+    assertSegmentsEqual(
+        playlist.segments,
+        parseMediaPlaylist(playlistUri, playlistString, /* previousPlaylist= */ null).segments);
+  }
+
+  @Test
+  public void testParseWithPreviousPlaylistMatchesFullParseOfSlidingPlaylist()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/live.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:5.005,\n"
+            + "10.ts\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:4.004,advert\n"
+            + "11.ts\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"key.php\"\n"
+            + "#EXTINF:5.005,\n"
+            + "#EXT-X-BYTERANGE:1000@0\n"
+            + "12.ts\n"
+            + "#EXTINF:5.005,\n"
+            + "#EXT-X-BYTERANGE:1000\n"
+            + "12.ts\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXT-X-MEDIA-SEQUENCE:11\n"
+            + "#EXT-X-DISCONTINUITY-SEQUENCE:1\n"
+            + "#EXTINF:4.004,advert\n"
+            + "11.ts\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"key.php\"\n"
+            + "#EXTINF:5.005,\n"
+            + "#EXT-X-BYTERANGE:1000@0\n"
+            + "12.ts\n"
+            + "#EXTINF:5.005,\n"
+            + "#EXT-X-BYTERANGE:1000\n"
+            + "12.ts\n"
+            + "#EXTINF:5.005,\n"
+            + "14.ts\n";
+    HlsMediaPlaylist previousPlaylist =
+        parseMediaPlaylist(playlistUri, previousPlaylistString, /* previousPlaylist= */ null);
+
+    HlsMediaPlaylist playlist = parseMediaPlaylist(playlistUri, playlistString, previousPlaylist);
+
+    assertSegmentsEqual(
+        playlist.segments,
+        parseMediaPlaylist(playlistUri, playlistString, /* previousPlaylist= */ null).segments);
+    assertThat(playlist.segments.get(0).title)
+        .isSameInstanceAs(previousPlaylist.segments.get(1).title);
+    assertThat(playlist.segments.get(0).relativeStartTimeUs).isEqualTo(0);
+    assertThat(playlist.segments.get(0).relativeDiscontinuitySequence).isEqualTo(0);
+  }
+
+  @Test
+  public void testParseWithPreviousPlaylistParsesChangedSegments() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/live.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:5.005,\n"
+            + "10.ts\n"
+            + "#EXTINF:5.005,\n"
+            + "11.ts\n"
+            + "#EXTINF:5.005,\n"
+            + "12.ts\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:5.005,\n"
+            + "10.ts\n"
+            + "#EXTINF:4.5,\n"
+            + "11.ts\n"
+            + "#EXTINF:5.005,title\n"
+            + "12.ts\n"
+            + "#EXT-X-GAP\n"
+            + "#EXTINF:5.005,\n"
+            + "13.ts\n";
+    HlsMediaPlaylist previousPlaylist =
+        parseMediaPlaylist(playlistUri, previousPlaylistString, /* previousPlaylist= */ null);
+
+    HlsMediaPlaylist playlist = parseMediaPlaylist(playlistUri, playlistString, previousPlaylist);
+
+    assertThat(playlist.segments.get(0)).isSameInstanceAs(previousPlaylist.segments.get(0));
+    assertThat(playlist.segments.get(1).durationUs).isEqualTo(4500000);
+    assertThat(playlist.segments.get(2).title).isEqualTo("title");
+    assertThat(playlist.segments.get(3).hasGapTag).isTrue();
+    assertSegmentsEqual(
+        playlist.segments,
+        parseMediaPlaylist(playlistUri, playlistString, /* previousPlaylist= */ null).segments);
+  }
+
+  private static HlsMediaPlaylist parseMediaPlaylist(
+      Uri playlistUri, String playlistString, @Nullable HlsMediaPlaylist previousPlaylist)
+      throws IOException {
+    InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
+    return (HlsMediaPlaylist)
+        new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+            .parse(playlistUri, inputStream);
+  }
+
+  private static void assertSegmentsEqual(List<Segment> actual, List<Segment> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Segment actualSegment = actual.get(i);
+      Segment expectedSegment = expected.get(i);
+      assertThat(actualSegment.url).isEqualTo(expectedSegment.url);
+      assertThat(actualSegment.title).isEqualTo(expectedSegment.title);
+      assertThat(actualSegment.durationUs).isEqualTo(expectedSegment.durationUs);
+      assertThat(actualSegment.relativeStartTimeUs).isEqualTo(expectedSegment.relativeStartTimeUs);
+      assertThat(actualSegment.relativeDiscontinuitySequence)
+          .isEqualTo(expectedSegment.relativeDiscontinuitySequence);
+      assertThat(actualSegment.drmInitData).isEqualTo(expectedSegment.drmInitData);
+      assertThat(actualSegment.fullSegmentEncryptionKeyUri)
+          .isEqualTo(expectedSegment.fullSegmentEncryptionKeyUri);
+      assertThat(actualSegment.encryptionIV).isEqualTo(expectedSegment.encryptionIV);
+      assertThat(actualSegment.byterangeOffset).isEqualTo(expectedSegment.byterangeOffset);
+      assertThat(actualSegment.byterangeLength).isEqualTo(expectedSegment.byterangeLength);
+      assertThat(actualSegment.hasGapTag).isEqualTo(expectedSegment.hasGapTag);
+      if (expectedSegment.initializationSegment == null) {
+        assertThat(actualSegment.initializationSegment).isNull();
+      } else {
+        assertThat(actualSegment.initializationSegment.url)
+            .isEqualTo(expectedSegment.initializationSegment.url);
+      }
+    }
+  }
 }
@@ -47,6 +47,7 @@ import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
@@ -74,6 +75,7 @@ public final class SsMediaSource extends BaseMediaSource
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private long livePresentationDelayMs;
     @Nullable private ParsingLoadable.Parser<? extends SsManifest> manifestParser;
+    @Nullable private ManifestCache manifestCache;
     @Nullable private List<StreamKey> streamKeys;
     @Nullable private Object tag;
 
@@ -169,6 +171,23 @@ public final class SsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a {@link ManifestCache} from which loaded manifests are reused, and to which they're
+     * added once loaded. The cache may be shared with other factories, so that media sources for
+     * the same manifest {@link Uri} don't load and parse it again.
+     *
+     * <p>On-demand manifests are cached for the maximum time to live of the cache. Live manifests
+     * are cached for half the minimum manifest refresh period, so that refreshes aren't served the
+     * manifest loaded by the previous refresh. The cache isn't used if stream keys are set.
+     *
+     * @param manifestCache A {@link ManifestCache}, or null to always load manifests.
+     * @return This factory, for convenience.
+     */
+    public Factory setManifestCache(@Nullable ManifestCache manifestCache) {
+      this.manifestCache = manifestCache;
+      return this;
+    }
+
     /**
      * Sets the factory to create composite {@link SequenceableLoader}s for when this media source
      * loads data from multiple streams (video, audio etc.). The default is an instance of {@link
@@ -228,6 +247,7 @@ public final class SsMediaSource extends BaseMediaSource
           /* manifestUri= */ null,
           /* manifestDataSourceFactory= */ null,
           /* manifestParser= */ null,
+          /* manifestCache= */ null,
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           drmSessionManager,
@@ -288,6 +308,7 @@ public final class SsMediaSource extends BaseMediaSource
           Assertions.checkNotNull(manifestUri),
           manifestDataSourceFactory,
           manifestParser,
+          streamKeys == null ? manifestCache : null,
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           drmSessionManager,
@@ -327,6 +348,7 @@ public final class SsMediaSource extends BaseMediaSource
   private final long livePresentationDelayMs;
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends SsManifest> manifestParser;
+  @Nullable private final ManifestCache manifestCache;
   private final ArrayList<SsMediaPeriod> mediaPeriods;
   @Nullable private final Object tag;
 
@@ -386,6 +408,7 @@ public final class SsMediaSource extends BaseMediaSource
         /* manifestUri= */ null,
         /* manifestDataSourceFactory= */ null,
         /* manifestParser= */ null,
+        /* manifestCache= */ null,
         chunkSourceFactory,
         new DefaultCompositeSequenceableLoaderFactory(),
         DrmSessionManager.getDummyDrmSessionManager(),
@@ -487,6 +510,7 @@ public final class SsMediaSource extends BaseMediaSource
         manifestUri,
         manifestDataSourceFactory,
         manifestParser,
+        /* manifestCache= */ null,
         chunkSourceFactory,
         new DefaultCompositeSequenceableLoaderFactory(),
         DrmSessionManager.getDummyDrmSessionManager(),
@@ -503,6 +527,7 @@ public final class SsMediaSource extends BaseMediaSource
       @Nullable Uri manifestUri,
       @Nullable DataSource.Factory manifestDataSourceFactory,
       @Nullable ParsingLoadable.Parser<? extends SsManifest> manifestParser,
+      @Nullable ManifestCache manifestCache,
       SsChunkSource.Factory chunkSourceFactory,
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
       DrmSessionManager<?> drmSessionManager,
@@ -514,6 +539,7 @@ public final class SsMediaSource extends BaseMediaSource
     this.manifestUri = manifestUri == null ? null : SsUtil.fixManifestUri(manifestUri);
     this.manifestDataSourceFactory = manifestDataSourceFactory;
     this.manifestParser = manifestParser;
+    this.manifestCache = manifestCache;
     this.chunkSourceFactory = chunkSourceFactory;
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
     this.drmSessionManager = drmSessionManager;
@@ -738,12 +764,22 @@ public final class SsMediaSource extends BaseMediaSource
     if (manifestLoader.hasFatalError()) {
       return;
     }
-    ParsingLoadable<SsManifest> loadable = new ParsingLoadable<>(manifestDataSource,
-        manifestUri, C.DATA_TYPE_MANIFEST, manifestParser);
+    ParsingLoadable<SsManifest> loadable =
+        new ParsingLoadable<>(
+            manifestDataSource,
+            manifestUri,
+            C.DATA_TYPE_MANIFEST,
+            manifestParser,
+            manifestCache,
+            SsMediaSource::getManifestTimeToLiveMs);
     long elapsedRealtimeMs =
         manifestLoader.startLoading(
             loadable, this, loadErrorHandlingPolicy.getMinimumLoadableRetryCount(loadable.type));
     manifestEventDispatcher.loadStarted(loadable.dataSpec, loadable.type, elapsedRealtimeMs);
   }
 
+  private static long getManifestTimeToLiveMs(SsManifest manifest) {
+    return manifest.isLive ? MINIMUM_MANIFEST_REFRESH_PERIOD_MS / 2 : C.TIME_UNSET;
+  }
+
 }